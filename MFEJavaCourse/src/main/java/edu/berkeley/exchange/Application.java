@@ -2,11 +2,15 @@ package edu.berkeley.exchange;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
 public class Application {
 
     public static void main(String[] args) {
-        SpringApplication.run(Application.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(Application.class, args);
+        if (context.getBean(ExchangeProperties.class).isExitAfterStartup()) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 }
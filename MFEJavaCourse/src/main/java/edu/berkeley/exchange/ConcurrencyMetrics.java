@@ -0,0 +1,122 @@
+package edu.berkeley.exchange;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts matching transactions and the optimistic version conflicts they ran 
+ * into, broken down by ticker and by the entity whose version check failed.
+ */
+@Component
+public class ConcurrencyMetrics 
+{
+	private final AtomicLong commits = new AtomicLong();
+	private final AtomicLong conflicts = new AtomicLong();
+	private final AtomicLong exhausted = new AtomicLong();
+	private final ConcurrentMap<String, AtomicLong> conflictsByTicker = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, AtomicLong> conflictsByEntity = new ConcurrentHashMap<>();
+	
+	public void recordCommit()
+	{
+		commits.incrementAndGet();
+	}
+	
+	/**
+	 * Counts one conflict, against each ticker the conflicting unit of work spanned.
+	 */
+	public void recordConflict(Collection<String> tickers, OptimisticLockingFailureException conflict)
+	{
+		conflicts.incrementAndGet();
+		for (String ticker : tickers)
+		{
+			increment(conflictsByTicker, ticker);
+		}
+		
+		String entity = "unknown";
+		if (conflict instanceof ObjectOptimisticLockingFailureException)
+		{
+			String className = ((ObjectOptimisticLockingFailureException) conflict).getPersistentClassName();
+			if (className != null)
+			{
+				entity = className.substring(className.lastIndexOf('.') + 1);
+			}
+		}
+		increment(conflictsByEntity, entity);
+	}
+	
+	public void recordExhausted()
+	{
+		exhausted.incrementAndGet();
+	}
+	
+	public long getCommits()
+	{
+		return commits.get();
+	}
+	
+	public long getConflicts()
+	{
+		return conflicts.get();
+	}
+	
+	/**
+	 * Units of work given up after every attempt conflicted.
+	 */
+	public long getExhausted()
+	{
+		return exhausted.get();
+	}
+	
+	/**
+	 * Share of attempts that ended in a conflict.
+	 */
+	public double getConflictRate()
+	{
+		long conflicted = conflicts.get();
+		long attempts = commits.get() + conflicted;
+		return attempts == 0 ? 0 : (double) conflicted / attempts;
+	}
+	
+	public Map<String, Long> getConflictsByTicker()
+	{
+		return snapshot(conflictsByTicker);
+	}
+	
+	public Map<String, Long> getConflictsByEntity()
+	{
+		return snapshot(conflictsByEntity);
+	}
+	
+	private static void increment(ConcurrentMap<String, AtomicLong> counts, String key)
+	{
+		AtomicLong count = counts.get(key);
+		if (count == null)
+		{
+			AtomicLong created = new AtomicLong();
+			count = counts.putIfAbsent(key, created);
+			if (count == null)
+			{
+				count = created;
+			}
+		}
+		count.incrementAndGet();
+	}
+	
+	private static Map<String, Long> snapshot(ConcurrentMap<String, AtomicLong> counts)
+	{
+		Map<String, Long> snapshot = new HashMap<>();
+		for (Map.Entry<String, AtomicLong> entry : counts.entrySet())
+		{
+			snapshot.put(entry.getKey(), entry.getValue().get());
+		}
+		return snapshot;
+	}
+}
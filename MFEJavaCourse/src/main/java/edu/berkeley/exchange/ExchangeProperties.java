@@ -0,0 +1,124 @@
+package edu.berkeley.exchange;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import edu.berkeley.exchange.admission.AdmissionLimits;
+import edu.berkeley.exchange.settlement.SettlementMode;
+
+@Component
+@ConfigurationProperties(prefix="exchange")
+public class ExchangeProperties 
+{
+	private SelfTradePrevention selfTradePrevention = SelfTradePrevention.NONE;
+	private String archiveDirectory = "archive";
+	private double stopProtectionBand = 0.05;
+	private double riskFreeRate = 0.02;
+	private double defaultVolatility = 0.25;
+	private int binomialSteps = 200;
+	private int varLookbackDays = 250;
+	private int maxMatchAttempts = 3;
+	private boolean exitAfterStartup;
+	private int offHeapBookCapacity;
+	private SettlementMode settlement = SettlementMode.IMMEDIATE;
+	private AdmissionLimits admission = new AdmissionLimits();
+
+	public SelfTradePrevention getSelfTradePrevention() {
+		return selfTradePrevention;
+	}
+
+	public void setSelfTradePrevention(SelfTradePrevention selfTradePrevention) {
+		this.selfTradePrevention = selfTradePrevention;
+	}
+
+	public String getArchiveDirectory() {
+		return archiveDirectory;
+	}
+
+	public void setArchiveDirectory(String archiveDirectory) {
+		this.archiveDirectory = archiveDirectory;
+	}
+
+	public double getStopProtectionBand() {
+		return stopProtectionBand;
+	}
+
+	public void setStopProtectionBand(double stopProtectionBand) {
+		this.stopProtectionBand = stopProtectionBand;
+	}
+
+	public double getRiskFreeRate() {
+		return riskFreeRate;
+	}
+
+	public void setRiskFreeRate(double riskFreeRate) {
+		this.riskFreeRate = riskFreeRate;
+	}
+
+	public double getDefaultVolatility() {
+		return defaultVolatility;
+	}
+
+	public void setDefaultVolatility(double defaultVolatility) {
+		this.defaultVolatility = defaultVolatility;
+	}
+
+	public int getBinomialSteps() {
+		return binomialSteps;
+	}
+
+	public void setBinomialSteps(int binomialSteps) {
+		this.binomialSteps = binomialSteps;
+	}
+
+	public int getVarLookbackDays() {
+		return varLookbackDays;
+	}
+
+	public void setVarLookbackDays(int varLookbackDays) {
+		this.varLookbackDays = varLookbackDays;
+	}
+
+	public int getMaxMatchAttempts() {
+		return maxMatchAttempts;
+	}
+
+	public void setMaxMatchAttempts(int maxMatchAttempts) {
+		this.maxMatchAttempts = maxMatchAttempts;
+	}
+
+	/**
+	 * Closes the application as soon as it is ready, for training runs that record 
+	 * a class data sharing archive.
+	 */
+	public boolean isExitAfterStartup() {
+		return exitAfterStartup;
+	}
+
+	public void setExitAfterStartup(boolean exitAfterStartup) {
+		this.exitAfterStartup = exitAfterStartup;
+	}
+
+	/**
+	 * Resting orders an off-heap copy of the book can hold, or 0 for none.
+	 */
+	public int getOffHeapBookCapacity() {
+		return offHeapBookCapacity;
+	}
+
+	public void setOffHeapBookCapacity(int offHeapBookCapacity) {
+		this.offHeapBookCapacity = offHeapBookCapacity;
+	}
+
+	public SettlementMode getSettlement() {
+		return settlement;
+	}
+
+	public void setSettlement(SettlementMode settlement) {
+		this.settlement = settlement;
+	}
+
+	public AdmissionLimits getAdmission() {
+		return admission;
+	}
+}
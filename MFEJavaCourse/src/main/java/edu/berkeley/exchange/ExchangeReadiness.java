@@ -0,0 +1,102 @@
+package edu.berkeley.exchange;
+
+import java.lang.management.ManagementFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+
+import edu.berkeley.exchange.book.OffHeapOrderBook;
+import edu.berkeley.exchange.marketdata.BestPriceCache;
+import edu.berkeley.exchange.marketdata.LastTradePrices;
+import edu.berkeley.exchange.security.InstrumentRulesTable;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.security.SecurityRepository;
+
+/**
+ * Warms the book, last price and trading rules of every listed security once the 
+ * context is refreshed, and only then reports the exchange as ready. The warm-up 
+ * runs on the refreshing thread, before the embedded server opens its connector, 
+ * so the first order never pays for loading a book. Open orders written before 
+ * displayed quantities and time priority were kept have already been fixed up by 
+ * OrderBackfill by then. If exchange.off-heap-book-capacity is set, the open 
+ * orders are also loaded into an OffHeapOrderBook, security by security, that the 
+ * BestPriceCache keeps up to date from then on.
+ */
+@Component
+public class ExchangeReadiness implements ApplicationListener<ContextRefreshedEvent>
+{
+	private SecurityRepository securityRepo;
+	private BestPriceCache bestPrices;
+	private LastTradePrices lastTradePrices;
+	private InstrumentRulesTable instrumentRules;
+	private ExchangeProperties properties;
+	
+	private volatile boolean ready;
+	private volatile int warmedSecurities;
+	private volatile long warmupMillis;
+	private volatile long readyAfterMillis;
+	
+	@Autowired
+	public ExchangeReadiness(SecurityRepository securityRepo, BestPriceCache bestPrices, 
+			LastTradePrices lastTradePrices, InstrumentRulesTable instrumentRules, ExchangeProperties properties)
+	{
+		this.securityRepo = securityRepo;
+		this.bestPrices = bestPrices;
+		this.lastTradePrices = lastTradePrices;
+		this.instrumentRules = instrumentRules;
+		this.properties = properties;
+	}
+	
+	@Override
+	public synchronized void onApplicationEvent(ContextRefreshedEvent event) 
+	{
+		if (ready)
+		{
+			return;
+		}
+		
+		long start = System.currentTimeMillis();
+		
+		if (properties.getOffHeapBookCapacity() > 0)
+		{
+			bestPrices.setOffHeapBook(new OffHeapOrderBook(properties.getOffHeapBookCapacity()));
+		}
+		
+		int warmed = 0;
+		for (Security security : securityRepo.findAll())
+		{
+			String ticker = security.getTicker();
+			bestPrices.getBestBid(ticker);
+			bestPrices.loadOffHeapBook(ticker);
+			lastTradePrices.getLastPrice(ticker);
+			instrumentRules.get(security);
+			warmed++;
+		}
+		
+		warmedSecurities = warmed;
+		warmupMillis = System.currentTimeMillis() - start;
+		readyAfterMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		ready = true;
+	}
+	
+	public boolean isReady() {
+		return ready;
+	}
+
+	public int getWarmedSecurities() {
+		return warmedSecurities;
+	}
+
+	public long getWarmupMillis() {
+		return warmupMillis;
+	}
+
+	/**
+	 * Milliseconds from JVM start until the books were warm.
+	 */
+	public long getReadyAfterMillis() {
+		return readyAfterMillis;
+	}
+}
@@ -1,6 +1,10 @@
 package edu.berkeley.exchange;
 
+import java.util.List;
+
+import edu.berkeley.exchange.basket.BasketLeg;
 import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
 import edu.berkeley.exchange.security.Security;
 import edu.berkeley.exchange.trader.Trader;
 
@@ -12,4 +16,38 @@ public interface ExchangeService
 						   int quantity,
 						   OrderType type)
 						   throws OrderExecutionException;
+	
+	public void placeIcebergOrder(Trader trader,
+								  Security security,
+								  double price,
+								  int quantity,
+								  int peak,
+								  OrderType type)
+								  throws OrderExecutionException;
+	
+	public void placePeggedOrder(Trader trader,
+								 Security security,
+								 PegType pegType,
+								 double offset,
+								 double limit,
+								 int quantity,
+								 OrderType type)
+								 throws OrderExecutionException;
+	
+	public void placeBasket(Trader trader,
+							List<BasketLeg> legs,
+							boolean allOrNone)
+							throws OrderExecutionException;
+	
+	public void placeStopOrder(Trader trader,
+							   Security security,
+							   double stopPrice,
+							   double limitPrice,
+							   int quantity,
+							   OrderType type)
+							   throws OrderExecutionException;
+	
+	public void cancelOrder(Trader trader,
+							long orderId)
+							throws OrderExecutionException;
 }
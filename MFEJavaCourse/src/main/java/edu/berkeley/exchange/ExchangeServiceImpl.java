@@ -1,12 +1,52 @@
 package edu.berkeley.exchange;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReentrantLock;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import edu.berkeley.exchange.auction.TradingPhase;
+import edu.berkeley.exchange.auction.TradingSchedule;
+import edu.berkeley.exchange.basket.BasketLeg;
+import edu.berkeley.exchange.basket.BasketPlanner;
+import edu.berkeley.exchange.marketdata.BestPriceCache;
+import edu.berkeley.exchange.marketdata.PriceLevel;
+import edu.berkeley.exchange.matching.AllocationAlgorithm;
+import edu.berkeley.exchange.matching.AllocationPolicies;
+import edu.berkeley.exchange.matching.FillBatch;
+import edu.berkeley.exchange.matching.PriceLevelAllocator;
+import edu.berkeley.exchange.order.CrossingOrders;
 import edu.berkeley.exchange.order.Order;
 import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
 import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.RestingOrder;
+import edu.berkeley.exchange.order.StopOrder;
+import edu.berkeley.exchange.order.Trade;
+import edu.berkeley.exchange.order.TradeListener;
+import edu.berkeley.exchange.peg.Peg;
+import edu.berkeley.exchange.peg.PegRepricer;
+import edu.berkeley.exchange.report.ExecutionReports;
+import edu.berkeley.exchange.report.ExecutionStatus;
+import edu.berkeley.exchange.security.InstrumentRules;
+import edu.berkeley.exchange.security.InstrumentRulesTable;
 import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.settlement.SettlementLedger;
+import edu.berkeley.exchange.stop.StopOrderEngine;
 import edu.berkeley.exchange.trader.Holding;
 import edu.berkeley.exchange.trader.HoldingKey;
 import edu.berkeley.exchange.trader.HoldingRepository;
@@ -19,57 +59,932 @@ public class ExchangeServiceImpl implements ExchangeService
 	private OrderRepository orderRepo;
 	private HoldingRepository holdingRepo;
 	private TraderRepository traderRepo;
+	private ExchangeProperties properties;
+	private BestPriceCache bestPrices;
+	private SecurityLocks locks;
+	private List<TradeListener> tradeListeners = new CopyOnWriteArrayList<>();
+	private StopOrderEngine stopOrders;
+	private PegRepricer pegs;
+	private SettlementLedger settlementLedger;
+	private TradingSchedule schedule;
+	private AllocationPolicies allocationPolicies;
+	private InstrumentRulesTable instrumentRules;
+	private ExecutionReports reports;
+	private TransactionTemplate transactions;
+	private ConcurrencyMetrics concurrencyMetrics = new ConcurrencyMetrics();
+	private ForkJoinPool basketPool = ForkJoinPool.commonPool();
 	
-	@Autowired
 	public ExchangeServiceImpl(OrderRepository orderRepo, HoldingRepository holdingRepo, 
 			TraderRepository traderRepo)
+	{
+		this(orderRepo, holdingRepo, traderRepo, new ExchangeProperties(), new SecurityLocks());
+	}
+	
+	private ExchangeServiceImpl(OrderRepository orderRepo, HoldingRepository holdingRepo, 
+			TraderRepository traderRepo, ExchangeProperties properties, SecurityLocks locks)
+	{
+		this(orderRepo, holdingRepo, traderRepo, properties, new BestPriceCache(orderRepo, locks), locks);
+	}
+	
+	@Autowired
+	public ExchangeServiceImpl(OrderRepository orderRepo, HoldingRepository holdingRepo, 
+			TraderRepository traderRepo, ExchangeProperties properties, BestPriceCache bestPrices,
+			SecurityLocks locks)
 	{
 		this.orderRepo = orderRepo;
 		this.holdingRepo = holdingRepo;
 		this.traderRepo = traderRepo;
+		this.properties = properties;
+		this.bestPrices = bestPrices;
+		this.locks = locks;
+	}
+	
+	@Autowired(required=false)
+	public void setTradeListeners(List<TradeListener> tradeListeners)
+	{
+		this.tradeListeners = new CopyOnWriteArrayList<>(tradeListeners);
+	}
+	
+	public void addTradeListener(TradeListener listener)
+	{
+		tradeListeners.add(listener);
+	}
+	
+	public void removeTradeListener(TradeListener listener)
+	{
+		tradeListeners.remove(listener);
+	}
+	
+	@Autowired(required=false)
+	public void setStopOrderEngine(StopOrderEngine stopOrders)
+	{
+		this.stopOrders = stopOrders;
+	}
+	
+	@Autowired(required=false)
+	public void setPegRepricer(PegRepricer pegs)
+	{
+		this.pegs = pegs;
+	}
+	
+	@Autowired(required=false)
+	public void setSettlementLedger(SettlementLedger settlementLedger)
+	{
+		this.settlementLedger = settlementLedger;
+	}
+	
+	@Autowired(required=false)
+	public void setTradingSchedule(TradingSchedule schedule)
+	{
+		this.schedule = schedule;
+	}
+	
+	@Autowired(required=false)
+	public void setAllocationPolicies(AllocationPolicies allocationPolicies)
+	{
+		this.allocationPolicies = allocationPolicies;
+	}
+	
+	@Autowired(required=false)
+	public void setInstrumentRules(InstrumentRulesTable instrumentRules)
+	{
+		this.instrumentRules = instrumentRules;
+	}
+	
+	@Autowired(required=false)
+	public void setExecutionReports(ExecutionReports reports)
+	{
+		this.reports = reports;
+	}
+	
+	/**
+	 * Without a transaction manager each repository call commits on its own and 
+	 * conflicts are not retried.
+	 */
+	@Autowired(required=false)
+	public void setTransactionManager(PlatformTransactionManager transactionManager)
+	{
+		this.transactions = new TransactionTemplate(transactionManager);
+	}
+	
+	@Autowired(required=false)
+	public void setConcurrencyMetrics(ConcurrencyMetrics concurrencyMetrics)
+	{
+		this.concurrencyMetrics = concurrencyMetrics;
+	}
+	
+	public void setBasketPool(ForkJoinPool basketPool)
+	{
+		this.basketPool = basketPool;
+	}
+	
+	public ExchangeProperties getProperties()
+	{
+		return properties;
 	}
 
 	public Order getBestBid(Security security) 
 	{
-		return orderRepo.findTopBySecurityAndTypeAndExecutedOrderByPriceDesc(security, 
+		return orderRepo.findTopBySecurityAndTypeAndExecutedOrderByPriceDescPriorityAsc(security, 
 				OrderType.BUY, false);
 	}
 
 	public Order getBestAsk(Security security) 
 	{
-		return orderRepo.findTopBySecurityAndTypeAndExecutedOrderByPriceAsc(security, 
+		return orderRepo.findTopBySecurityAndTypeAndExecutedOrderByPriceAscPriorityAsc(security, 
 				OrderType.SELL, false);
 	}
 	
-	public Order getLastExecutedBuy(Security security, Trader trader)
+	public PriceLevel getBestBidPrice(Security security)
+	{
+		return bestPrices.getBestBid(security.getTicker());
+	}
+	
+	public PriceLevel getBestAskPrice(Security security)
+	{
+		return bestPrices.getBestAsk(security.getTicker());
+	}
+	
+	public Order getLastExecutedBuy(Security security, Trader trader)
+	{
+		return orderRepo.findTopBySecurityAndTraderAndTypeAndExecutedOrderByIdDesc(
+				security, trader, OrderType.BUY, true);
+	}
+	
+	public Order getLastExecutedSell(Security security, Trader trader)
+	{
+		return orderRepo.findTopBySecurityAndTraderAndTypeAndExecutedOrderByIdDesc(
+				security, trader, OrderType.SELL, true);
+	}
+	
+	@Override
+	public void placeOrder(Trader trader, Security security, double price,
+			int quantity, OrderType type)
+			throws OrderExecutionException
+	{
+		placeOrder(trader, security, price, quantity, type, 0, null);
+	}
+	
+	/**
+	 * Places an iceberg order: whatever does not match at once rests showing at 
+	 * most peak shares, and each time that slice is filled the next one is shown 
+	 * from the reserve with a new time priority.
+	 */
+	@Override
+	public void placeIcebergOrder(Trader trader, Security security, double price,
+			int quantity, int peak, OrderType type)
+			throws OrderExecutionException
+	{
+		if (peak <= 0)
+		{
+			OrderExecutionException oee = new OrderExecutionException(
+					"Could not execute ICEBERG " + type + " order on " + security.getTicker() +
+					" for " + trader.getName() + " since peak requested <= 0.");
+			reportRejected(trader, security.getTicker(), 0, type, price, oee);
+			throw oee;
+		}
+		placeOrder(trader, security, price, quantity, type, peak, null);
+	}
+	
+	/**
+	 * Places an order pegged to the book. Its price is the reference price of its 
+	 * peg type plus offset, never beyond limit, and follows the reference as the 
+	 * touch moves. Capital for a pegged BUY is reserved at its limit.
+	 */
+	@Override
+	public void placePeggedOrder(Trader trader, Security security, PegType pegType, double offset, 
+			double limit, int quantity, OrderType type) throws OrderExecutionException
+	{
+		Peg peg = new Peg(pegType, offset, limit);
+		
+		ReentrantLock lock = locks.get(security.getTicker());
+		lock.lock();
+		try
+		{
+			double price;
+			try
+			{
+				price = pegPrice(trader, security, peg, quantity, type);
+			}
+			catch (OrderExecutionException oee)
+			{
+				reportRejected(trader, security.getTicker(), 0, type, limit, oee);
+				throw oee;
+			}
+			
+			match(trader, security, price, quantity, type, 0, peg);
+			runTriggeredStops(security);
+			repricePegs(security);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	private void placeOrder(Trader trader, Security security, double price, int quantity, 
+			OrderType type, int peak, Peg peg) throws OrderExecutionException
+	{
+		try
+		{
+			checkInstrumentRules("execute " + type, trader, security, price, quantity, true);
+			if (peak > 0)
+			{
+				checkInstrumentRules("execute ICEBERG " + type, trader, security, price, peak, false);
+			}
+		}
+		catch (OrderExecutionException oee)
+		{
+			reportRejected(trader, security.getTicker(), 0, type, price, oee);
+			throw oee;
+		}
+		
+		ReentrantLock lock = locks.get(security.getTicker());
+		lock.lock();
+		try
+		{
+			match(trader, security, price, quantity, type, peak, peg);
+			runTriggeredStops(security);
+			repricePegs(security);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public void placeStopOrder(Trader trader, Security security, double stopPrice, 
+			double limitPrice, int quantity, OrderType type) 
+			throws OrderExecutionException 
+	{
+		try
+		{
+			checkStopOrder(trader, security, stopPrice, limitPrice, quantity, type);
+		}
+		catch (OrderExecutionException oee)
+		{
+			reportRejected(trader, security.getTicker(), 0, type, stopPrice, oee);
+			throw oee;
+		}
+		
+		ReentrantLock lock = locks.get(security.getTicker());
+		lock.lock();
+		try
+		{
+			stopOrders.add(new StopOrder(security, trader, stopPrice, limitPrice, quantity, type));
+			runTriggeredStops(security);
+			repricePegs(security);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	private void checkStopOrder(Trader trader, Security security, double stopPrice, double limitPrice, 
+			int quantity, OrderType type) throws OrderExecutionException
+	{
+		if (stopOrders == null)
+		{
+			throw new OrderExecutionException(
+					"Could not place STOP " + type + " order on " + security.getTicker() +
+					" for " + trader.getName() + " since stop orders are not enabled.");
+		}
+		if (stopPrice <= 0 || limitPrice < 0 || quantity <= 0)
+		{
+			throw new OrderExecutionException(
+					"Could not place STOP " + type + " order on " + security.getTicker() +
+					" for " + trader.getName() + " since price or quantity requested <= 0.");
+		}
+		checkInstrumentRules("place STOP " + type, trader, security, stopPrice, quantity, false);
+		if (limitPrice > 0)
+		{
+			checkInstrumentRules("place STOP " + type, trader, security, limitPrice, quantity, false);
+		}
+		if (type.equals(OrderType.BUY))
+		{
+			double entryPrice = limitPrice > 0 ? limitPrice : 
+				stopPrice * (1 + properties.getStopProtectionBand());
+			if (entryPrice * quantity > trader.getCapital())
+			{
+				throw new OrderExecutionException(
+						"Could not place STOP BUY order on " + security.getTicker() +
+						" for " + trader.getName() + " due to insufficient capital.");
+			}
+		}
+		else
+		{
+			Holding holding = holdingRepo.findOne(new HoldingKey(trader.getName(), security.getTicker()));
+			if (holding == null || holding.getQuantity() < quantity)
+			{
+				throw new OrderExecutionException(
+						"Could not place STOP SELL order on " + security.getTicker() +
+						" for " + trader.getName() + " due to insufficient quantity of shares.");
+			}
+		}
+	}
+	
+	/**
+	 * Withdraws an open order, handing its reserved capital or shares back to the 
+	 * trader.
+	 */
+	@Override
+	public void cancelOrder(Trader trader, long orderId) throws OrderExecutionException
+	{
+		Order order = orderRepo.findOne(orderId);
+		if (order == null)
+		{
+			OrderExecutionException oee = new OrderExecutionException(
+					"Could not cancel order " + orderId + " for " + trader.getName() + 
+					" since the order does not exist.");
+			reportRejected(trader, null, orderId, null, 0, oee);
+			throw oee;
+		}
+		
+		ReentrantLock lock = locks.get(order.getTicker());
+		lock.lock();
+		try
+		{
+			inTransaction(trader, order.getTicker(), "cancel", current ->
+			{
+				Order open = orderRepo.findOne(orderId);
+				if (open == null || open.isExecuted() || !open.getTraderName().equals(current.getName()))
+				{
+					throw new OrderExecutionException(
+							"Could not cancel order " + orderId + " for " + current.getName() + 
+							" since it is not an open order of this trader.");
+				}
+				cancelResting(open, current, open.getSecurity(), open.getQuantity());
+			});
+			repricePegs(order.getSecurity());
+		}
+		catch (OrderExecutionException oee)
+		{
+			reportRejected(trader, order.getTicker(), orderId, order.getType(), 0, oee);
+			throw oee;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Places several limit orders for one trader as a unit. Capital for all BUY legs 
+	 * together and shares for each SELL leg are checked once, before anything 
+	 * happens, so the basket is reserved against the trader as a whole. The locks of 
+	 * all its tickers are then taken in ticker order and, with allOrNone, every leg 
+	 * is planned against its book in parallel and the basket refused unless each leg 
+	 * would fill completely. The legs are matched one after another as a single unit 
+	 * of work: with a transaction manager they commit together or not at all, 
+	 * without one each leg commits as it goes.
+	 */
+	@Override
+	public void placeBasket(Trader trader, List<BasketLeg> legs, boolean allOrNone) 
+			throws OrderExecutionException
+	{
+		List<String> tickers = new ArrayList<>();
+		try
+		{
+			checkBasket(trader, legs, tickers);
+		}
+		catch (OrderExecutionException oee)
+		{
+			rejectBasket(trader, legs, 0, oee);
+			throw oee;
+		}
+		
+		List<String> lockOrder = new ArrayList<>(tickers);
+		Collections.sort(lockOrder);
+		List<ReentrantLock> held = new ArrayList<>();
+		int[] placed = new int[1];
+		try
+		{
+			for (String ticker : lockOrder)
+			{
+				ReentrantLock lock = locks.get(ticker);
+				lock.lock();
+				held.add(lock);
+			}
+			
+			if (allOrNone)
+			{
+				int[] fillable = planBasket(trader, legs);
+				for (int i = 0; i < fillable.length; i++)
+				{
+					BasketLeg leg = legs.get(i);
+					if (fillable[i] < leg.getQuantity())
+					{
+						throw new OrderExecutionException(
+								"Could not execute basket for " + trader.getName() + " since the " + 
+								leg.getType() + " leg on " + leg.getTicker() + " can only fill " + 
+								fillable[i] + " of " + leg.getQuantity() + ".");
+					}
+				}
+			}
+			
+			inTransaction(trader, tickers, "execute basket on " + tickers, current ->
+			{
+				placed[0] = 0;
+				for (BasketLeg leg : legs)
+				{
+					if (leg.getType().equals(OrderType.SELL))
+					{
+						placeSellOrder(current, leg.getSecurity(), leg.getPrice(), leg.getQuantity(), 0, null);
+					}
+					else
+					{
+						placeBuyOrder(current, leg.getSecurity(), leg.getPrice(), leg.getQuantity(), 0, null);
+					}
+					placed[0]++;
+				}
+			});
+			
+			for (BasketLeg leg : legs)
+			{
+				runTriggeredStops(leg.getSecurity());
+				repricePegs(leg.getSecurity());
+			}
+		}
+		catch (OrderExecutionException oee)
+		{
+			rejectBasket(trader, legs, transactions == null ? placed[0] : 0, oee);
+			throw oee;
+		}
+		finally
+		{
+			for (int i = held.size() - 1; i >= 0; i--)
+			{
+				held.get(i).unlock();
+			}
+		}
+	}
+	
+	private void checkBasket(Trader trader, List<BasketLeg> legs, List<String> tickers) 
+			throws OrderExecutionException
+	{
+		if (legs.isEmpty())
+		{
+			throw new OrderExecutionException(
+					"Could not execute basket for " + trader.getName() + " since it has no legs.");
+		}
+		
+		double notional = 0;
+		for (BasketLeg leg : legs)
+		{
+			if (tickers.contains(leg.getTicker()))
+			{
+				throw new OrderExecutionException(
+						"Could not execute basket for " + trader.getName() + 
+						" since it has more than one leg on " + leg.getTicker() + ".");
+			}
+			tickers.add(leg.getTicker());
+			
+			if (leg.getPrice() <= 0 || leg.getQuantity() <= 0)
+			{
+				throw new OrderExecutionException(
+						"Could not execute " + leg.getType() + " order on " + leg.getTicker() +
+						" for " + trader.getName() + " since price or quantity requested <= 0.");
+			}
+			checkInstrumentRules("execute " + leg.getType(), trader, leg.getSecurity(), leg.getPrice(), 
+					leg.getQuantity(), true);
+			notional += leg.getNotional();
+		}
+		
+		if (notional > reload(trader).getCapital())
+		{
+			throw new OrderExecutionException(
+					"Could not execute basket for " + trader.getName() + " due to insufficient capital.");
+		}
+		
+		for (BasketLeg leg : legs)
+		{
+			if (leg.getType().equals(OrderType.BUY))
+			{
+				continue;
+			}
+			
+			Holding holding = holdingRepo.findOne(new HoldingKey(trader.getName(), leg.getTicker()));
+			if (holding == null)
+			{
+				throw new OrderExecutionException(
+						"Could not execute SELL order on " + leg.getTicker() +
+						" for " + trader.getName() + " since security is not held.");
+			}
+			if (holding.getQuantity() < leg.getQuantity())
+			{
+				throw new OrderExecutionException(
+						"Could not execute SELL order on " + leg.getTicker() +
+						" for " + trader.getName() + " due to insufficient quantity of shares.");
+			}
+		}
+	}
+	
+	/**
+	 * Fillable quantity of every leg, each read from its book on the basket pool. 
+	 * Only reads, so the legs need not share a persistence context.
+	 */
+	private int[] planBasket(Trader trader, List<BasketLeg> legs)
+	{
+		List<ForkJoinTask<Integer>> plans = new ArrayList<>();
+		for (BasketLeg leg : legs)
+		{
+			boolean continuous = isContinuous(leg.getSecurity());
+			plans.add(basketPool.submit(() ->
+			{
+				if (!continuous)
+				{
+					return 0;
+				}
+				CrossingOrders crossing = new CrossingOrders(orderRepo, leg.getTicker(), leg.getType(), 
+						leg.getPrice(), leg.getQuantity());
+				return BasketPlanner.fillable(crossing, leg.getQuantity(), trader.getName(), 
+						properties.getSelfTradePrevention());
+			}));
+		}
+		
+		int[] fillable = new int[legs.size()];
+		for (int i = 0; i < fillable.length; i++)
+		{
+			fillable[i] = plans.get(i).join();
+		}
+		return fillable;
+	}
+	
+	/**
+	 * Reports every leg from the given one on as rejected; earlier legs have already 
+	 * been committed.
+	 */
+	private void rejectBasket(Trader trader, List<BasketLeg> legs, int from, OrderExecutionException oee)
+	{
+		for (int i = from; i < legs.size(); i++)
+		{
+			BasketLeg leg = legs.get(i);
+			reportRejected(trader, leg.getTicker(), 0, leg.getType(), leg.getPrice(), oee);
+		}
+	}
+	
+	private void checkInstrumentRules(String action, Trader trader, Security security, double price, 
+			int quantity, boolean checkBand) throws OrderExecutionException
+	{
+		if (instrumentRules == null)
+		{
+			return;
+		}
+		
+		InstrumentRules rules = instrumentRules.get(security);
+		if (!rules.isOnTick(price))
+		{
+			throw new OrderExecutionException(
+					"Could not " + action + " order on " + security.getTicker() +
+					" for " + trader.getName() + " since price " + price + 
+					" is not a multiple of the tick size " + rules.getTickSize() + ".");
+		}
+		if (!rules.isWholeLots(quantity))
+		{
+			throw new OrderExecutionException(
+					"Could not " + action + " order on " + security.getTicker() +
+					" for " + trader.getName() + " since quantity " + quantity + 
+					" is not a multiple of the lot size " + rules.getLotSize() + ".");
+		}
+		if (checkBand && rules.getPriceBand() > 0 && 
+				!rules.isWithinBand(price, instrumentRules.getReferencePrice(security.getTicker())))
+		{
+			throw new OrderExecutionException(
+					"Could not " + action + " order on " + security.getTicker() +
+					" for " + trader.getName() + " since price " + price + " is outside the price band.");
+		}
+	}
+	
+	private void match(Trader trader, Security security, double price, int quantity, OrderType type, 
+			int peak, Peg peg) throws OrderExecutionException
+	{
+		try
+		{
+			inTransaction(trader, security.getTicker(), "execute " + type, current ->
+			{
+				if (type.equals(OrderType.SELL))
+				{
+					placeSellOrder(current, security, price, quantity, peak, peg);
+				}
+				else
+				{
+					placeBuyOrder(current, security, price, quantity, peak, peg);
+				}
+			});
+		}
+		catch (OrderExecutionException oee)
+		{
+			reportRejected(trader, security.getTicker(), 0, type, price, oee);
+			throw oee;
+		}
+	}
+	
+	private interface Attempt
+	{
+		void run(Trader trader) throws OrderExecutionException;
+	}
+	
+	/**
+	 * Runs one unit of matching work for a trader, starting from the trader's 
+	 * current row rather than the caller's copy. With a transaction manager the 
+	 * work is one transaction: a failed version check on a Trader or Holding rolls 
+	 * it back and it is tried again, up to maxMatchAttempts times, and trades and 
+	 * reports go out only once it commits. Whenever an attempt rolls back, for a 
+	 * conflict, a rejection or any other failure, the cached books of its tickers 
+	 * are dropped, since they may hold changes that never committed. The caller's 
+	 * Trader is brought up to date afterwards. Called inside a transaction of the 
+	 * caller's own, the work joins it and is not retried: a conflict has already 
+	 * doomed that transaction, so it goes back to the caller to roll back and retry.
+	 */
+	private void inTransaction(Trader trader, String ticker, String action, Attempt attempt) 
+			throws OrderExecutionException
+	{
+		inTransaction(trader, Collections.singletonList(ticker), action + " order on " + ticker, attempt);
+	}
+	
+	private void inTransaction(Trader trader, List<String> tickers, String work, Attempt attempt) 
+			throws OrderExecutionException
+	{
+		if (transactions == null)
+		{
+			Trader current = reload(trader);
+			attempt.run(current);
+			copyInto(current, trader);
+			return;
+		}
+		
+		boolean joined = TransactionSynchronizationManager.isActualTransactionActive();
+		for (int attempts = 1; ; attempts++)
+		{
+			try
+			{
+				Trader[] current = new Trader[1];
+				OrderExecutionException rejection = transactions.execute(status ->
+				{
+					current[0] = reload(trader);
+					try
+					{
+						attempt.run(current[0]);
+						return null;
+					}
+					catch (OrderExecutionException oee)
+					{
+						status.setRollbackOnly();
+						return oee;
+					}
+				});
+				if (rejection != null)
+				{
+					invalidateBooks(tickers);
+					throw rejection;
+				}
+				
+				concurrencyMetrics.recordCommit();
+				copyInto(current[0], trader);
+				return;
+			}
+			catch (OptimisticLockingFailureException conflict)
+			{
+				invalidateBooks(tickers);
+				concurrencyMetrics.recordConflict(tickers, conflict);
+				if (joined)
+				{
+					throw conflict;
+				}
+				if (attempts >= properties.getMaxMatchAttempts())
+				{
+					concurrencyMetrics.recordExhausted();
+					throw new OrderExecutionException(
+							"Could not " + work + " for " + trader.getName() + " due to concurrent updates.");
+				}
+			}
+			catch (RuntimeException failure)
+			{
+				invalidateBooks(tickers);
+				throw failure;
+			}
+		}
+	}
+	
+	private void invalidateBooks(List<String> tickers)
+	{
+		for (String ticker : tickers)
+		{
+			bestPrices.invalidate(ticker);
+		}
+	}
+	
+	private Trader reload(Trader trader)
+	{
+		Trader current = traderRepo.findOne(trader.getName());
+		return current == null ? trader : current;
+	}
+	
+	private static void copyInto(Trader current, Trader trader)
+	{
+		if (current != trader)
+		{
+			trader.setCapital(current.getCapital());
+			trader.setVersion(current.getVersion());
+		}
+	}
+	
+	/**
+	 * Saves a trader and carries the new version back, since the same instance may 
+	 * be saved again within one match.
+	 */
+	private void saveTrader(Trader trader)
+	{
+		trader.setVersion(traderRepo.save(trader).getVersion());
+	}
+	
+	/**
+	 * Changes to the cached book are applied once the match commits, so a rolled 
+	 * back attempt never shows in it. The caller still holds the security's lock 
+	 * then, so no other order sees the book in between.
+	 */
+	private void restedInBook(Order order)
+	{
+		afterCommit(() -> bestPrices.onRested(order));
+	}
+	
+	private void removedFromBook(Order order, int quantity)
+	{
+		afterCommit(() -> bestPrices.onRemoved(order, quantity));
+	}
+	
+	private void replenishedInBook(Order order, int quantity)
+	{
+		afterCommit(() -> bestPrices.onReplenished(order, quantity));
+	}
+	
+	private void afterCommit(Runnable action)
+	{
+		if (!TransactionSynchronizationManager.isSynchronizationActive())
+		{
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+		{
+			@Override
+			public void afterCommit()
+			{
+				action.run();
+			}
+		});
+	}
+	
+	/**
+	 * Runs stops fired by trades made outside placeOrder, such as an auction uncross.
+	 */
+	public void releaseTriggeredStops(Security security)
+	{
+		ReentrantLock lock = locks.get(security.getTicker());
+		lock.lock();
+		try
+		{
+			runTriggeredStops(security);
+			repricePegs(security);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Lets the security's pegged orders follow the touch once matching for it is done.
+	 */
+	private void repricePegs(Security security)
+	{
+		if (pegs != null)
+		{
+			pegs.reprice(security);
+		}
+	}
+	
+	private boolean isContinuous(Security security)
+	{
+		return schedule == null || schedule.getPhase(security.getTicker()) == TradingPhase.CONTINUOUS;
+	}
+	
+	/**
+	 * Feeds stops fired by the trades just made back into matching, oldest first. 
+	 * Their own trades may fire further stops, which join the end of the queue. 
+	 * Capital and holdings are only reserved once a stop fires, so a stop that can 
+	 * no longer be afforded is dropped here.
+	 */
+	private void runTriggeredStops(Security security)
+	{
+		if (stopOrders == null)
+		{
+			return;
+		}
+		
+		StopOrder stop;
+		while ((stop = stopOrders.nextTriggered(security.getTicker())) != null)
+		{
+			Trader stopTrader = traderRepo.findOne(stop.getTraderName());
+			try
+			{
+				match(stopTrader, security, stopOrders.entryPrice(stop), stop.getQuantity(), stop.getType(), 
+						0, null);
+			}
+			catch (OrderExecutionException oee)
+			{
+				// rejected when it fired; the stop stays recorded as triggered
+			}
+		}
+	}
+	
+	/**
+	 * Validates a pegged order and prices it from the current reference. Called 
+	 * under the security's lock.
+	 */
+	private double pegPrice(Trader trader, Security security, Peg peg, int quantity, OrderType type) 
+			throws OrderExecutionException
+	{
+		if (pegs == null)
+		{
+			throw new OrderExecutionException(
+					"Could not execute PEGGED " + type + " order on " + security.getTicker() +
+					" for " + trader.getName() + " since pegged orders are not enabled.");
+		}
+		if (peg.getType() == null || peg.getLimit() <= 0)
+		{
+			throw new OrderExecutionException(
+					"Could not execute PEGGED " + type + " order on " + security.getTicker() +
+					" for " + trader.getName() + " since no peg type or a limit price <= 0 was requested.");
+		}
+		if (!peg.isPassive(type))
+		{
+			throw new OrderExecutionException(
+					"Could not execute PEGGED " + type + " order on " + security.getTicker() +
+					" for " + trader.getName() + " since offset " + peg.getOffset() + 
+					" would cross its " + peg.getType() + " reference price.");
+		}
+		checkInstrumentRules("execute PEGGED " + type, trader, security, peg.getLimit(), quantity, false);
+		if (instrumentRules != null && !instrumentRules.get(security).isOnTick(peg.getOffset()))
+		{
+			throw new OrderExecutionException(
+					"Could not execute PEGGED " + type + " order on " + security.getTicker() +
+					" for " + trader.getName() + " since offset " + peg.getOffset() + 
+					" is not a multiple of the tick size " + instrumentRules.get(security).getTickSize() + ".");
+		}
+		
+		double reference = pegs.getReference(security.getTicker(), peg.getType(), type);
+		if (Double.isNaN(reference))
+		{
+			throw new OrderExecutionException(
+					"Could not execute PEGGED " + type + " order on " + security.getTicker() +
+					" for " + trader.getName() + " since there is no " + peg.getType() + 
+					" reference price to peg to.");
+		}
+		return pegs.priceFor(security, peg, type, reference);
+	}
+	
+	/**
+	 * The incoming order, given its id now so that its fills are reported under it. 
+	 * It is only saved if part of it rests.
+	 */
+	private Order newResting(Security security, Trader trader, double price, int quantity, OrderType type, 
+			int peak, Peg peg)
 	{
-		return orderRepo.findTopBySecurityAndTraderAndTypeAndExecutedOrderByIdDesc(
-				security, trader, OrderType.BUY, true);
+		Order order = new Order(security, trader, price, quantity, type, peak);
+		order.setId(orderRepo.nextId());
+		if (peg != null)
+		{
+			order.setPeg(peg.getType(), peg.getOffset(), peg.getLimit());
+			pegs.onPegged(security.getTicker());
+		}
+		return order;
 	}
 	
-	public Order getLastExecutedSell(Security security, Trader trader)
+	/**
+	 * The open orders an incoming order at price crosses, best first, read as 
+	 * projections a page at a time, sized to the quantity still to fill. Each is 
+	 * only loaded as an entity when matching reaches it. Nothing crosses outside 
+	 * continuous trading.
+	 */
+	private Iterable<RestingOrder> crossingOrders(Security security, double price, OrderType type, int quantity)
 	{
-		return orderRepo.findTopBySecurityAndTraderAndTypeAndExecutedOrderByIdDesc(
-				security, trader, OrderType.SELL, true);
+		if (!isContinuous(security))
+		{
+			return Collections.emptyList();
+		}
+		return new CrossingOrders(orderRepo, security.getTicker(), type, price, quantity);
 	}
 	
-	@Override
-	public void placeOrder(Trader trader, Security security, double price,
-			int quantity, OrderType type)
-			throws OrderExecutionException
+	private Order nextCrossing(Iterator<RestingOrder> crossing)
 	{
-		if (type.equals(OrderType.SELL))
-		{
-			placeSellOrder(trader, security, price, quantity);
-		}
-		else
-		{
-			placeBuyOrder(trader, security, price, quantity);
-		}
+		return crossing.hasNext() ? orderRepo.findOne(crossing.next().getId()) : null;
 	}
 	
 	private void placeBuyOrder(Trader trader, Security security, double price,
-			int quantity) throws OrderExecutionException
+			int quantity, int peak, Peg peg) throws OrderExecutionException
 	{
 		if (price <= 0 || quantity <= 0)
 		{
@@ -77,7 +992,8 @@ public class ExchangeServiceImpl implements ExchangeService
 					"Could not execute BUY order on " + security.getTicker() +
 					" for " + trader.getName() + " since price or quantity requested <= 0.");
 		}
-		double capitalRequired = price * quantity;
+		double reservePrice = peg == null ? price : peg.getLimit();
+		double capitalRequired = reservePrice * quantity;
 		if (capitalRequired > trader.getCapital())
 		{
 			throw new OrderExecutionException(
@@ -86,66 +1002,101 @@ public class ExchangeServiceImpl implements ExchangeService
 		}
 		else
 		{
+			Order order = newResting(security, trader, price, quantity, OrderType.BUY, peak, peg);
+			
+			AllocationAlgorithm algorithm = allocationFor(security);
+			if (algorithm != null)
+			{
+				allocate(trader, security, order, algorithm);
+				return;
+			}
+			
 			double totalCost = 0;
 			int quantityPurchased = 0;
 			
-			Order matchingSell = getBestAsk(security);
-			while (matchingSell != null && matchingSell.getPrice() <= price && quantity > 0)
+			Iterator<RestingOrder> crossing = crossingOrders(security, price, OrderType.BUY, quantity).iterator();
+			Order matchingSell = nextCrossing(crossing);
+			while (matchingSell != null && quantity > 0)
 			{
+				if (isSelfTrade(matchingSell, trader))
+				{
+					quantity = preventSelfTrade(matchingSell, order, trader, security, quantity);
+					if (quantity > 0)
+					{
+						matchingSell = nextCrossing(crossing);
+					}
+					continue;
+				}
+				
 				int sellQuantity = matchingSell.getQuantity();
 				double sellPrice = matchingSell.getPrice();
 				
 				Trader sellTrader = matchingSell.getTrader();
-				double sellTraderCapital = sellTrader.getCapital();
 				
-				if (sellQuantity <= quantity)
+				if (sellQuantity <= quantity && matchingSell.getHidden() == 0)
 				{
 					quantity -= sellQuantity;
 					
 					double saleAmount = sellPrice * sellQuantity;
 					
-					sellTrader.setCapital(sellTraderCapital + saleAmount);
-					traderRepo.save(sellTrader);
+					creditProceeds(sellTrader, saleAmount);
 					
 					totalCost += saleAmount;
 					quantityPurchased += sellQuantity;
 					
 					matchingSell.setExecuted(true);
 					orderRepo.save(matchingSell);
+					removedFromBook(matchingSell, sellQuantity);
 					
 					Order buyOrder = new Order(security, trader, sellPrice, sellQuantity, OrderType.BUY);
 					buyOrder.setExecuted(true);
 					orderRepo.save(buyOrder);
 					
+					publishTrade(security, trader, sellTrader, sellPrice, sellQuantity, OrderType.BUY);
+					reportFill(matchingSell, order, sellQuantity, quantity);
+					
 					if (quantity > 0)
 					{
-						matchingSell = getBestAsk(security);
+						matchingSell = nextCrossing(crossing);
 					}
 				}
 				else
 				{
-					sellQuantity -= quantity;
+					int filled = Math.min(matchingSell.getDisplayed(), quantity);
 					
-					double saleAmount = sellPrice * quantity;
+					double saleAmount = sellPrice * filled;
 					
-					sellTrader.setCapital(sellTraderCapital + saleAmount);
-					traderRepo.save(sellTrader);
+					creditProceeds(sellTrader, saleAmount);
 					
 					totalCost += saleAmount;
-					quantityPurchased += quantity;
+					quantityPurchased += filled;
 					
-					matchingSell.setQuantity(sellQuantity);
+					int replenished = matchingSell.reduce(filled);
 					orderRepo.save(matchingSell);
+					removedFromBook(matchingSell, filled);
+					if (replenished > 0)
+					{
+						replenishedInBook(matchingSell, replenished);
+					}
 					
-					Order buyOrder = new Order(security, trader, sellPrice, quantity, OrderType.BUY);
+					Order buyOrder = new Order(security, trader, sellPrice, filled, OrderType.BUY);
 					buyOrder.setExecuted(true);
 					orderRepo.save(buyOrder);
 					
-					Order sellOrder = new Order(security, sellTrader, sellPrice, quantity, OrderType.SELL);
+					Order sellOrder = new Order(security, sellTrader, sellPrice, filled, OrderType.SELL);
 					sellOrder.setExecuted(true);
 					orderRepo.save(sellOrder);
 					
-					quantity = 0;
+					quantity -= filled;
+					publishTrade(security, trader, sellTrader, sellPrice, filled, OrderType.BUY);
+					reportFill(matchingSell, order, filled, quantity);
+					
+					// the sell has shown a new slice, which queues behind the rest of its level
+					if (quantity > 0)
+					{
+						crossing = crossingOrders(security, price, OrderType.BUY, quantity).iterator();
+						matchingSell = nextCrossing(crossing);
+					}
 				}
 			}
 			
@@ -153,42 +1104,32 @@ public class ExchangeServiceImpl implements ExchangeService
 			{
 				double capital = trader.getCapital();
 				trader.setCapital(capital - totalCost);
-				traderRepo.save(trader);
+				saveTrader(trader);
 			}
 			
 			if (quantityPurchased > 0)
 			{
-				HoldingKey holdingKey = new HoldingKey(trader.getName(), security.getTicker());
-				Holding holding = holdingRepo.findOne(holdingKey);
-				
-				if (holding == null)
-				{
-					holding = new Holding(trader, security, quantityPurchased);
-				}
-				else
-				{
-					int quantityHeld = holding.getQuantity();
-					holding.setQuantity(quantityHeld + quantityPurchased);
-				}
-				holdingRepo.save(holding);
+				creditShares(trader, security, quantityPurchased);
 			}
 			
 			if (quantity > 0)
 			{
-				Order order = new Order(security, trader, price, quantity, OrderType.BUY);
+				order.setQuantity(quantity);
 				orderRepo.save(order);
+				restedInBook(order);
+				reportAccepted(order);
 				
-				capitalRequired = price * quantity;
+				capitalRequired = reservePrice * quantity;
 				double capital = trader.getCapital();
 				
 				trader.setCapital(capital - capitalRequired);
-				traderRepo.save(trader);
+				saveTrader(trader);
 			}
 		}
 	}
 
 	private void placeSellOrder(Trader trader, Security security, double price,
-			int quantity) throws OrderExecutionException 
+			int quantity, int peak, Peg peg) throws OrderExecutionException 
 	{
 		HoldingKey holdingKey = new HoldingKey(trader.getName(), security.getTicker());
 		Holding holding = holdingRepo.findOne(holdingKey);
@@ -224,96 +1165,555 @@ public class ExchangeServiceImpl implements ExchangeService
 				holdingRepo.save(holding);
 			}
 			
+			Order order = newResting(security, trader, price, quantity, OrderType.SELL, peak, peg);
+			
+			AllocationAlgorithm algorithm = allocationFor(security);
+			if (algorithm != null)
+			{
+				allocate(trader, security, order, algorithm);
+				return;
+			}
+			
 			double saleProceeds = 0;
 			
-			Order matchingBuy = getBestBid(security);
-			while (matchingBuy != null && matchingBuy.getPrice() >= price && quantity > 0)
+			Iterator<RestingOrder> crossing = crossingOrders(security, price, OrderType.SELL, quantity).iterator();
+			Order matchingBuy = nextCrossing(crossing);
+			while (matchingBuy != null && quantity > 0)
 			{
+				if (isSelfTrade(matchingBuy, trader))
+				{
+					quantity = preventSelfTrade(matchingBuy, order, trader, security, quantity);
+					if (quantity > 0)
+					{
+						matchingBuy = nextCrossing(crossing);
+					}
+					continue;
+				}
+				
 				int buyQuantity = matchingBuy.getQuantity();
 				double buyPrice = matchingBuy.getPrice();
 				
 				Trader buyTrader = matchingBuy.getTrader();
 				
-				HoldingKey buyerHoldingKey = new HoldingKey(buyTrader.getName(), security.getTicker());
-				Holding buyerHolding = holdingRepo.findOne(buyerHoldingKey);
-				
-				if (buyQuantity <= quantity)
+				if (buyQuantity <= quantity && matchingBuy.getHidden() == 0)
 				{
 					quantity -= buyQuantity;
-					
-					if (buyerHolding != null)
-					{
-						int buyerHoldingQuantity = buyerHolding.getQuantity();
-						buyerHolding.setQuantity(buyerHoldingQuantity + buyQuantity);
-						holdingRepo.save(buyerHolding);
-					}
-					else
-					{
-						buyerHolding = new Holding(buyTrader, security, buyQuantity);
-						holdingRepo.save(buyerHolding);
-					}
+					creditShares(buyTrader, security, buyQuantity);
 					
 					double saleAmount = buyPrice * buyQuantity;
 					saleProceeds += saleAmount;
+					refundPegReserve(matchingBuy, buyPrice, buyQuantity);
 					
 					matchingBuy.setExecuted(true);
 					orderRepo.save(matchingBuy);
+					removedFromBook(matchingBuy, buyQuantity);
 					
 					Order sellOrder = new Order(security, trader, buyPrice, buyQuantity, OrderType.SELL);
 					sellOrder.setExecuted(true);
 					orderRepo.save(sellOrder);
 					
+					publishTrade(security, buyTrader, trader, buyPrice, buyQuantity, OrderType.SELL);
+					reportFill(matchingBuy, order, buyQuantity, quantity);
+					
 					if (quantity > 0)
 					{
-						matchingBuy = getBestBid(security);
+						matchingBuy = nextCrossing(crossing);
 					}
 				}
 				else
 				{
-					if (buyerHolding != null)
-					{
-						int buyerHoldingQuantity = buyerHolding.getQuantity();
-						buyerHolding.setQuantity(buyerHoldingQuantity + quantity);
-						holdingRepo.save(buyerHolding);
-					}
-					else
-					{
-						buyerHolding = new Holding(buyTrader, security, quantity);
-						holdingRepo.save(buyerHolding);
-					}
+					int filled = Math.min(matchingBuy.getDisplayed(), quantity);
+					creditShares(buyTrader, security, filled);
 					
-					buyQuantity -= quantity;
-					
-					double saleAmount = buyPrice * quantity;
+					double saleAmount = buyPrice * filled;
 					saleProceeds += saleAmount;
+					refundPegReserve(matchingBuy, buyPrice, filled);
 					
-					matchingBuy.setQuantity(buyQuantity);
+					int replenished = matchingBuy.reduce(filled);
 					orderRepo.save(matchingBuy);
+					removedFromBook(matchingBuy, filled);
+					if (replenished > 0)
+					{
+						replenishedInBook(matchingBuy, replenished);
+					}
 					
-					Order sellOrder = new Order(security, trader, buyPrice, quantity, OrderType.SELL);
+					Order sellOrder = new Order(security, trader, buyPrice, filled, OrderType.SELL);
 					sellOrder.setExecuted(true);
 					orderRepo.save(sellOrder);
 					
-					Order buyOrder = new Order(security, buyTrader, buyPrice, quantity, OrderType.BUY);
+					Order buyOrder = new Order(security, buyTrader, buyPrice, filled, OrderType.BUY);
 					buyOrder.setExecuted(true);
 					orderRepo.save(buyOrder);
 					
-					quantity = 0;
+					quantity -= filled;
+					publishTrade(security, buyTrader, trader, buyPrice, filled, OrderType.SELL);
+					reportFill(matchingBuy, order, filled, quantity);
+					
+					// the buy has shown a new slice, which queues behind the rest of its level
+					if (quantity > 0)
+					{
+						crossing = crossingOrders(security, price, OrderType.SELL, quantity).iterator();
+						matchingBuy = nextCrossing(crossing);
+					}
 				}
 			}
 			
 			if (saleProceeds > 0)
 			{
-				double capital = trader.getCapital();
-				trader.setCapital(capital + saleProceeds);
-				traderRepo.save(trader);
+				creditProceeds(trader, saleProceeds);
 			}
 			
 			if (quantity > 0)
 			{
-				Order order = new Order(security, trader, price, quantity, OrderType.SELL);
+				order.setQuantity(quantity);
 				orderRepo.save(order);
+				restedInBook(order);
+				reportAccepted(order);
+			}
+		}
+	}
+	
+	/**
+	 * Pays a seller for shares sold, or under end-of-day settlement records what the 
+	 * seller is owed once the matching transaction commits.
+	 */
+	private void creditProceeds(Trader seller, double amount)
+	{
+		if (!isSettledAtEndOfDay())
+		{
+			seller.setCapital(seller.getCapital() + amount);
+			saveTrader(seller);
+			return;
+		}
+		String traderName = seller.getName();
+		afterCommit(() -> settlementLedger.addProceeds(traderName, amount));
+	}
+	
+	/**
+	 * Delivers shares bought, or under end-of-day settlement records them as owed.
+	 */
+	private void creditShares(Trader buyer, Security security, int quantity)
+	{
+		if (!isSettledAtEndOfDay())
+		{
+			creditHolding(buyer, security, quantity);
+			return;
+		}
+		String traderName = buyer.getName();
+		afterCommit(() -> settlementLedger.addShares(traderName, security.getTicker(), quantity));
+	}
+	
+	private boolean isSettledAtEndOfDay()
+	{
+		return settlementLedger != null && settlementLedger.isEnabled();
+	}
+	
+	/**
+	 * Hands back to the owner of a pegged BUY the capital reserved above the price 
+	 * it was filled at.
+	 */
+	private void refundPegReserve(Order restingBuy, double price, int filled)
+	{
+		double refund = (restingBuy.getReservedPrice() - price) * filled;
+		if (refund > 0)
+		{
+			Trader buyer = restingBuy.getTrader();
+			buyer.setCapital(buyer.getCapital() + refund);
+			saveTrader(buyer);
+		}
+	}
+	
+	private void publishTrade(Security security, Trader buyer, Trader seller, double price, 
+			int quantity, OrderType aggressorType)
+	{
+		if (tradeListeners.isEmpty())
+		{
+			return;
+		}
+		
+		publishTrade(new Trade(security.getTicker(), buyer.getName(), seller.getName(), price, 
+				quantity, aggressorType));
+	}
+	
+	private void publishTrade(Trade trade)
+	{
+		afterCommit(() ->
+		{
+			for (TradeListener listener : tradeListeners)
+			{
+				listener.onTrade(trade);
+			}
+		});
+	}
+	
+	/**
+	 * Reports one fill to both sides, each under its own order id.
+	 */
+	private void reportFill(Order resting, Order aggressor, int filled, int aggressorLeaves)
+	{
+		if (reports == null)
+		{
+			return;
+		}
+		
+		String ticker = resting.getTicker();
+		String restingTrader = resting.getTraderName();
+		String aggressorName = aggressor.getTraderName();
+		long aggressorId = aggressor.getId();
+		OrderType aggressorType = aggressor.getType();
+		double aggressorPrice = aggressor.getPrice();
+		long restingId = resting.getId();
+		OrderType restingType = resting.getType();
+		double fillPrice = resting.getPrice();
+		int restingLeaves = resting.isExecuted() ? 0 : resting.getQuantity();
+		afterCommit(() ->
+		{
+			reports.publish(restingTrader, ticker, restingId, restingType,
+					restingLeaves == 0 ? ExecutionStatus.FILLED : ExecutionStatus.PARTIALLY_FILLED, 
+					fillPrice, fillPrice, filled, restingLeaves, null);
+			reports.publish(aggressorName, ticker, aggressorId, aggressorType,
+					aggressorLeaves == 0 ? ExecutionStatus.FILLED : ExecutionStatus.PARTIALLY_FILLED, 
+					aggressorPrice, fillPrice, filled, aggressorLeaves, null);
+		});
+	}
+	
+	private void reportAccepted(Order order)
+	{
+		if (reports != null)
+		{
+			String traderName = order.getTraderName();
+			String ticker = order.getTicker();
+			long orderId = order.getId();
+			OrderType type = order.getType();
+			double price = order.getPrice();
+			int quantity = order.getQuantity();
+			afterCommit(() -> reports.publish(traderName, ticker, orderId, type, ExecutionStatus.ACCEPTED, 
+					price, 0, 0, quantity, null));
+		}
+	}
+	
+	private void reportCancelled(String traderName, String ticker, long orderId, OrderType type, 
+			double price, int leavesQuantity)
+	{
+		if (reports != null)
+		{
+			afterCommit(() -> reports.publish(traderName, ticker, orderId, type, ExecutionStatus.CANCELLED, 
+					price, 0, 0, leavesQuantity, null));
+		}
+	}
+	
+	private void reportRejected(Trader trader, String ticker, long orderId, OrderType type, double price,
+			OrderExecutionException oee)
+	{
+		if (reports != null)
+		{
+			String traderName = trader.getName();
+			String text = oee.getMessage();
+			afterCommit(() -> reports.publish(traderName, ticker, orderId, type, ExecutionStatus.REJECTED, 
+					price, 0, 0, 0, text));
+		}
+	}
+	
+	private AllocationAlgorithm allocationFor(Security security)
+	{
+		return allocationPolicies == null ? null : allocationPolicies.getAlgorithm(security.getTicker());
+	}
+	
+	/**
+	 * Matching for securities with an allocation algorithm. The crossing resting 
+	 * orders are read with one projection query in price-time priority, each price 
+	 * level is split across its orders in a single pass, only the orders actually 
+	 * filled are loaded as entities, and all fills, capital and holdings are 
+	 * written as one batch. Validation, allocating the incoming order's id and, for a SELL, 
+	 * taking the shares from the holding have already been done by the caller.
+	 */
+	private void allocate(Trader trader, Security security, Order incoming, AllocationAlgorithm algorithm)
+	{
+		double price = incoming.getPrice();
+		int quantity = incoming.getQuantity();
+		OrderType type = incoming.getType();
+		boolean buy = type.equals(OrderType.BUY);
+		int lotSize = instrumentRules == null ? 1 : instrumentRules.get(security).getLotSize();
+		
+		Iterator<RestingOrder> resting = crossingOrders(security, price, type, quantity).iterator();
+		
+		FillBatch batch = new FillBatch(security, trader);
+		if (isSettledAtEndOfDay())
+		{
+			batch.deferCredits();
+		}
+		
+		RestingOrder candidate = resting.hasNext() ? resting.next() : null;
+		while (candidate != null && quantity > 0)
+		{
+			double levelPrice = candidate.getPrice();
+			
+			// the whole level is read before any of it is filled, since it is split in one pass
+			List<RestingOrder> level = new ArrayList<>();
+			while (candidate != null && candidate.getPrice() == levelPrice && quantity > 0)
+			{
+				if (isSelfTrade(candidate.getTraderName(), trader))
+				{
+					quantity = preventSelfTrade(orderRepo.findOne(candidate.getId()), incoming, trader, 
+							security, quantity);
+				}
+				else
+				{
+					level.add(candidate);
+				}
+				candidate = resting.hasNext() ? resting.next() : null;
+			}
+			
+			int[] sizes = new int[level.size()];
+			for (int i = 0; i < sizes.length; i++)
+			{
+				sizes[i] = level.get(i).getDisplayed();
+			}
+			int[] allocations = PriceLevelAllocator.allocate(algorithm, sizes, quantity, lotSize);
+			Map<Long, Order> filledOrders = loadFilled(level, allocations);
+			
+			List<Order> refreshed = new ArrayList<>();
+			for (int i = 0; i < allocations.length; i++)
+			{
+				if (allocations[i] > 0)
+				{
+					quantity = fillResting(batch, filledOrders.get(level.get(i).getId()), incoming, trader, 
+							levelPrice, allocations[i], quantity, refreshed);
+				}
+			}
+			
+			// Icebergs that showed a new slice queue behind everything else at the level,
+			// which by now has been filled in full
+			while (quantity > 0 && !refreshed.isEmpty())
+			{
+				List<Order> queue = refreshed;
+				refreshed = new ArrayList<>();
+				
+				sizes = new int[queue.size()];
+				for (int i = 0; i < sizes.length; i++)
+				{
+					sizes[i] = queue.get(i).getDisplayed();
+				}
+				allocations = PriceLevelAllocator.allocate(algorithm, sizes, quantity, lotSize);
+				for (int i = 0; i < allocations.length; i++)
+				{
+					if (allocations[i] > 0)
+					{
+						quantity = fillResting(batch, queue.get(i), incoming, trader, levelPrice, 
+								allocations[i], quantity, refreshed);
+					}
+				}
+			}
+		}
+		
+		Order rested = null;
+		if (quantity > 0)
+		{
+			rested = incoming;
+			rested.setQuantity(quantity);
+			batch.add(rested);
+			if (buy)
+			{
+				batch.addCapital(trader, -rested.getReservedPrice() * quantity);
+			}
+		}
+		
+		batch.save(orderRepo, traderRepo, holdingRepo);
+		if (batch.hasDeferredCredits())
+		{
+			afterCommit(() -> settlementLedger.record(batch));
+		}
+		
+		if (rested != null)
+		{
+			restedInBook(rested);
+			reportAccepted(rested);
+		}
+		for (Trade trade : batch.getTrades())
+		{
+			publishTrade(trade);
+		}
+	}
+	
+	/**
+	 * Fills one resting order for the aggressor at the level price and returns the 
+	 * quantity the aggressor has left. An iceberg that shows a new slice is added 
+	 * to refreshed.
+	 */
+	private int fillResting(FillBatch batch, Order order, Order incoming, Trader trader, double levelPrice, 
+			int filled, int quantity, List<Order> refreshed)
+	{
+		String ticker = order.getTicker();
+		OrderType type = incoming.getType();
+		Trader counterparty = order.getTrader();
+		double reservedPrice = order.getReservedPrice();
+		
+		removedFromBook(order, filled);
+		int replenished = batch.fill(order, filled, levelPrice);
+		if (replenished > 0)
+		{
+			replenishedInBook(order, replenished);
+			refreshed.add(order);
+		}
+		batch.execute(trader, filled, levelPrice, type);
+		
+		double amount = levelPrice * filled;
+		if (type.equals(OrderType.BUY))
+		{
+			batch.addProceeds(counterparty, amount);
+			batch.addCapital(trader, -amount);
+			batch.addShares(trader, filled);
+			batch.addTrade(new Trade(ticker, trader.getName(), counterparty.getName(), 
+					levelPrice, filled, type));
+		}
+		else
+		{
+			batch.addShares(counterparty, filled);
+			batch.addCapital(counterparty, (reservedPrice - levelPrice) * filled);
+			batch.addProceeds(trader, amount);
+			batch.addTrade(new Trade(ticker, counterparty.getName(), trader.getName(), 
+					levelPrice, filled, type));
+		}
+		quantity -= filled;
+		reportFill(order, incoming, filled, quantity);
+		return quantity;
+	}
+	
+	/**
+	 * Loads the entities of only those orders in a level that the allocation 
+	 * actually fills, in one query.
+	 */
+	private Map<Long, Order> loadFilled(List<RestingOrder> level, int[] allocations)
+	{
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < allocations.length; i++)
+		{
+			if (allocations[i] > 0)
+			{
+				ids.add(level.get(i).getId());
+			}
+		}
+		
+		Map<Long, Order> orders = new HashMap<>();
+		for (Order order : orderRepo.findAll(ids))
+		{
+			orders.put(order.getId(), order);
+		}
+		return orders;
+	}
+	
+	private boolean isSelfTrade(Order resting, Trader trader)
+	{
+		return isSelfTrade(resting.getTraderName(), trader);
+	}
+	
+	private boolean isSelfTrade(String restingTraderName, Trader trader)
+	{
+		return properties.getSelfTradePrevention() != SelfTradePrevention.NONE
+				&& restingTraderName.equals(trader.getName());
+	}
+	
+	/**
+	 * Applies the configured self-trade prevention mode to a resting order of the 
+	 * aggressing trader found while walking the book. Returns the quantity the 
+	 * aggressor has left to match or rest; zero when the aggressor was cancelled.
+	 */
+	private int preventSelfTrade(Order resting, Order aggressor, Trader trader, Security security, 
+			int quantity)
+	{
+		switch (properties.getSelfTradePrevention())
+		{
+		case CANCEL_RESTING:
+			cancelResting(resting, trader, security, resting.getQuantity());
+			return quantity;
+		case CANCEL_AGGRESSOR:
+			releaseAggressor(resting, trader, security, quantity);
+			reportCancelled(trader.getName(), security.getTicker(), aggressor.getId(), aggressor.getType(), 
+					aggressor.getPrice(), 0);
+			return 0;
+		case CANCEL_BOTH:
+			cancelResting(resting, trader, security, resting.getQuantity());
+			releaseAggressor(resting, trader, security, quantity);
+			reportCancelled(trader.getName(), security.getTicker(), aggressor.getId(), aggressor.getType(), 
+					aggressor.getPrice(), 0);
+			return 0;
+		case DECREMENT:
+			int decrement = Math.min(resting.getQuantity(), quantity);
+			cancelResting(resting, trader, security, decrement);
+			releaseAggressor(resting, trader, security, decrement);
+			if (decrement == quantity)
+			{
+				reportCancelled(trader.getName(), security.getTicker(), aggressor.getId(), aggressor.getType(), 
+						aggressor.getPrice(), 0);
 			}
+			return quantity - decrement;
+		default:
+			return quantity;
+		}
+	}
+	
+	/**
+	 * Capital is refunded through the aggressor's Trader instance so that it is not 
+	 * overwritten when the aggressor's own capital is saved at the end of the match.
+	 */
+	private void cancelResting(Order resting, Trader trader, Security security, int quantity)
+	{
+		int restingQuantity = resting.getQuantity();
+		int restingDisplayed = resting.getDisplayed();
+		int replenished = resting.reduce(Math.min(quantity, restingQuantity));
+		if (resting.getQuantity() == 0)
+		{
+			orderRepo.delete(resting);
+		}
+		else
+		{
+			orderRepo.save(resting);
+		}
+		removedFromBook(resting, Math.min(quantity, restingDisplayed));
+		if (replenished > 0)
+		{
+			replenishedInBook(resting, replenished);
+		}
+		reportCancelled(resting.getTraderName(), resting.getTicker(), resting.getId(), resting.getType(), 
+				resting.getPrice(), Math.max(restingQuantity - quantity, 0));
+		
+		if (resting.getType().equals(OrderType.BUY))
+		{
+			double capital = trader.getCapital();
+			trader.setCapital(capital + resting.getReservedPrice() * quantity);
+			saveTrader(trader);
+		}
+		else
+		{
+			creditHolding(trader, security, quantity);
+		}
+	}
+	
+	/**
+	 * Shares for a SELL are taken from the holding before matching starts, so any 
+	 * aggressor SELL quantity that will neither fill nor rest is handed back.
+	 */
+	private void releaseAggressor(Order resting, Trader trader, Security security, int quantity)
+	{
+		if (resting.getType().equals(OrderType.BUY) && quantity > 0)
+		{
+			creditHolding(trader, security, quantity);
+		}
+	}
+	
+	private void creditHolding(Trader trader, Security security, int quantity)
+	{
+		HoldingKey holdingKey = new HoldingKey(trader.getName(), security.getTicker());
+		Holding holding = holdingRepo.findOne(holdingKey);
+		
+		if (holding == null)
+		{
+			holding = new Holding(trader, security, quantity);
+		}
+		else
+		{
+			holding.setQuantity(holding.getQuantity() + quantity);
 		}
+		holdingRepo.save(holding);
 	}
-}
\ No newline at end of file
+}
@@ -8,4 +8,13 @@ public class OrderExecutionException extends Exception {
 	{
 		super(message);
 	}
+	
+	/**
+	 * For rejections thrown often enough that filling in a stack trace would cost 
+	 * more than the work they save.
+	 */
+	protected OrderExecutionException(String message, boolean writableStackTrace)
+	{
+		super(message, null, false, writableStackTrace);
+	}
 }
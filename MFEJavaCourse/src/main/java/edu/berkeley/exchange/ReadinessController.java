@@ -0,0 +1,35 @@
+package edu.berkeley.exchange;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Readiness probe for load balancers and orchestrators: 200 once every book is 
+ * warm, 503 before.
+ */
+@RestController
+public class ReadinessController 
+{
+	private ExchangeReadiness readiness;
+	
+	@Autowired
+	public ReadinessController(ExchangeReadiness readiness)
+	{
+		this.readiness = readiness;
+	}
+	
+	@RequestMapping(value="/ready", method=RequestMethod.GET)
+	public ResponseEntity<String> ready()
+	{
+		if (!readiness.isReady())
+		{
+			return new ResponseEntity<>("WARMING", HttpStatus.SERVICE_UNAVAILABLE);
+		}
+		return new ResponseEntity<>("READY " + readiness.getWarmedSecurities() + " securities in " 
+				+ readiness.getWarmupMillis() + " ms", HttpStatus.OK);
+	}
+}
@@ -0,0 +1,33 @@
+package edu.berkeley.exchange;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * One reentrant lock per ticker. Everything that changes the open orders of a 
+ * security, or reads them to build a view that is kept up to date afterwards, 
+ * holds that security's lock.
+ */
+@Component
+public class SecurityLocks 
+{
+	private ConcurrentMap<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+	
+	public ReentrantLock get(String ticker)
+	{
+		ReentrantLock lock = locks.get(ticker);
+		if (lock == null)
+		{
+			ReentrantLock created = new ReentrantLock();
+			lock = locks.putIfAbsent(ticker, created);
+			if (lock == null)
+			{
+				lock = created;
+			}
+		}
+		return lock;
+	}
+}
@@ -0,0 +1,14 @@
+package edu.berkeley.exchange;
+
+/**
+ * What continuous matching does when an incoming order would fill against a 
+ * resting order of the same trader. Auction uncrosses are exempt.
+ */
+public enum SelfTradePrevention 
+{
+	NONE,
+	CANCEL_RESTING,
+	CANCEL_AGGRESSOR,
+	CANCEL_BOTH,
+	DECREMENT
+}
@@ -0,0 +1,414 @@
+package edu.berkeley.exchange.admission;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import edu.berkeley.exchange.ExchangeProperties;
+import edu.berkeley.exchange.ExchangeService;
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.SecurityLocks;
+import edu.berkeley.exchange.admission.OrderThrottledException.Reason;
+import edu.berkeley.exchange.basket.BasketLeg;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.trader.Trader;
+
+/**
+ * Sits in front of another ExchangeService and turns orders away while it is
+ * overloaded, so that the orders it lets through still complete in bounded time.
+ * It is the ExchangeService handed to clients, in front of ExchangeServiceImpl,
+ * with limits from exchange.admission.*.
+ * <p>
+ * An order needs a token from its trader's bucket and from the global one, and a
+ * place among the orders on its security; a basket needs a token per leg and a
+ * place on each of its securities. It then waits for the securities' locks here,
+ * where the wait is measured, and calls the delegate holding them; the delegate
+ * must take the same SecurityLocks, as ExchangeServiceImpl does. An order turned
+ * away hands back whatever it had taken. Stop orders are the low-priority ones:
+ * while the decaying peak wait on a security is over the shedding deadline they
+ * are rejected before any of that. Cancels always pass, since they only take load
+ * away. Rejections throw a shared OrderThrottledException.
+ */
+@Primary
+@Service
+public class AdmissionController implements ExchangeService
+{
+	private final ExchangeService delegate;
+	private final SecurityLocks locks;
+	private final AdmissionLimits limits;
+	
+	private final TokenBucket global;
+	private final ConcurrentMap<String, TokenBucket> traderBuckets = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+	
+	private final long sheddingDeadline;
+	private final long sheddingWindow;
+	private final long maxWait;
+	
+	private final LongAdder admitted = new LongAdder();
+	private final LongAdder[] throttled = new LongAdder[Reason.values().length];
+	
+	@Autowired
+	public AdmissionController(ExchangeServiceImpl delegate, SecurityLocks locks, ExchangeProperties properties)
+	{
+		this(delegate, locks, properties.getAdmission());
+	}
+	
+	public AdmissionController(ExchangeService delegate, SecurityLocks locks, AdmissionLimits limits)
+	{
+		this.delegate = delegate;
+		this.locks = locks;
+		this.limits = limits;
+		this.global = new TokenBucket(limits.getGlobalRate(), limits.getGlobalBurst(), System.nanoTime());
+		this.sheddingDeadline = TimeUnit.MILLISECONDS.toNanos(limits.getSheddingDeadlineMillis());
+		this.sheddingWindow = TimeUnit.MILLISECONDS.toNanos(limits.getSheddingWindowMillis());
+		this.maxWait = TimeUnit.MILLISECONDS.toNanos(limits.getMaxWaitMillis());
+		for (int i = 0; i < throttled.length; i++)
+		{
+			throttled[i] = new LongAdder();
+		}
+	}
+	
+	@Override
+	public void placeOrder(Trader trader, Security security, double price, int quantity, OrderType type)
+			throws OrderExecutionException
+	{
+		Lane lane = admit(trader, security, false);
+		try
+		{
+			delegate.placeOrder(trader, security, price, quantity, type);
+		}
+		finally
+		{
+			lane.leave();
+		}
+	}
+	
+	@Override
+	public void placeIcebergOrder(Trader trader, Security security, double price, int quantity, int peak,
+			OrderType type) throws OrderExecutionException
+	{
+		Lane lane = admit(trader, security, false);
+		try
+		{
+			delegate.placeIcebergOrder(trader, security, price, quantity, peak, type);
+		}
+		finally
+		{
+			lane.leave();
+		}
+	}
+	
+	@Override
+	public void placePeggedOrder(Trader trader, Security security, PegType pegType, double offset,
+			double limit, int quantity, OrderType type) throws OrderExecutionException
+	{
+		Lane lane = admit(trader, security, false);
+		try
+		{
+			delegate.placePeggedOrder(trader, security, pegType, offset, limit, quantity, type);
+		}
+		finally
+		{
+			lane.leave();
+		}
+	}
+	
+	@Override
+	public void placeBasket(Trader trader, List<BasketLeg> legs, boolean allOrNone)
+			throws OrderExecutionException
+	{
+		List<Lane> held = admitBasket(trader, legs);
+		try
+		{
+			delegate.placeBasket(trader, legs, allOrNone);
+		}
+		finally
+		{
+			leave(held);
+		}
+	}
+	
+	@Override
+	public void placeStopOrder(Trader trader, Security security, double stopPrice, double limitPrice,
+			int quantity, OrderType type) throws OrderExecutionException
+	{
+		Lane lane = admit(trader, security, true);
+		try
+		{
+			delegate.placeStopOrder(trader, security, stopPrice, limitPrice, quantity, type);
+		}
+		finally
+		{
+			lane.leave();
+		}
+	}
+	
+	@Override
+	public void cancelOrder(Trader trader, long orderId) throws OrderExecutionException
+	{
+		delegate.cancelOrder(trader, orderId);
+	}
+	
+	public long getAdmitted()
+	{
+		return admitted.sum();
+	}
+	
+	public long getThrottled(Reason reason)
+	{
+		return throttled[reason.ordinal()].sum();
+	}
+	
+	/**
+	 * Whether low-priority orders on the security are being shed.
+	 */
+	public boolean isShedding(Security security)
+	{
+		Lane lane = lanes.get(security.getTicker());
+		return lane != null && lane.isShedding(System.nanoTime());
+	}
+	
+	/**
+	 * Returns the security's lane with its lock held, or throws.
+	 */
+	private Lane admit(Trader trader, Security security, boolean lowPriority) throws OrderThrottledException
+	{
+		long now = System.nanoTime();
+		Lane lane = lane(security.getTicker());
+		if (lowPriority && lane.isShedding(now))
+		{
+			throw reject(Reason.QUEUE_DELAY);
+		}
+		
+		TokenBucket traderBucket = takeTokens(trader, 1, now);
+		if (!lane.join())
+		{
+			releaseTokens(traderBucket, 1);
+			throw reject(Reason.QUEUE_FULL);
+		}
+		if (!lane.lock(now, now + maxWait))
+		{
+			lane.pending.decrementAndGet();
+			releaseTokens(traderBucket, 1);
+			throw reject(Reason.QUEUE_DELAY);
+		}
+		
+		admitted.increment();
+		return lane;
+	}
+	
+	/**
+	 * Returns the lanes of the basket's securities with their locks held, taken in
+	 * ticker order as ExchangeServiceImpl takes them, or throws.
+	 */
+	private List<Lane> admitBasket(Trader trader, List<BasketLeg> legs) throws OrderThrottledException
+	{
+		long now = System.nanoTime();
+		int tokens = Math.max(legs.size(), 1);
+		TokenBucket traderBucket = takeTokens(trader, tokens, now);
+		
+		TreeSet<String> tickers = new TreeSet<>();
+		for (BasketLeg leg : legs)
+		{
+			tickers.add(leg.getTicker());
+		}
+		
+		List<Lane> joined = new ArrayList<>(tickers.size());
+		for (String ticker : tickers)
+		{
+			Lane lane = lane(ticker);
+			if (!lane.join())
+			{
+				unwind(joined, 0, traderBucket, tokens);
+				throw reject(Reason.QUEUE_FULL);
+			}
+			joined.add(lane);
+		}
+		
+		long deadline = now + maxWait;
+		for (int locked = 0; locked < joined.size(); locked++)
+		{
+			if (!joined.get(locked).lock(now, deadline))
+			{
+				unwind(joined, locked, traderBucket, tokens);
+				throw reject(Reason.QUEUE_DELAY);
+			}
+		}
+		
+		admitted.increment();
+		return joined;
+	}
+	
+	/**
+	 * Takes tokens for an order from the trader's bucket and the global one,
+	 * returning the trader's bucket, or throws having taken none.
+	 */
+	private TokenBucket takeTokens(Trader trader, int tokens, long now) throws OrderThrottledException
+	{
+		TokenBucket traderBucket = traderBucket(trader.getName(), now);
+		if (!traderBucket.tryAcquire(now, tokens))
+		{
+			throw reject(Reason.TRADER_RATE);
+		}
+		if (!global.tryAcquire(now, tokens))
+		{
+			traderBucket.release(tokens);
+			throw reject(Reason.GLOBAL_RATE);
+		}
+		return traderBucket;
+	}
+	
+	private void releaseTokens(TokenBucket traderBucket, int tokens)
+	{
+		traderBucket.release(tokens);
+		global.release(tokens);
+	}
+	
+	/**
+	 * Backs a basket out of the lanes it joined, the first locked of which it holds.
+	 */
+	private void unwind(List<Lane> joined, int locked, TokenBucket traderBucket, int tokens)
+	{
+		for (int i = joined.size() - 1; i >= 0; i--)
+		{
+			if (i < locked)
+			{
+				joined.get(i).leave();
+			}
+			else
+			{
+				joined.get(i).pending.decrementAndGet();
+			}
+		}
+		releaseTokens(traderBucket, tokens);
+	}
+	
+	private static void leave(List<Lane> held)
+	{
+		for (int i = held.size() - 1; i >= 0; i--)
+		{
+			held.get(i).leave();
+		}
+	}
+	
+	private OrderThrottledException reject(Reason reason)
+	{
+		throttled[reason.ordinal()].increment();
+		return OrderThrottledException.of(reason);
+	}
+	
+	private TokenBucket traderBucket(String traderName, long now)
+	{
+		TokenBucket bucket = traderBuckets.get(traderName);
+		if (bucket == null)
+		{
+			TokenBucket created = new TokenBucket(limits.getTraderRate(), limits.getTraderBurst(), now);
+			bucket = traderBuckets.putIfAbsent(traderName, created);
+			if (bucket == null)
+			{
+				bucket = created;
+			}
+		}
+		return bucket;
+	}
+	
+	private Lane lane(String ticker)
+	{
+		Lane lane = lanes.get(ticker);
+		if (lane == null)
+		{
+			Lane created = new Lane(locks.get(ticker));
+			lane = lanes.putIfAbsent(ticker, created);
+			if (lane == null)
+			{
+				lane = created;
+			}
+		}
+		return lane;
+	}
+	
+	/**
+	 * Orders on one security, counted from admission until they are done with its
+	 * lock, and the peak wait for that lock. The peak decays exponentially, by a
+	 * factor of e every shedding window, so one long wait keeps shedding on for a
+	 * while and a single quick order after it does not turn it off.
+	 */
+	private class Lane
+	{
+		private final ReentrantLock lock;
+		private final AtomicInteger pending = new AtomicInteger();
+		private double peakWait;
+		private long peakAt;
+		
+		Lane(ReentrantLock lock)
+		{
+			this.lock = lock;
+		}
+		
+		boolean join()
+		{
+			if (pending.incrementAndGet() > limits.getQueueCapacity())
+			{
+				pending.decrementAndGet();
+				return false;
+			}
+			return true;
+		}
+		
+		/**
+		 * Waits for the lock until the deadline and measures the wait since arrival.
+		 */
+		boolean lock(long arrived, long deadline)
+		{
+			boolean locked;
+			try
+			{
+				locked = lock.tryLock(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+				locked = false;
+			}
+			long acquired = System.nanoTime();
+			measured(acquired, acquired - arrived);
+			return locked;
+		}
+		
+		synchronized void measured(long at, long wait)
+		{
+			peakWait = Math.max(decayed(at), wait);
+			peakAt = at;
+		}
+		
+		synchronized boolean isShedding(long now)
+		{
+			return decayed(now) > sheddingDeadline;
+		}
+		
+		private double decayed(long now)
+		{
+			return peakWait * Math.exp(-(double) Math.max(now - peakAt, 0) / sheddingWindow);
+		}
+		
+		void leave()
+		{
+			lock.unlock();
+			pending.decrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package edu.berkeley.exchange.admission;
+
+/**
+ * Limits applied by AdmissionController, bound from exchange.admission.*. Rates 
+ * are orders per second, a basket counting one order per leg. Once orders on a 
+ * security have recently waited longer than the shedding deadline for its lock, 
+ * stop orders on it are turned away outright; no order waits longer than the 
+ * maximum wait.
+ */
+public class AdmissionLimits 
+{
+	private double traderRate = 100;
+	private int traderBurst = 20;
+	private double globalRate = 10000;
+	private int globalBurst = 1000;
+	private int queueCapacity = 64;
+	private long sheddingDeadlineMillis = 50;
+	private long sheddingWindowMillis = 1000;
+	private long maxWaitMillis = 500;
+	
+	public double getTraderRate() {
+		return traderRate;
+	}
+	
+	public void setTraderRate(double traderRate) {
+		this.traderRate = traderRate;
+	}
+	
+	public int getTraderBurst() {
+		return traderBurst;
+	}
+	
+	public void setTraderBurst(int traderBurst) {
+		this.traderBurst = traderBurst;
+	}
+	
+	public double getGlobalRate() {
+		return globalRate;
+	}
+	
+	public void setGlobalRate(double globalRate) {
+		this.globalRate = globalRate;
+	}
+	
+	public int getGlobalBurst() {
+		return globalBurst;
+	}
+	
+	public void setGlobalBurst(int globalBurst) {
+		this.globalBurst = globalBurst;
+	}
+	
+	/**
+	 * Orders that may be waiting for, or holding, one security's lock at a time.
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+	
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+	
+	public long getSheddingDeadlineMillis() {
+		return sheddingDeadlineMillis;
+	}
+	
+	public void setSheddingDeadlineMillis(long sheddingDeadlineMillis) {
+		this.sheddingDeadlineMillis = sheddingDeadlineMillis;
+	}
+	
+	/**
+	 * Time over which the peak wait on a security decays by a factor of e, so a 
+	 * wait of twice the deadline keeps shedding on for about 0.7 windows.
+	 */
+	public long getSheddingWindowMillis() {
+		return sheddingWindowMillis;
+	}
+	
+	public void setSheddingWindowMillis(long sheddingWindowMillis) {
+		this.sheddingWindowMillis = sheddingWindowMillis;
+	}
+	
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+	
+	public void setMaxWaitMillis(long maxWaitMillis) {
+		this.maxWaitMillis = maxWaitMillis;
+	}
+}
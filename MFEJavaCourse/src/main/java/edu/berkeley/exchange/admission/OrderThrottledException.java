@@ -0,0 +1,55 @@
+package edu.berkeley.exchange.admission;
+
+import edu.berkeley.exchange.OrderExecutionException;
+
+/**
+ * An order turned away by admission control before it reached the exchange. There 
+ * is one shared instance per reason, without a stack trace, so that rejecting an 
+ * order under load allocates nothing.
+ */
+public class OrderThrottledException extends OrderExecutionException
+{
+	private static final long serialVersionUID = -5207398713352386049L;
+	
+	public enum Reason
+	{
+		TRADER_RATE("the trader is over its order rate"),
+		GLOBAL_RATE("the exchange is over its order rate"),
+		QUEUE_FULL("too many orders are waiting on the security"),
+		QUEUE_DELAY("orders on the security are waiting too long");
+		
+		private final String explanation;
+		
+		private Reason(String explanation)
+		{
+			this.explanation = explanation;
+		}
+	}
+	
+	private static final OrderThrottledException[] INSTANCES = 
+			new OrderThrottledException[Reason.values().length];
+	static
+	{
+		for (Reason reason : Reason.values())
+		{
+			INSTANCES[reason.ordinal()] = new OrderThrottledException(reason);
+		}
+	}
+	
+	private final Reason reason;
+	
+	private OrderThrottledException(Reason reason)
+	{
+		super("Could not accept order since " + reason.explanation + ".", false);
+		this.reason = reason;
+	}
+	
+	public static OrderThrottledException of(Reason reason)
+	{
+		return INSTANCES[reason.ordinal()];
+	}
+	
+	public Reason getReason() {
+		return reason;
+	}
+}
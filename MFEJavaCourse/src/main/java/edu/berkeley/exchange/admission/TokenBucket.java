@@ -0,0 +1,65 @@
+package edu.berkeley.exchange.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket kept as the single time at which it will next be full of tokens 
+ * again, so taking a token is one compare-and-set and nothing is allocated. A 
+ * bucket refills at rate tokens per second and holds at most burst.
+ */
+public class TokenBucket 
+{
+	private final long interval;
+	private final long tolerance;
+	private final AtomicLong drainedUntil;
+	
+	public TokenBucket(double rate, int burst, long now)
+	{
+		if (rate <= 0 || burst <= 0)
+		{
+			throw new IllegalArgumentException("Token bucket of " + rate + " per second with burst " + 
+					burst + " must have a positive rate and burst.");
+		}
+		this.interval = Math.max(1, (long) (1e9 / rate));
+		this.tolerance = interval * (burst - 1);
+		this.drainedUntil = new AtomicLong(now);
+	}
+	
+	/**
+	 * Takes a token at the given System.nanoTime(), if there is one.
+	 */
+	public boolean tryAcquire(long now)
+	{
+		return tryAcquire(now, 1);
+	}
+	
+	/**
+	 * Takes the given number of tokens at once, or none. More than the burst can 
+	 * never be taken.
+	 */
+	public boolean tryAcquire(long now, int tokens)
+	{
+		long cost = interval * tokens;
+		while (true)
+		{
+			long current = drainedUntil.get();
+			long from = Math.max(current, now);
+			if (from + cost - interval - now > tolerance)
+			{
+				return false;
+			}
+			if (drainedUntil.compareAndSet(current, from + cost))
+			{
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Puts back tokens taken for an order that was then turned away elsewhere.
+	 */
+	public void release(int tokens)
+	{
+		drainedUntil.addAndGet(-interval * tokens);
+	}
+}
@@ -0,0 +1,78 @@
+package edu.berkeley.exchange.archive;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import edu.berkeley.exchange.ExchangeProperties;
+
+/**
+ * Sequential scans over archived executed orders. Segment names start with an 
+ * ISO date, so a date range is selected from file names alone and segments are 
+ * visited in date order.
+ */
+@Lazy
+@Service
+public class ArchiveReader 
+{
+	private ExchangeProperties properties;
+	
+	@Autowired
+	public ArchiveReader(ExchangeProperties properties)
+	{
+		this.properties = properties;
+	}
+	
+	/**
+	 * Visits every archived order for the ticker stamped on or after from and before 
+	 * to, and returns the number of orders visited.
+	 */
+	public long scan(String ticker, Date from, Date to, ArchivedFillVisitor visitor) throws IOException
+	{
+		long visited = 0;
+		for (Path path : segments(ticker, from, to))
+		{
+			ColumnarSegment segment = ColumnarSegment.open(path);
+			segment.scan(visitor);
+			visited += segment.getRowCount();
+		}
+		return visited;
+	}
+	
+	private List<Path> segments(String ticker, Date from, Date to) throws IOException
+	{
+		List<Path> segments = new ArrayList<>();
+		Path directory = Paths.get(properties.getArchiveDirectory(), ticker);
+		if (!Files.isDirectory(directory))
+		{
+			return segments;
+		}
+		
+		String first = from.toString();
+		String last = to.toString();
+		try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, 
+				"*" + OrderArchiver.SEGMENT_SUFFIX))
+		{
+			for (Path path : paths)
+			{
+				String day = path.getFileName().toString().substring(0, first.length());
+				if (day.compareTo(first) >= 0 && day.compareTo(last) < 0)
+				{
+					segments.add(path);
+				}
+			}
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+}
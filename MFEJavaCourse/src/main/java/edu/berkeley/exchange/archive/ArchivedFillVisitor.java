@@ -0,0 +1,9 @@
+package edu.berkeley.exchange.archive;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+
+public interface ArchivedFillVisitor 
+{
+	public void visit(long id, long timestamp, String traderName, OrderType type, double price, 
+			int quantity);
+}
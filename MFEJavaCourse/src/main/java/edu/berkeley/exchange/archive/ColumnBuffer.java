@@ -0,0 +1,76 @@
+package edu.berkeley.exchange.archive;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer for one encoded column. Integers are written as unsigned 
+ * LEB128 varints; signed deltas are zigzag-encoded first so small negative steps 
+ * stay short.
+ */
+class ColumnBuffer 
+{
+	private byte[] bytes = new byte[256];
+	private int length;
+	
+	void writeVarLong(long value)
+	{
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0)
+		{
+			bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[length++] = (byte) value;
+	}
+	
+	void writeZigZag(long value)
+	{
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+	
+	void writeByte(int value)
+	{
+		ensureCapacity(1);
+		bytes[length++] = (byte) value;
+	}
+	
+	int length()
+	{
+		return length;
+	}
+	
+	void copyTo(ByteBuffer target)
+	{
+		target.put(bytes, 0, length);
+	}
+	
+	static long readVarLong(ByteBuffer source)
+	{
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do
+		{
+			b = source.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		return value;
+	}
+	
+	static long readZigZag(ByteBuffer source)
+	{
+		long value = readVarLong(source);
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	private void ensureCapacity(int extra)
+	{
+		if (length + extra > bytes.length)
+		{
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package edu.berkeley.exchange.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+
+/**
+ * One archive file holding the executed orders of a single ticker for a single day, 
+ * stored column by column. Ids, timestamps and prices are delta-encoded varints, 
+ * prices are fixed point at PRICE_SCALE, and trader names are replaced by indexes 
+ * into a per-file dictionary. Each column is length-prefixed so a scan can position 
+ * one reader per column and decode them in lockstep over a memory-mapped file.
+ */
+public class ColumnarSegment 
+{
+	static final int MAGIC = 0x4F415243;
+	static final byte VERSION = 1;
+	static final long PRICE_SCALE = 1000000L;
+	
+	private static final int COLUMNS = 6;
+	
+	private final String ticker;
+	private final int rowCount;
+	private final String[] traderNames;
+	private final ByteBuffer[] columns;
+	
+	private ColumnarSegment(String ticker, int rowCount, String[] traderNames, ByteBuffer[] columns)
+	{
+		this.ticker = ticker;
+		this.rowCount = rowCount;
+		this.traderNames = traderNames;
+		this.columns = columns;
+	}
+	
+	public static ColumnarSegment open(Path path) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			
+			if (buffer.getInt() != MAGIC || buffer.get() != VERSION)
+			{
+				throw new IOException(path + " is not an order archive segment.");
+			}
+			
+			String ticker = readString(buffer);
+			int rowCount = buffer.getInt();
+			
+			String[] traderNames = new String[buffer.getInt()];
+			for (int i = 0; i < traderNames.length; i++)
+			{
+				traderNames[i] = readString(buffer);
+			}
+			
+			int[] lengths = new int[COLUMNS];
+			for (int i = 0; i < COLUMNS; i++)
+			{
+				lengths[i] = buffer.getInt();
+			}
+			
+			ByteBuffer[] columns = new ByteBuffer[COLUMNS];
+			for (int i = 0; i < COLUMNS; i++)
+			{
+				ByteBuffer column = buffer.slice();
+				column.limit(lengths[i]);
+				columns[i] = column;
+				buffer.position(buffer.position() + lengths[i]);
+			}
+			return new ColumnarSegment(ticker, rowCount, traderNames, columns);
+		}
+	}
+	
+	public String getTicker() {
+		return ticker;
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+	
+	public void scan(ArchivedFillVisitor visitor)
+	{
+		ByteBuffer ids = columns[0].duplicate();
+		ByteBuffer timestamps = columns[1].duplicate();
+		ByteBuffer prices = columns[2].duplicate();
+		ByteBuffer quantities = columns[3].duplicate();
+		ByteBuffer types = columns[4].duplicate();
+		ByteBuffer traders = columns[5].duplicate();
+		
+		long id = 0;
+		long timestamp = 0;
+		long price = 0;
+		int sideBits = 0;
+		for (int row = 0; row < rowCount; row++)
+		{
+			id += ColumnBuffer.readZigZag(ids);
+			timestamp += ColumnBuffer.readZigZag(timestamps);
+			price += ColumnBuffer.readZigZag(prices);
+			int quantity = (int) ColumnBuffer.readVarLong(quantities);
+			
+			if ((row & 7) == 0)
+			{
+				sideBits = types.get();
+			}
+			OrderType type = (sideBits & (1 << (row & 7))) != 0 ? OrderType.SELL : OrderType.BUY;
+			
+			String traderName = traderNames[(int) ColumnBuffer.readVarLong(traders)];
+			
+			visitor.visit(id, timestamp, traderName, type, (double) price / PRICE_SCALE, quantity);
+		}
+	}
+	
+	private static String readString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Accumulates rows in primitive arrays and encodes them when written.
+	 */
+	public static class Writer
+	{
+		private final String ticker;
+		
+		private long[] ids = new long[64];
+		private long[] timestamps = new long[64];
+		private long[] prices = new long[64];
+		private int[] quantities = new int[64];
+		private boolean[] sells = new boolean[64];
+		private int[] traders = new int[64];
+		private int rows;
+		
+		private Map<String, Integer> dictionary = new HashMap<>();
+		private List<String> traderNames = new ArrayList<>();
+		
+		public Writer(String ticker)
+		{
+			this.ticker = ticker;
+		}
+		
+		public void add(Order order)
+		{
+			if (rows == ids.length)
+			{
+				int capacity = rows * 2;
+				ids = Arrays.copyOf(ids, capacity);
+				timestamps = Arrays.copyOf(timestamps, capacity);
+				prices = Arrays.copyOf(prices, capacity);
+				quantities = Arrays.copyOf(quantities, capacity);
+				sells = Arrays.copyOf(sells, capacity);
+				traders = Arrays.copyOf(traders, capacity);
+			}
+			
+			Integer traderIndex = dictionary.get(order.getTraderName());
+			if (traderIndex == null)
+			{
+				traderIndex = traderNames.size();
+				dictionary.put(order.getTraderName(), traderIndex);
+				traderNames.add(order.getTraderName());
+			}
+			
+			ids[rows] = order.getId();
+			timestamps[rows] = order.getTimestamp().getTime();
+			prices[rows] = Math.round(order.getPrice() * PRICE_SCALE);
+			quantities[rows] = order.getQuantity();
+			sells[rows] = order.getType().equals(OrderType.SELL);
+			traders[rows] = traderIndex;
+			rows++;
+		}
+		
+		public int getRowCount() {
+			return rows;
+		}
+		
+		public void writeTo(Path path) throws IOException
+		{
+			ColumnBuffer[] columns = new ColumnBuffer[COLUMNS];
+			for (int i = 0; i < COLUMNS; i++)
+			{
+				columns[i] = new ColumnBuffer();
+			}
+			
+			long previousId = 0;
+			long previousTimestamp = 0;
+			long previousPrice = 0;
+			int sideBits = 0;
+			for (int row = 0; row < rows; row++)
+			{
+				columns[0].writeZigZag(ids[row] - previousId);
+				columns[1].writeZigZag(timestamps[row] - previousTimestamp);
+				columns[2].writeZigZag(prices[row] - previousPrice);
+				columns[3].writeVarLong(quantities[row]);
+				columns[5].writeVarLong(traders[row]);
+				
+				if (sells[row])
+				{
+					sideBits |= 1 << (row & 7);
+				}
+				if ((row & 7) == 7 || row == rows - 1)
+				{
+					columns[4].writeByte(sideBits);
+					sideBits = 0;
+				}
+				
+				previousId = ids[row];
+				previousTimestamp = timestamps[row];
+				previousPrice = prices[row];
+			}
+			
+			byte[] tickerBytes = ticker.getBytes(StandardCharsets.UTF_8);
+			List<byte[]> nameBytes = new ArrayList<>(traderNames.size());
+			int size = 4 + 1 + 4 + tickerBytes.length + 4 + 4 + 4 * COLUMNS;
+			for (String traderName : traderNames)
+			{
+				byte[] bytes = traderName.getBytes(StandardCharsets.UTF_8);
+				nameBytes.add(bytes);
+				size += 4 + bytes.length;
+			}
+			for (ColumnBuffer column : columns)
+			{
+				size += column.length();
+			}
+			
+			ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC);
+			buffer.put(VERSION);
+			buffer.putInt(tickerBytes.length).put(tickerBytes);
+			buffer.putInt(rows);
+			buffer.putInt(nameBytes.size());
+			for (byte[] bytes : nameBytes)
+			{
+				buffer.putInt(bytes.length).put(bytes);
+			}
+			for (ColumnBuffer column : columns)
+			{
+				buffer.putInt(column.length());
+			}
+			for (ColumnBuffer column : columns)
+			{
+				column.copyTo(buffer);
+			}
+			buffer.flip();
+			
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, 
+					StandardOpenOption.WRITE))
+			{
+				while (buffer.hasRemaining())
+				{
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+		}
+	}
+}
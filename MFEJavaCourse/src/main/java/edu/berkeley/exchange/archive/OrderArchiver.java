@@ -0,0 +1,171 @@
+package edu.berkeley.exchange.archive;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import edu.berkeley.exchange.ExchangeProperties;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.settlement.SettlementMode;
+import edu.berkeley.exchange.settlement.SettlementRunRepository;
+
+/**
+ * Moves executed orders out of the ORDERS table into columnar segments, one 
+ * (ticker, day) group at a time so memory is bounded by the largest group. Rows 
+ * are deleted only after their segment has been forced to disk and renamed into 
+ * place, so a reader never sees part of a segment. Running again for a day that 
+ * already has segments adds a new segment next to them, holding only rows not 
+ * already in one; rows left in the table by a failed delete are deleted without 
+ * being archived twice. Under end-of-day settlement a day's fills stay in the 
+ * table until it is settled.
+ */
+@Lazy
+@Service
+public class OrderArchiver 
+{
+	static final String SEGMENT_SUFFIX = ".col";
+	static final String PARTIAL_SUFFIX = ".tmp";
+	
+	private static final int PAGE_SIZE = 1000;
+	
+	private OrderRepository orderRepo;
+	private ExchangeProperties properties;
+	private SettlementRunRepository runRepo;
+	
+	@Autowired
+	public OrderArchiver(OrderRepository orderRepo, ExchangeProperties properties, 
+			SettlementRunRepository runRepo)
+	{
+		this.orderRepo = orderRepo;
+		this.properties = properties;
+		this.runRepo = runRepo;
+	}
+	
+	/**
+	 * Archives every settled executed order stamped before the cutoff date and 
+	 * returns the number of orders moved.
+	 */
+	public int archiveBefore(Date cutoff) throws IOException
+	{
+		int archived = 0;
+		for (Date day : orderRepo.findExecutedDatesBefore(cutoff))
+		{
+			if (isSettled(day))
+			{
+				archived += archiveDay(day);
+			}
+		}
+		return archived;
+	}
+	
+	public int archiveDay(Date day) throws IOException
+	{
+		if (!isSettled(day))
+		{
+			throw new IllegalStateException("Could not archive " + day + " since it has not been settled.");
+		}
+		
+		int archived = 0;
+		for (String ticker : orderRepo.findExecutedTickersOn(day))
+		{
+			archived += archive(ticker, day);
+		}
+		return archived;
+	}
+	
+	private boolean isSettled(Date day)
+	{
+		return properties.getSettlement() != SettlementMode.END_OF_DAY || runRepo.exists(day);
+	}
+	
+	private int archive(String ticker, Date day) throws IOException
+	{
+		Path directory = Paths.get(properties.getArchiveDirectory(), ticker);
+		Files.createDirectories(directory);
+		Set<Long> alreadyArchived = archivedIds(directory, day);
+		
+		ColumnarSegment.Writer writer = new ColumnarSegment.Writer(ticker);
+		List<Long> ids = new ArrayList<>();
+		
+		long lastId = 0;
+		List<Order> page;
+		do
+		{
+			page = orderRepo.findExecutedByTickerOnAfter(ticker, day, lastId, new PageRequest(0, PAGE_SIZE));
+			for (Order order : page)
+			{
+				if (!alreadyArchived.contains(order.getId()))
+				{
+					writer.add(order);
+				}
+				ids.add(order.getId());
+				lastId = order.getId();
+			}
+		}
+		while (page.size() == PAGE_SIZE);
+		
+		if (ids.isEmpty())
+		{
+			return 0;
+		}
+		
+		if (writer.getRowCount() > 0)
+		{
+			Path segment = nextSegmentPath(directory, day);
+			Path partial = segment.resolveSibling(segment.getFileName() + PARTIAL_SUFFIX);
+			Files.deleteIfExists(partial);
+			writer.writeTo(partial);
+			Files.move(partial, segment, StandardCopyOption.ATOMIC_MOVE);
+		}
+		
+		for (int from = 0; from < ids.size(); from += PAGE_SIZE)
+		{
+			orderRepo.deleteByIdIn(ids.subList(from, Math.min(from + PAGE_SIZE, ids.size())));
+		}
+		return ids.size();
+	}
+	
+	/**
+	 * Ids of the orders already in the day's segments.
+	 */
+	private static Set<Long> archivedIds(Path directory, Date day) throws IOException
+	{
+		Set<Long> ids = new HashSet<>();
+		try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, 
+				day.toString() + ".*" + SEGMENT_SUFFIX))
+		{
+			for (Path path : paths)
+			{
+				ColumnarSegment.open(path).scan((id, timestamp, traderName, type, price, quantity) -> 
+						ids.add(id));
+			}
+		}
+		return ids;
+	}
+	
+	private static Path nextSegmentPath(Path directory, Date day)
+	{
+		int segment = 0;
+		Path path;
+		do
+		{
+			path = directory.resolve(day.toString() + "." + segment++ + SEGMENT_SUFFIX);
+		}
+		while (Files.exists(path));
+		return path;
+	}
+}
@@ -0,0 +1,265 @@
+package edu.berkeley.exchange.auction;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.SecurityLocks;
+import edu.berkeley.exchange.marketdata.BestPriceCache;
+import edu.berkeley.exchange.marketdata.LastTradePrices;
+import edu.berkeley.exchange.matching.FillBatch;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.Trade;
+import edu.berkeley.exchange.order.TradeListener;
+import edu.berkeley.exchange.report.ExecutionReports;
+import edu.berkeley.exchange.report.ExecutionStatus;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.settlement.SettlementLedger;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+/**
+ * Opening and closing crosses. While a security is in its call phase orders rest 
+ * without matching. The indicative price is computed from the open quantity at 
+ * each price, read with one aggregate query, since that includes the hidden 
+ * reserve of icebergs, which the uncross fills like any other quantity and the 
+ * displayed levels in the BestPriceCache leave out. It is served on request by 
+ * getIndicativePrice rather than pushed to subscribers. Uncrossing fills every crossing order at the 
+ * single clearing price in price-time priority and writes the result in one 
+ * transaction: one read per side, one update per touched trader and holding. 
+ * Self-trade prevention does not apply to the uncross. No order in it is the 
+ * aggressor or the resting one, and the clearing price is chosen for the whole 
+ * crossing volume, so a trader's own buy and sell fill against each other there 
+ * like any other pair.
+ */
+@Service
+public class AuctionService 
+{
+	private OrderRepository orderRepo;
+	private HoldingRepository holdingRepo;
+	private TraderRepository traderRepo;
+	private TradingSchedule schedule;
+	private BestPriceCache bestPrices;
+	private LastTradePrices lastTradePrices;
+	private SecurityLocks locks;
+	private ExchangeServiceImpl exchangeService;
+	private TransactionTemplate transactions;
+	
+	private List<TradeListener> tradeListeners = Collections.emptyList();
+	private SettlementLedger settlementLedger;
+	private ExecutionReports reports;
+	
+	@Autowired
+	public AuctionService(OrderRepository orderRepo, HoldingRepository holdingRepo, 
+			TraderRepository traderRepo, TradingSchedule schedule, BestPriceCache bestPrices, 
+			LastTradePrices lastTradePrices, SecurityLocks locks, ExchangeServiceImpl exchangeService,
+			PlatformTransactionManager transactionManager)
+	{
+		this.orderRepo = orderRepo;
+		this.holdingRepo = holdingRepo;
+		this.traderRepo = traderRepo;
+		this.schedule = schedule;
+		this.bestPrices = bestPrices;
+		this.lastTradePrices = lastTradePrices;
+		this.locks = locks;
+		this.exchangeService = exchangeService;
+		this.transactions = new TransactionTemplate(transactionManager);
+	}
+	
+	@Autowired(required=false)
+	public void setTradeListeners(List<TradeListener> tradeListeners)
+	{
+		this.tradeListeners = tradeListeners;
+	}
+	
+	@Autowired(required=false)
+	public void setSettlementLedger(SettlementLedger settlementLedger)
+	{
+		this.settlementLedger = settlementLedger;
+	}
+	
+	@Autowired(required=false)
+	public void setExecutionReports(ExecutionReports reports)
+	{
+		this.reports = reports;
+	}
+	
+	public void startCall(Security security)
+	{
+		ReentrantLock lock = locks.get(security.getTicker());
+		lock.lock();
+		try
+		{
+			schedule.setPhase(security.getTicker(), TradingPhase.CALL);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * The price and volume the security would uncross at right now, or null if 
+	 * its book does not cross.
+	 */
+	public ClearingPrice getIndicativePrice(Security security)
+	{
+		String ticker = security.getTicker();
+		Map<Double, Long> bids = new TreeMap<>(Collections.reverseOrder());
+		Map<Double, Long> asks = new TreeMap<>();
+		for (Object[] level : orderRepo.findOpenQuantityLevels(ticker))
+		{
+			Map<Double, Long> side = level[0] == OrderType.BUY ? bids : asks;
+			side.put((Double) level[1], (Long) level[2]);
+		}
+		return ClearingPrice.calculate(bids, asks, lastTradePrices.getLastPrice(ticker));
+	}
+	
+	/**
+	 * Executes the cross, returns the security to continuous trading and then runs 
+	 * any stops the cross fired. Returns the clearing price used, or null if 
+	 * nothing crossed.
+	 */
+	public ClearingPrice uncross(final Security security)
+	{
+		ReentrantLock lock = locks.get(security.getTicker());
+		lock.lock();
+		try
+		{
+			final ClearingPrice clearingPrice = getIndicativePrice(security);
+			if (clearingPrice != null)
+			{
+				FillBatch batch = transactions.execute(new TransactionCallback<FillBatch>() {
+					@Override
+					public FillBatch doInTransaction(TransactionStatus status) 
+					{
+						return execute(security, clearingPrice);
+					}
+				});
+				
+				bestPrices.invalidate(security.getTicker());
+				if (batch.hasDeferredCredits())
+				{
+					settlementLedger.record(batch);
+				}
+				for (Trade trade : batch.getTrades())
+				{
+					for (TradeListener listener : tradeListeners)
+					{
+						listener.onTrade(trade);
+					}
+				}
+			}
+			
+			schedule.setPhase(security.getTicker(), TradingPhase.CONTINUOUS);
+			exchangeService.releaseTriggeredStops(security);
+			return clearingPrice;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	private FillBatch execute(Security security, ClearingPrice clearingPrice)
+	{
+		String ticker = security.getTicker();
+		double price = clearingPrice.getPrice();
+		
+		List<Order> buys = 
+				orderRepo.findByTickerAndTypeAndExecutedAndPriceGreaterThanEqualOrderByPriceDescPriorityAsc(
+						ticker, OrderType.BUY, false, price);
+		List<Order> sells = 
+				orderRepo.findByTickerAndTypeAndExecutedAndPriceLessThanEqualOrderByPriceAscPriorityAsc(
+						ticker, OrderType.SELL, false, price);
+		
+		FillBatch batch = new FillBatch(security, null);
+		if (settlementLedger != null && settlementLedger.isEnabled())
+		{
+			batch.deferCredits();
+		}
+		
+		long remaining = clearingPrice.getVolume();
+		int buyIndex = 0;
+		int sellIndex = 0;
+		int buyFilled = 0;
+		int sellFilled = 0;
+		while (remaining > 0 && buyIndex < buys.size() && sellIndex < sells.size())
+		{
+			Order buy = buys.get(buyIndex);
+			Order sell = sells.get(sellIndex);
+			
+			int quantity = (int) Math.min(remaining, 
+					Math.min(buy.getQuantity() - buyFilled, sell.getQuantity() - sellFilled));
+			batch.addTrade(new Trade(ticker, buy.getTraderName(), sell.getTraderName(), price, quantity, null));
+			
+			buyFilled += quantity;
+			sellFilled += quantity;
+			remaining -= quantity;
+			
+			if (buyFilled == buy.getQuantity() || remaining == 0)
+			{
+				batch.addCapital(buy.getTrader(), (buy.getReservedPrice() - price) * buyFilled);
+				batch.addShares(buy.getTrader(), buyFilled);
+				reportFill(buy, buyFilled, price);
+				batch.fill(buy, buyFilled, price);
+				buyIndex++;
+				buyFilled = 0;
+			}
+			if (sellFilled == sell.getQuantity() || remaining == 0)
+			{
+				batch.addProceeds(sell.getTrader(), price * sellFilled);
+				reportFill(sell, sellFilled, price);
+				batch.fill(sell, sellFilled, price);
+				sellIndex++;
+				sellFilled = 0;
+			}
+		}
+		
+		batch.save(orderRepo, traderRepo, holdingRepo);
+		return batch;
+	}
+	
+	/**
+	 * Reports everything an order filled in the cross as one execution, published 
+	 * once the cross commits. Called before the fill is applied to the order.
+	 */
+	private void reportFill(Order order, int filled, double price)
+	{
+		if (reports == null)
+		{
+			return;
+		}
+		
+		String traderName = order.getTraderName();
+		String ticker = order.getTicker();
+		long orderId = order.getId();
+		OrderType type = order.getType();
+		double limit = order.getPrice();
+		int leaves = order.getQuantity() - filled;
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+		{
+			@Override
+			public void afterCommit()
+			{
+				reports.publish(traderName, ticker, orderId, type, 
+						leaves == 0 ? ExecutionStatus.FILLED : ExecutionStatus.PARTIALLY_FILLED, 
+						limit, price, filled, leaves, null);
+			}
+		});
+	}
+}
@@ -0,0 +1,123 @@
+package edu.berkeley.exchange.auction;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The uncrossing price of a call auction: the price that executes the most volume. 
+ * Ties go to the smaller imbalance between demand and supply at that price, then 
+ * to the price nearest the reference price.
+ */
+public class ClearingPrice 
+{
+	private final double price;
+	private final long volume;
+	private final long demand;
+	private final long supply;
+	
+	public ClearingPrice(double price, long volume, long demand, long supply)
+	{
+		this.price = price;
+		this.volume = volume;
+		this.demand = demand;
+		this.supply = supply;
+	}
+	
+	/**
+	 * Walks the bid levels (best first, i.e. descending) and ask levels (best first, 
+	 * i.e. ascending) once, from the lowest price upwards. Returns null when the 
+	 * book does not cross.
+	 */
+	public static ClearingPrice calculate(Map<Double, Long> bids, Map<Double, Long> asks, 
+			double referencePrice)
+	{
+		if (bids.isEmpty() || asks.isEmpty())
+		{
+			return null;
+		}
+		
+		int bidCount = bids.size();
+		double[] bidPrices = new double[bidCount];
+		long[] bidQuantities = new long[bidCount];
+		long demand = 0;
+		int i = bidCount;
+		for (Map.Entry<Double, Long> level : bids.entrySet())
+		{
+			i--;
+			bidPrices[i] = level.getKey();
+			bidQuantities[i] = level.getValue();
+			demand += level.getValue();
+		}
+		
+		Iterator<Map.Entry<Double, Long>> askLevels = asks.entrySet().iterator();
+		Map.Entry<Double, Long> ask = askLevels.next();
+		int bid = 0;
+		long supply = 0;
+		
+		ClearingPrice best = null;
+		while (ask != null || bid < bidCount)
+		{
+			double price = ask == null ? bidPrices[bid] : 
+				bid == bidCount ? ask.getKey() : Math.min(ask.getKey(), bidPrices[bid]);
+			
+			if (ask != null && ask.getKey() == price)
+			{
+				supply += ask.getValue();
+				ask = askLevels.hasNext() ? askLevels.next() : null;
+			}
+			
+			ClearingPrice candidate = new ClearingPrice(price, Math.min(demand, supply), demand, supply);
+			if (candidate.volume > 0 && candidate.isBetterThan(best, referencePrice))
+			{
+				best = candidate;
+			}
+			
+			if (bid < bidCount && bidPrices[bid] == price)
+			{
+				demand -= bidQuantities[bid++];
+			}
+			if (demand == 0)
+			{
+				break;
+			}
+		}
+		return best;
+	}
+	
+	private boolean isBetterThan(ClearingPrice other, double referencePrice)
+	{
+		if (other == null || volume != other.volume)
+		{
+			return other == null || volume > other.volume;
+		}
+		if (Math.abs(getImbalance()) != Math.abs(other.getImbalance()))
+		{
+			return Math.abs(getImbalance()) < Math.abs(other.getImbalance());
+		}
+		return !Double.isNaN(referencePrice) 
+				&& Math.abs(price - referencePrice) < Math.abs(other.price - referencePrice);
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public long getVolume() {
+		return volume;
+	}
+
+	public long getDemand() {
+		return demand;
+	}
+
+	public long getSupply() {
+		return supply;
+	}
+	
+	/**
+	 * Positive when more is bid than offered at the clearing price.
+	 */
+	public long getImbalance() {
+		return demand - supply;
+	}
+}
@@ -0,0 +1,7 @@
+package edu.berkeley.exchange.auction;
+
+public enum TradingPhase 
+{
+	CONTINUOUS,
+	CALL
+}
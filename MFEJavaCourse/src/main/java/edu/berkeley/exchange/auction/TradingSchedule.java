@@ -0,0 +1,23 @@
+package edu.berkeley.exchange.auction;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class TradingSchedule 
+{
+	private ConcurrentMap<String, TradingPhase> phases = new ConcurrentHashMap<>();
+	
+	public TradingPhase getPhase(String ticker)
+	{
+		TradingPhase phase = phases.get(ticker);
+		return phase == null ? TradingPhase.CONTINUOUS : phase;
+	}
+	
+	public void setPhase(String ticker, TradingPhase phase)
+	{
+		phases.put(ticker, phase);
+	}
+}
@@ -0,0 +1,50 @@
+package edu.berkeley.exchange.basket;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.security.Security;
+
+/**
+ * One limit order of a basket.
+ */
+public class BasketLeg 
+{
+	private final Security security;
+	private final double price;
+	private final int quantity;
+	private final OrderType type;
+	
+	public BasketLeg(Security security, double price, int quantity, OrderType type)
+	{
+		this.security = security;
+		this.price = price;
+		this.quantity = quantity;
+		this.type = type;
+	}
+
+	public Security getSecurity() {
+		return security;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public OrderType getType() {
+		return type;
+	}
+	
+	public String getTicker() {
+		return security.getTicker();
+	}
+	
+	/**
+	 * Capital a BUY leg needs reserved; nothing for a SELL.
+	 */
+	public double getNotional() {
+		return type.equals(OrderType.BUY) ? price * quantity : 0;
+	}
+}
@@ -0,0 +1,57 @@
+package edu.berkeley.exchange.basket;
+
+import edu.berkeley.exchange.SelfTradePrevention;
+import edu.berkeley.exchange.order.RestingOrder;
+
+/**
+ * Works out how much of a leg the book can fill, from the crossing resting orders 
+ * in price-time priority, without changing anything. The exchange plans every leg 
+ * of a basket this way, in parallel, while holding the locks of all its tickers, 
+ * so the plan still holds when the legs are matched.
+ */
+public class BasketPlanner 
+{
+	private BasketPlanner()
+	{
+		
+	}
+	
+	/**
+	 * Quantity of the leg that would fill against the crossing orders, applying the 
+	 * self-trade prevention mode to the trader's own orders the way matching does.
+	 */
+	public static int fillable(Iterable<RestingOrder> crossing, int quantity, String traderName, 
+			SelfTradePrevention selfTradePrevention)
+	{
+		int filled = 0;
+		int remaining = quantity;
+		for (RestingOrder resting : crossing)
+		{
+			if (remaining == 0)
+			{
+				break;
+			}
+			
+			if (selfTradePrevention != SelfTradePrevention.NONE && resting.getTraderName().equals(traderName))
+			{
+				switch (selfTradePrevention)
+				{
+				case CANCEL_AGGRESSOR:
+				case CANCEL_BOTH:
+					return filled;
+				case DECREMENT:
+					remaining -= Math.min(resting.getQuantity(), remaining);
+					break;
+				default:
+					break;
+				}
+				continue;
+			}
+			
+			int fill = Math.min(resting.getQuantity(), remaining);
+			filled += fill;
+			remaining -= fill;
+		}
+		return filled;
+	}
+}
@@ -0,0 +1,507 @@
+package edu.berkeley.exchange.book;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.springframework.data.domain.PageRequest;
+
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+
+/**
+ * Resting orders kept as fixed-width records outside the Java heap, so millions
+ * of them cost the collector nothing to trace. Each record is 40 bytes:
+ *
+ * <pre>
+ *  0  long  order id
+ *  8  long  price, fixed point at PRICE_SCALE
+ * 16  int   ticker id
+ * 20  int   trader id
+ * 24  int   quantity
+ * 28  int   previous record on the same ticker and side, or -1
+ * 32  int   next record on the same ticker and side, or -1 (next free record once removed)
+ * 36  byte  side
+ * </pre>
+ *
+ * Tickers and trader names are interned to integer ids. Records of one ticker and
+ * side are chained in the order they were added, which is time priority within a
+ * price, and an open-addressing table from order id to record, also off-heap, makes
+ * lookups and removals constant time. Each chain also counts its records per
+ * price, on the heap but one entry per price rather than per order, so the best
+ * price is found without walking the chain. Removed records are reused before the
+ * store grows into fresh ones. Every call synchronizes on the store.
+ */
+public class OffHeapOrderBook
+{
+	public static final int RECORD_SIZE = 40;
+	public static final long PRICE_SCALE = 1000000L;
+	
+	private static final int ID = 0;
+	private static final int PRICE = 8;
+	private static final int TICKER = 16;
+	private static final int TRADER = 20;
+	private static final int QUANTITY = 24;
+	private static final int PREVIOUS = 28;
+	private static final int NEXT = 32;
+	private static final int SIDE = 36;
+	
+	private static final int NONE = -1;
+	private static final long EMPTY = 0;
+	private static final int PAGE_SIZE = 1000;
+	
+	public interface RestingOrderVisitor
+	{
+		void visit(long orderId, int traderId, double price, int quantity);
+	}
+	
+	private final ByteBuffer records;
+	private final int capacity;
+	private final LongBuffer indexKeys;
+	private final IntBuffer indexRecords;
+	private final int indexMask;
+	
+	private final SymbolTable tickers = new SymbolTable();
+	private final SymbolTable traders = new SymbolTable();
+	
+	private int[] heads = new int[0];
+	private int[] tails = new int[0];
+	private List<NavigableMap<Long, Integer>> prices = new ArrayList<>();
+	private int used;
+	private int free = NONE;
+	private int size;
+	
+	/**
+	 * A store of the given number of records in direct memory.
+	 */
+	public OffHeapOrderBook(int capacity)
+	{
+		this(ByteBuffer.allocateDirect(checkCapacity(capacity) * RECORD_SIZE), capacity);
+	}
+	
+	private OffHeapOrderBook(ByteBuffer records, int capacity)
+	{
+		this.records = records.order(ByteOrder.nativeOrder());
+		this.capacity = capacity;
+		
+		int indexSize = indexSizeFor(capacity);
+		this.indexKeys = ByteBuffer.allocateDirect(indexSize * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+		this.indexRecords = ByteBuffer.allocateDirect(indexSize * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		this.indexMask = indexSize - 1;
+	}
+	
+	/**
+	 * A store whose records live in a memory-mapped scratch file, so the operating
+	 * system can page out records nobody touches. The file is overwritten and is not
+	 * meant to be reopened.
+	 */
+	public static OffHeapOrderBook map(Path file, int capacity) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer records = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					(long) checkCapacity(capacity) * RECORD_SIZE);
+			return new OffHeapOrderBook(records, capacity);
+		}
+	}
+	
+	/**
+	 * Adds every open order in the repository, a page at a time.
+	 */
+	public int load(OrderRepository orderRepo)
+	{
+		int loaded = 0;
+		List<Order> page = orderRepo.findOpenOrdersAfter(0, new PageRequest(0, PAGE_SIZE));
+		while (!page.isEmpty())
+		{
+			for (Order order : page)
+			{
+				if (add(order))
+				{
+					loaded++;
+				}
+			}
+			
+			long lastId = page.get(page.size() - 1).getId();
+			page = page.size() < PAGE_SIZE ? Collections.<Order>emptyList() :
+				orderRepo.findOpenOrdersAfter(lastId, new PageRequest(0, PAGE_SIZE));
+		}
+		return loaded;
+	}
+	
+	public boolean add(Order order)
+	{
+		return add(order.getId(), order.getTicker(), order.getTraderName(), order.getType(),
+				order.getPrice(), order.getQuantity());
+	}
+	
+	/**
+	 * Adds a resting order behind the others of its ticker and side. Returns false
+	 * if an order with the same id is already here.
+	 */
+	public synchronized boolean add(long orderId, String ticker, String traderName, OrderType type,
+			double price, int quantity)
+	{
+		if (orderId <= 0)
+		{
+			throw new IllegalArgumentException("Order ids must be positive, got " + orderId + ".");
+		}
+		if (indexOf(orderId) >= 0)
+		{
+			return false;
+		}
+		
+		int record = allocate();
+		int chain = chainOf(tickers.intern(ticker), type);
+		int offset = record * RECORD_SIZE;
+		
+		records.putLong(offset + ID, orderId);
+		long fixed = Math.round(price * PRICE_SCALE);
+		records.putLong(offset + PRICE, fixed);
+		records.putInt(offset + TICKER, chain >> 1);
+		records.putInt(offset + TRADER, traders.intern(traderName));
+		records.putInt(offset + QUANTITY, quantity);
+		records.put(offset + SIDE, (byte) type.ordinal());
+		link(record, chain);
+		prices.get(chain).merge(fixed, 1, Integer::sum);
+		
+		insertIndex(orderId, record);
+		size++;
+		return true;
+	}
+	
+	public synchronized boolean remove(long orderId)
+	{
+		int slot = indexOf(orderId);
+		if (slot < 0)
+		{
+			return false;
+		}
+		
+		int record = indexRecords.get(slot);
+		int offset = record * RECORD_SIZE;
+		deleteIndex(slot);
+		unlink(record);
+		prices.get(chainOf(record)).computeIfPresent(records.getLong(offset + PRICE),
+				(price, count) -> count == 1 ? null : count - 1);
+		
+		records.putLong(record * RECORD_SIZE + ID, EMPTY);
+		records.putInt(record * RECORD_SIZE + NEXT, free);
+		free = record;
+		size--;
+		return true;
+	}
+	
+	/**
+	 * Removes every resting order of a ticker and returns how many there were.
+	 */
+	public synchronized int removeAll(String ticker)
+	{
+		int removed = 0;
+		for (OrderType type : OrderType.values())
+		{
+			int chain = chainOf(ticker, type);
+			while (chain >= 0 && heads[chain] != NONE)
+			{
+				remove(records.getLong(heads[chain] * RECORD_SIZE + ID));
+				removed++;
+			}
+		}
+		return removed;
+	}
+	
+	/**
+	 * Moves a resting order behind the others of its ticker and side, as when an
+	 * iceberg shows a new slice. Returns false if the order is not here.
+	 */
+	public synchronized boolean requeue(long orderId)
+	{
+		int slot = indexOf(orderId);
+		if (slot < 0)
+		{
+			return false;
+		}
+		
+		int record = indexRecords.get(slot);
+		int chain = chainOf(record);
+		if (tails[chain] != record)
+		{
+			unlink(record);
+			link(record, chain);
+		}
+		return true;
+	}
+	
+	/**
+	 * Sets the remaining quantity of a resting order, removing it at zero. Returns
+	 * false if the order is not here.
+	 */
+	public synchronized boolean setQuantity(long orderId, int quantity)
+	{
+		int slot = indexOf(orderId);
+		if (slot < 0)
+		{
+			return false;
+		}
+		if (quantity <= 0)
+		{
+			return remove(orderId);
+		}
+		
+		records.putInt(indexRecords.get(slot) * RECORD_SIZE + QUANTITY, quantity);
+		return true;
+	}
+	
+	/**
+	 * Remaining quantity of a resting order, or 0 if it is not here.
+	 */
+	public synchronized int getQuantity(long orderId)
+	{
+		int slot = indexOf(orderId);
+		return slot < 0 ? 0 : records.getInt(indexRecords.get(slot) * RECORD_SIZE + QUANTITY);
+	}
+	
+	/**
+	 * Highest bid or lowest ask of a ticker, or NaN if that side is empty. Costs a
+	 * lookup in the side's price counts, logarithmic in its number of prices.
+	 */
+	public synchronized double getBestPrice(String ticker, OrderType type)
+	{
+		int chain = chainOf(ticker, type);
+		if (chain < 0 || heads[chain] == NONE)
+		{
+			return Double.NaN;
+		}
+		
+		NavigableMap<Long, Integer> counts = prices.get(chain);
+		long best = type.equals(OrderType.BUY) ? counts.lastKey() : counts.firstKey();
+		return (double) best / PRICE_SCALE;
+	}
+	
+	/**
+	 * Visits the resting orders of one ticker and side in the order they were added.
+	 */
+	public synchronized void forEach(String ticker, OrderType type, RestingOrderVisitor visitor)
+	{
+		int chain = chainOf(ticker, type);
+		if (chain < 0)
+		{
+			return;
+		}
+		
+		for (int record = heads[chain]; record != NONE; record = records.getInt(record * RECORD_SIZE + NEXT))
+		{
+			int offset = record * RECORD_SIZE;
+			visitor.visit(records.getLong(offset + ID), records.getInt(offset + TRADER),
+					(double) records.getLong(offset + PRICE) / PRICE_SCALE, records.getInt(offset + QUANTITY));
+		}
+	}
+	
+	public synchronized int size()
+	{
+		return size;
+	}
+	
+	public int getCapacity()
+	{
+		return capacity;
+	}
+	
+	/**
+	 * Bytes reserved outside the heap for records and the id index.
+	 */
+	public long getOffHeapBytes()
+	{
+		return (long) capacity * RECORD_SIZE + (long) (indexMask + 1) * 12;
+	}
+	
+	public SymbolTable getTickers()
+	{
+		return tickers;
+	}
+	
+	public SymbolTable getTraders()
+	{
+		return traders;
+	}
+	
+	private int allocate()
+	{
+		if (free != NONE)
+		{
+			int record = free;
+			free = records.getInt(record * RECORD_SIZE + NEXT);
+			return record;
+		}
+		if (used == capacity)
+		{
+			throw new IllegalStateException("Order book is full at " + capacity + " resting orders.");
+		}
+		return used++;
+	}
+	
+	private void link(int record, int chain)
+	{
+		int offset = record * RECORD_SIZE;
+		records.putInt(offset + PREVIOUS, tails[chain]);
+		records.putInt(offset + NEXT, NONE);
+		
+		if (tails[chain] == NONE)
+		{
+			heads[chain] = record;
+		}
+		else
+		{
+			records.putInt(tails[chain] * RECORD_SIZE + NEXT, record);
+		}
+		tails[chain] = record;
+	}
+	
+	private void unlink(int record)
+	{
+		int offset = record * RECORD_SIZE;
+		int chain = chainOf(record);
+		int previous = records.getInt(offset + PREVIOUS);
+		int next = records.getInt(offset + NEXT);
+		
+		if (previous == NONE)
+		{
+			heads[chain] = next;
+		}
+		else
+		{
+			records.putInt(previous * RECORD_SIZE + NEXT, next);
+		}
+		
+		if (next == NONE)
+		{
+			tails[chain] = previous;
+		}
+		else
+		{
+			records.putInt(next * RECORD_SIZE + PREVIOUS, previous);
+		}
+	}
+	
+	private int chainOf(int tickerId, OrderType type)
+	{
+		int chain = tickerId << 1 | type.ordinal();
+		if (chain >= heads.length)
+		{
+			int length = Math.max(chain + 1, heads.length * 2);
+			int from = heads.length;
+			heads = Arrays.copyOf(heads, length);
+			tails = Arrays.copyOf(tails, length);
+			Arrays.fill(heads, from, length, NONE);
+			Arrays.fill(tails, from, length, NONE);
+			while (prices.size() < length)
+			{
+				prices.add(new TreeMap<>());
+			}
+		}
+		return chain;
+	}
+	
+	private int chainOf(int record)
+	{
+		int offset = record * RECORD_SIZE;
+		return records.getInt(offset + TICKER) << 1 | records.get(offset + SIDE);
+	}
+	
+	private int chainOf(String ticker, OrderType type)
+	{
+		int tickerId = tickers.idOf(ticker);
+		int chain = tickerId << 1 | type.ordinal();
+		return tickerId < 0 || chain >= heads.length ? -1 : chain;
+	}
+	
+	private int indexOf(long orderId)
+	{
+		for (int slot = hash(orderId) & indexMask; ; slot = (slot + 1) & indexMask)
+		{
+			long key = indexKeys.get(slot);
+			if (key == orderId)
+			{
+				return slot;
+			}
+			if (key == EMPTY)
+			{
+				return -1;
+			}
+		}
+	}
+	
+	private void insertIndex(long orderId, int record)
+	{
+		int slot = hash(orderId) & indexMask;
+		while (indexKeys.get(slot) != EMPTY)
+		{
+			slot = (slot + 1) & indexMask;
+		}
+		indexKeys.put(slot, orderId);
+		indexRecords.put(slot, record);
+	}
+	
+	/**
+	 * Backward-shift deletion: later entries of the same probe run move into the
+	 * hole, so lookups never need tombstones.
+	 */
+	private void deleteIndex(int hole)
+	{
+		int slot = hole;
+		while (true)
+		{
+			slot = (slot + 1) & indexMask;
+			long key = indexKeys.get(slot);
+			if (key == EMPTY)
+			{
+				break;
+			}
+			
+			int home = hash(key) & indexMask;
+			boolean reachable = hole <= slot ? hole < home && home <= slot : hole < home || home <= slot;
+			if (!reachable)
+			{
+				indexKeys.put(hole, key);
+				indexRecords.put(hole, indexRecords.get(slot));
+				hole = slot;
+			}
+		}
+		indexKeys.put(hole, EMPTY);
+	}
+	
+	private static int hash(long orderId)
+	{
+		long mixed = orderId * 0x9E3779B97F4A7C15L;
+		return (int) (mixed ^ (mixed >>> 32));
+	}
+	
+	private static int indexSizeFor(int capacity)
+	{
+		long wanted = Math.max((long) capacity * 4 / 3 + 1, 16);
+		return (int) Long.highestOneBit(wanted - 1) << 1;
+	}
+	
+	private static int checkCapacity(int capacity)
+	{
+		if (capacity <= 0 || capacity > Integer.MAX_VALUE / RECORD_SIZE)
+		{
+			throw new IllegalArgumentException("Capacity must be between 1 and "
+					+ Integer.MAX_VALUE / RECORD_SIZE + ", got " + capacity + ".");
+		}
+		return capacity;
+	}
+}
@@ -0,0 +1,47 @@
+package edu.berkeley.exchange.book;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns strings such as tickers and trader names to dense integer ids, so a 
+ * record can refer to them in four bytes. Ids are never reused.
+ */
+public class SymbolTable 
+{
+	private final Map<String, Integer> ids = new HashMap<>();
+	private final List<String> names = new ArrayList<>();
+	
+	public synchronized int intern(String name)
+	{
+		Integer id = ids.get(name);
+		if (id == null)
+		{
+			id = names.size();
+			ids.put(name, id);
+			names.add(name);
+		}
+		return id;
+	}
+	
+	/**
+	 * The id of a name already interned, or -1.
+	 */
+	public synchronized int idOf(String name)
+	{
+		Integer id = ids.get(name);
+		return id == null ? -1 : id;
+	}
+	
+	public synchronized String nameOf(int id)
+	{
+		return names.get(id);
+	}
+	
+	public synchronized int size()
+	{
+		return names.size();
+	}
+}
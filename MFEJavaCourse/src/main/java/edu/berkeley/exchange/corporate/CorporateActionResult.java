@@ -0,0 +1,49 @@
+package edu.berkeley.exchange.corporate;
+
+/**
+ * Rows a corporate action changed, and for a dividend the cash it paid out.
+ */
+public class CorporateActionResult
+{
+	private final String ticker;
+	private final int holdings;
+	private final int openOrders;
+	private final int stopOrders;
+	private final int traders;
+	private final double cash;
+	
+	public CorporateActionResult(String ticker, int holdings, int openOrders, int stopOrders, int traders,
+			double cash)
+	{
+		this.ticker = ticker;
+		this.holdings = holdings;
+		this.openOrders = openOrders;
+		this.stopOrders = stopOrders;
+		this.traders = traders;
+		this.cash = cash;
+	}
+	
+	public String getTicker() {
+		return ticker;
+	}
+	
+	public int getHoldings() {
+		return holdings;
+	}
+	
+	public int getOpenOrders() {
+		return openOrders;
+	}
+	
+	public int getStopOrders() {
+		return stopOrders;
+	}
+	
+	public int getTraders() {
+		return traders;
+	}
+	
+	public double getCash() {
+		return cash;
+	}
+}
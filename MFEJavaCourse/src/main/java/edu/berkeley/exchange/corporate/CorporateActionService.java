@@ -0,0 +1,254 @@
+package edu.berkeley.exchange.corporate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.berkeley.exchange.SecurityLocks;
+import edu.berkeley.exchange.marketdata.BestPriceCache;
+import edu.berkeley.exchange.marketdata.LastTradePrices;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.StopOrderRepository;
+import edu.berkeley.exchange.security.InstrumentRules;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.stop.StopOrderEngine;
+import edu.berkeley.exchange.trader.HoldingRepository;
+
+/**
+ * Stock splits and cash dividends. An action holds the security's lock, so nothing
+ * in it matches meanwhile, and runs as one transaction of set-based statements:
+ * holdings are found through the HOLDING ticker index and open orders through the
+ * book index, and neither is loaded as entities. Every Trader and Holding row an
+ * action writes has its version bumped, so matching in another security that read
+ * one of them first retries instead of overwriting it.
+ */
+@Lazy
+@Service
+public class CorporateActionService
+{
+	private static final int CREDIT_BATCH_SIZE = 1000;
+	private static final String CREDIT_CAPITAL =
+			"update TRADER set capital = capital + ?, version = version + 1 where name = ?";
+	
+	private HoldingRepository holdingRepo;
+	private OrderRepository orderRepo;
+	private StopOrderRepository stopOrderRepo;
+	private SecurityLocks locks;
+	private BestPriceCache bestPrices;
+	private LastTradePrices lastTradePrices;
+	private JdbcTemplate jdbc;
+	private TransactionTemplate transactions;
+	private StopOrderEngine stopOrders;
+	
+	@Autowired
+	public CorporateActionService(HoldingRepository holdingRepo, OrderRepository orderRepo,
+			StopOrderRepository stopOrderRepo, SecurityLocks locks, BestPriceCache bestPrices,
+			LastTradePrices lastTradePrices, DataSource dataSource, PlatformTransactionManager transactionManager)
+	{
+		this.holdingRepo = holdingRepo;
+		this.orderRepo = orderRepo;
+		this.stopOrderRepo = stopOrderRepo;
+		this.locks = locks;
+		this.bestPrices = bestPrices;
+		this.lastTradePrices = lastTradePrices;
+		this.jdbc = new JdbcTemplate(dataSource);
+		this.transactions = new TransactionTemplate(transactionManager);
+	}
+	
+	@Autowired(required=false)
+	public void setStopOrderEngine(StopOrderEngine stopOrders)
+	{
+		this.stopOrders = stopOrders;
+	}
+	
+	/**
+	 * Applies a split to every holding, open order and untriggered stop of the
+	 * security. It is refused as a whole if any of them would be left holding part of
+	 * a share, since cash in lieu is not handled. Scaled prices, peg offsets and
+	 * limits are rounded onto the security's tick toward the passive side: buys
+	 * down, sells up, and stop triggers away from the market. Capital a rounded buy
+	 * no longer reserves is credited back to its trader in the same transaction.
+	 * Under end-of-day settlement, shares bought before the split but not yet
+	 * delivered are not adjusted, so a split should only be applied after the day
+	 * has settled.
+	 */
+	public CorporateActionResult split(Security security, SplitRatio ratio)
+	{
+		String ticker = security.getTicker();
+		int numerator = ratio.getNumerator();
+		int denominator = ratio.getDenominator();
+		
+		ReentrantLock lock = locks.get(ticker);
+		lock.lock();
+		try
+		{
+			CorporateActionResult result = transactions.execute(status ->
+			{
+				checkWholeShares(ticker, ratio);
+				int holdings = holdingRepo.splitHoldings(ticker, numerator, denominator);
+				int openOrders = orderRepo.splitOpenOrders(ticker, numerator, denominator);
+				int stops = stopOrderRepo.splitUntriggered(ticker, numerator, denominator);
+				Map<String, Double> reserved = reservedCapital(ticker);
+				roundOntoTick(security);
+				refundRounding(ticker, reserved);
+				return new CorporateActionResult(ticker, holdings, openOrders, stops, 0, 0);
+			});
+			
+			bestPrices.invalidate(ticker);
+			double lastPrice = lastTradePrices.getLastPrice(ticker);
+			if (!Double.isNaN(lastPrice))
+			{
+				lastTradePrices.setLastPrice(ticker, ratio.applyToPrice(lastPrice));
+			}
+			if (stopOrders != null)
+			{
+				stopOrders.invalidate(ticker);
+			}
+			return result;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Pays a cash dividend on every share of the security held, counting shares set
+	 * aside for open SELL orders. A trader short the security is debited the 
+	 * dividend on the shares owed instead. Traders are credited in batched updates 
+	 * in name order. Open order prices are left as they are.
+	 */
+	public CorporateActionResult payDividend(Security security, double perShare)
+	{
+		if (perShare <= 0)
+		{
+			throw new IllegalArgumentException("Dividend of " + perShare + " per share on " +
+					security.getTicker() + " must be positive.");
+		}
+		
+		String ticker = security.getTicker();
+		ReentrantLock lock = locks.get(ticker);
+		lock.lock();
+		try
+		{
+			return transactions.execute(status ->
+			{
+				Map<String, Long> shares = new TreeMap<>();
+				List<Object[]> holders = holdingRepo.findHoldersOf(ticker);
+				addShares(shares, holders);
+				addShares(shares, orderRepo.findOpenQuantityByTrader(ticker, OrderType.SELL));
+				
+				List<Object[]> credits = new ArrayList<>(shares.size());
+				double cash = 0;
+				for (Map.Entry<String, Long> entry : shares.entrySet())
+				{
+					double amount = perShare * entry.getValue();
+					credits.add(new Object[] { amount, entry.getKey() });
+					cash += amount;
+				}
+				for (int from = 0; from < credits.size(); from += CREDIT_BATCH_SIZE)
+				{
+					jdbc.batchUpdate(CREDIT_CAPITAL,
+							credits.subList(from, Math.min(from + CREDIT_BATCH_SIZE, credits.size())));
+				}
+				return new CorporateActionResult(ticker, holders.size(), 0, 0, credits.size(), cash);
+			});
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	private Map<String, Double> reservedCapital(String ticker)
+	{
+		Map<String, Double> reserved = new TreeMap<String, Double>();
+		for (Object[] row : orderRepo.findReservedCapitalByTrader(ticker, OrderType.BUY))
+		{
+			reserved.put((String) row[0], ((Number) row[1]).doubleValue());
+		}
+		return reserved;
+	}
+	
+	/**
+	 * Rounding a buy's price or peg limit down onto the tick reserves less than was 
+	 * taken when it was placed, so each trader is credited the difference.
+	 */
+	private void refundRounding(String ticker, Map<String, Double> before)
+	{
+		Map<String, Double> after = reservedCapital(ticker);
+		List<Object[]> credits = new ArrayList<Object[]>();
+		for (Map.Entry<String, Double> entry : before.entrySet())
+		{
+			Double remaining = after.get(entry.getKey());
+			double refund = entry.getValue() - (remaining == null ? 0 : remaining);
+			if (refund > InstrumentRules.TICK_TOLERANCE)
+			{
+				credits.add(new Object[] { refund, entry.getKey() });
+			}
+		}
+		for (int from = 0; from < credits.size(); from += CREDIT_BATCH_SIZE)
+		{
+			jdbc.batchUpdate(CREDIT_CAPITAL,
+					credits.subList(from, Math.min(from + CREDIT_BATCH_SIZE, credits.size())));
+		}
+	}
+	
+	private void roundOntoTick(Security security)
+	{
+		InstrumentRules rules = InstrumentRules.of(security);
+		if (rules.getTickSize() <= 0)
+		{
+			return;
+		}
+		String ticker = security.getTicker();
+		double ticksPerUnit = rules.getTicksPerUnit();
+		orderRepo.roundOpenBuysDown(ticker, ticksPerUnit, InstrumentRules.TICK_TOLERANCE);
+		orderRepo.roundOpenSellsUp(ticker, ticksPerUnit, InstrumentRules.TICK_TOLERANCE);
+		stopOrderRepo.roundUntriggeredBuys(ticker, ticksPerUnit, InstrumentRules.TICK_TOLERANCE);
+		stopOrderRepo.roundUntriggeredSells(ticker, ticksPerUnit, InstrumentRules.TICK_TOLERANCE);
+	}
+	
+	private void checkWholeShares(String ticker, SplitRatio ratio)
+	{
+		if (ratio.getDenominator() == 1)
+		{
+			return;
+		}
+		
+		int numerator = ratio.getNumerator();
+		int denominator = ratio.getDenominator();
+		long holdings = holdingRepo.countFractionalAfterSplit(ticker, numerator, denominator);
+		long openOrders = orderRepo.countFractionalAfterSplit(ticker, numerator, denominator);
+		long stops = stopOrderRepo.countFractionalAfterSplit(ticker, numerator, denominator);
+		if (holdings + openOrders + stops > 0)
+		{
+			throw new IllegalStateException("Could not split " + ticker + " " + ratio + " since " +
+					holdings + " holdings, " + openOrders + " open orders and " + stops +
+					" stop orders would be left with part of a share.");
+		}
+	}
+	
+	private static void addShares(Map<String, Long> shares, List<Object[]> rows)
+	{
+		for (Object[] row : rows)
+		{
+			String traderName = (String) row[0];
+			long quantity = ((Number) row[1]).longValue();
+			Long current = shares.get(traderName);
+			shares.put(traderName, current == null ? quantity : current + quantity);
+		}
+	}
+}
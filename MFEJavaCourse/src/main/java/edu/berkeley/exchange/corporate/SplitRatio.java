@@ -0,0 +1,42 @@
+package edu.berkeley.exchange.corporate;
+
+/**
+ * A split of numerator new shares for every denominator old ones: 2-for-1 is 2/1,
+ * a 1-for-10 reverse split is 1/10. Quantities scale up by the ratio and prices
+ * down by it, so the value of a position or an order is unchanged.
+ */
+public class SplitRatio
+{
+	private final int numerator;
+	private final int denominator;
+	
+	public SplitRatio(int numerator, int denominator)
+	{
+		if (numerator <= 0 || denominator <= 0 || numerator == denominator)
+		{
+			throw new IllegalArgumentException("Split ratio " + numerator + "/" + denominator +
+					" must be positive and change the share count.");
+		}
+		this.numerator = numerator;
+		this.denominator = denominator;
+	}
+	
+	public int getNumerator() {
+		return numerator;
+	}
+	
+	public int getDenominator() {
+		return denominator;
+	}
+	
+	public double applyToPrice(double price)
+	{
+		return price * denominator / numerator;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return numerator + "/" + denominator;
+	}
+}
@@ -0,0 +1,34 @@
+package edu.berkeley.exchange.history;
+
+import java.util.List;
+
+import edu.berkeley.exchange.order.Order;
+
+public class HistoryPage 
+{
+	private final List<Order> orders;
+	private final long lastId;
+	private final boolean last;
+	
+	public HistoryPage(List<Order> orders, long afterId, int pageSize)
+	{
+		this.orders = orders;
+		this.lastId = orders.isEmpty() ? afterId : orders.get(orders.size() - 1).getId();
+		this.last = orders.size() < pageSize;
+	}
+
+	public List<Order> getOrders() {
+		return orders;
+	}
+
+	/**
+	 * Pass as afterId to fetch the following page.
+	 */
+	public long getLastId() {
+		return lastId;
+	}
+
+	public boolean isLast() {
+		return last;
+	}
+}
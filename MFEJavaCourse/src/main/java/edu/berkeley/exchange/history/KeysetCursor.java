@@ -0,0 +1,65 @@
+package edu.berkeley.exchange.history;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.LongFunction;
+
+import edu.berkeley.exchange.order.Order;
+
+/**
+ * Iterates a keyset-paginated query one page at a time, so at most one page of 
+ * orders is reachable from the cursor at any point.
+ */
+public class KeysetCursor implements Iterator<Order> 
+{
+	private final LongFunction<List<Order>> pageAfter;
+	private final int pageSize;
+	
+	private List<Order> page;
+	private int position;
+	private long lastId;
+	private boolean exhausted;
+	
+	public KeysetCursor(LongFunction<List<Order>> pageAfter, int pageSize)
+	{
+		this.pageAfter = pageAfter;
+		this.pageSize = pageSize;
+	}
+	
+	@Override
+	public boolean hasNext() 
+	{
+		if (page != null && position < page.size())
+		{
+			return true;
+		}
+		if (exhausted)
+		{
+			return false;
+		}
+		
+		page = pageAfter.apply(lastId);
+		position = 0;
+		exhausted = page.size() < pageSize;
+		if (!page.isEmpty())
+		{
+			lastId = page.get(page.size() - 1).getId();
+		}
+		return !page.isEmpty();
+	}
+
+	@Override
+	public Order next() 
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+		return page.get(position++);
+	}
+	
+	public long getLastId() {
+		return lastId;
+	}
+}
@@ -0,0 +1,117 @@
+package edu.berkeley.exchange.history;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.OrderRepository;
+
+/**
+ * Executed order history by trader, by security and by date range. Every query is 
+ * keyset-paginated on id. Queries by trader or by security seek into 
+ * IDX_ORDERS_TRADER_HISTORY or IDX_ORDERS_TICKER_HISTORY just past the last id, so 
+ * a page costs the same no matter how deep into the history it is. Date ranges 
+ * filter that same walk, or the primary key when no trader is given, so their 
+ * first page also passes over the orders before the range and their last page 
+ * over those after it. 
+ * The streams fetch one page at a time and are meant to be consumed outside a 
+ * transaction, where each page is loaded into its own short-lived persistence 
+ * context and nothing accumulates on the heap.
+ */
+@Lazy
+@Service
+public class OrderHistoryService 
+{
+	public static final int DEFAULT_PAGE_SIZE = Integer.parseInt(OrderRepository.HISTORY_FETCH_SIZE);
+	
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	public OrderHistoryService(OrderRepository orderRepo)
+	{
+		this.orderRepo = orderRepo;
+	}
+	
+	public HistoryPage executedByTrader(String traderName, long afterId, int pageSize)
+	{
+		return new HistoryPage(byTrader(traderName, pageSize).apply(afterId), afterId, pageSize);
+	}
+	
+	public HistoryPage executedBySecurity(String ticker, long afterId, int pageSize)
+	{
+		return new HistoryPage(bySecurity(ticker, pageSize).apply(afterId), afterId, pageSize);
+	}
+	
+	public HistoryPage executedBetween(Date from, Date to, long afterId, int pageSize)
+	{
+		return new HistoryPage(between(from, to, pageSize).apply(afterId), afterId, pageSize);
+	}
+	
+	public HistoryPage executedByTraderBetween(String traderName, Date from, Date to, long afterId, 
+			int pageSize)
+	{
+		return new HistoryPage(byTraderBetween(traderName, from, to, pageSize).apply(afterId), 
+				afterId, pageSize);
+	}
+	
+	public Stream<Order> streamExecutedByTrader(String traderName)
+	{
+		return stream(byTrader(traderName, DEFAULT_PAGE_SIZE));
+	}
+	
+	public Stream<Order> streamExecutedBySecurity(String ticker)
+	{
+		return stream(bySecurity(ticker, DEFAULT_PAGE_SIZE));
+	}
+	
+	public Stream<Order> streamExecutedBetween(Date from, Date to)
+	{
+		return stream(between(from, to, DEFAULT_PAGE_SIZE));
+	}
+	
+	public Stream<Order> streamExecutedByTraderBetween(String traderName, Date from, Date to)
+	{
+		return stream(byTraderBetween(traderName, from, to, DEFAULT_PAGE_SIZE));
+	}
+	
+	private LongFunction<List<Order>> byTrader(String traderName, int pageSize)
+	{
+		return afterId -> orderRepo.findExecutedByTraderAfter(traderName, afterId, 
+				new PageRequest(0, pageSize));
+	}
+	
+	private LongFunction<List<Order>> bySecurity(String ticker, int pageSize)
+	{
+		return afterId -> orderRepo.findExecutedByTickerAfter(ticker, afterId, 
+				new PageRequest(0, pageSize));
+	}
+	
+	private LongFunction<List<Order>> between(Date from, Date to, int pageSize)
+	{
+		return afterId -> orderRepo.findExecutedBetweenAfter(from, to, afterId, 
+				new PageRequest(0, pageSize));
+	}
+	
+	private LongFunction<List<Order>> byTraderBetween(String traderName, Date from, Date to, int pageSize)
+	{
+		return afterId -> orderRepo.findExecutedByTraderBetweenAfter(traderName, from, to, afterId, 
+				new PageRequest(0, pageSize));
+	}
+	
+	private static Stream<Order> stream(LongFunction<List<Order>> pageAfter)
+	{
+		KeysetCursor cursor = new KeysetCursor(pageAfter, DEFAULT_PAGE_SIZE);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, 
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+	}
+}
@@ -0,0 +1,268 @@
+package edu.berkeley.exchange.marketdata;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.berkeley.exchange.SecurityLocks;
+import edu.berkeley.exchange.book.OffHeapOrderBook;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.RestingOrder;
+
+/**
+ * Aggregated displayed quantity per price for each side of each security, hidden 
+ * iceberg reserve left out, with the 
+ * touch published as an immutable PriceLevel so reads never lock or query. 
+ * A book is loaded from ORDERS with one aggregate query the first time it is 
+ * read, under the security's lock, and from then on ExchangeServiceImpl applies 
+ * every insert, fill and cancel of an open order once its transaction commits, 
+ * while still holding the same lock, so the cache matches the committed table 
+ * whenever no placeOrder is in progress. A book read inside a transaction is 
+ * loaded but not kept, since it would include that transaction's own changes. 
+ * Changes to open orders made outside the exchange service must call invalidate.
+ * 
+ * When an OffHeapOrderBook is set, every committed change is applied to it too, 
+ * and invalidate reloads the ticker's open orders into it once the enclosing 
+ * transaction, if any, commits.
+ */
+@Component
+public class BestPriceCache 
+{
+	private OrderRepository orderRepo;
+	private SecurityLocks locks;
+	
+	private ConcurrentMap<String, Book> books = new ConcurrentHashMap<>();
+	private volatile OffHeapOrderBook offHeapBook;
+	
+	@Autowired
+	public BestPriceCache(OrderRepository orderRepo, SecurityLocks locks)
+	{
+		this.orderRepo = orderRepo;
+		this.locks = locks;
+	}
+	
+	public PriceLevel getBestBid(String ticker)
+	{
+		return book(ticker).bestBid;
+	}
+	
+	public PriceLevel getBestAsk(String ticker)
+	{
+		return book(ticker).bestAsk;
+	}
+	
+	/**
+	 * Levels on one side from the touch outwards, as price to open quantity.
+	 */
+	public Map<Double, Long> getLevels(String ticker, OrderType type)
+	{
+		Book book = book(ticker);
+		synchronized (book)
+		{
+			return Collections.unmodifiableMap(new TreeMap<>(book.side(type)));
+		}
+	}
+	
+	/**
+	 * Open orders already in the table must be loaded into the store, by 
+	 * OffHeapOrderBook.load or loadOffHeapBook for each ticker.
+	 */
+	public void setOffHeapBook(OffHeapOrderBook offHeapBook)
+	{
+		this.offHeapBook = offHeapBook;
+	}
+	
+	public OffHeapOrderBook getOffHeapBook()
+	{
+		return offHeapBook;
+	}
+	
+	public void onRested(Order order)
+	{
+		if (offHeapBook != null)
+		{
+			offHeapBook.add(order);
+		}
+		
+		Book book = books.get(order.getTicker());
+		if (book != null)
+		{
+			book.change(order.getType(), order.getPrice(), order.getDisplayed());
+		}
+	}
+	
+	/**
+	 * An iceberg showed a fresh slice of the given size from its reserve.
+	 */
+	public void onReplenished(Order order, int quantity)
+	{
+		if (offHeapBook != null)
+		{
+			offHeapBook.requeue(order.getId());
+		}
+		
+		Book book = books.get(order.getTicker());
+		if (book != null)
+		{
+			book.change(order.getType(), order.getPrice(), quantity);
+		}
+	}
+	
+	/**
+	 * Quantity taken off the displayed part of an open order.
+	 */
+	public void onRemoved(Order order, int quantity)
+	{
+		if (offHeapBook != null)
+		{
+			offHeapBook.setQuantity(order.getId(), order.isExecuted() ? 0 : order.getQuantity());
+		}
+		
+		Book book = books.get(order.getTicker());
+		if (book != null)
+		{
+			book.change(order.getType(), order.getPrice(), -quantity);
+		}
+	}
+	
+	public void invalidate(String ticker)
+	{
+		books.remove(ticker);
+		if (offHeapBook == null)
+		{
+			return;
+		}
+		
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+		{
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+			{
+				@Override
+				public void afterCommit()
+				{
+					loadOffHeapBook(ticker);
+				}
+			});
+		}
+		else
+		{
+			loadOffHeapBook(ticker);
+		}
+	}
+	
+	/**
+	 * Replaces a ticker's orders in the off-heap store with its open orders in the 
+	 * table, by price and then time priority.
+	 */
+	public void loadOffHeapBook(String ticker)
+	{
+		if (offHeapBook == null)
+		{
+			return;
+		}
+		
+		ReentrantLock lock = locks.get(ticker);
+		lock.lock();
+		try
+		{
+			offHeapBook.removeAll(ticker);
+			for (RestingOrder order : orderRepo.findRestingAtOrAbove(ticker, OrderType.BUY, -Double.MAX_VALUE))
+			{
+				offHeapBook.add(order.getId(), ticker, order.getTraderName(), OrderType.BUY, order.getPrice(),
+						order.getQuantity());
+			}
+			for (RestingOrder order : orderRepo.findRestingAtOrBelow(ticker, OrderType.SELL, Double.MAX_VALUE))
+			{
+				offHeapBook.add(order.getId(), ticker, order.getTraderName(), OrderType.SELL, order.getPrice(),
+						order.getQuantity());
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	private Book book(String ticker)
+	{
+		Book book = books.get(ticker);
+		if (book == null)
+		{
+			ReentrantLock lock = locks.get(ticker);
+			lock.lock();
+			try
+			{
+				book = books.get(ticker);
+				if (book == null)
+				{
+					book = new Book();
+					for (Object[] level : orderRepo.findOpenLevels(ticker))
+					{
+						book.change((OrderType) level[0], (Double) level[1], (Long) level[2]);
+					}
+					if (!TransactionSynchronizationManager.isActualTransactionActive())
+					{
+						books.put(ticker, book);
+					}
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+		return book;
+	}
+	
+	private static class Book
+	{
+		private final NavigableMap<Double, Long> bids = new TreeMap<>(Collections.reverseOrder());
+		private final NavigableMap<Double, Long> asks = new TreeMap<>();
+		
+		private volatile PriceLevel bestBid;
+		private volatile PriceLevel bestAsk;
+		
+		NavigableMap<Double, Long> side(OrderType type)
+		{
+			return type.equals(OrderType.BUY) ? bids : asks;
+		}
+		
+		synchronized void change(OrderType type, double price, long quantity)
+		{
+			NavigableMap<Double, Long> side = side(type);
+			
+			Long current = side.get(price);
+			long updated = (current == null ? 0 : current) + quantity;
+			if (updated > 0)
+			{
+				side.put(price, updated);
+			}
+			else
+			{
+				side.remove(price);
+			}
+			
+			Map.Entry<Double, Long> touch = side.firstEntry();
+			PriceLevel best = touch == null ? null : new PriceLevel(touch.getKey(), touch.getValue());
+			if (type.equals(OrderType.BUY))
+			{
+				bestBid = best;
+			}
+			else
+			{
+				bestAsk = best;
+			}
+		}
+	}
+}
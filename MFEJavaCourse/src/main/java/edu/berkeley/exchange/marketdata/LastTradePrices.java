@@ -0,0 +1,75 @@
+package edu.berkeley.exchange.marketdata;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.Trade;
+import edu.berkeley.exchange.order.TradeListener;
+
+/**
+ * Last executed price per ticker, kept current from the trade stream. A ticker 
+ * that has not traded since startup is seeded once from the ORDERS table; 
+ * tickers that have never traded report NaN.
+ */
+@Component
+public class LastTradePrices implements TradeListener
+{
+	private OrderRepository orderRepo;
+	private ConcurrentMap<String, Double> prices = new ConcurrentHashMap<>();
+	
+	@Autowired
+	public LastTradePrices(OrderRepository orderRepo)
+	{
+		this.orderRepo = orderRepo;
+	}
+	
+	@Override
+	public void onTrade(Trade trade) 
+	{
+		prices.put(trade.getTicker(), trade.getPrice());
+	}
+	
+	public double getLastPrice(String ticker)
+	{
+		Double price = prices.get(ticker);
+		if (price == null)
+		{
+			Order lastExecuted = orderRepo.findTopByTickerAndExecutedOrderByIdDesc(ticker, true);
+			price = lastExecuted == null ? Double.NaN : lastExecuted.getPrice();
+			
+			Double previous = prices.putIfAbsent(ticker, price);
+			if (previous != null)
+			{
+				price = previous;
+			}
+		}
+		return price;
+	}
+	
+	/**
+	 * A copy of the last prices of the given tickers, seeding any that are missing 
+	 * first, so readers of the copy never query and see no later trades.
+	 */
+	public Map<String, Double> snapshot(Iterable<String> tickers)
+	{
+		Map<String, Double> snapshot = new HashMap<>();
+		for (String ticker : tickers)
+		{
+			snapshot.put(ticker, getLastPrice(ticker));
+		}
+		return Collections.unmodifiableMap(snapshot);
+	}
+	
+	public void setLastPrice(String ticker, double price)
+	{
+		prices.put(ticker, price);
+	}
+}
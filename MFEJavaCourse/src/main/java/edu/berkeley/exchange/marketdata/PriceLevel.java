@@ -0,0 +1,21 @@
+package edu.berkeley.exchange.marketdata;
+
+public class PriceLevel 
+{
+	private final double price;
+	private final long quantity;
+	
+	public PriceLevel(double price, long quantity)
+	{
+		this.price = price;
+		this.quantity = quantity;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public long getQuantity() {
+		return quantity;
+	}
+}
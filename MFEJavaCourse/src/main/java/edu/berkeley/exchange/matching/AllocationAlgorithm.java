@@ -0,0 +1,8 @@
+package edu.berkeley.exchange.matching;
+
+public enum AllocationAlgorithm 
+{
+	FIFO,
+	PRO_RATA,
+	PRO_RATA_TOP_ORDER
+}
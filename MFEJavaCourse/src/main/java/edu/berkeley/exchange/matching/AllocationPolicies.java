@@ -0,0 +1,33 @@
+package edu.berkeley.exchange.matching;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Allocation algorithm per security. Securities without one are matched by the 
+ * original best-price loop in ExchangeServiceImpl.
+ */
+@Component
+public class AllocationPolicies 
+{
+	private ConcurrentMap<String, AllocationAlgorithm> algorithms = new ConcurrentHashMap<>();
+	
+	public AllocationAlgorithm getAlgorithm(String ticker)
+	{
+		return algorithms.get(ticker);
+	}
+	
+	public void setAlgorithm(String ticker, AllocationAlgorithm algorithm)
+	{
+		if (algorithm == null)
+		{
+			algorithms.remove(ticker);
+		}
+		else
+		{
+			algorithms.put(ticker, algorithm);
+		}
+	}
+}
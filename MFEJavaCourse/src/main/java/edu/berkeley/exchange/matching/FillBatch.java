@@ -0,0 +1,209 @@
+package edu.berkeley.exchange.matching;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.Trade;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingKey;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+/**
+ * Collects the effects of many fills in one security so they can be written with 
+ * one save per repository: order rows, net capital change per trader and shares 
+ * bought per trader. Changes for the aggressor, if there is one, are applied to 
+ * the aggressor's own Trader instance so a caller holding it sees them. When 
+ * credits are deferred, sale proceeds and shares bought are kept aside for 
+ * end-of-day settlement instead of being written.
+ */
+public class FillBatch 
+{
+	private final Security security;
+	private final Trader aggressor;
+	
+	private final List<Order> orders = new ArrayList<>();
+	private final List<Trade> trades = new ArrayList<>();
+	private final Map<String, Double> capitalChanges = new LinkedHashMap<>();
+	private final Map<String, Integer> sharesBought = new LinkedHashMap<>();
+	private final Map<String, Trader> traders = new HashMap<>();
+	private final Map<String, Double> deferredProceeds = new LinkedHashMap<>();
+	private final Map<String, Integer> deferredShares = new LinkedHashMap<>();
+	private boolean deferCredits;
+	
+	public FillBatch(Security security, Trader aggressor)
+	{
+		this.security = security;
+		this.aggressor = aggressor;
+	}
+	
+	/**
+	 * Fills part or all of an open order. A complete fill turns the order into its 
+	 * executed record; a partial fill leaves the remainder open and records the 
+	 * executed part as a new order, as the continuous matching loop does. Returns 
+	 * the quantity an iceberg newly shows from its reserve, or 0.
+	 */
+	public int fill(Order order, int quantity, double price)
+	{
+		int replenished = 0;
+		if (quantity == order.getQuantity())
+		{
+			order.setPrice(price);
+			order.setExecuted(true);
+		}
+		else
+		{
+			replenished = order.reduce(quantity);
+			execute(order.getTrader(), quantity, price, order.getType());
+		}
+		orders.add(order);
+		return replenished;
+	}
+	
+	public void execute(Trader trader, int quantity, double price, OrderType type)
+	{
+		Order executed = new Order(security, trader, price, quantity, type);
+		executed.setExecuted(true);
+		orders.add(executed);
+	}
+	
+	public void add(Order order)
+	{
+		orders.add(order);
+	}
+	
+	public void addCapital(Trader trader, double amount)
+	{
+		if (amount == 0)
+		{
+			return;
+		}
+		Double current = capitalChanges.get(trader.getName());
+		capitalChanges.put(trader.getName(), (current == null ? 0 : current) + amount);
+		traders.put(trader.getName(), trader);
+	}
+	
+	public void deferCredits()
+	{
+		this.deferCredits = true;
+	}
+	
+	/**
+	 * Pays a seller for shares sold, unless credits are deferred.
+	 */
+	public void addProceeds(Trader seller, double amount)
+	{
+		if (!deferCredits)
+		{
+			addCapital(seller, amount);
+			return;
+		}
+		Double current = deferredProceeds.get(seller.getName());
+		deferredProceeds.put(seller.getName(), (current == null ? 0 : current) + amount);
+	}
+	
+	public void addShares(Trader trader, int quantity)
+	{
+		if (deferCredits)
+		{
+			Integer deferred = deferredShares.get(trader.getName());
+			deferredShares.put(trader.getName(), (deferred == null ? 0 : deferred) + quantity);
+			return;
+		}
+		Integer current = sharesBought.get(trader.getName());
+		sharesBought.put(trader.getName(), (current == null ? 0 : current) + quantity);
+		traders.put(trader.getName(), trader);
+	}
+	
+	public void addTrade(Trade trade)
+	{
+		trades.add(trade);
+	}
+	
+	public List<Trade> getTrades() {
+		return trades;
+	}
+	
+	public Security getSecurity() {
+		return security;
+	}
+	
+	public Map<String, Double> getDeferredProceeds() {
+		return deferredProceeds;
+	}
+	
+	public Map<String, Integer> getDeferredShares() {
+		return deferredShares;
+	}
+	
+	public boolean hasDeferredCredits()
+	{
+		return !deferredProceeds.isEmpty() || !deferredShares.isEmpty();
+	}
+	
+	public boolean isEmpty()
+	{
+		return orders.isEmpty();
+	}
+	
+	public void save(OrderRepository orderRepo, TraderRepository traderRepo, HoldingRepository holdingRepo)
+	{
+		if (!orders.isEmpty())
+		{
+			orderRepo.save(orders);
+		}
+		
+		Map<String, Double> changes = new LinkedHashMap<>(capitalChanges);
+		if (aggressor != null && changes.containsKey(aggressor.getName()))
+		{
+			aggressor.setCapital(aggressor.getCapital() + changes.remove(aggressor.getName()));
+			aggressor.setVersion(traderRepo.save(aggressor).getVersion());
+		}
+		if (!changes.isEmpty())
+		{
+			List<Trader> counterparties = traderRepo.findAll(changes.keySet());
+			for (Trader trader : counterparties)
+			{
+				trader.setCapital(trader.getCapital() + changes.get(trader.getName()));
+			}
+			traderRepo.save(counterparties);
+		}
+		
+		if (!sharesBought.isEmpty())
+		{
+			List<HoldingKey> keys = new ArrayList<>(sharesBought.size());
+			for (String traderName : sharesBought.keySet())
+			{
+				keys.add(new HoldingKey(traderName, security.getTicker()));
+			}
+			
+			Map<String, Holding> holdings = new LinkedHashMap<>();
+			for (Holding holding : holdingRepo.findAll(keys))
+			{
+				holdings.put(holding.getKey().getTraderName(), holding);
+			}
+			for (Map.Entry<String, Integer> bought : sharesBought.entrySet())
+			{
+				Holding holding = holdings.get(bought.getKey());
+				if (holding == null)
+				{
+					holdings.put(bought.getKey(), 
+							new Holding(traders.get(bought.getKey()), security, bought.getValue()));
+				}
+				else
+				{
+					holding.setQuantity(holding.getQuantity() + bought.getValue());
+				}
+			}
+			holdingRepo.save(holdings.values());
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package edu.berkeley.exchange.matching;
+
+/**
+ * Splits an incoming quantity across the resting orders of one price level, given 
+ * their sizes in time priority. Pro-rata shares are rounded down to whole lots and 
+ * the lots left over go out in time priority. With top-order priority the oldest 
+ * order at the level is filled first and the rest of the level shares what 
+ * remains pro-rata.
+ */
+public class PriceLevelAllocator 
+{
+	private PriceLevelAllocator()
+	{
+		
+	}
+	
+	public static int[] allocate(AllocationAlgorithm algorithm, int[] sizes, int incoming)
+	{
+		return allocate(algorithm, sizes, incoming, 1);
+	}
+	
+	/**
+	 * Allocates in whole lots: pro-rata shares are rounded down to a multiple of the 
+	 * lot size before the lots left over go out in time priority. Sizes and the 
+	 * incoming quantity are expected in whole lots already.
+	 */
+	public static int[] allocate(AllocationAlgorithm algorithm, int[] sizes, int incoming, int lotSize)
+	{
+		int lot = Math.max(lotSize, 1);
+		int[] allocations = new int[sizes.length];
+		if (sizes.length == 0 || incoming <= 0)
+		{
+			return allocations;
+		}
+		
+		switch (algorithm)
+		{
+		case PRO_RATA:
+			proRata(sizes, allocations, 0, incoming, lot);
+			break;
+		case PRO_RATA_TOP_ORDER:
+			allocations[0] = Math.min(sizes[0], incoming);
+			proRata(sizes, allocations, 1, incoming - allocations[0], lot);
+			break;
+		default:
+			fifo(sizes, allocations, 0, incoming);
+			break;
+		}
+		return allocations;
+	}
+	
+	private static int fifo(int[] sizes, int[] allocations, int from, int quantity)
+	{
+		for (int i = from; i < sizes.length && quantity > 0; i++)
+		{
+			int fill = Math.min(sizes[i] - allocations[i], quantity);
+			allocations[i] += fill;
+			quantity -= fill;
+		}
+		return quantity;
+	}
+	
+	private static void proRata(int[] sizes, int[] allocations, int from, int quantity, int lot)
+	{
+		long total = 0;
+		for (int i = from; i < sizes.length; i++)
+		{
+			total += sizes[i];
+		}
+		if (quantity <= 0 || total == 0)
+		{
+			return;
+		}
+		if (quantity >= total)
+		{
+			fifo(sizes, allocations, from, quantity);
+			return;
+		}
+		
+		int allocated = 0;
+		for (int i = from; i < sizes.length; i++)
+		{
+			int share = (int) (quantity * (long) sizes[i] / total);
+			share -= share % lot;
+			allocations[i] += share;
+			allocated += share;
+		}
+		fifo(sizes, allocations, from, quantity - allocated);
+	}
+}
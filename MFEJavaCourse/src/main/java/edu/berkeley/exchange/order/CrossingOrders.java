@@ -0,0 +1,97 @@
+package edu.berkeley.exchange.order;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.springframework.data.domain.PageRequest;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+
+/**
+ * The open orders an incoming order at a price crosses, best first, read as 
+ * projections a page at a time. Each page starts after the last order read, by 
+ * price, time priority and id, so matching reads only as far into the book as it 
+ * fills and orders it has filled are never read again. Every resting order shows 
+ * at least one share, so a page holds no more orders than the incoming quantity 
+ * could fill.
+ */
+public class CrossingOrders implements Iterable<RestingOrder>
+{
+	private static final int MAX_PAGE_SIZE = 100;
+	
+	private final OrderRepository orderRepo;
+	private final String ticker;
+	private final OrderType restingType;
+	private final double price;
+	private final int pageSize;
+	
+	/**
+	 * Resting orders crossed by an incoming order of the given type, price and 
+	 * quantity.
+	 */
+	public CrossingOrders(OrderRepository orderRepo, String ticker, OrderType incomingType, double price, 
+			int quantity)
+	{
+		this.orderRepo = orderRepo;
+		this.ticker = ticker;
+		this.restingType = incomingType.equals(OrderType.BUY) ? OrderType.SELL : OrderType.BUY;
+		this.price = price;
+		this.pageSize = Math.max(1, Math.min(quantity, MAX_PAGE_SIZE));
+	}
+	
+	@Override
+	public Iterator<RestingOrder> iterator() 
+	{
+		return new Cursor();
+	}
+	
+	private class Cursor implements Iterator<RestingOrder>
+	{
+		private List<RestingOrder> page = Collections.emptyList();
+		private int index;
+		private boolean exhausted;
+		
+		private double afterPrice = restingType.equals(OrderType.SELL) ? -Double.MAX_VALUE : Double.MAX_VALUE;
+		private long afterPriority = Long.MIN_VALUE;
+		private long afterId = Long.MIN_VALUE;
+		
+		@Override
+		public boolean hasNext() 
+		{
+			if (index < page.size())
+			{
+				return true;
+			}
+			if (exhausted)
+			{
+				return false;
+			}
+			
+			PageRequest request = new PageRequest(0, pageSize);
+			page = restingType.equals(OrderType.SELL) ?
+					orderRepo.findRestingAtOrBelowAfter(ticker, restingType, price, afterPrice, afterPriority, 
+							afterId, request) :
+					orderRepo.findRestingAtOrAboveAfter(ticker, restingType, price, afterPrice, afterPriority, 
+							afterId, request);
+			index = 0;
+			exhausted = page.size() < pageSize;
+			return !page.isEmpty();
+		}
+		
+		@Override
+		public RestingOrder next() 
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			RestingOrder resting = page.get(index++);
+			afterPrice = resting.getPrice();
+			afterPriority = resting.getPriority();
+			afterId = resting.getId();
+			return resting;
+		}
+	}
+}
@@ -7,17 +7,23 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import edu.berkeley.exchange.security.Security;
 import edu.berkeley.exchange.trader.Trader;
 
 @Entity
-@Table(name="ORDERS")
+@Table(name="ORDERS", indexes={
+		@Index(name="IDX_ORDERS_BOOK", columnList="ticker,type,executed,price,priority"),
+		@Index(name="IDX_ORDERS_TRADER_HISTORY", columnList="traderName,executed,id"),
+		@Index(name="IDX_ORDERS_TICKER_HISTORY", columnList="ticker,executed,id") })
 public class Order 
 {
 	public enum OrderType {
@@ -25,8 +31,20 @@ public class Order
 		SELL
 	}
 	
+	/**
+	 * What a pegged order's price follows: the best price on its own side, the best 
+	 * price on the opposite side, or the midpoint between the two.
+	 */
+	public enum PegType {
+		PRIMARY,
+		MARKET,
+		MIDPOINT
+	}
+	
 	@Id
-	@GeneratedValue(strategy=GenerationType.AUTO)
+	@GeneratedValue(generator="orderId")
+	@GenericGenerator(name="orderId", strategy="edu.berkeley.exchange.order.OrderIdGenerator", 
+			parameters=@Parameter(name="sequence_name", value=OrderIdGenerator.SEQUENCE))
 	private long id;
 	
 	@Column(insertable=false, updatable=false)
@@ -51,6 +69,31 @@ public class Order
 	
 	private boolean executed;
 	
+	/**
+	 * Displayed size of each slice of an iceberg order, or 0 for an order shown in full.
+	 */
+	private int peak;
+	
+	/**
+	 * Quantity currently shown in the book; all of it unless this is an iceberg.
+	 */
+	private int displayed;
+	
+	/**
+	 * Time priority within a price. An iceberg takes a new one each time it shows 
+	 * a fresh slice.
+	 */
+	private long priority;
+	
+	/**
+	 * Set for a pegged order, whose price is reset from its peg's reference price 
+	 * plus pegOffset whenever that reference moves, but never beyond pegLimit.
+	 */
+	@Enumerated(EnumType.STRING)
+	private PegType pegType;
+	private double pegOffset;
+	private double pegLimit;
+	
 	protected Order()
 	{
 		
@@ -68,10 +111,39 @@ public class Order
 		this.type = type;
 		this.executed = false;
 		this.timestamp = new Date(System.currentTimeMillis());
+		this.displayed = quantity;
+		this.priority = TimePriority.next();
+	}
+	
+	/**
+	 * An iceberg order showing at most peak of its quantity at a time, the rest 
+	 * held in reserve.
+	 */
+	public Order(Security security, Trader trader, double price, int quantity,
+			OrderType type, int peak) 
+	{
+		this(security, trader, price, quantity, type);
+		if (peak > 0 && peak < quantity)
+		{
+			this.peak = peak;
+			this.displayed = peak;
+		}
 	}
 
 	private Date timestamp;
 
+	public long getId() {
+		return id;
+	}
+	
+	/**
+	 * Gives an incoming order the id it is reported under before it is known 
+	 * whether any of it will rest; see {@link OrderRepository#nextId()}.
+	 */
+	public void setId(long id) {
+		this.id = id;
+	}
+
 	public Security getSecurity() {
 		return security;
 	}
@@ -112,6 +184,86 @@ public class Order
 
 	public void setQuantity(int quantity) {
 		this.quantity = quantity;
+		this.displayed = peak == 0 ? quantity : Math.min(displayed, quantity);
+	}
+	
+	/**
+	 * Takes a fill or a cancelled part off the order, from the displayed slice 
+	 * first. When an iceberg's slice runs out with reserve left, the next slice is 
+	 * shown at the back of the queue for its price. Returns the quantity newly 
+	 * shown, or 0 if no slice was refreshed.
+	 */
+	public int reduce(int amount)
+	{
+		quantity -= amount;
+		displayed = Math.max(displayed - amount, 0);
+		if (peak > 0 && displayed == 0 && quantity > 0)
+		{
+			displayed = Math.min(peak, quantity);
+			priority = TimePriority.next();
+			return displayed;
+		}
+		return 0;
+	}
+	
+	public int getPeak() {
+		return peak;
+	}
+	
+	public boolean isIceberg() {
+		return peak > 0;
+	}
+
+	public int getDisplayed() {
+		return displayed;
+	}
+	
+	public int getHidden() {
+		return quantity - displayed;
+	}
+
+	public long getPriority() {
+		return priority;
+	}
+	
+	/**
+	 * Moves a pegged order to a new price, where it queues behind the orders 
+	 * already resting there.
+	 */
+	public void reprice(double price)
+	{
+		this.price = price;
+		this.priority = TimePriority.next();
+	}
+	
+	public void setPeg(PegType pegType, double pegOffset, double pegLimit) {
+		this.pegType = pegType;
+		this.pegOffset = pegOffset;
+		this.pegLimit = pegLimit;
+	}
+	
+	public PegType getPegType() {
+		return pegType;
+	}
+	
+	public boolean isPegged() {
+		return pegType != null;
+	}
+	
+	public double getPegOffset() {
+		return pegOffset;
+	}
+	
+	public double getPegLimit() {
+		return pegLimit;
+	}
+	
+	/**
+	 * Price the capital of an open BUY was reserved at: the limit of a pegged 
+	 * order, whose price moves underneath it, otherwise the price itself.
+	 */
+	public double getReservedPrice() {
+		return pegType != null ? pegLimit : price;
 	}
 
 	public OrderType getType() {
@@ -126,8 +278,16 @@ public class Order
 		return executed;
 	}
 
+	/**
+	 * Marking an order executed dates it to the day of the trade, which is when it 
+	 * settles.
+	 */
 	public void setExecuted(boolean executed) {
 		this.executed = executed;
+		if (executed)
+		{
+			this.timestamp = new Date(System.currentTimeMillis());
+		}
 	}
 
 	public Date getTimestamp() {
@@ -0,0 +1,45 @@
+package edu.berkeley.exchange.order;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Backfills displayed quantities and time priority on open orders written before 
+ * they were kept, so those orders do not enter the book showing nothing at the 
+ * front of the queue. Each backfill is a full scan of ORDERS, so it runs once per 
+ * database and is recorded as an OrderMigration; later starts only look the 
+ * record up. It runs while the context is built, before ExchangeReadiness warms 
+ * the books. The updates only touch rows still at zero, so a start interrupted 
+ * before the record is written simply runs them again.
+ */
+@Component
+public class OrderBackfill 
+{
+	static final String DISPLAYED = "backfill-displayed";
+	static final String PRIORITY = "backfill-priority";
+	
+	private OrderRepository orderRepo;
+	private OrderMigrationRepository migrationRepo;
+	
+	@Autowired
+	public OrderBackfill(OrderRepository orderRepo, OrderMigrationRepository migrationRepo)
+	{
+		this.orderRepo = orderRepo;
+		this.migrationRepo = migrationRepo;
+	}
+	
+	@PostConstruct
+	public void backfill()
+	{
+		if (!migrationRepo.exists(DISPLAYED))
+		{
+			migrationRepo.save(new OrderMigration(DISPLAYED, orderRepo.backfillDisplayed()));
+		}
+		if (!migrationRepo.exists(PRIORITY))
+		{
+			migrationRepo.save(new OrderMigration(PRIORITY, orderRepo.backfillPriority()));
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package edu.berkeley.exchange.order;
+
+import java.io.Serializable;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * Draws order ids from ORDER_SEQ, except for an incoming order that was already 
+ * given one before matching, which keeps it when its remainder rests.
+ */
+public class OrderIdGenerator extends SequenceStyleGenerator
+{
+	public static final String SEQUENCE = "ORDER_SEQ";
+	
+	@Override
+	public Serializable generate(SessionImplementor session, Object object)
+	{
+		long id = ((Order) object).getId();
+		return id != 0 ? id : super.generate(session, object);
+	}
+}
@@ -0,0 +1,47 @@
+package edu.berkeley.exchange.order;
+
+import java.sql.Timestamp;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Record of a one-time change to the ORDERS data. One exists per change applied, 
+ * which is what stops it from being applied again on the next start.
+ */
+@Entity
+public class OrderMigration 
+{
+	@Id
+	private String name;
+	
+	private int orders;
+	private Timestamp appliedAt;
+	
+	protected OrderMigration()
+	{
+		
+	}
+	
+	public OrderMigration(String name, int orders)
+	{
+		this.name = name;
+		this.orders = orders;
+		this.appliedAt = new Timestamp(System.currentTimeMillis());
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Orders the change rewrote.
+	 */
+	public int getOrders() {
+		return orders;
+	}
+	
+	public Timestamp getAppliedAt() {
+		return appliedAt;
+	}
+}
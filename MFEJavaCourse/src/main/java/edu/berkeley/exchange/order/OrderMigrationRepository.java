@@ -0,0 +1,7 @@
+package edu.berkeley.exchange.order;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OrderMigrationRepository extends JpaRepository<OrderMigration, String> {
+
+}
@@ -1,17 +1,242 @@
 package edu.berkeley.exchange.order;
 
+import java.sql.Date;
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
 import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
 import edu.berkeley.exchange.security.Security;
 import edu.berkeley.exchange.trader.Trader;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
 	
-	public Order findTopBySecurityAndTypeAndExecutedOrderByPriceDesc(Security security, OrderType type, 
+	static final String ROUNDED_DOWN = "(case when ?5 > 0.0 then (floor((?4 + o.pegOffset) * ?5 + ?6) / ?5) "
+			+ "else (?4 + o.pegOffset) end)";
+	static final String ROUNDED_UP = "(case when ?5 > 0.0 then (ceiling((?4 + o.pegOffset) * ?5 - ?6) / ?5) "
+			+ "else (?4 + o.pegOffset) end)";
+	static final String PEGGED_BUY_PRICE = "(case when " + ROUNDED_DOWN + " < o.pegLimit and " + ROUNDED_DOWN 
+			+ " < ?7 then " + ROUNDED_DOWN + " when o.pegLimit < ?7 then o.pegLimit else ?7 end)";
+	static final String PEGGED_SELL_PRICE = "(case when " + ROUNDED_UP + " > o.pegLimit and " + ROUNDED_UP 
+			+ " > ?7 then " + ROUNDED_UP + " when o.pegLimit > ?7 then o.pegLimit else ?7 end)";
+	
+	public static final String HISTORY_FETCH_SIZE = "500";
+	
+	public Order findTopBySecurityAndTypeAndExecutedOrderByPriceDescPriorityAsc(Security security, OrderType type, 
 			boolean executed);
-	public Order findTopBySecurityAndTypeAndExecutedOrderByPriceAsc(Security security, OrderType type,
+	public Order findTopBySecurityAndTypeAndExecutedOrderByPriceAscPriorityAsc(Security security, OrderType type,
 			boolean executed);
 	public Order findTopBySecurityAndTraderAndTypeAndExecutedOrderByIdDesc(Security security,
 			Trader trader, OrderType type, boolean executed);
+	public Order findTopByTickerAndExecutedOrderByIdDesc(String ticker, boolean executed);
+	public Order findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(String traderName, String ticker, 
+			boolean executed);
+	public Order findTopByTraderNameAndTickerAndTypeAndPriceAndExecutedOrderByIdAsc(String traderName, 
+			String ticker, OrderType type, double price, boolean executed);
+	public List<Order> findByTraderNameAndTickerAndTypeAndPriceAndExecutedOrderByIdAsc(String traderName, 
+			String ticker, OrderType type, double price, boolean executed, Pageable pageable);
+	public long countByTraderNameAndTickerAndTypeAndPriceAndExecutedAndIdLessThan(String traderName, 
+			String ticker, OrderType type, double price, boolean executed, long id);
+	
+	@Query("select o from Order o where o.executed = false and o.id > ?1 order by o.id")
+	public List<Order> findOpenOrdersAfter(long id, Pageable pageable);
+	
+	public List<Order> findByTickerAndTypeAndExecutedAndPriceGreaterThanEqualOrderByPriceDescPriorityAsc(
+			String ticker, OrderType type, boolean executed, double price);
+	public List<Order> findByTickerAndTypeAndExecutedAndPriceLessThanEqualOrderByPriceAscPriorityAsc(
+			String ticker, OrderType type, boolean executed, double price);
+	
+	@Query("select new edu.berkeley.exchange.order.RestingOrder(o.id, o.traderName, o.price, o.quantity, "
+			+ "o.displayed) from Order o where o.ticker = ?1 and o.type = ?2 and o.executed = false "
+			+ "and o.price <= ?3 order by o.price asc, o.priority asc, o.id asc")
+	public List<RestingOrder> findRestingAtOrBelow(String ticker, OrderType type, double price);
+	
+	@Query("select new edu.berkeley.exchange.order.RestingOrder(o.id, o.traderName, o.price, o.quantity, "
+			+ "o.displayed) from Order o where o.ticker = ?1 and o.type = ?2 and o.executed = false "
+			+ "and o.price >= ?3 order by o.price desc, o.priority asc, o.id asc")
+	public List<RestingOrder> findRestingAtOrAbove(String ticker, OrderType type, double price);
+	
+	@Query("select new edu.berkeley.exchange.order.RestingOrder(o.id, o.traderName, o.price, o.quantity, "
+			+ "o.displayed, o.priority) from Order o where o.ticker = ?1 and o.type = ?2 and o.executed = false "
+			+ "and o.price <= ?3 and (o.price > ?4 or (o.price = ?4 and (o.priority > ?5 "
+			+ "or (o.priority = ?5 and o.id > ?6)))) order by o.price asc, o.priority asc, o.id asc")
+	public List<RestingOrder> findRestingAtOrBelowAfter(String ticker, OrderType type, double price, 
+			double afterPrice, long afterPriority, long afterId, Pageable pageable);
+	
+	@Query("select new edu.berkeley.exchange.order.RestingOrder(o.id, o.traderName, o.price, o.quantity, "
+			+ "o.displayed, o.priority) from Order o where o.ticker = ?1 and o.type = ?2 and o.executed = false "
+			+ "and o.price >= ?3 and (o.price < ?4 or (o.price = ?4 and (o.priority > ?5 "
+			+ "or (o.priority = ?5 and o.id > ?6)))) order by o.price desc, o.priority asc, o.id asc")
+	public List<RestingOrder> findRestingAtOrAboveAfter(String ticker, OrderType type, double price, 
+			double afterPrice, long afterPriority, long afterId, Pageable pageable);
+	
+	@Query("select o.type, o.price, sum(o.displayed) from Order o where o.ticker = ?1 and o.executed = false "
+			+ "group by o.type, o.price")
+	public List<Object[]> findOpenLevels(String ticker);
+	
+	/**
+	 * Like findOpenLevels, but with the whole open quantity of each order, hidden 
+	 * iceberg reserve included.
+	 */
+	@Query("select o.type, o.price, sum(o.quantity) from Order o where o.ticker = ?1 and o.executed = false "
+			+ "group by o.type, o.price")
+	public List<Object[]> findOpenQuantityLevels(String ticker);
+	
+	@Query("select o from Order o where o.executed = true and o.traderName = ?1 and o.id > ?2 "
+			+ "order by o.id")
+	@QueryHints(@QueryHint(name="org.hibernate.fetchSize", value=HISTORY_FETCH_SIZE))
+	public List<Order> findExecutedByTraderAfter(String traderName, long id, Pageable pageable);
+	
+	@Query("select o from Order o where o.executed = true and o.ticker = ?1 and o.id > ?2 "
+			+ "order by o.id")
+	@QueryHints(@QueryHint(name="org.hibernate.fetchSize", value=HISTORY_FETCH_SIZE))
+	public List<Order> findExecutedByTickerAfter(String ticker, long id, Pageable pageable);
+	
+	@Query("select o from Order o where o.executed = true and o.timestamp >= ?1 and o.timestamp < ?2 "
+			+ "and o.id > ?3 order by o.id")
+	@QueryHints(@QueryHint(name="org.hibernate.fetchSize", value=HISTORY_FETCH_SIZE))
+	public List<Order> findExecutedBetweenAfter(Date from, Date to, long id, Pageable pageable);
+	
+	@Query("select o from Order o where o.executed = true and o.traderName = ?1 "
+			+ "and o.timestamp >= ?2 and o.timestamp < ?3 and o.id > ?4 order by o.id")
+	@QueryHints(@QueryHint(name="org.hibernate.fetchSize", value=HISTORY_FETCH_SIZE))
+	public List<Order> findExecutedByTraderBetweenAfter(String traderName, Date from, Date to, long id, 
+			Pageable pageable);
+	
+	@Query("select distinct o.timestamp from Order o where o.executed = true and o.timestamp < ?1 "
+			+ "order by o.timestamp")
+	public List<Date> findExecutedDatesBefore(Date cutoff);
+	
+	@Query("select distinct o.ticker from Order o where o.executed = true and o.timestamp = ?1")
+	public List<String> findExecutedTickersOn(Date date);
+	
+	@Query("select o from Order o where o.executed = true and o.ticker = ?1 and o.timestamp = ?2 "
+			+ "and o.id > ?3 order by o.id")
+	@QueryHints(@QueryHint(name="org.hibernate.fetchSize", value=HISTORY_FETCH_SIZE))
+	public List<Order> findExecutedByTickerOnAfter(String ticker, Date date, long id, Pageable pageable);
+	
+	@Query("select o.ticker, o.timestamp, sum(o.price * o.quantity), sum(o.quantity) from Order o "
+			+ "where o.executed = true and o.ticker in ?1 and o.timestamp >= ?2 "
+			+ "group by o.ticker, o.timestamp order by o.timestamp")
+	public List<Object[]> findDailyVolumeWeightedPrices(Collection<String> tickers, Date since);
+	
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("delete from Order o where o.id in ?1")
+	public int deleteByIdIn(Collection<Long> ids);
+	
+	/**
+	 * Shows open orders written before displayed quantities were kept in full, 
+	 * since only an exhausted iceberg slice is ever left showing nothing.
+	 */
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("update Order o set o.displayed = o.quantity where o.executed = false and o.displayed = 0 "
+			+ "and o.peak = 0")
+	public int backfillDisplayed();
+	
+	/**
+	 * Gives orders written before time priority was kept their ids as priority, 
+	 * which keeps them in arrival order and ahead of every later order.
+	 */
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("update Order o set o.priority = o.id where o.priority = 0")
+	public int backfillPriority();
+	
+	@Query("select max(o.price) from Order o where o.ticker = ?1 and o.type = ?2 and o.executed = false "
+			+ "and o.pegType is null")
+	public Double findHighestUnpeggedPrice(String ticker, OrderType type);
+	
+	@Query("select min(o.price) from Order o where o.ticker = ?1 and o.type = ?2 and o.executed = false "
+			+ "and o.pegType is null")
+	public Double findLowestUnpeggedPrice(String ticker, OrderType type);
+	
+	public long countByTickerAndExecutedFalseAndPegTypeNotNull(String ticker);
+	
+	@Query("select max(o.price) from Order o where o.ticker = ?1 and o.type = ?2 and o.executed = false "
+			+ "and o.pegType in ?3")
+	public Double findHighestPeggedPrice(String ticker, OrderType type, Collection<PegType> pegTypes);
+	
+	@Query("select min(o.price) from Order o where o.ticker = ?1 and o.type = ?2 and o.executed = false "
+			+ "and o.pegType in ?3")
+	public Double findLowestPeggedPrice(String ticker, OrderType type, Collection<PegType> pegTypes);
+	
+	/**
+	 * Moves one type of pegged BUY to reference ?4 plus its offset, rounded down onto 
+	 * the tick (?5 ticks per unit, none if zero) and held at or below both its own 
+	 * limit and ?7. Only orders whose price changes are written, all taking time 
+	 * priority ?8.
+	 */
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("update Order o set o.price = " + PEGGED_BUY_PRICE + ", o.priority = ?8 where o.ticker = ?1 "
+			+ "and o.type = ?2 and o.pegType = ?3 and o.executed = false and o.price <> " + PEGGED_BUY_PRICE)
+	public int repricePeggedBuys(String ticker, OrderType type, PegType pegType, double reference,
+			double ticksPerUnit, double tolerance, double highest, long priority);
+	
+	/**
+	 * Moves one type of pegged SELL to reference ?4 plus its offset, rounded up onto 
+	 * the tick and held at or above both its own limit and ?7.
+	 */
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("update Order o set o.price = " + PEGGED_SELL_PRICE + ", o.priority = ?8 where o.ticker = ?1 "
+			+ "and o.type = ?2 and o.pegType = ?3 and o.executed = false and o.price <> " + PEGGED_SELL_PRICE)
+	public int repricePeggedSells(String ticker, OrderType type, PegType pegType, double reference,
+			double ticksPerUnit, double tolerance, double lowest, long priority);
+	
+	@Query("select o.traderName, sum(o.quantity) from Order o where o.ticker = ?1 and o.type = ?2 "
+			+ "and o.executed = false group by o.traderName")
+	public List<Object[]> findOpenQuantityByTrader(String ticker, OrderType type);
+	
+	@Query("select o.traderName, sum(case when o.pegType is null then o.price else o.pegLimit end * o.quantity) "
+			+ "from Order o where o.ticker = ?1 and o.type = ?2 and o.executed = false group by o.traderName")
+	public List<Object[]> findReservedCapitalByTrader(String ticker, OrderType type);
+	
+	@Query("select o.traderName, o.ticker, o.type, sum(o.quantity), sum(o.price * o.quantity), count(o) "
+			+ "from Order o where o.executed = true and o.timestamp = ?1 "
+			+ "group by o.traderName, o.ticker, o.type")
+	public List<Object[]> findExecutedTotalsByTrader(Date tradeDate);
+	
+	@Query("select count(o) from Order o where o.ticker = ?1 and o.executed = false and "
+			+ "(mod(o.quantity * ?2, ?3) <> 0 or mod(o.displayed * ?2, ?3) <> 0 or mod(o.peak * ?2, ?3) <> 0)")
+	public long countFractionalAfterSplit(String ticker, int numerator, int denominator);
+	
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("update Order o set o.quantity = o.quantity * ?2 / ?3, o.displayed = o.displayed * ?2 / ?3, "
+			+ "o.peak = o.peak * ?2 / ?3, o.price = o.price * ?3 / ?2, o.pegOffset = o.pegOffset * ?3 / ?2, "
+			+ "o.pegLimit = o.pegLimit * ?3 / ?2 where o.ticker = ?1 and o.executed = false")
+	public int splitOpenOrders(String ticker, int numerator, int denominator);
+	
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("update Order o set o.price = floor(o.price * ?2 + ?3) / ?2, "
+			+ "o.pegOffset = floor(o.pegOffset * ?2 + ?3) / ?2, o.pegLimit = floor(o.pegLimit * ?2 + ?3) / ?2 "
+			+ "where o.ticker = ?1 and o.type = 'BUY' and o.executed = false")
+	public int roundOpenBuysDown(String ticker, double ticksPerUnit, double tolerance);
+	
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("update Order o set o.price = ceiling(o.price * ?2 - ?3) / ?2, "
+			+ "o.pegOffset = ceiling(o.pegOffset * ?2 - ?3) / ?2, o.pegLimit = ceiling(o.pegLimit * ?2 - ?3) / ?2 "
+			+ "where o.ticker = ?1 and o.type = 'SELL' and o.executed = false")
+	public int roundOpenSellsUp(String ticker, double ticksPerUnit, double tolerance);
+	
+	/**
+	 * The id an incoming order is reported under. The row is only written with it 
+	 * if part of the order rests.
+	 */
+	@Query(value="select next value for " + OrderIdGenerator.SEQUENCE, nativeQuery=true)
+	public long nextId();
 }
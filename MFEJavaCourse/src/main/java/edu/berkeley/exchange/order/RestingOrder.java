@@ -0,0 +1,62 @@
+package edu.berkeley.exchange.order;
+
+/**
+ * The columns of an open order that matching reads, selected without joining 
+ * SECURITY or TRADER or putting an Order into the persistence context.
+ */
+public class RestingOrder 
+{
+	private final long id;
+	private final String traderName;
+	private final double price;
+	private final int quantity;
+	private final int displayed;
+	private final long priority;
+	
+	public RestingOrder(long id, String traderName, double price, int quantity)
+	{
+		this(id, traderName, price, quantity, quantity);
+	}
+	
+	public RestingOrder(long id, String traderName, double price, int quantity, int displayed)
+	{
+		this(id, traderName, price, quantity, displayed, 0);
+	}
+	
+	public RestingOrder(long id, String traderName, double price, int quantity, int displayed, long priority)
+	{
+		this.id = id;
+		this.traderName = traderName;
+		this.price = price;
+		this.quantity = quantity;
+		this.displayed = displayed;
+		this.priority = priority;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getTraderName() {
+		return traderName;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	/**
+	 * Quantity shown in the book, less than getQuantity for an iceberg.
+	 */
+	public int getDisplayed() {
+		return displayed;
+	}
+
+	public long getPriority() {
+		return priority;
+	}
+}
@@ -0,0 +1,142 @@
+package edu.berkeley.exchange.order;
+
+import java.sql.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.trader.Trader;
+
+/**
+ * A BUY stop triggers when a trade prints at or above the stop price and a SELL 
+ * stop when one prints at or below it. A stop-limit then enters the book as a 
+ * limit order at its limit price. A plain stop has no limit price and enters at 
+ * the triggering trade price widened by the configured protection band.
+ */
+@Entity
+@Table(name="STOP_ORDERS")
+@SequenceGenerator(name="stopOrderSeq", sequenceName="STOP_ORDER_SEQ", allocationSize=20)
+public class StopOrder 
+{
+	@Id
+	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator="stopOrderSeq")
+	private long id;
+	
+	@Column(insertable=false, updatable=false)
+	private String ticker;
+	
+	@ManyToOne(optional=false)
+	@JoinColumn(name="ticker", referencedColumnName="ticker")
+	private Security security;
+	
+	@Column(insertable=false, updatable=false)
+	private String traderName;
+	
+	@ManyToOne(optional=false)
+	@JoinColumn(name="traderName", referencedColumnName="name")
+	private Trader trader;
+	
+	private double stopPrice;
+	private double limitPrice;
+	private int quantity;
+	
+	@Enumerated(EnumType.STRING)
+	private OrderType type;
+	
+	private boolean triggered;
+	private double triggerPrice;
+	
+	private Date timestamp;
+	
+	protected StopOrder()
+	{
+		
+	}
+	
+	public StopOrder(Security security, Trader trader, double stopPrice, double limitPrice, 
+			int quantity, OrderType type)
+	{
+		this.security = security;
+		this.ticker = security.getTicker();
+		this.trader = trader;
+		this.traderName = trader.getName();
+		this.stopPrice = stopPrice;
+		this.limitPrice = limitPrice;
+		this.quantity = quantity;
+		this.type = type;
+		this.triggered = false;
+		this.timestamp = new Date(System.currentTimeMillis());
+	}
+	
+	public boolean isStopLimit()
+	{
+		return limitPrice > 0;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public Security getSecurity() {
+		return security;
+	}
+
+	public String getTicker() {
+		return ticker;
+	}
+
+	public Trader getTrader() {
+		return trader;
+	}
+
+	public String getTraderName() {
+		return traderName;
+	}
+
+	public double getStopPrice() {
+		return stopPrice;
+	}
+
+	public double getLimitPrice() {
+		return limitPrice;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public OrderType getType() {
+		return type;
+	}
+
+	public boolean isTriggered() {
+		return triggered;
+	}
+
+	public void setTriggered(boolean triggered) {
+		this.triggered = triggered;
+	}
+
+	public double getTriggerPrice() {
+		return triggerPrice;
+	}
+
+	public void setTriggerPrice(double triggerPrice) {
+		this.triggerPrice = triggerPrice;
+	}
+
+	public Date getTimestamp() {
+		return timestamp;
+	}
+}
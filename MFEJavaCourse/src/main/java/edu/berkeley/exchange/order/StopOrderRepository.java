@@ -0,0 +1,48 @@
+package edu.berkeley.exchange.order;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface StopOrderRepository extends JpaRepository<StopOrder, Long> {
+
+	public List<StopOrder> findByTickerAndTriggeredOrderByIdAsc(String ticker, boolean triggered);
+	
+	/**
+	 * Records the stops one trade fired. Stops fire once the trade's transaction has 
+	 * committed, so this always writes in a transaction of its own.
+	 */
+	@Modifying
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	@Query("update StopOrder s set s.triggered = true, s.triggerPrice = ?2 where s.id in ?1")
+	public int markTriggered(Collection<Long> ids, double triggerPrice);
+	
+	@Query("select count(s) from StopOrder s where s.ticker = ?1 and s.triggered = false "
+			+ "and mod(s.quantity * ?2, ?3) <> 0")
+	public long countFractionalAfterSplit(String ticker, int numerator, int denominator);
+	
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("update StopOrder s set s.quantity = s.quantity * ?2 / ?3, s.stopPrice = s.stopPrice * ?3 / ?2, "
+			+ "s.limitPrice = s.limitPrice * ?3 / ?2 where s.ticker = ?1 and s.triggered = false")
+	public int splitUntriggered(String ticker, int numerator, int denominator);
+	
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("update StopOrder s set s.stopPrice = ceiling(s.stopPrice * ?2 - ?3) / ?2, "
+			+ "s.limitPrice = floor(s.limitPrice * ?2 + ?3) / ?2 "
+			+ "where s.ticker = ?1 and s.type = 'BUY' and s.triggered = false")
+	public int roundUntriggeredBuys(String ticker, double ticksPerUnit, double tolerance);
+	
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("update StopOrder s set s.stopPrice = floor(s.stopPrice * ?2 + ?3) / ?2, "
+			+ "s.limitPrice = ceiling(s.limitPrice * ?2 - ?3) / ?2 "
+			+ "where s.ticker = ?1 and s.type = 'SELL' and s.triggered = false")
+	public int roundUntriggeredSells(String ticker, double ticksPerUnit, double tolerance);
+}
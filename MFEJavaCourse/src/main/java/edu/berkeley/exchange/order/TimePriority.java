@@ -0,0 +1,33 @@
+package edu.berkeley.exchange.order;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of time priority for resting orders. Values are microseconds since the 
+ * epoch, bumped by one where two orders would otherwise tie, so they keep rising 
+ * across restarts as long as the exchange averages under a million orders a 
+ * second.
+ */
+public class TimePriority 
+{
+	private static final AtomicLong last = new AtomicLong();
+	
+	private TimePriority()
+	{
+		
+	}
+	
+	public static long next()
+	{
+		long now = System.currentTimeMillis() * 1000;
+		while (true)
+		{
+			long previous = last.get();
+			long next = Math.max(previous + 1, now);
+			if (last.compareAndSet(previous, next))
+			{
+				return next;
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package edu.berkeley.exchange.order;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+
+public class Trade 
+{
+	private final String ticker;
+	private final String buyerName;
+	private final String sellerName;
+	private final double price;
+	private final int quantity;
+	private final OrderType aggressorType;
+	
+	public Trade(String ticker, String buyerName, String sellerName, double price, int quantity,
+			OrderType aggressorType)
+	{
+		this.ticker = ticker;
+		this.buyerName = buyerName;
+		this.sellerName = sellerName;
+		this.price = price;
+		this.quantity = quantity;
+		this.aggressorType = aggressorType;
+	}
+
+	public String getTicker() {
+		return ticker;
+	}
+
+	public String getBuyerName() {
+		return buyerName;
+	}
+
+	public String getSellerName() {
+		return sellerName;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public OrderType getAggressorType() {
+		return aggressorType;
+	}
+}
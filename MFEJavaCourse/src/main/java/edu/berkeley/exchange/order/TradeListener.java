@@ -0,0 +1,6 @@
+package edu.berkeley.exchange.order;
+
+public interface TradeListener 
+{
+	public void onTrade(Trade trade);
+}
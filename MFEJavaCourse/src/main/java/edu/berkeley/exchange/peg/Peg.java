@@ -0,0 +1,65 @@
+package edu.berkeley.exchange.peg;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
+import edu.berkeley.exchange.security.InstrumentRules;
+
+/**
+ * What a pegged order follows, how far from it, and the price it may not go
+ * beyond: a cap for a BUY, a floor for a SELL.
+ */
+public class Peg
+{
+	private final PegType type;
+	private final double offset;
+	private final double limit;
+	
+	public Peg(PegType type, double offset, double limit)
+	{
+		this.type = type;
+		this.offset = offset;
+		this.limit = limit;
+	}
+	
+	public PegType getType() {
+		return type;
+	}
+	
+	public double getOffset() {
+		return offset;
+	}
+	
+	public double getLimit() {
+		return limit;
+	}
+	
+	/**
+	 * Price of the order for a reference price, held at the limit.
+	 */
+	public double priceFor(double reference, OrderType side)
+	{
+		return priceFor(reference, side, InstrumentRules.NONE);
+	}
+	
+	/**
+	 * Price of the order for a reference price, rounded onto the tick away from the 
+	 * opposite side and held at the limit.
+	 */
+	public double priceFor(double reference, OrderType side, InstrumentRules rules)
+	{
+		double price = reference + offset;
+		return side.equals(OrderType.BUY) ? Math.min(rules.roundDown(price), limit) : 
+			Math.max(rules.roundUp(price), limit);
+	}
+	
+	/**
+	 * Whether the offset keeps the order from crossing the reference. A primary peg
+	 * may join its own side's best price; market and midpoint pegs must stay
+	 * strictly behind theirs.
+	 */
+	public boolean isPassive(OrderType side)
+	{
+		double away = side.equals(OrderType.BUY) ? -offset : offset;
+		return type == PegType.PRIMARY ? away >= 0 : away > 0;
+	}
+}
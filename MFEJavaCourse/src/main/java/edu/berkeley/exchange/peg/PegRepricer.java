@@ -0,0 +1,216 @@
+package edu.berkeley.exchange.peg;
+
+import java.util.EnumSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import edu.berkeley.exchange.marketdata.BestPriceCache;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.TimePriority;
+import edu.berkeley.exchange.security.InstrumentRules;
+import edu.berkeley.exchange.security.InstrumentRulesTable;
+import edu.berkeley.exchange.security.Security;
+
+/**
+ * Keeps pegged orders at their reference prices. References are taken from the
+ * unpegged orders only, so pegs never follow each other. When the touch moves, 
+ * each peg type on each side is moved by one update, which rounds onto the tick 
+ * away from the opposite side and writes only the orders whose price changes. 
+ * Repriced orders share one new time priority, so they queue behind the orders 
+ * already at their new price and among themselves in the order they were placed. 
+ * Repricing never trades, so a peg that would lock or cross the other side is 
+ * held one tick short of it; pegs trade against incoming orders like any other 
+ * resting order. All calls for a security happen under its lock.
+ */
+@Component
+public class PegRepricer
+{
+	private OrderRepository orderRepo;
+	private BestPriceCache bestPrices;
+	private InstrumentRulesTable instrumentRules;
+	
+	private ConcurrentMap<String, Touch> touches = new ConcurrentHashMap<>();
+	
+	@Autowired
+	public PegRepricer(OrderRepository orderRepo, BestPriceCache bestPrices)
+	{
+		this.orderRepo = orderRepo;
+		this.bestPrices = bestPrices;
+	}
+	
+	@Autowired(required=false)
+	public void setInstrumentRules(InstrumentRulesTable instrumentRules)
+	{
+		this.instrumentRules = instrumentRules;
+	}
+	
+	/**
+	 * Price of a new pegged order for a reference price, rounded onto the tick.
+	 */
+	public double priceFor(Security security, Peg peg, OrderType side, double reference)
+	{
+		return peg.priceFor(reference, side, rules(security));
+	}
+	
+	/**
+	 * Current reference price of a peg on a side, or NaN while the book lacks a side
+	 * the peg needs.
+	 */
+	public double getReference(String ticker, PegType pegType, OrderType side)
+	{
+		return reference(pegType, side, bestUnpegged(ticker, OrderType.BUY),
+				bestUnpegged(ticker, OrderType.SELL));
+	}
+	
+	public void onPegged(String ticker)
+	{
+		touch(ticker).pegged = true;
+	}
+	
+	/**
+	 * Moves the security's pegged orders to new prices if the unpegged touch has
+	 * moved since they were last priced. Pegs that lose their reference stay where
+	 * they are. Returns the number of orders repriced.
+	 */
+	public int reprice(Security security)
+	{
+		String ticker = security.getTicker();
+		Touch touch = touch(ticker);
+		if (!touch.pegged)
+		{
+			return 0;
+		}
+		
+		double bid = bestUnpegged(ticker, OrderType.BUY);
+		double ask = bestUnpegged(ticker, OrderType.SELL);
+		if (Double.compare(bid, touch.bid) == 0 && Double.compare(ask, touch.ask) == 0)
+		{
+			return 0;
+		}
+		touch.bid = bid;
+		touch.ask = ask;
+		
+		InstrumentRules rules = rules(security);
+		double tolerance = InstrumentRules.TICK_TOLERANCE;
+		long priority = TimePriority.next();
+		
+		// Repricing never trades, so sells are kept above every bid left standing, 
+		// then buys below every ask including the repriced sells
+		EnumSet<PegType> stationaryBuys = EnumSet.noneOf(PegType.class);
+		for (PegType pegType : PegType.values())
+		{
+			if (Double.isNaN(reference(pegType, OrderType.BUY, bid, ask)))
+			{
+				stationaryBuys.add(pegType);
+			}
+		}
+		double highestBid = bid;
+		if (!stationaryBuys.isEmpty())
+		{
+			highestBid = max(highestBid, nanIfNull(orderRepo.findHighestPeggedPrice(ticker, OrderType.BUY, 
+					stationaryBuys)));
+		}
+		double sellFloor = Double.isNaN(highestBid) ? -Double.MAX_VALUE : rules.tickAbove(highestBid);
+		
+		int repriced = 0;
+		for (PegType pegType : PegType.values())
+		{
+			double reference = reference(pegType, OrderType.SELL, bid, ask);
+			if (!Double.isNaN(reference))
+			{
+				repriced += orderRepo.repricePeggedSells(ticker, OrderType.SELL, pegType, reference, 
+						rules.getTicksPerUnit(), tolerance, sellFloor, priority);
+			}
+		}
+		
+		double lowestAsk = min(ask, nanIfNull(orderRepo.findLowestPeggedPrice(ticker, OrderType.SELL, 
+				EnumSet.allOf(PegType.class))));
+		double buyCeiling = Double.isNaN(lowestAsk) ? Double.MAX_VALUE : rules.tickBelow(lowestAsk);
+		for (PegType pegType : PegType.values())
+		{
+			double reference = reference(pegType, OrderType.BUY, bid, ask);
+			if (!Double.isNaN(reference))
+			{
+				repriced += orderRepo.repricePeggedBuys(ticker, OrderType.BUY, pegType, reference, 
+						rules.getTicksPerUnit(), tolerance, buyCeiling, priority);
+			}
+		}
+		
+		if (repriced > 0)
+		{
+			bestPrices.invalidate(ticker);
+		}
+		else
+		{
+			touch.pegged = orderRepo.countByTickerAndExecutedFalseAndPegTypeNotNull(ticker) > 0;
+		}
+		return repriced;
+	}
+	
+	private InstrumentRules rules(Security security)
+	{
+		return instrumentRules != null ? instrumentRules.get(security) : InstrumentRules.NONE;
+	}
+	
+	private static double nanIfNull(Double price)
+	{
+		return price == null ? Double.NaN : price;
+	}
+	
+	private static double max(double a, double b)
+	{
+		return Double.isNaN(a) ? b : Math.max(a, b);
+	}
+	
+	private static double min(double a, double b)
+	{
+		return Double.isNaN(a) ? b : Math.min(a, b);
+	}
+	
+	private static double reference(PegType pegType, OrderType side, double bid, double ask)
+	{
+		boolean buy = side.equals(OrderType.BUY);
+		switch (pegType)
+		{
+		case PRIMARY:
+			return buy ? bid : ask;
+		case MARKET:
+			return buy ? ask : bid;
+		default:
+			return (bid + ask) / 2;
+		}
+	}
+	
+	private double bestUnpegged(String ticker, OrderType side)
+	{
+		return nanIfNull(side.equals(OrderType.BUY) ? orderRepo.findHighestUnpeggedPrice(ticker, side) :
+			orderRepo.findLowestUnpeggedPrice(ticker, side));
+	}
+	
+	private Touch touch(String ticker)
+	{
+		Touch touch = touches.get(ticker);
+		if (touch == null)
+		{
+			touch = new Touch();
+			touch.pegged = orderRepo.countByTickerAndExecutedFalseAndPegTypeNotNull(ticker) > 0;
+			touches.put(ticker, touch);
+		}
+		return touch;
+	}
+	
+	/**
+	 * The unpegged best bid and ask the security's pegs were last priced from.
+	 */
+	private static class Touch
+	{
+		private boolean pegged;
+		private double bid = Double.NaN;
+		private double ask = Double.NaN;
+	}
+}
@@ -0,0 +1,103 @@
+package edu.berkeley.exchange.pricing;
+
+/**
+ * Cox-Ross-Rubinstein tree with early exercise, for American options. Delta, 
+ * gamma and theta are read off the first two steps of the tree; vega is a 
+ * central difference over two repriced trees.
+ */
+public class BinomialTree 
+{
+	private static final double VEGA_BUMP = 0.01;
+	
+	private BinomialTree()
+	{
+		
+	}
+	
+	public static void price(OptionBatch batch, int from, int to, int steps)
+	{
+		double[] values = new double[steps + 1];
+		double[] nodes = new double[5];
+		
+		for (int i = from; i < to; i++)
+		{
+			double s = batch.spot[i];
+			double k = batch.strike[i];
+			double sigma = batch.volatility[i];
+			double r = batch.rate[i];
+			double t = batch.time[i];
+			boolean call = batch.call[i];
+			if (t <= 0 || sigma <= 0)
+			{
+				batch.intrinsic(i);
+				continue;
+			}
+			
+			double price = roll(values, nodes, s, k, sigma, r, t, call, steps);
+			double dt = t / steps;
+			double u = Math.exp(sigma * Math.sqrt(dt));
+			double d = 1 / u;
+			
+			batch.price[i] = price;
+			batch.delta[i] = (nodes[4] - nodes[3]) / (s * u - s * d);
+			double upperDelta = (nodes[2] - nodes[1]) / (s * u * u - s);
+			double lowerDelta = (nodes[1] - nodes[0]) / (s - s * d * d);
+			batch.gamma[i] = (upperDelta - lowerDelta) / (0.5 * (s * u * u - s * d * d));
+			batch.theta[i] = (nodes[1] - price) / (2 * dt);
+			
+			double bump = Math.min(VEGA_BUMP, sigma / 2);
+			batch.vega[i] = (roll(values, null, s, k, sigma + bump, r, t, call, steps) 
+					- roll(values, null, s, k, sigma - bump, r, t, call, steps)) / (2 * bump);
+		}
+	}
+	
+	/**
+	 * Backward induction in place over values. When nodes is given it receives the 
+	 * step-two values (down-down, up-down, up-up) followed by the step-one values 
+	 * (down, up).
+	 */
+	private static double roll(double[] values, double[] nodes, double s, double k, double sigma, 
+			double r, double t, boolean call, int steps)
+	{
+		double dt = t / steps;
+		double u = Math.exp(sigma * Math.sqrt(dt));
+		double d = 1 / u;
+		double uu = u * u;
+		double growth = Math.exp(r * dt);
+		double p = (growth - d) / (u - d);
+		double q = 1 - p;
+		double discount = 1 / growth;
+		
+		double node = s * Math.pow(d, steps);
+		for (int j = 0; j <= steps; j++)
+		{
+			values[j] = Math.max(call ? node - k : k - node, 0);
+			node *= uu;
+		}
+		
+		for (int step = steps - 1; step >= 0; step--)
+		{
+			node = s * Math.pow(d, step);
+			for (int j = 0; j <= step; j++)
+			{
+				double held = discount * (p * values[j + 1] + q * values[j]);
+				double exercised = call ? node - k : k - node;
+				values[j] = Math.max(held, exercised);
+				node *= uu;
+			}
+			
+			if (nodes != null && step == 2)
+			{
+				nodes[0] = values[0];
+				nodes[1] = values[1];
+				nodes[2] = values[2];
+			}
+			else if (nodes != null && step == 1)
+			{
+				nodes[3] = values[0];
+				nodes[4] = values[1];
+			}
+		}
+		return values[0];
+	}
+}
@@ -0,0 +1,74 @@
+package edu.berkeley.exchange.pricing;
+
+/**
+ * Closed-form European prices and Greeks. The loop body has no allocation and 
+ * no calls other than Math intrinsics, so the JIT can keep it tight.
+ */
+public class BlackScholes 
+{
+	private static final double INV_SQRT_2PI = 1 / Math.sqrt(2 * Math.PI);
+	
+	private BlackScholes()
+	{
+		
+	}
+	
+	public static void price(OptionBatch batch, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			double s = batch.spot[i];
+			double k = batch.strike[i];
+			double sigma = batch.volatility[i];
+			double r = batch.rate[i];
+			double t = batch.time[i];
+			if (t <= 0 || sigma <= 0)
+			{
+				batch.intrinsic(i);
+				continue;
+			}
+			
+			double sqrtT = Math.sqrt(t);
+			double sigmaSqrtT = sigma * sqrtT;
+			double d1 = (Math.log(s / k) + (r + 0.5 * sigma * sigma) * t) / sigmaSqrtT;
+			double d2 = d1 - sigmaSqrtT;
+			double discountedStrike = k * Math.exp(-r * t);
+			double pdf = density(d1);
+			double nd1 = cumulative(d1);
+			double nd2 = cumulative(d2);
+			
+			batch.gamma[i] = pdf / (s * sigmaSqrtT);
+			batch.vega[i] = s * pdf * sqrtT;
+			double decay = -s * pdf * sigma / (2 * sqrtT);
+			if (batch.call[i])
+			{
+				batch.price[i] = s * nd1 - discountedStrike * nd2;
+				batch.delta[i] = nd1;
+				batch.theta[i] = decay - r * discountedStrike * nd2;
+			}
+			else
+			{
+				batch.price[i] = discountedStrike * (1 - nd2) - s * (1 - nd1);
+				batch.delta[i] = nd1 - 1;
+				batch.theta[i] = decay + r * discountedStrike * (1 - nd2);
+			}
+		}
+	}
+	
+	static double density(double x)
+	{
+		return INV_SQRT_2PI * Math.exp(-0.5 * x * x);
+	}
+	
+	/**
+	 * Standard normal CDF, Abramowitz and Stegun 26.2.17 (absolute error below 7.5e-8).
+	 */
+	static double cumulative(double x)
+	{
+		double t = 1 / (1 + 0.2316419 * Math.abs(x));
+		double poly = t * (0.319381530 + t * (-0.356563782 + t * (1.781477937 
+				+ t * (-1.821255978 + t * 1.330274429))));
+		double tail = density(x) * poly;
+		return x >= 0 ? 1 - tail : tail;
+	}
+}
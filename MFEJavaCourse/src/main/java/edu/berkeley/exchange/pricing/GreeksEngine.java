@@ -0,0 +1,161 @@
+package edu.berkeley.exchange.pricing;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import edu.berkeley.exchange.ExchangeProperties;
+import edu.berkeley.exchange.marketdata.LastTradePrices;
+import edu.berkeley.exchange.security.Option;
+import edu.berkeley.exchange.security.Option.OptionType;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+
+/**
+ * Prices option batches across a fork/join pool and aggregates Greeks per trader. 
+ * Underlyings are marked at their last trade price; options whose underlying has 
+ * not traded are left out. Black-Scholes prices European exercise, the binomial 
+ * tree American.
+ */
+@Lazy
+@Service
+public class GreeksEngine 
+{
+	private static final double MILLIS_PER_YEAR = 365.0 * 24 * 60 * 60 * 1000;
+	private static final int CLOSED_FORM_LEAF_SIZE = 4096;
+	private static final int TREE_LEAF_SIZE = 16;
+	
+	private HoldingRepository holdingRepo;
+	private LastTradePrices lastTradePrices;
+	private ExchangeProperties properties;
+	private ConcurrentMap<String, Double> volatilities = new ConcurrentHashMap<>();
+	
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	
+	@Autowired
+	public GreeksEngine(HoldingRepository holdingRepo, LastTradePrices lastTradePrices,
+			ExchangeProperties properties)
+	{
+		this.holdingRepo = holdingRepo;
+		this.lastTradePrices = lastTradePrices;
+		this.properties = properties;
+	}
+	
+	public void setPool(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	public void setVolatility(String underlyingTicker, double volatility)
+	{
+		volatilities.put(underlyingTicker, volatility);
+	}
+	
+	public double getVolatility(String underlyingTicker)
+	{
+		Double volatility = volatilities.get(underlyingTicker);
+		return volatility == null ? properties.getDefaultVolatility() : volatility;
+	}
+	
+	public void compute(OptionBatch batch, PricingModel model)
+	{
+		pool.invoke(new PriceTask(batch, 0, batch.size(), model));
+	}
+	
+	/**
+	 * Greeks of every trader holding options, keyed by trader name in name order.
+	 */
+	public Map<String, PortfolioGreeks> getPortfolioGreeks(PricingModel model)
+	{
+		List<Object[]> rows = holdingRepo.findOptionHoldings();
+		long now = System.currentTimeMillis();
+		double rate = properties.getRiskFreeRate();
+		
+		OptionBatch batch = new OptionBatch(rows.size());
+		String[] traderNames = new String[rows.size()];
+		double[] positions = new double[rows.size()];
+		
+		int count = 0;
+		for (Object[] row : rows)
+		{
+			Holding holding = (Holding) row[0];
+			Option option = (Option) row[1];
+			String underlying = option.getUnderlying().getTicker();
+			double spot = lastTradePrices.getLastPrice(underlying);
+			if (Double.isNaN(spot))
+			{
+				continue;
+			}
+			
+			double years = Math.max(option.getExpiry().getTime() - now, 0) / MILLIS_PER_YEAR;
+			batch.set(count, spot, option.getStrike(), getVolatility(underlying), rate, years,
+					option.getOptionType() == OptionType.CALL);
+			traderNames[count] = holding.getKey().getTraderName();
+			positions[count] = holding.getQuantity() * option.getMultiplier();
+			count++;
+		}
+		
+		pool.invoke(new PriceTask(batch, 0, count, model));
+		
+		Map<String, PortfolioGreeks> portfolios = new LinkedHashMap<>();
+		for (int i = 0; i < count; i++)
+		{
+			PortfolioGreeks greeks = portfolios.get(traderNames[i]);
+			if (greeks == null)
+			{
+				greeks = new PortfolioGreeks(traderNames[i]);
+				portfolios.put(traderNames[i], greeks);
+			}
+			greeks.add(batch, i, positions[i]);
+		}
+		return portfolios;
+	}
+	
+	private class PriceTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 2871342216095318650L;
+		
+		private final OptionBatch batch;
+		private final int from;
+		private final int to;
+		private final PricingModel model;
+		
+		public PriceTask(OptionBatch batch, int from, int to, PricingModel model)
+		{
+			this.batch = batch;
+			this.from = from;
+			this.to = to;
+			this.model = model;
+		}
+
+		@Override
+		protected void compute() 
+		{
+			int leafSize = model == PricingModel.BINOMIAL ? TREE_LEAF_SIZE : CLOSED_FORM_LEAF_SIZE;
+			if (to - from > leafSize)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new PriceTask(batch, from, middle, model), 
+						new PriceTask(batch, middle, to, model));
+				return;
+			}
+			
+			if (model == PricingModel.BINOMIAL)
+			{
+				BinomialTree.price(batch, from, to, Math.max(properties.getBinomialSteps(), 2));
+			}
+			else
+			{
+				BlackScholes.price(batch, from, to);
+			}
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package edu.berkeley.exchange.pricing;
+
+/**
+ * Inputs and outputs for a batch of options held as parallel primitive arrays, so 
+ * the pricing loops run over contiguous memory without touching any entity. 
+ * Volatility, rate and time to expiry are annualised; vega is per unit of 
+ * volatility and theta per year.
+ */
+public class OptionBatch 
+{
+	final double[] spot;
+	final double[] strike;
+	final double[] volatility;
+	final double[] rate;
+	final double[] time;
+	final boolean[] call;
+	
+	final double[] price;
+	final double[] delta;
+	final double[] gamma;
+	final double[] vega;
+	final double[] theta;
+	
+	private final int size;
+	
+	public OptionBatch(int size)
+	{
+		this.size = size;
+		this.spot = new double[size];
+		this.strike = new double[size];
+		this.volatility = new double[size];
+		this.rate = new double[size];
+		this.time = new double[size];
+		this.call = new boolean[size];
+		this.price = new double[size];
+		this.delta = new double[size];
+		this.gamma = new double[size];
+		this.vega = new double[size];
+		this.theta = new double[size];
+	}
+	
+	public void set(int i, double spot, double strike, double volatility, double rate, 
+			double time, boolean call)
+	{
+		this.spot[i] = spot;
+		this.strike[i] = strike;
+		this.volatility[i] = volatility;
+		this.rate[i] = rate;
+		this.time[i] = time;
+		this.call[i] = call;
+	}
+	
+	public int size() {
+		return size;
+	}
+
+	public double getPrice(int i) {
+		return price[i];
+	}
+
+	public double getDelta(int i) {
+		return delta[i];
+	}
+
+	public double getGamma(int i) {
+		return gamma[i];
+	}
+
+	public double getVega(int i) {
+		return vega[i];
+	}
+
+	public double getTheta(int i) {
+		return theta[i];
+	}
+	
+	/**
+	 * Expired or zero-volatility options are worth their intrinsic value.
+	 */
+	void intrinsic(int i)
+	{
+		double payoff = call[i] ? spot[i] - strike[i] : strike[i] - spot[i];
+		price[i] = Math.max(payoff, 0);
+		delta[i] = payoff > 0 ? (call[i] ? 1 : -1) : 0;
+		gamma[i] = 0;
+		vega[i] = 0;
+		theta[i] = 0;
+	}
+}
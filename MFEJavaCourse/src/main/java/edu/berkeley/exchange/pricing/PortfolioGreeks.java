@@ -0,0 +1,53 @@
+package edu.berkeley.exchange.pricing;
+
+/**
+ * A trader's option book summed over positions; each Greek is already scaled by 
+ * position size and contract multiplier.
+ */
+public class PortfolioGreeks 
+{
+	private final String traderName;
+	private double value;
+	private double delta;
+	private double gamma;
+	private double vega;
+	private double theta;
+	
+	public PortfolioGreeks(String traderName)
+	{
+		this.traderName = traderName;
+	}
+	
+	void add(OptionBatch batch, int i, double position)
+	{
+		value += batch.price[i] * position;
+		delta += batch.delta[i] * position;
+		gamma += batch.gamma[i] * position;
+		vega += batch.vega[i] * position;
+		theta += batch.theta[i] * position;
+	}
+
+	public String getTraderName() {
+		return traderName;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public double getDelta() {
+		return delta;
+	}
+
+	public double getGamma() {
+		return gamma;
+	}
+
+	public double getVega() {
+		return vega;
+	}
+
+	public double getTheta() {
+		return theta;
+	}
+}
@@ -0,0 +1,6 @@
+package edu.berkeley.exchange.pricing;
+
+public enum PricingModel {
+	BLACK_SCHOLES,
+	BINOMIAL
+}
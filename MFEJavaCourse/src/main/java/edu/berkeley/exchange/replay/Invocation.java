@@ -0,0 +1,107 @@
+package edu.berkeley.exchange.replay;
+
+import java.util.List;
+
+import org.springframework.data.domain.PageRequest;
+
+import edu.berkeley.exchange.ExchangeService;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.basket.BasketLeg;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.Trade;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingKey;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+/**
+ * Runs a call against a service and fills in its outcome; shared by recording 
+ * and replay so both observe outcomes the same way.
+ */
+class Invocation 
+{
+	private final ExchangeService exchangeService;
+	private final TradeCapture capture;
+	private final TraderRepository traderRepo;
+	private final HoldingRepository holdingRepo;
+	private final OrderRepository orderRepo;
+	
+	Invocation(ExchangeService exchangeService, TradeCapture capture, TraderRepository traderRepo,
+			HoldingRepository holdingRepo, OrderRepository orderRepo)
+	{
+		this.exchangeService = exchangeService;
+		this.capture = capture;
+		this.traderRepo = traderRepo;
+		this.holdingRepo = holdingRepo;
+		this.orderRepo = orderRepo;
+	}
+	
+	/**
+	 * For a cancel, orderId is the order to cancel, or 0 to look up the trader's 
+	 * open order at the recorded ticker, side, price and position. For a basket, 
+	 * legs are the call's legs on this service's securities.
+	 */
+	RecordedCall run(RecordedCall call, Trader trader, Security security, List<BasketLeg> legs, long orderId)
+	{
+		OrderExecutionException error = null;
+		capture.begin();
+		try
+		{
+			switch (call.getKind())
+			{
+			case ORDER:
+				exchangeService.placeOrder(trader, security, call.getPrice(), call.getQuantity(), 
+						call.getType());
+				break;
+			case STOP_ORDER:
+				exchangeService.placeStopOrder(trader, security, call.getPrice(), call.getLimitPrice(),
+						call.getQuantity(), call.getType());
+				break;
+			case CANCEL:
+				exchangeService.cancelOrder(trader, orderId != 0 ? orderId : findOrder(call));
+				break;
+			case ICEBERG_ORDER:
+				exchangeService.placeIcebergOrder(trader, security, call.getPrice(), call.getQuantity(), 
+						call.getPeak(), call.getType());
+				break;
+			case PEGGED_ORDER:
+				exchangeService.placePeggedOrder(trader, security, call.getPegType(), call.getPrice(), 
+						call.getLimitPrice(), call.getQuantity(), call.getType());
+				break;
+			case BASKET:
+				exchangeService.placeBasket(trader, legs, call.isAllOrNone());
+				break;
+			}
+		}
+		catch (OrderExecutionException e)
+		{
+			error = e;
+		}
+		finally
+		{
+			List<Trade> fills = capture.end();
+			Trader after = traderRepo.findOne(call.getTraderName());
+			Holding holding = call.getTicker() == null ? null : 
+				holdingRepo.findOne(new HoldingKey(call.getTraderName(), call.getTicker()));
+			
+			call.complete(error, error == null ? null : error.getMessage(), fills, 
+					after == null ? 0 : after.getCapital(), holding == null ? 0 : holding.getQuantity());
+		}
+		return call;
+	}
+	
+	private long findOrder(RecordedCall call)
+	{
+		if (call.getTicker() == null || call.getPosition() < 0)
+		{
+			return -1;
+		}
+		List<Order> orders = orderRepo.findByTraderNameAndTickerAndTypeAndPriceAndExecutedOrderByIdAsc(
+				call.getTraderName(), call.getTicker(), call.getType(), call.getPrice(), false, 
+				new PageRequest(call.getPosition(), 1));
+		return orders.isEmpty() ? -1 : orders.get(0).getId();
+	}
+}
@@ -0,0 +1,39 @@
+package edu.berkeley.exchange.replay;
+
+public class Mismatch 
+{
+	private final int callIndex;
+	private final String field;
+	private final String expected;
+	private final String actual;
+	
+	public Mismatch(int callIndex, String field, Object expected, Object actual)
+	{
+		this.callIndex = callIndex;
+		this.field = field;
+		this.expected = String.valueOf(expected);
+		this.actual = String.valueOf(actual);
+	}
+
+	public int getCallIndex() {
+		return callIndex;
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	public String getExpected() {
+		return expected;
+	}
+
+	public String getActual() {
+		return actual;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "call " + callIndex + " " + field + ": expected " + expected + " but was " + actual;
+	}
+}
@@ -0,0 +1,223 @@
+package edu.berkeley.exchange.replay;
+
+import java.util.Collections;
+import java.util.List;
+
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
+import edu.berkeley.exchange.order.Trade;
+
+/**
+ * One call into an ExchangeService and what it did: the fills it caused and the 
+ * calling trader's capital and holding in the ticker afterwards. A cancel 
+ * identifies its order by ticker, side and price and by how many of the trader's 
+ * open orders there are older, since order ids differ between runs. A pegged order keeps its offset as the price and its limit as the limit 
+ * price; a basket has no ticker of its own, so only capital is kept for it.
+ */
+public class RecordedCall 
+{
+	public enum Kind {
+		ORDER,
+		STOP_ORDER,
+		CANCEL,
+		ICEBERG_ORDER,
+		PEGGED_ORDER,
+		BASKET
+	}
+	
+	/**
+	 * One leg of a recorded basket, by ticker.
+	 */
+	public static class Leg
+	{
+		private final String ticker;
+		private final double price;
+		private final int quantity;
+		private final OrderType type;
+		
+		public Leg(String ticker, double price, int quantity, OrderType type)
+		{
+			this.ticker = ticker;
+			this.price = price;
+			this.quantity = quantity;
+			this.type = type;
+		}
+
+		public String getTicker() {
+			return ticker;
+		}
+
+		public double getPrice() {
+			return price;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		public OrderType getType() {
+			return type;
+		}
+	}
+	
+	private final Kind kind;
+	private final long offsetNanos;
+	private final String traderName;
+	private final String ticker;
+	private final double price;
+	private final double limitPrice;
+	private final int quantity;
+	private final OrderType type;
+	
+	private int peak;
+	private PegType pegType;
+	private List<Leg> legs = Collections.emptyList();
+	private boolean allOrNone;
+	private int position;
+	
+	private String rejection;
+	private List<Trade> fills = Collections.emptyList();
+	private double capital;
+	private int holdingQuantity;
+	private OrderExecutionException error;
+	
+	public RecordedCall(Kind kind, long offsetNanos, String traderName, String ticker, double price,
+			double limitPrice, int quantity, OrderType type)
+	{
+		this.kind = kind;
+		this.offsetNanos = offsetNanos;
+		this.traderName = traderName;
+		this.ticker = ticker;
+		this.price = price;
+		this.limitPrice = limitPrice;
+		this.quantity = quantity;
+		this.type = type;
+	}
+	
+	RecordedCall withPeak(int peak)
+	{
+		this.peak = peak;
+		return this;
+	}
+	
+	RecordedCall withPeg(PegType pegType)
+	{
+		this.pegType = pegType;
+		return this;
+	}
+	
+	RecordedCall withLegs(List<Leg> legs, boolean allOrNone)
+	{
+		this.legs = legs;
+		this.allOrNone = allOrNone;
+		return this;
+	}
+	
+	RecordedCall withPosition(int position)
+	{
+		this.position = position;
+		return this;
+	}
+	
+	/**
+	 * A call making the same request, without an outcome.
+	 */
+	RecordedCall request()
+	{
+		return new RecordedCall(kind, offsetNanos, traderName, ticker, price, limitPrice, quantity, type)
+				.withPeak(peak).withPeg(pegType).withLegs(legs, allOrNone).withPosition(position);
+	}
+	
+	void complete(OrderExecutionException error, String rejection, List<Trade> fills, double capital, 
+			int holdingQuantity)
+	{
+		this.error = error;
+		this.rejection = rejection;
+		this.fills = fills;
+		this.capital = capital;
+		this.holdingQuantity = holdingQuantity;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public long getOffsetNanos() {
+		return offsetNanos;
+	}
+
+	public String getTraderName() {
+		return traderName;
+	}
+
+	public String getTicker() {
+		return ticker;
+	}
+
+	/**
+	 * The limit price of an order, or the stop price of a stop order.
+	 */
+	public double getPrice() {
+		return price;
+	}
+
+	public double getLimitPrice() {
+		return limitPrice;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public OrderType getType() {
+		return type;
+	}
+
+	public int getPeak() {
+		return peak;
+	}
+
+	public PegType getPegType() {
+		return pegType;
+	}
+
+	public List<Leg> getLegs() {
+		return legs;
+	}
+
+	public boolean isAllOrNone() {
+		return allOrNone;
+	}
+
+	/**
+	 * For a cancel, how many of the trader's open orders at the same ticker, side and 
+	 * price are older than the cancelled order, or -1 if it was not open.
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Message of the OrderExecutionException thrown, or null if the call succeeded.
+	 */
+	public String getRejection() {
+		return rejection;
+	}
+
+	public List<Trade> getFills() {
+		return fills;
+	}
+
+	public double getCapital() {
+		return capital;
+	}
+
+	public int getHoldingQuantity() {
+		return holdingQuantity;
+	}
+	
+	OrderExecutionException getError() {
+		return error;
+	}
+}
@@ -0,0 +1,159 @@
+package edu.berkeley.exchange.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
+import edu.berkeley.exchange.order.Trade;
+import edu.berkeley.exchange.replay.RecordedCall.Kind;
+
+/**
+ * A captured sequence of calls, with a compact binary file format so order flow 
+ * can be carried from one environment to another. Version 2 adds iceberg, pegged 
+ * and basket calls and version 3 the position of a cancelled order; older files 
+ * are still read.
+ */
+public class Recording 
+{
+	private static final int MAGIC = 0x4F52434C;
+	private static final int VERSION = 3;
+	
+	private final List<RecordedCall> calls;
+	
+	public Recording(List<RecordedCall> calls)
+	{
+		this.calls = Collections.unmodifiableList(calls);
+	}
+	
+	public List<RecordedCall> getCalls() {
+		return calls;
+	}
+	
+	public void writeTo(Path path) throws IOException
+	{
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path))))
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(calls.size());
+			for (RecordedCall call : calls)
+			{
+				out.writeByte(call.getKind().ordinal());
+				out.writeLong(call.getOffsetNanos());
+				out.writeUTF(call.getTraderName());
+				writeNullable(out, call.getTicker());
+				out.writeDouble(call.getPrice());
+				out.writeDouble(call.getLimitPrice());
+				out.writeInt(call.getQuantity());
+				out.writeByte(call.getType() == null ? -1 : call.getType().ordinal());
+				out.writeInt(call.getPeak());
+				out.writeByte(call.getPegType() == null ? -1 : call.getPegType().ordinal());
+				out.writeBoolean(call.isAllOrNone());
+				out.writeInt(call.getLegs().size());
+				for (RecordedCall.Leg leg : call.getLegs())
+				{
+					out.writeUTF(leg.getTicker());
+					out.writeDouble(leg.getPrice());
+					out.writeInt(leg.getQuantity());
+					out.writeByte(leg.getType().ordinal());
+				}
+				out.writeInt(call.getPosition());
+				
+				writeNullable(out, call.getRejection());
+				out.writeDouble(call.getCapital());
+				out.writeInt(call.getHoldingQuantity());
+				out.writeInt(call.getFills().size());
+				for (Trade fill : call.getFills())
+				{
+					out.writeUTF(fill.getTicker());
+					out.writeUTF(fill.getBuyerName());
+					out.writeUTF(fill.getSellerName());
+					out.writeDouble(fill.getPrice());
+					out.writeInt(fill.getQuantity());
+					out.writeByte(fill.getAggressorType() == null ? -1 : fill.getAggressorType().ordinal());
+				}
+			}
+		}
+	}
+	
+	public static Recording readFrom(Path path) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))))
+		{
+			int version = in.readInt() == MAGIC ? in.readInt() : 0;
+			if (version < 1 || version > VERSION)
+			{
+				throw new IOException(path + " is not a recording this version can read");
+			}
+			
+			int size = in.readInt();
+			List<RecordedCall> calls = new ArrayList<>(size);
+			for (int i = 0; i < size; i++)
+			{
+				RecordedCall call = new RecordedCall(Kind.values()[in.readByte()], in.readLong(), in.readUTF(),
+						readNullable(in), in.readDouble(), in.readDouble(), in.readInt(), readType(in));
+				if (version >= 2)
+				{
+					call.withPeak(in.readInt());
+					byte pegType = in.readByte();
+					call.withPeg(pegType < 0 ? null : PegType.values()[pegType]);
+					boolean allOrNone = in.readBoolean();
+					int legCount = in.readInt();
+					List<RecordedCall.Leg> legs = new ArrayList<>(legCount);
+					for (int l = 0; l < legCount; l++)
+					{
+						legs.add(new RecordedCall.Leg(in.readUTF(), in.readDouble(), in.readInt(), readType(in)));
+					}
+					call.withLegs(legs, allOrNone);
+				}
+				if (version >= 3)
+				{
+					call.withPosition(in.readInt());
+				}
+				
+				String rejection = readNullable(in);
+				double capital = in.readDouble();
+				int holdingQuantity = in.readInt();
+				int fillCount = in.readInt();
+				List<Trade> fills = new ArrayList<>(fillCount);
+				for (int f = 0; f < fillCount; f++)
+				{
+					fills.add(new Trade(in.readUTF(), in.readUTF(), in.readUTF(), in.readDouble(), 
+							in.readInt(), readType(in)));
+				}
+				call.complete(null, rejection, fills, capital, holdingQuantity);
+				calls.add(call);
+			}
+			return new Recording(calls);
+		}
+	}
+	
+	private static void writeNullable(DataOutputStream out, String value) throws IOException
+	{
+		out.writeBoolean(value != null);
+		if (value != null)
+		{
+			out.writeUTF(value);
+		}
+	}
+	
+	private static String readNullable(DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+	
+	private static OrderType readType(DataInputStream in) throws IOException
+	{
+		byte ordinal = in.readByte();
+		return ordinal < 0 ? null : OrderType.values()[ordinal];
+	}
+}
@@ -0,0 +1,181 @@
+package edu.berkeley.exchange.replay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+import edu.berkeley.exchange.ExchangeService;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.SecurityLocks;
+import edu.berkeley.exchange.basket.BasketLeg;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.replay.RecordedCall.Kind;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+/**
+ * Passes every call through to another ExchangeService and records it with its
+ * outcome. The capture must be registered as a trade listener of the delegate.
+ * Each call holds the locks of its securities, the same SecurityLocks the
+ * delegate takes, from before its offset is read until it is recorded, so calls
+ * on a security are recorded in the order they reached its book and their
+ * snapshots are taken before the next call on it runs. A basket takes its
+ * securities' locks in ticker order, as the exchange does.
+ */
+public class RecordingExchangeService implements ExchangeService
+{
+	private final Invocation invocation;
+	private final OrderRepository orderRepo;
+	private final SecurityLocks locks;
+	private final long start = System.nanoTime();
+	private final List<RecordedCall> calls = new ArrayList<>();
+	
+	public RecordingExchangeService(ExchangeService delegate, TradeCapture capture,
+			TraderRepository traderRepo, HoldingRepository holdingRepo, OrderRepository orderRepo,
+			SecurityLocks locks)
+	{
+		this.invocation = new Invocation(delegate, capture, traderRepo, holdingRepo, orderRepo);
+		this.orderRepo = orderRepo;
+		this.locks = locks;
+	}
+	
+	@Override
+	public void placeOrder(Trader trader, Security security, double price, int quantity, OrderType type)
+			throws OrderExecutionException
+	{
+		record(Collections.singleton(security.getTicker()), offset -> new RecordedCall(Kind.ORDER, offset,
+				trader.getName(), security.getTicker(), price, 0, quantity, type),
+				trader, security, Collections.<BasketLeg>emptyList(), 0);
+	}
+	
+	@Override
+	public void placeIcebergOrder(Trader trader, Security security, double price, int quantity, int peak,
+			OrderType type) throws OrderExecutionException
+	{
+		record(Collections.singleton(security.getTicker()), offset -> new RecordedCall(Kind.ICEBERG_ORDER,
+				offset, trader.getName(), security.getTicker(), price, 0, quantity, type).withPeak(peak),
+				trader, security, Collections.<BasketLeg>emptyList(), 0);
+	}
+	
+	@Override
+	public void placePeggedOrder(Trader trader, Security security, PegType pegType, double offset,
+			double limit, int quantity, OrderType type) throws OrderExecutionException
+	{
+		record(Collections.singleton(security.getTicker()), at -> new RecordedCall(Kind.PEGGED_ORDER, at,
+				trader.getName(), security.getTicker(), offset, limit, quantity, type).withPeg(pegType),
+				trader, security, Collections.<BasketLeg>emptyList(), 0);
+	}
+	
+	@Override
+	public void placeBasket(Trader trader, List<BasketLeg> legs, boolean allOrNone)
+			throws OrderExecutionException
+	{
+		TreeSet<String> tickers = new TreeSet<>();
+		List<RecordedCall.Leg> recordedLegs = new ArrayList<>(legs.size());
+		for (BasketLeg leg : legs)
+		{
+			tickers.add(leg.getTicker());
+			recordedLegs.add(new RecordedCall.Leg(leg.getTicker(), leg.getPrice(), leg.getQuantity(),
+					leg.getType()));
+		}
+		record(tickers, offset -> new RecordedCall(Kind.BASKET, offset, trader.getName(), null, 0, 0, 0, null)
+				.withLegs(recordedLegs, allOrNone), trader, null, legs, 0);
+	}
+	
+	@Override
+	public void placeStopOrder(Trader trader, Security security, double stopPrice, double limitPrice,
+			int quantity, OrderType type) throws OrderExecutionException
+	{
+		record(Collections.singleton(security.getTicker()), offset -> new RecordedCall(Kind.STOP_ORDER, offset,
+				trader.getName(), security.getTicker(), stopPrice, limitPrice, quantity, type),
+				trader, security, Collections.<BasketLeg>emptyList(), 0);
+	}
+	
+	@Override
+	public void cancelOrder(Trader trader, long orderId) throws OrderExecutionException
+	{
+		Order order = orderRepo.findOne(orderId);
+		if (order == null)
+		{
+			record(Collections.<String>emptySet(), offset -> new RecordedCall(Kind.CANCEL, offset,
+					trader.getName(), null, 0, 0, 0, null), trader, null, Collections.<BasketLeg>emptyList(),
+					orderId);
+			return;
+		}
+		record(Collections.singleton(order.getTicker()), offset -> cancel(offset, trader, order), trader, null, 
+				Collections.<BasketLeg>emptyList(), orderId);
+	}
+	
+	public Recording getRecording()
+	{
+		synchronized (calls)
+		{
+			return new Recording(new ArrayList<>(calls));
+		}
+	}
+	
+	/**
+	 * A cancel of the order as it stands under its security's lock, just before the 
+	 * cancel runs, with how many of the trader's open orders at its price are older. 
+	 * An order that is not open for the trader is replayed as a cancel of no order.
+	 */
+	private RecordedCall cancel(long offset, Trader trader, Order order)
+	{
+		Order current = orderRepo.findOne(order.getId());
+		if (current == null || current.isExecuted() || !current.getTraderName().equals(trader.getName()))
+		{
+			return new RecordedCall(Kind.CANCEL, offset, trader.getName(), order.getTicker(), order.getPrice(), 0,
+					order.getQuantity(), order.getType()).withPosition(-1);
+		}
+		int position = (int) orderRepo.countByTraderNameAndTickerAndTypeAndPriceAndExecutedAndIdLessThan(
+				current.getTraderName(), current.getTicker(), current.getType(), current.getPrice(), false, 
+				current.getId());
+		return new RecordedCall(Kind.CANCEL, offset, trader.getName(), current.getTicker(), current.getPrice(), 0,
+				current.getQuantity(), current.getType()).withPosition(position);
+	}
+	
+	/**
+	 * Runs and records a call holding the locks of the given tickers, which must be
+	 * in ticker order.
+	 */
+	private void record(Iterable<String> tickers, LongFunction<RecordedCall> request, Trader trader,
+			Security security, List<BasketLeg> legs, long orderId) throws OrderExecutionException
+	{
+		List<ReentrantLock> held = new ArrayList<>();
+		RecordedCall call;
+		try
+		{
+			for (String ticker : tickers)
+			{
+				ReentrantLock lock = locks.get(ticker);
+				lock.lock();
+				held.add(lock);
+			}
+			
+			call = invocation.run(request.apply(System.nanoTime() - start), trader, security, legs, orderId);
+			synchronized (calls)
+			{
+				calls.add(call);
+			}
+		}
+		finally
+		{
+			for (int i = held.size() - 1; i >= 0; i--)
+			{
+				held.get(i).unlock();
+			}
+		}
+		if (call.getError() != null)
+		{
+			throw call.getError();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package edu.berkeley.exchange.replay;
+
+import java.util.List;
+
+public class ReplayResult 
+{
+	private final int calls;
+	private final long elapsedNanos;
+	private final List<Mismatch> mismatches;
+	
+	public ReplayResult(int calls, long elapsedNanos, List<Mismatch> mismatches)
+	{
+		this.calls = calls;
+		this.elapsedNanos = elapsedNanos;
+		this.mismatches = mismatches;
+	}
+
+	public int getCalls() {
+		return calls;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	public double getCallsPerSecond() {
+		return calls / (elapsedNanos / 1e9);
+	}
+
+	public List<Mismatch> getMismatches() {
+		return mismatches;
+	}
+	
+	public boolean isIdentical() {
+		return mismatches.isEmpty();
+	}
+}
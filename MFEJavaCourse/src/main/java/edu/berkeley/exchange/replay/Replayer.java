@@ -0,0 +1,150 @@
+package edu.berkeley.exchange.replay;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+import edu.berkeley.exchange.ExchangeService;
+import edu.berkeley.exchange.basket.BasketLeg;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.Trade;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.security.SecurityRepository;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+/**
+ * Replays a recording against an ExchangeService, one call at a time in recorded 
+ * order, and reports every difference from the recorded outcome: the rejection 
+ * message if any, each fill, and the trader's capital and holding afterwards. The 
+ * target's repositories must start from the same traders, securities and 
+ * holdings the recording started from. Elapsed time includes the reads that 
+ * take the capital and holding snapshots.
+ */
+public class Replayer 
+{
+	private static final double CAPITAL_TOLERANCE = 1e-6;
+	private static final Pattern ORDER_ID = Pattern.compile("order -?\\d+");
+	
+	private final Invocation invocation;
+	private final TraderRepository traderRepo;
+	private final SecurityRepository securityRepo;
+	
+	public Replayer(ExchangeService target, TradeCapture capture, TraderRepository traderRepo, 
+			HoldingRepository holdingRepo, OrderRepository orderRepo, SecurityRepository securityRepo)
+	{
+		this.invocation = new Invocation(target, capture, traderRepo, holdingRepo, orderRepo);
+		this.traderRepo = traderRepo;
+		this.securityRepo = securityRepo;
+	}
+	
+	/**
+	 * With recordedPace each call waits for its recorded offset from the start of 
+	 * the replay; otherwise calls run back to back.
+	 */
+	public ReplayResult replay(Recording recording, boolean recordedPace)
+	{
+		Map<String, Security> securities = new HashMap<>();
+		List<Mismatch> mismatches = new ArrayList<>();
+		List<RecordedCall> calls = recording.getCalls();
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < calls.size(); i++)
+		{
+			RecordedCall expected = calls.get(i);
+			if (recordedPace)
+			{
+				long wait;
+				while ((wait = start + expected.getOffsetNanos() - System.nanoTime()) > 0)
+				{
+					LockSupport.parkNanos(wait);
+				}
+			}
+			
+			Trader trader = traderRepo.findOne(expected.getTraderName());
+			if (trader == null)
+			{
+				mismatches.add(new Mismatch(i, "trader", expected.getTraderName(), null));
+				continue;
+			}
+			Security security = expected.getTicker() == null ? null : security(securities, expected.getTicker());
+			List<BasketLeg> legs = new ArrayList<>(expected.getLegs().size());
+			for (RecordedCall.Leg leg : expected.getLegs())
+			{
+				legs.add(new BasketLeg(security(securities, leg.getTicker()), leg.getPrice(), leg.getQuantity(), 
+						leg.getType()));
+			}
+			
+			RecordedCall actual = invocation.run(expected.request(), trader, security, legs, 0);
+			compare(i, expected, actual, mismatches);
+		}
+		return new ReplayResult(calls.size(), System.nanoTime() - start, mismatches);
+	}
+	
+	private Security security(Map<String, Security> securities, String ticker)
+	{
+		Security security = securities.get(ticker);
+		if (security == null)
+		{
+			security = securityRepo.findOne(ticker);
+			securities.put(ticker, security);
+		}
+		return security;
+	}
+	
+	/**
+	 * Rejections must carry the same message, apart from order ids, which differ 
+	 * between runs.
+	 */
+	static void compare(int index, RecordedCall expected, RecordedCall actual, List<Mismatch> mismatches)
+	{
+		if (!Objects.equals(withoutOrderIds(expected.getRejection()), withoutOrderIds(actual.getRejection())))
+		{
+			mismatches.add(new Mismatch(index, "rejection", expected.getRejection(), actual.getRejection()));
+		}
+		
+		List<Trade> expectedFills = expected.getFills();
+		List<Trade> actualFills = actual.getFills();
+		if (expectedFills.size() != actualFills.size())
+		{
+			mismatches.add(new Mismatch(index, "fills", expectedFills.size(), actualFills.size()));
+		}
+		for (int f = 0; f < Math.min(expectedFills.size(), actualFills.size()); f++)
+		{
+			Trade e = expectedFills.get(f);
+			Trade a = actualFills.get(f);
+			if (!e.getTicker().equals(a.getTicker()) || !e.getBuyerName().equals(a.getBuyerName()) 
+					|| !e.getSellerName().equals(a.getSellerName()) || e.getPrice() != a.getPrice() 
+					|| e.getQuantity() != a.getQuantity() || e.getAggressorType() != a.getAggressorType())
+			{
+				mismatches.add(new Mismatch(index, "fill " + f, describe(e), describe(a)));
+			}
+		}
+		
+		if (Math.abs(expected.getCapital() - actual.getCapital()) > CAPITAL_TOLERANCE)
+		{
+			mismatches.add(new Mismatch(index, "capital", expected.getCapital(), actual.getCapital()));
+		}
+		if (expected.getHoldingQuantity() != actual.getHoldingQuantity())
+		{
+			mismatches.add(new Mismatch(index, "holding", expected.getHoldingQuantity(), 
+					actual.getHoldingQuantity()));
+		}
+	}
+	
+	private static String withoutOrderIds(String rejection)
+	{
+		return rejection == null ? null : ORDER_ID.matcher(rejection).replaceAll("order #");
+	}
+	
+	private static String describe(Trade trade)
+	{
+		return trade.getQuantity() + " " + trade.getTicker() + " @ " + trade.getPrice() + " " 
+				+ trade.getBuyerName() + "/" + trade.getSellerName() + " " + trade.getAggressorType();
+	}
+}
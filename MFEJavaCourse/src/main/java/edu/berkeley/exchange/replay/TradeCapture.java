@@ -0,0 +1,40 @@
+package edu.berkeley.exchange.replay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.berkeley.exchange.order.Trade;
+import edu.berkeley.exchange.order.TradeListener;
+
+/**
+ * Collects the trades published on the current thread between begin and end. 
+ * Matching publishes synchronously on the calling thread, so these are exactly 
+ * the fills caused by one call, including any stop orders it triggered.
+ */
+public class TradeCapture implements TradeListener
+{
+	private final ThreadLocal<List<Trade>> capturing = new ThreadLocal<>();
+	
+	public void begin()
+	{
+		capturing.set(new ArrayList<Trade>());
+	}
+	
+	public List<Trade> end()
+	{
+		List<Trade> trades = capturing.get();
+		capturing.remove();
+		return trades == null ? Collections.<Trade>emptyList() : trades;
+	}
+	
+	@Override
+	public void onTrade(Trade trade) 
+	{
+		List<Trade> trades = capturing.get();
+		if (trades != null)
+		{
+			trades.add(trade);
+		}
+	}
+}
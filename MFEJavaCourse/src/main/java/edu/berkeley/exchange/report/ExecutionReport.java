@@ -0,0 +1,100 @@
+package edu.berkeley.exchange.report;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+
+/**
+ * One event in the life of an order. An order is given its id before it matches, 
+ * so its fills and the ACCEPTED report for whatever rests carry the same id. 
+ * Only a rejected order, which never got that far, carries orderId 0.
+ */
+public class ExecutionReport 
+{
+	private final long sequence;
+	private final long timestamp;
+	private final String traderName;
+	private final String ticker;
+	private final long orderId;
+	private final OrderType type;
+	private final ExecutionStatus status;
+	private final double price;
+	private final double lastPrice;
+	private final int lastQuantity;
+	private final int leavesQuantity;
+	private final String text;
+	
+	public ExecutionReport(long sequence, String traderName, String ticker, long orderId, OrderType type, 
+			ExecutionStatus status, double price, double lastPrice, int lastQuantity, int leavesQuantity, 
+			String text)
+	{
+		this.sequence = sequence;
+		this.timestamp = System.currentTimeMillis();
+		this.traderName = traderName;
+		this.ticker = ticker;
+		this.orderId = orderId;
+		this.type = type;
+		this.status = status;
+		this.price = price;
+		this.lastPrice = lastPrice;
+		this.lastQuantity = lastQuantity;
+		this.leavesQuantity = leavesQuantity;
+		this.text = text;
+	}
+
+	/**
+	 * Increasing across the exchange. A drop copy sees every value, so a gap there 
+	 * means reports were dropped.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public String getTraderName() {
+		return traderName;
+	}
+
+	public String getTicker() {
+		return ticker;
+	}
+
+	public long getOrderId() {
+		return orderId;
+	}
+
+	public OrderType getType() {
+		return type;
+	}
+
+	public ExecutionStatus getStatus() {
+		return status;
+	}
+
+	/**
+	 * The order's limit price.
+	 */
+	public double getPrice() {
+		return price;
+	}
+
+	public double getLastPrice() {
+		return lastPrice;
+	}
+
+	public int getLastQuantity() {
+		return lastQuantity;
+	}
+
+	public int getLeavesQuantity() {
+		return leavesQuantity;
+	}
+
+	/**
+	 * Reason for a rejection.
+	 */
+	public String getText() {
+		return text;
+	}
+}
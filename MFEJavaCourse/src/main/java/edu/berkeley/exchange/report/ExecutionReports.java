@@ -0,0 +1,89 @@
+package edu.berkeley.exchange.report;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+
+/**
+ * Routes execution reports to subscriptions for the trader concerned and to 
+ * every drop-copy subscription. Publishing is a non-blocking offer per 
+ * subscriber, and nothing is built for traders nobody is listening to.
+ */
+@Component
+public class ExecutionReports 
+{
+	private final AtomicLong sequence = new AtomicLong();
+	private final ConcurrentMap<String, List<ReportSubscription>> traderSubscriptions = 
+			new ConcurrentHashMap<>();
+	private final List<ReportSubscription> dropCopies = new CopyOnWriteArrayList<>();
+	
+	public ReportSubscription subscribe(String traderName, int capacity)
+	{
+		ReportSubscription subscription = new ReportSubscription(this, traderName, capacity);
+		List<ReportSubscription> subscriptions = traderSubscriptions.get(traderName);
+		if (subscriptions == null)
+		{
+			List<ReportSubscription> created = new CopyOnWriteArrayList<>();
+			subscriptions = traderSubscriptions.putIfAbsent(traderName, created);
+			if (subscriptions == null)
+			{
+				subscriptions = created;
+			}
+		}
+		subscriptions.add(subscription);
+		return subscription;
+	}
+	
+	public ReportSubscription subscribeDropCopy(int capacity)
+	{
+		ReportSubscription subscription = new ReportSubscription(this, null, capacity);
+		dropCopies.add(subscription);
+		return subscription;
+	}
+	
+	void unsubscribe(ReportSubscription subscription)
+	{
+		if (subscription.getTraderName() == null)
+		{
+			dropCopies.remove(subscription);
+			return;
+		}
+		List<ReportSubscription> subscriptions = traderSubscriptions.get(subscription.getTraderName());
+		if (subscriptions != null)
+		{
+			subscriptions.remove(subscription);
+		}
+	}
+	
+	public void publish(String traderName, String ticker, long orderId, OrderType type, 
+			ExecutionStatus status, double price, double lastPrice, int lastQuantity, int leavesQuantity,
+			String text)
+	{
+		List<ReportSubscription> subscriptions = traderSubscriptions.get(traderName);
+		boolean traderListening = subscriptions != null && !subscriptions.isEmpty();
+		if (!traderListening && dropCopies.isEmpty())
+		{
+			return;
+		}
+		
+		ExecutionReport report = new ExecutionReport(sequence.incrementAndGet(), traderName, ticker, orderId, 
+				type, status, price, lastPrice, lastQuantity, leavesQuantity, text);
+		if (traderListening)
+		{
+			for (ReportSubscription subscription : subscriptions)
+			{
+				subscription.offer(report);
+			}
+		}
+		for (ReportSubscription subscription : dropCopies)
+		{
+			subscription.offer(report);
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package edu.berkeley.exchange.report;
+
+public enum ExecutionStatus {
+	ACCEPTED,
+	PARTIALLY_FILLED,
+	FILLED,
+	CANCELLED,
+	REJECTED
+}
@@ -0,0 +1,100 @@
+package edu.berkeley.exchange.report;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded queue of reports for one consumer. Matching never waits on it: when 
+ * the queue is full the subscription is disconnected instead, so a consumer never 
+ * carries on past a gap unawares. It can still drain what was queued, after which 
+ * polling throws, and must then subscribe again and resynchronise from the 
+ * repositories.
+ */
+public class ReportSubscription 
+{
+	private final ExecutionReports reports;
+	private final String traderName;
+	private final BlockingQueue<ExecutionReport> queue;
+	private volatile boolean overflowed;
+	
+	ReportSubscription(ExecutionReports reports, String traderName, int capacity)
+	{
+		this.reports = reports;
+		this.traderName = traderName;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+	}
+	
+	void offer(ExecutionReport report)
+	{
+		if (!overflowed && !queue.offer(report))
+		{
+			overflowed = true;
+			reports.unsubscribe(this);
+		}
+	}
+	
+	public ExecutionReport poll()
+	{
+		ExecutionReport report = queue.poll();
+		if (report == null)
+		{
+			checkConnected();
+		}
+		return report;
+	}
+	
+	public ExecutionReport poll(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		ExecutionReport report = queue.poll();
+		if (report == null)
+		{
+			checkConnected();
+			report = queue.poll(timeout, unit);
+		}
+		return report;
+	}
+	
+	public int drainTo(Collection<? super ExecutionReport> reports, int maxReports)
+	{
+		int drained = queue.drainTo(reports, maxReports);
+		if (drained == 0)
+		{
+			checkConnected();
+		}
+		return drained;
+	}
+	
+	/**
+	 * Whether reports stopped coming because the queue filled up.
+	 */
+	public boolean isOverflowed()
+	{
+		return overflowed;
+	}
+	
+	private void checkConnected()
+	{
+		if (overflowed)
+		{
+			throw new IllegalStateException("Report subscription " + 
+					(traderName == null ? "for drop copy" : "for " + traderName) + 
+					" was disconnected since its queue of " + (queue.size() + queue.remainingCapacity()) + 
+					" reports overflowed.");
+		}
+	}
+	
+	/**
+	 * The trader this subscription follows, or null for a drop copy.
+	 */
+	public String getTraderName()
+	{
+		return traderName;
+	}
+	
+	public void close()
+	{
+		reports.unsubscribe(this);
+	}
+}
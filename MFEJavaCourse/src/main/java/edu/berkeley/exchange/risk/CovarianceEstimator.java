@@ -0,0 +1,152 @@
+package edu.berkeley.exchange.risk;
+
+import java.sql.Date;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import edu.berkeley.exchange.ExchangeProperties;
+import edu.berkeley.exchange.order.OrderRepository;
+
+/**
+ * Daily log-return covariance estimated from volume-weighted fill prices in the 
+ * ORDERS table. Days a ticker did not trade carry its previous price forward. A 
+ * ticker with no trades in the window, or a window too short to estimate from, 
+ * falls back to the default volatility with no correlation.
+ */
+@Lazy
+@Component
+public class CovarianceEstimator 
+{
+	private static final double TRADING_DAYS_PER_YEAR = 252;
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	
+	private OrderRepository orderRepo;
+	private ExchangeProperties properties;
+	
+	@Autowired
+	public CovarianceEstimator(OrderRepository orderRepo, ExchangeProperties properties)
+	{
+		this.orderRepo = orderRepo;
+		this.properties = properties;
+	}
+	
+	public double[][] estimate(List<String> tickers)
+	{
+		Date since = new Date(System.currentTimeMillis() - properties.getVarLookbackDays() * MILLIS_PER_DAY);
+		return estimate(tickers, since);
+	}
+	
+	public double[][] estimate(List<String> tickers, Date since)
+	{
+		int size = tickers.size();
+		Map<String, Integer> index = new HashMap<>();
+		for (int i = 0; i < size; i++)
+		{
+			index.put(tickers.get(i), i);
+		}
+		
+		TreeMap<Date, double[]> days = new TreeMap<>();
+		boolean[] seen = new boolean[size];
+		if (size > 0)
+		{
+			for (Object[] row : orderRepo.findDailyVolumeWeightedPrices(tickers, since))
+			{
+				int i = index.get((String) row[0]);
+				double[] prices = days.get((Date) row[1]);
+				if (prices == null)
+				{
+					prices = new double[size];
+					Arrays.fill(prices, Double.NaN);
+					days.put((Date) row[1], prices);
+				}
+				prices[i] = ((Number) row[2]).doubleValue() / ((Number) row[3]).doubleValue();
+				seen[i] = true;
+			}
+		}
+		
+		double[][] returns = returns(days, seen, size);
+		return covariance(returns, seen, size);
+	}
+	
+	private static double[][] returns(TreeMap<Date, double[]> days, boolean[] seen, int size)
+	{
+		double[][] returns = new double[Math.max(days.size() - 1, 0)][];
+		int count = 0;
+		
+		double[] last = new double[size];
+		Arrays.fill(last, Double.NaN);
+		boolean started = false;
+		for (double[] prices : days.values())
+		{
+			double[] dayReturns = started ? new double[size] : null;
+			boolean complete = true;
+			for (int i = 0; i < size; i++)
+			{
+				if (Double.isNaN(prices[i]))
+				{
+					prices[i] = last[i];
+				}
+				if (dayReturns != null && seen[i])
+				{
+					dayReturns[i] = Math.log(prices[i] / last[i]);
+				}
+				complete &= !seen[i] || !Double.isNaN(prices[i]);
+				last[i] = prices[i];
+			}
+			if (dayReturns != null)
+			{
+				returns[count++] = dayReturns;
+			}
+			started = complete;
+		}
+		return Arrays.copyOf(returns, count);
+	}
+	
+	private double[][] covariance(double[][] returns, boolean[] seen, int size)
+	{
+		double defaultVariance = properties.getDefaultVolatility() * properties.getDefaultVolatility() 
+				/ TRADING_DAYS_PER_YEAR;
+		double[][] covariance = new double[size][size];
+		int n = returns.length;
+		
+		double[] mean = new double[size];
+		for (double[] row : returns)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				mean[i] += row[i] / n;
+			}
+		}
+		
+		for (int i = 0; i < size; i++)
+		{
+			if (n < 2 || !seen[i])
+			{
+				covariance[i][i] = defaultVariance;
+				continue;
+			}
+			for (int j = 0; j <= i; j++)
+			{
+				if (!seen[j])
+				{
+					continue;
+				}
+				double sum = 0;
+				for (double[] row : returns)
+				{
+					sum += (row[i] - mean[i]) * (row[j] - mean[j]);
+				}
+				covariance[i][j] = sum / (n - 1);
+				covariance[j][i] = covariance[i][j];
+			}
+		}
+		return covariance;
+	}
+}
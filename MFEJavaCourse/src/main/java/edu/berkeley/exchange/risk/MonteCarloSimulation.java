@@ -0,0 +1,179 @@
+package edu.berkeley.exchange.risk;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Simulates one-period portfolio losses from correlated lognormal returns. Paths 
+ * are generated in fixed blocks, each with its own generator seeded from the run 
+ * seed and the block number, and each block writes to its own slice of the 
+ * result. The losses for a seed are therefore the same however many threads run 
+ * the blocks.
+ */
+public class MonteCarloSimulation 
+{
+	static final int BLOCK_SIZE = 1024;
+	
+	private MonteCarloSimulation()
+	{
+		
+	}
+	
+	/**
+	 * Lower-triangular L with L * L^T = covariance. Directions with no variance 
+	 * left (a singular or slightly indefinite estimate) get a zero column.
+	 */
+	public static double[][] cholesky(double[][] covariance)
+	{
+		int size = covariance.length;
+		double[][] lower = new double[size][size];
+		for (int i = 0; i < size; i++)
+		{
+			for (int j = 0; j <= i; j++)
+			{
+				double sum = covariance[i][j];
+				for (int k = 0; k < j; k++)
+				{
+					sum -= lower[i][k] * lower[j][k];
+				}
+				if (i == j)
+				{
+					lower[i][i] = sum > 0 ? Math.sqrt(sum) : 0;
+				}
+				else
+				{
+					lower[i][j] = lower[j][j] > 0 ? sum / lower[j][j] : 0;
+				}
+			}
+		}
+		return lower;
+	}
+	
+	/**
+	 * Losses (positive numbers are losses) of a portfolio with the given market 
+	 * value per position, one entry per path, in path order.
+	 */
+	public static double[] simulateLosses(double[] exposures, double[][] cholesky, int paths, 
+			long seed, ForkJoinPool pool)
+	{
+		double[] losses = new double[paths];
+		int blocks = (paths + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		pool.invoke(new SimulateTask(exposures, cholesky, losses, seed, 0, blocks));
+		return losses;
+	}
+	
+	private static void simulateBlock(double[] exposures, double[][] cholesky, double[] losses, 
+			long seed, int block)
+	{
+		int size = exposures.length;
+		double[] normals = new double[size];
+		Gaussian gaussian = new Gaussian(new SplittableRandom(mix(seed + block * 0x9E3779B97F4A7C15L)));
+		
+		int to = Math.min((block + 1) * BLOCK_SIZE, losses.length);
+		for (int path = block * BLOCK_SIZE; path < to; path++)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				normals[i] = gaussian.next();
+			}
+			
+			double loss = 0;
+			for (int i = 0; i < size; i++)
+			{
+				double[] row = cholesky[i];
+				double logReturn = 0;
+				for (int k = 0; k <= i; k++)
+				{
+					logReturn += row[k] * normals[k];
+				}
+				loss -= exposures[i] * Math.expm1(logReturn);
+			}
+			losses[path] = loss;
+		}
+	}
+	
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * Marsaglia polar method; each accepted pair yields two normals.
+	 */
+	private static class Gaussian
+	{
+		private final SplittableRandom random;
+		private double spare;
+		private boolean hasSpare;
+		
+		public Gaussian(SplittableRandom random)
+		{
+			this.random = random;
+		}
+		
+		public double next()
+		{
+			if (hasSpare)
+			{
+				hasSpare = false;
+				return spare;
+			}
+			
+			double u, v, s;
+			do
+			{
+				u = 2 * random.nextDouble() - 1;
+				v = 2 * random.nextDouble() - 1;
+				s = u * u + v * v;
+			}
+			while (s >= 1 || s == 0);
+			
+			double scale = Math.sqrt(-2 * Math.log(s) / s);
+			spare = v * scale;
+			hasSpare = true;
+			return u * scale;
+		}
+	}
+	
+	private static class SimulateTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = -3071785315337452907L;
+		
+		private final double[] exposures;
+		private final double[][] cholesky;
+		private final double[] losses;
+		private final long seed;
+		private final int fromBlock;
+		private final int toBlock;
+		
+		public SimulateTask(double[] exposures, double[][] cholesky, double[] losses, long seed,
+				int fromBlock, int toBlock)
+		{
+			this.exposures = exposures;
+			this.cholesky = cholesky;
+			this.losses = losses;
+			this.seed = seed;
+			this.fromBlock = fromBlock;
+			this.toBlock = toBlock;
+		}
+
+		@Override
+		protected void compute() 
+		{
+			if (toBlock - fromBlock > 1)
+			{
+				int middle = (fromBlock + toBlock) >>> 1;
+				invokeAll(new SimulateTask(exposures, cholesky, losses, seed, fromBlock, middle),
+						new SimulateTask(exposures, cholesky, losses, seed, middle, toBlock));
+				return;
+			}
+			if (toBlock > fromBlock)
+			{
+				simulateBlock(exposures, cholesky, losses, seed, fromBlock);
+			}
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package edu.berkeley.exchange.risk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import edu.berkeley.exchange.marketdata.LastTradePrices;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+
+/**
+ * Monte Carlo value at risk and expected shortfall of a trader's holdings, each 
+ * position marked at its last trade price and treated as a linear exposure. 
+ * Positions that have never traded carry no price and are left out.
+ */
+@Lazy
+@Service
+public class VarEngine 
+{
+	private HoldingRepository holdingRepo;
+	private LastTradePrices lastTradePrices;
+	private CovarianceEstimator covarianceEstimator;
+	
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	
+	@Autowired
+	public VarEngine(HoldingRepository holdingRepo, LastTradePrices lastTradePrices, 
+			CovarianceEstimator covarianceEstimator)
+	{
+		this.holdingRepo = holdingRepo;
+		this.lastTradePrices = lastTradePrices;
+		this.covarianceEstimator = covarianceEstimator;
+	}
+	
+	public void setPool(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	public VarReport run(String traderName, double[] confidenceLevels, int paths, int horizonDays, 
+			long seed)
+	{
+		List<String> tickers = new ArrayList<>();
+		List<Double> exposures = new ArrayList<>();
+		double portfolioValue = 0;
+		for (Holding holding : holdingRepo.findByKeyTraderName(traderName))
+		{
+			double lastPrice = lastTradePrices.getLastPrice(holding.getKey().getTicker());
+			if (holding.getQuantity() == 0 || Double.isNaN(lastPrice))
+			{
+				continue;
+			}
+			tickers.add(holding.getKey().getTicker());
+			exposures.add(lastPrice * holding.getQuantity());
+			portfolioValue += lastPrice * holding.getQuantity();
+		}
+		
+		double[][] covariance = covarianceEstimator.estimate(tickers);
+		for (double[] row : covariance)
+		{
+			for (int j = 0; j < row.length; j++)
+			{
+				row[j] *= horizonDays;
+			}
+		}
+		
+		double[] exposureArray = new double[exposures.size()];
+		for (int i = 0; i < exposureArray.length; i++)
+		{
+			exposureArray[i] = exposures.get(i);
+		}
+		
+		double[] losses = MonteCarloSimulation.simulateLosses(exposureArray, 
+				MonteCarloSimulation.cholesky(covariance), paths, seed, pool);
+		return report(traderName, portfolioValue, confidenceLevels, losses);
+	}
+	
+	static VarReport report(String traderName, double portfolioValue, double[] confidenceLevels, 
+			double[] losses)
+	{
+		Arrays.parallelSort(losses);
+		
+		double[] valueAtRisk = new double[confidenceLevels.length];
+		double[] expectedShortfall = new double[confidenceLevels.length];
+		for (int c = 0; c < confidenceLevels.length && losses.length > 0; c++)
+		{
+			int index = Math.min(Math.max((int) Math.ceil(confidenceLevels[c] * losses.length) - 1, 0), 
+					losses.length - 1);
+			valueAtRisk[c] = losses[index];
+			
+			double tail = 0;
+			for (int i = index; i < losses.length; i++)
+			{
+				tail += losses[i];
+			}
+			expectedShortfall[c] = tail / (losses.length - index);
+		}
+		return new VarReport(traderName, portfolioValue, losses.length, confidenceLevels.clone(), 
+				valueAtRisk, expectedShortfall);
+	}
+}
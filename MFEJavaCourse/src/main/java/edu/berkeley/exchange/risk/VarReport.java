@@ -0,0 +1,52 @@
+package edu.berkeley.exchange.risk;
+
+public class VarReport 
+{
+	private final String traderName;
+	private final double portfolioValue;
+	private final int paths;
+	private final double[] confidenceLevels;
+	private final double[] valueAtRisk;
+	private final double[] expectedShortfall;
+	
+	public VarReport(String traderName, double portfolioValue, int paths, double[] confidenceLevels,
+			double[] valueAtRisk, double[] expectedShortfall)
+	{
+		this.traderName = traderName;
+		this.portfolioValue = portfolioValue;
+		this.paths = paths;
+		this.confidenceLevels = confidenceLevels;
+		this.valueAtRisk = valueAtRisk;
+		this.expectedShortfall = expectedShortfall;
+	}
+
+	public String getTraderName() {
+		return traderName;
+	}
+
+	public double getPortfolioValue() {
+		return portfolioValue;
+	}
+
+	public int getPaths() {
+		return paths;
+	}
+
+	public double[] getConfidenceLevels() {
+		return confidenceLevels.clone();
+	}
+	
+	/**
+	 * Loss not exceeded with the i-th confidence level.
+	 */
+	public double getValueAtRisk(int i) {
+		return valueAtRisk[i];
+	}
+	
+	/**
+	 * Mean loss in the tail beyond the i-th value at risk.
+	 */
+	public double getExpectedShortfall(int i) {
+		return expectedShortfall[i];
+	}
+}
@@ -0,0 +1,28 @@
+package edu.berkeley.exchange.security;
+
+import javax.persistence.Entity;
+
+@Entity
+public class Etf extends Security 
+{
+	private String fundName;
+	
+	protected Etf()
+	{
+		
+	}
+	
+	public Etf(String ticker, String fundName)
+	{
+		this.ticker = ticker;
+		this.fundName = fundName;
+	}
+
+	public String getFundName() {
+		return fundName;
+	}
+
+	public void setFundName(String fundName) {
+		this.fundName = fundName;
+	}
+}
@@ -0,0 +1,56 @@
+package edu.berkeley.exchange.security;
+
+import java.sql.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+
+@Entity
+public class Future extends Security 
+{
+	@ManyToOne
+	@JoinColumn(name="underlyingTicker", referencedColumnName="ticker")
+	private Security underlying;
+	
+	private double multiplier;
+	private Date expiry;
+	
+	protected Future()
+	{
+		
+	}
+	
+	public Future(String ticker, Security underlying, double multiplier, Date expiry)
+	{
+		this.ticker = ticker;
+		this.underlying = underlying;
+		this.multiplier = multiplier;
+		this.expiry = expiry;
+	}
+
+	public Security getUnderlying() {
+		return underlying;
+	}
+
+	public void setUnderlying(Security underlying) {
+		this.underlying = underlying;
+	}
+	
+	@Override
+	public double getMultiplier() {
+		return multiplier;
+	}
+
+	public void setMultiplier(double multiplier) {
+		this.multiplier = multiplier;
+	}
+
+	public Date getExpiry() {
+		return expiry;
+	}
+
+	public void setExpiry(Date expiry) {
+		this.expiry = expiry;
+	}
+}
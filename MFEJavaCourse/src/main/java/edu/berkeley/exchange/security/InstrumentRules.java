@@ -0,0 +1,118 @@
+package edu.berkeley.exchange.security;
+
+/**
+ * Trading rules of one instrument, copied out of its {@link Security} entity so 
+ * order validation does not touch the entity. A tick size, lot size or price band 
+ * of zero means the rule does not apply.
+ */
+public class InstrumentRules 
+{
+	public static final double TICK_TOLERANCE = 1e-6;
+	
+	public static final InstrumentRules NONE = new InstrumentRules(0, 0, 0, 1);
+	
+	private final double tickSize;
+	private final double ticksPerUnit;
+	private final int lotSize;
+	private final double priceBand;
+	private final double multiplier;
+	
+	public InstrumentRules(double tickSize, int lotSize, double priceBand, double multiplier)
+	{
+		this.tickSize = tickSize;
+		this.ticksPerUnit = tickSize > 0 ? 1 / tickSize : 0;
+		this.lotSize = lotSize;
+		this.priceBand = priceBand;
+		this.multiplier = multiplier;
+	}
+	
+	public static InstrumentRules of(Security security)
+	{
+		return new InstrumentRules(security.getTickSize(), security.getLotSize(), 
+				security.getPriceBand(), security.getMultiplier());
+	}
+	
+	public boolean isOnTick(double price)
+	{
+		if (tickSize <= 0)
+		{
+			return true;
+		}
+		double ticks = price * ticksPerUnit;
+		return Math.abs(ticks - Math.rint(ticks)) < TICK_TOLERANCE;
+	}
+	
+	/**
+	 * The nearest price on tick at or below the given one.
+	 */
+	public double roundDown(double price)
+	{
+		return tickSize <= 0 ? price : Math.floor(price * ticksPerUnit + TICK_TOLERANCE) / ticksPerUnit;
+	}
+	
+	/**
+	 * The nearest price on tick at or above the given one.
+	 */
+	public double roundUp(double price)
+	{
+		return tickSize <= 0 ? price : Math.ceil(price * ticksPerUnit - TICK_TOLERANCE) / ticksPerUnit;
+	}
+	
+	/**
+	 * The highest price on tick strictly below the given one, or the next double 
+	 * down without a tick size.
+	 */
+	public double tickBelow(double price)
+	{
+		return tickSize <= 0 ? Math.nextDown(price) : 
+			(Math.ceil(price * ticksPerUnit - TICK_TOLERANCE) - 1) / ticksPerUnit;
+	}
+	
+	/**
+	 * The lowest price on tick strictly above the given one, or the next double up 
+	 * without a tick size.
+	 */
+	public double tickAbove(double price)
+	{
+		return tickSize <= 0 ? Math.nextUp(price) : 
+			(Math.floor(price * ticksPerUnit + TICK_TOLERANCE) + 1) / ticksPerUnit;
+	}
+	
+	public boolean isWholeLots(int quantity)
+	{
+		return lotSize <= 1 || quantity % lotSize == 0;
+	}
+	
+	/**
+	 * Whether the price lies within the band around the reference price; a NaN 
+	 * reference (nothing traded yet) always passes.
+	 */
+	public boolean isWithinBand(double price, double referencePrice)
+	{
+		if (priceBand <= 0 || Double.isNaN(referencePrice))
+		{
+			return true;
+		}
+		return Math.abs(price - referencePrice) <= referencePrice * priceBand;
+	}
+
+	public double getTicksPerUnit() {
+		return ticksPerUnit;
+	}
+	
+	public double getTickSize() {
+		return tickSize;
+	}
+
+	public int getLotSize() {
+		return lotSize;
+	}
+
+	public double getPriceBand() {
+		return priceBand;
+	}
+
+	public double getMultiplier() {
+		return multiplier;
+	}
+}
@@ -0,0 +1,52 @@
+package edu.berkeley.exchange.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import edu.berkeley.exchange.marketdata.LastTradePrices;
+
+/**
+ * Per-ticker {@link InstrumentRules}, built from the security the first time it is 
+ * traded. Changes to a security's tick, lot or band settings take effect after 
+ * {@link #invalidate(String)}.
+ */
+@Component
+public class InstrumentRulesTable 
+{
+	private LastTradePrices lastPrices;
+	private ConcurrentMap<String, InstrumentRules> rules = new ConcurrentHashMap<>();
+	
+	@Autowired
+	public InstrumentRulesTable(LastTradePrices lastPrices)
+	{
+		this.lastPrices = lastPrices;
+	}
+	
+	public InstrumentRules get(Security security)
+	{
+		InstrumentRules instrumentRules = rules.get(security.getTicker());
+		if (instrumentRules == null)
+		{
+			instrumentRules = InstrumentRules.of(security);
+			InstrumentRules previous = rules.putIfAbsent(security.getTicker(), instrumentRules);
+			if (previous != null)
+			{
+				instrumentRules = previous;
+			}
+		}
+		return instrumentRules;
+	}
+	
+	public double getReferencePrice(String ticker)
+	{
+		return lastPrices.getLastPrice(ticker);
+	}
+	
+	public void invalidate(String ticker)
+	{
+		rules.remove(ticker);
+	}
+}
@@ -0,0 +1,91 @@
+package edu.berkeley.exchange.security;
+
+import java.sql.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+
+@Entity
+public class Option extends Security 
+{
+	public enum OptionType {
+		CALL,
+		PUT
+	}
+	
+	@ManyToOne
+	@JoinColumn(name="underlyingTicker", referencedColumnName="ticker")
+	private Security underlying;
+	
+	private double strike;
+	private Date expiry;
+	
+	@Enumerated(EnumType.STRING)
+	private OptionType optionType;
+	
+	private int contractSize;
+	
+	protected Option()
+	{
+		
+	}
+	
+	public Option(String ticker, Security underlying, double strike, Date expiry, 
+			OptionType optionType, int contractSize)
+	{
+		this.ticker = ticker;
+		this.underlying = underlying;
+		this.strike = strike;
+		this.expiry = expiry;
+		this.optionType = optionType;
+		this.contractSize = contractSize;
+	}
+
+	public Security getUnderlying() {
+		return underlying;
+	}
+
+	public void setUnderlying(Security underlying) {
+		this.underlying = underlying;
+	}
+
+	public double getStrike() {
+		return strike;
+	}
+
+	public void setStrike(double strike) {
+		this.strike = strike;
+	}
+
+	public Date getExpiry() {
+		return expiry;
+	}
+
+	public void setExpiry(Date expiry) {
+		this.expiry = expiry;
+	}
+
+	public OptionType getOptionType() {
+		return optionType;
+	}
+
+	public void setOptionType(OptionType optionType) {
+		this.optionType = optionType;
+	}
+
+	public int getContractSize() {
+		return contractSize;
+	}
+
+	public void setContractSize(int contractSize) {
+		this.contractSize = contractSize;
+	}
+	
+	@Override
+	public double getMultiplier() {
+		return contractSize;
+	}
+}
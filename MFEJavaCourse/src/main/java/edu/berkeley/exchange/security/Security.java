@@ -9,6 +9,10 @@ public abstract class Security
 	@Id
 	protected String ticker;
 	
+	private double tickSize;
+	private int lotSize;
+	private double priceBand;
+	
 	public String getTicker() {
 		return ticker;
 	}
@@ -16,4 +20,32 @@ public abstract class Security
 	public void setTicker(String ticker) {
 		this.ticker = ticker;
 	}
+
+	public double getTickSize() {
+		return tickSize;
+	}
+
+	public void setTickSize(double tickSize) {
+		this.tickSize = tickSize;
+	}
+
+	public int getLotSize() {
+		return lotSize;
+	}
+
+	public void setLotSize(int lotSize) {
+		this.lotSize = lotSize;
+	}
+
+	public double getPriceBand() {
+		return priceBand;
+	}
+
+	public void setPriceBand(double priceBand) {
+		this.priceBand = priceBand;
+	}
+	
+	public double getMultiplier() {
+		return 1;
+	}
 }
@@ -0,0 +1,14 @@
+package edu.berkeley.exchange.security;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SecurityRepository extends JpaRepository<Security, String> {
+
+	@Query("select s.ticker from Security s")
+	public List<String> findAllTickers();
+}
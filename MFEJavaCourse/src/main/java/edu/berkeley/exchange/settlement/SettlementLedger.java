@@ -0,0 +1,155 @@
+package edu.berkeley.exchange.settlement;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import edu.berkeley.exchange.ExchangeProperties;
+import edu.berkeley.exchange.matching.FillBatch;
+import edu.berkeley.exchange.trader.HoldingKey;
+
+/**
+ * Sale proceeds and bought shares owed under end-of-day settlement, netted per 
+ * trader and per holding for each trade date. Fills only add to it after their 
+ * transaction commits. It is kept in memory and lost on restart, so settlement 
+ * works from the executed orders and uses the ledger as a running view and a 
+ * check.
+ */
+@Component
+public class SettlementLedger 
+{
+	private ExchangeProperties properties;
+	private ConcurrentMap<Date, Day> days = new ConcurrentHashMap<>();
+	
+	@Autowired
+	public SettlementLedger(ExchangeProperties properties)
+	{
+		this.properties = properties;
+	}
+	
+	public boolean isEnabled()
+	{
+		return properties.getSettlement() == SettlementMode.END_OF_DAY;
+	}
+	
+	public void addProceeds(String traderName, double amount)
+	{
+		today().addProceeds(traderName, amount);
+	}
+	
+	public void addShares(String traderName, String ticker, int quantity)
+	{
+		today().addShares(new HoldingKey(traderName, ticker), quantity);
+	}
+	
+	/**
+	 * Adds the credits a batch of fills deferred.
+	 */
+	public void record(FillBatch batch)
+	{
+		Day day = today();
+		for (Map.Entry<String, Double> proceeds : batch.getDeferredProceeds().entrySet())
+		{
+			day.addProceeds(proceeds.getKey(), proceeds.getValue());
+		}
+		String ticker = batch.getSecurity().getTicker();
+		for (Map.Entry<String, Integer> shares : batch.getDeferredShares().entrySet())
+		{
+			day.addShares(new HoldingKey(shares.getKey(), ticker), shares.getValue());
+		}
+	}
+	
+	/**
+	 * Cash owed to a trader over every trade date not yet settled.
+	 */
+	public double getPendingProceeds(String traderName)
+	{
+		double pending = 0;
+		for (Day day : days.values())
+		{
+			DoubleAdder proceeds = day.proceeds.get(traderName);
+			pending += proceeds == null ? 0 : proceeds.sum();
+		}
+		return pending;
+	}
+	
+	public long getPendingShares(String traderName, String ticker)
+	{
+		HoldingKey key = new HoldingKey(traderName, ticker);
+		long pending = 0;
+		for (Day day : days.values())
+		{
+			LongAdder shares = day.shares.get(key);
+			pending += shares == null ? 0 : shares.sum();
+		}
+		return pending;
+	}
+	
+	public double getProceedsTotal(Date tradeDate)
+	{
+		Day day = days.get(normalize(tradeDate));
+		if (day == null)
+		{
+			return 0;
+		}
+		double total = 0;
+		for (DoubleAdder proceeds : day.proceeds.values())
+		{
+			total += proceeds.sum();
+		}
+		return total;
+	}
+	
+	public long getSharesTotal(Date tradeDate)
+	{
+		Day day = days.get(normalize(tradeDate));
+		if (day == null)
+		{
+			return 0;
+		}
+		long total = 0;
+		for (LongAdder shares : day.shares.values())
+		{
+			total += shares.sum();
+		}
+		return total;
+	}
+	
+	public void remove(Date tradeDate)
+	{
+		days.remove(normalize(tradeDate));
+	}
+	
+	private Day today()
+	{
+		return days.computeIfAbsent(Date.valueOf(LocalDate.now()), date -> new Day());
+	}
+	
+	private static Date normalize(Date date)
+	{
+		return Date.valueOf(date.toLocalDate());
+	}
+	
+	private static class Day
+	{
+		private final ConcurrentMap<String, DoubleAdder> proceeds = new ConcurrentHashMap<>();
+		private final ConcurrentMap<HoldingKey, LongAdder> shares = new ConcurrentHashMap<>();
+		
+		void addProceeds(String traderName, double amount)
+		{
+			proceeds.computeIfAbsent(traderName, name -> new DoubleAdder()).add(amount);
+		}
+		
+		void addShares(HoldingKey key, int quantity)
+		{
+			shares.computeIfAbsent(key, k -> new LongAdder()).add(quantity);
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package edu.berkeley.exchange.settlement;
+
+/**
+ * When fills pay sellers and deliver shares to buyers. IMMEDIATE credits them as 
+ * part of the fill; END_OF_DAY leaves them owed until the day is settled.
+ */
+public enum SettlementMode 
+{
+	IMMEDIATE,
+	END_OF_DAY
+}
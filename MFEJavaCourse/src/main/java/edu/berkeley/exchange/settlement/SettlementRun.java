@@ -0,0 +1,79 @@
+package edu.berkeley.exchange.settlement;
+
+import java.sql.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Record of a trade date's settlement. One exists per date settled, which is what 
+ * stops a date from being settled twice.
+ */
+@Entity
+public class SettlementRun 
+{
+	@Id
+	private Date tradeDate;
+	
+	private long fills;
+	private int traders;
+	private int holdings;
+	private double cash;
+	private long shares;
+	private boolean reconciled;
+	
+	protected SettlementRun()
+	{
+		
+	}
+	
+	public SettlementRun(Date tradeDate, long fills, int traders, int holdings, double cash, long shares,
+			boolean reconciled)
+	{
+		this.tradeDate = tradeDate;
+		this.fills = fills;
+		this.traders = traders;
+		this.holdings = holdings;
+		this.cash = cash;
+		this.shares = shares;
+		this.reconciled = reconciled;
+	}
+	
+	public Date getTradeDate() {
+		return tradeDate;
+	}
+	
+	public long getFills() {
+		return fills;
+	}
+	
+	/**
+	 * Traders paid sale proceeds.
+	 */
+	public int getTraders() {
+		return traders;
+	}
+	
+	/**
+	 * Holdings credited with bought shares.
+	 */
+	public int getHoldings() {
+		return holdings;
+	}
+	
+	public double getCash() {
+		return cash;
+	}
+	
+	public long getShares() {
+		return shares;
+	}
+	
+	/**
+	 * Whether the totals settled matched those the ledger collected during the day. 
+	 * They do not after a restart, which empties the ledger.
+	 */
+	public boolean isReconciled() {
+		return reconciled;
+	}
+}
@@ -0,0 +1,9 @@
+package edu.berkeley.exchange.settlement;
+
+import java.sql.Date;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SettlementRunRepository extends JpaRepository<SettlementRun, Date> {
+
+}
@@ -0,0 +1,168 @@
+package edu.berkeley.exchange.settlement;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingKey;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+/**
+ * End-of-day settlement. A trade date's executed orders are totalled per trader, 
+ * security and side in one grouped query, netting every fill of the day into one 
+ * cash credit per seller and one share credit per buyer and security, and these 
+ * are written in chunked batches in a single transaction. Buyers' capital and 
+ * sellers' shares were already taken when their orders were placed, so only the 
+ * receiving side is settled here. The run is reconciled when what was credited 
+ * matches what the ledger collected during the day.
+ */
+@Lazy
+@Service
+public class SettlementService 
+{
+	private static final int CHUNK_SIZE = 1000;
+	
+	private OrderRepository orderRepo;
+	private TraderRepository traderRepo;
+	private HoldingRepository holdingRepo;
+	private SettlementRunRepository runRepo;
+	private SettlementLedger ledger;
+	private TransactionTemplate transactions;
+	
+	@Autowired
+	public SettlementService(OrderRepository orderRepo, TraderRepository traderRepo, 
+			HoldingRepository holdingRepo, SettlementRunRepository runRepo, SettlementLedger ledger,
+			PlatformTransactionManager transactionManager)
+	{
+		this.orderRepo = orderRepo;
+		this.traderRepo = traderRepo;
+		this.holdingRepo = holdingRepo;
+		this.runRepo = runRepo;
+		this.ledger = ledger;
+		this.transactions = new TransactionTemplate(transactionManager);
+	}
+	
+	/**
+	 * Settles every fill of the trade date. A date is settled at most once, so it 
+	 * should be run once trading on that date is over. Matching in later dates may 
+	 * carry on meanwhile; a conflict on a trader or holding it touched rolls the 
+	 * whole settlement back, and it can be run again.
+	 */
+	public SettlementRun settle(Date tradeDate)
+	{
+		if (!ledger.isEnabled())
+		{
+			throw new IllegalStateException("Could not settle " + tradeDate + 
+					" since fills are settled immediately.");
+		}
+		
+		SettlementRun run = transactions.execute(status ->
+		{
+			if (runRepo.exists(tradeDate))
+			{
+				throw new IllegalStateException("Could not settle " + tradeDate + 
+						" since it has already been settled.");
+			}
+			
+			Map<String, Double> proceeds = new TreeMap<>();
+			Map<HoldingKey, Integer> shares = new LinkedHashMap<>();
+			long fills = 0;
+			for (Object[] row : orderRepo.findExecutedTotalsByTrader(tradeDate))
+			{
+				String traderName = (String) row[0];
+				String ticker = (String) row[1];
+				int quantity = ((Number) row[3]).intValue();
+				double value = ((Number) row[4]).doubleValue();
+				if (row[2] == OrderType.SELL)
+				{
+					proceeds.merge(traderName, value, Double::sum);
+					fills += ((Number) row[5]).longValue();
+				}
+				else
+				{
+					shares.merge(new HoldingKey(traderName, ticker), quantity, Integer::sum);
+				}
+			}
+			
+			double cash = creditProceeds(proceeds);
+			long sharesBought = creditShares(shares);
+			
+			boolean reconciled = Math.abs(cash - ledger.getProceedsTotal(tradeDate)) < 1e-6 &&
+					sharesBought == ledger.getSharesTotal(tradeDate);
+			return runRepo.save(new SettlementRun(tradeDate, fills, proceeds.size(), shares.size(), 
+					cash, sharesBought, reconciled));
+		});
+		
+		ledger.remove(tradeDate);
+		return run;
+	}
+	
+	/**
+	 * Pays each seller's proceeds and returns the total paid.
+	 */
+	private double creditProceeds(Map<String, Double> proceeds)
+	{
+		double paid = 0;
+		List<String> names = new ArrayList<>(proceeds.keySet());
+		for (int from = 0; from < names.size(); from += CHUNK_SIZE)
+		{
+			List<Trader> traders = traderRepo.findAll(
+					names.subList(from, Math.min(from + CHUNK_SIZE, names.size())));
+			for (Trader trader : traders)
+			{
+				double amount = proceeds.get(trader.getName());
+				trader.setCapital(trader.getCapital() + amount);
+				paid += amount;
+			}
+			traderRepo.save(traders);
+		}
+		return paid;
+	}
+	
+	/**
+	 * Delivers each buyer's shares and returns the total delivered.
+	 */
+	private long creditShares(Map<HoldingKey, Integer> shares)
+	{
+		long delivered = 0;
+		List<HoldingKey> keys = new ArrayList<>(shares.keySet());
+		for (int from = 0; from < keys.size(); from += CHUNK_SIZE)
+		{
+			List<HoldingKey> chunk = keys.subList(from, Math.min(from + CHUNK_SIZE, keys.size()));
+			Map<HoldingKey, Holding> holdings = new LinkedHashMap<>();
+			for (Holding holding : holdingRepo.findAll(chunk))
+			{
+				holdings.put(holding.getKey(), holding);
+			}
+			for (HoldingKey key : chunk)
+			{
+				Holding holding = holdings.get(key);
+				if (holding == null)
+				{
+					holdings.put(key, new Holding(key, shares.get(key)));
+				}
+				else
+				{
+					holding.setQuantity(holding.getQuantity() + shares.get(key));
+				}
+				delivered += shares.get(key);
+			}
+			holdingRepo.save(holdings.values());
+		}
+		return delivered;
+	}
+}
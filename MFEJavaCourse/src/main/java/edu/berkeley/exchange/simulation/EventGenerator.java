@@ -0,0 +1,125 @@
+package edu.berkeley.exchange.simulation;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+
+/**
+ * The order flow of a session as a function of the seed alone: Poisson arrival 
+ * times, a trader and one of the stocks it trades, and either a cancel or a new 
+ * order priced off the stock's current fair value. Passive orders rest between 
+ * halfSpread and halfSpread + passiveDepth away from fair value; aggressive ones 
+ * reach the same distance into the other side.
+ */
+public class EventGenerator implements Iterator<SimulatedEvent>
+{
+	private static final double NANOS_PER_SECOND = 1e9;
+	private static final double SECONDS_PER_YEAR = 365.0 * 24 * 60 * 60;
+	
+	private final SimulationConfig config;
+	private final SplittableRandom random;
+	private final double[] meanLogPrices;
+	private final double[] logPrices;
+	private final long[] lastUpdates;
+	
+	private long generated;
+	private double offsetNanos;
+	
+	public EventGenerator(SimulationConfig config)
+	{
+		this.config = config;
+		this.random = new SplittableRandom(config.getSeed());
+		this.meanLogPrices = new double[config.getStocks()];
+		this.logPrices = new double[config.getStocks()];
+		this.lastUpdates = new long[config.getStocks()];
+		
+		for (int i = 0; i < meanLogPrices.length; i++)
+		{
+			meanLogPrices[i] = Math.log(openingPrice(i));
+			logPrices[i] = meanLogPrices[i];
+		}
+	}
+	
+	/**
+	 * Opening prices depend only on the seed and the stock, so every generator 
+	 * built from the same config starts each stock at the same price.
+	 */
+	public double openingPrice(int stock)
+	{
+		return round(10 + new SplittableRandom(config.getSeed() ^ stock).nextDouble() * 190);
+	}
+	
+	public int stockOf(int trader, int slot)
+	{
+		return (int) (((long) trader * config.getStocksPerTrader() + slot) % config.getStocks());
+	}
+	
+	@Override
+	public boolean hasNext() 
+	{
+		return generated < config.getTotalOrders();
+	}
+
+	@Override
+	public SimulatedEvent next() 
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+		generated++;
+		
+		offsetNanos += -Math.log(1 - random.nextDouble()) / config.getOrdersPerSecond() * NANOS_PER_SECOND;
+		long offset = (long) offsetNanos;
+		
+		int trader = random.nextInt(config.getTraders());
+		int stock = stockOf(trader, random.nextInt(config.getStocksPerTrader()));
+		OrderType type = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+		
+		if (random.nextDouble() < config.getCancelFraction())
+		{
+			return new SimulatedEvent(offset, true, trader, stock, 0, 0, type);
+		}
+		
+		double fair = Math.exp(evolve(stock, offset));
+		double depth = config.getHalfSpread() + random.nextDouble() * config.getPassiveDepth();
+		double distance = random.nextDouble() < config.getAggressiveFraction() ? depth : -depth;
+		double price = type == OrderType.BUY ? fair * (1 + distance) : fair * (1 - distance);
+		int quantity = config.getLotSize() * (1 + random.nextInt(config.getMaxLots()));
+		
+		return new SimulatedEvent(offset, false, trader, stock, Math.max(round(price), 0.01), quantity, type);
+	}
+	
+	/**
+	 * Exact Ornstein-Uhlenbeck step from the stock's last update to now. Without 
+	 * mean reversion the variance tends to dt, a plain random walk.
+	 */
+	private double evolve(int stock, long now)
+	{
+		double dt = (now - lastUpdates[stock]) / NANOS_PER_SECOND * config.getTimeScale() / SECONDS_PER_YEAR;
+		lastUpdates[stock] = now;
+		
+		double theta = config.getMeanReversion();
+		double decay = Math.exp(-theta * dt);
+		double variance = theta == 0 ? dt : -Math.expm1(-2 * theta * dt) / (2 * theta);
+		double deviation = config.getVolatility() * Math.sqrt(variance);
+		
+		logPrices[stock] = meanLogPrices[stock] + (logPrices[stock] - meanLogPrices[stock]) * decay 
+				+ deviation * gaussian();
+		return logPrices[stock];
+	}
+	
+	private double gaussian()
+	{
+		double u = 1 - random.nextDouble();
+		double v = random.nextDouble();
+		return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+	}
+	
+	private static double round(double price)
+	{
+		return Math.round(price * 100) / 100.0;
+	}
+}
@@ -0,0 +1,85 @@
+package edu.berkeley.exchange.simulation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of nanosecond latencies: values below 32 are exact and 
+ * every power of two above is split into 32 buckets, so any reported percentile 
+ * is within about 3% of the true value. Recording is lock-free.
+ */
+public class LatencyHistogram 
+{
+	private static final int SUB_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	
+	private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+	
+	public void record(long nanos)
+	{
+		counts.incrementAndGet(indexOf(Math.max(nanos, 0)));
+	}
+	
+	public long getCount()
+	{
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++)
+		{
+			total += counts.get(i);
+		}
+		return total;
+	}
+	
+	/**
+	 * Upper bound of the bucket holding the given percentile (0 to 100).
+	 */
+	public long getPercentile(double percentile)
+	{
+		long total = getCount();
+		long target = Math.max((long) Math.ceil(percentile / 100 * total), 1);
+		
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++)
+		{
+			seen += counts.get(i);
+			if (seen >= target)
+			{
+				return upperBoundOf(i);
+			}
+		}
+		return 0;
+	}
+	
+	public long getMax()
+	{
+		for (int i = counts.length() - 1; i >= 0; i--)
+		{
+			if (counts.get(i) > 0)
+			{
+				return upperBoundOf(i);
+			}
+		}
+		return 0;
+	}
+	
+	static int indexOf(long value)
+	{
+		if (value < SUB_BUCKETS)
+		{
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BITS;
+		return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+	
+	static long upperBoundOf(int index)
+	{
+		if (index < SUB_BUCKETS)
+		{
+			return index;
+		}
+		int shift = (index >>> SUB_BITS) - 1;
+		long lower = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+		return lower + (1L << shift) - 1;
+	}
+}
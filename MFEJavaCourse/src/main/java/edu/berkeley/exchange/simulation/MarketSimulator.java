@@ -0,0 +1,178 @@
+package edu.berkeley.exchange.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.berkeley.exchange.ExchangeService;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+/**
+ * Open-loop load generator. Events from an {@link EventGenerator} are released 
+ * at their scheduled times whether or not earlier ones have finished, and each 
+ * latency is measured from the scheduled time, so a stall shows up in every 
+ * event queued behind it rather than being hidden (coordinated omission). The 
+ * event stream depends only on the seed; with one thread the run as a whole 
+ * replays exactly.
+ */
+public class MarketSimulator 
+{
+	private static final int SAVE_BATCH_SIZE = 1000;
+	
+	private final ExchangeService exchangeService;
+	private final TraderRepository traderRepo;
+	private final StockRepository stockRepo;
+	private final HoldingRepository holdingRepo;
+	private final OrderRepository orderRepo;
+	private final SimulationConfig config;
+	
+	private String[] traderNames;
+	private Stock[] stocks;
+	
+	public MarketSimulator(ExchangeService exchangeService, TraderRepository traderRepo, 
+			StockRepository stockRepo, HoldingRepository holdingRepo, OrderRepository orderRepo,
+			SimulationConfig config)
+	{
+		this.exchangeService = exchangeService;
+		this.traderRepo = traderRepo;
+		this.stockRepo = stockRepo;
+		this.holdingRepo = holdingRepo;
+		this.orderRepo = orderRepo;
+		this.config = config;
+	}
+	
+	/**
+	 * Creates the simulated traders and stocks, and gives every trader 
+	 * initialShares of each stock it trades.
+	 */
+	public void setUp()
+	{
+		stocks = new Stock[config.getStocks()];
+		List<Stock> stockBatch = new ArrayList<>();
+		for (int i = 0; i < stocks.length; i++)
+		{
+			stocks[i] = new Stock(String.format("SIM%05d", i), "Simulated " + i);
+			stockBatch.add(stocks[i]);
+			if (stockBatch.size() == SAVE_BATCH_SIZE || i == stocks.length - 1)
+			{
+				stockRepo.save(stockBatch);
+				stockBatch.clear();
+			}
+		}
+		
+		EventGenerator layout = new EventGenerator(config);
+		traderNames = new String[config.getTraders()];
+		List<Trader> traderBatch = new ArrayList<>();
+		List<Holding> holdingBatch = new ArrayList<>();
+		for (int i = 0; i < traderNames.length; i++)
+		{
+			traderNames[i] = String.format("SIM-TRADER-%06d", i);
+			Trader trader = new Trader(traderNames[i], config.getInitialCapital());
+			traderBatch.add(trader);
+			for (int slot = 0; slot < config.getStocksPerTrader(); slot++)
+			{
+				holdingBatch.add(new Holding(trader, stocks[layout.stockOf(i, slot)], config.getInitialShares()));
+			}
+			
+			if (traderBatch.size() == SAVE_BATCH_SIZE || i == traderNames.length - 1)
+			{
+				traderRepo.save(traderBatch);
+				holdingRepo.save(holdingBatch);
+				traderBatch.clear();
+				holdingBatch.clear();
+			}
+		}
+	}
+	
+	public SimulationResult run() throws InterruptedException
+	{
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final AtomicLong placed = new AtomicLong();
+		final AtomicLong cancelled = new AtomicLong();
+		final AtomicLong rejected = new AtomicLong();
+		
+		ExecutorService workers = Executors.newFixedThreadPool(config.getThreads());
+		EventGenerator events = new EventGenerator(config);
+		long start = System.nanoTime();
+		try
+		{
+			while (events.hasNext())
+			{
+				final SimulatedEvent event = events.next();
+				final long due = start + event.getOffsetNanos();
+				
+				long wait;
+				while ((wait = due - System.nanoTime()) > 0)
+				{
+					LockSupport.parkNanos(wait);
+				}
+				
+				workers.execute(() ->
+				{
+					if (execute(event))
+					{
+						(event.isCancel() ? cancelled : placed).incrementAndGet();
+					}
+					else
+					{
+						rejected.incrementAndGet();
+					}
+					latencies.record(System.nanoTime() - due);
+				});
+			}
+		}
+		finally
+		{
+			workers.shutdown();
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		
+		return new SimulationResult(placed.get(), cancelled.get(), rejected.get(), 
+				System.nanoTime() - start, latencies);
+	}
+	
+	/**
+	 * Traders are reloaded for every event since several events for the same 
+	 * trader may be in flight at once.
+	 */
+	private boolean execute(SimulatedEvent event)
+	{
+		Trader trader = traderRepo.findOne(traderNames[event.getTrader()]);
+		Stock stock = stocks[event.getStock()];
+		try
+		{
+			if (event.isCancel())
+			{
+				Order oldest = orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(
+						trader.getName(), stock.getTicker(), false);
+				if (oldest == null)
+				{
+					return false;
+				}
+				exchangeService.cancelOrder(trader, oldest.getId());
+			}
+			else
+			{
+				exchangeService.placeOrder(trader, stock, event.getPrice(), event.getQuantity(), 
+						event.getType());
+			}
+			return true;
+		}
+		catch (OrderExecutionException e)
+		{
+			return false;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package edu.berkeley.exchange.simulation;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+
+public class SimulatedEvent 
+{
+	private final long offsetNanos;
+	private final boolean cancel;
+	private final int trader;
+	private final int stock;
+	private final double price;
+	private final int quantity;
+	private final OrderType type;
+	
+	public SimulatedEvent(long offsetNanos, boolean cancel, int trader, int stock, double price, 
+			int quantity, OrderType type)
+	{
+		this.offsetNanos = offsetNanos;
+		this.cancel = cancel;
+		this.trader = trader;
+		this.stock = stock;
+		this.price = price;
+		this.quantity = quantity;
+		this.type = type;
+	}
+	
+	/**
+	 * When the event is due, relative to the start of the run.
+	 */
+	public long getOffsetNanos() {
+		return offsetNanos;
+	}
+
+	public boolean isCancel() {
+		return cancel;
+	}
+
+	public int getTrader() {
+		return trader;
+	}
+
+	public int getStock() {
+		return stock;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public OrderType getType() {
+		return type;
+	}
+}
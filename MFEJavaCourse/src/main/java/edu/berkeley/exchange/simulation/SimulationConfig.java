@@ -0,0 +1,181 @@
+package edu.berkeley.exchange.simulation;
+
+/**
+ * Parameters of a simulated session. Prices follow a mean-reverting 
+ * (Ornstein-Uhlenbeck) process in log space around each stock's opening price; 
+ * volatility and mean reversion are per year of simulated time, which runs at 
+ * wall-clock speed scaled by timeScale. A mean reversion of 0 leaves prices on a 
+ * random walk.
+ */
+public class SimulationConfig 
+{
+	private long seed = 1;
+	private int traders = 1000;
+	private int stocks = 100;
+	private int stocksPerTrader = 5;
+	private double initialCapital = 1000000;
+	private int initialShares = 10000;
+	
+	private double ordersPerSecond = 1000;
+	private long totalOrders = 100000;
+	private int threads = 4;
+	
+	private double aggressiveFraction = 0.3;
+	private double cancelFraction = 0.2;
+	private double halfSpread = 0.001;
+	private double passiveDepth = 0.01;
+	private int lotSize = 100;
+	private int maxLots = 10;
+	
+	private double volatility = 0.3;
+	private double meanReversion = 5;
+	private double timeScale = 3600;
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public int getTraders() {
+		return traders;
+	}
+
+	public void setTraders(int traders) {
+		this.traders = traders;
+	}
+
+	public int getStocks() {
+		return stocks;
+	}
+
+	public void setStocks(int stocks) {
+		this.stocks = stocks;
+	}
+
+	public int getStocksPerTrader() {
+		return stocksPerTrader;
+	}
+
+	public void setStocksPerTrader(int stocksPerTrader) {
+		this.stocksPerTrader = stocksPerTrader;
+	}
+
+	public double getInitialCapital() {
+		return initialCapital;
+	}
+
+	public void setInitialCapital(double initialCapital) {
+		this.initialCapital = initialCapital;
+	}
+
+	public int getInitialShares() {
+		return initialShares;
+	}
+
+	public void setInitialShares(int initialShares) {
+		this.initialShares = initialShares;
+	}
+
+	public double getOrdersPerSecond() {
+		return ordersPerSecond;
+	}
+
+	public void setOrdersPerSecond(double ordersPerSecond) {
+		this.ordersPerSecond = ordersPerSecond;
+	}
+
+	public long getTotalOrders() {
+		return totalOrders;
+	}
+
+	public void setTotalOrders(long totalOrders) {
+		this.totalOrders = totalOrders;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public double getAggressiveFraction() {
+		return aggressiveFraction;
+	}
+
+	public void setAggressiveFraction(double aggressiveFraction) {
+		this.aggressiveFraction = aggressiveFraction;
+	}
+
+	public double getCancelFraction() {
+		return cancelFraction;
+	}
+
+	public void setCancelFraction(double cancelFraction) {
+		this.cancelFraction = cancelFraction;
+	}
+
+	public double getHalfSpread() {
+		return halfSpread;
+	}
+
+	public void setHalfSpread(double halfSpread) {
+		this.halfSpread = halfSpread;
+	}
+
+	public double getPassiveDepth() {
+		return passiveDepth;
+	}
+
+	public void setPassiveDepth(double passiveDepth) {
+		this.passiveDepth = passiveDepth;
+	}
+
+	public int getLotSize() {
+		return lotSize;
+	}
+
+	public void setLotSize(int lotSize) {
+		this.lotSize = lotSize;
+	}
+
+	public int getMaxLots() {
+		return maxLots;
+	}
+
+	public void setMaxLots(int maxLots) {
+		this.maxLots = maxLots;
+	}
+
+	public double getVolatility() {
+		return volatility;
+	}
+
+	public void setVolatility(double volatility) {
+		this.volatility = volatility;
+	}
+
+	public double getMeanReversion() {
+		return meanReversion;
+	}
+
+	public void setMeanReversion(double meanReversion) {
+		if (meanReversion < 0)
+		{
+			throw new IllegalArgumentException("Mean reversion must not be negative, got " + meanReversion + ".");
+		}
+		this.meanReversion = meanReversion;
+	}
+
+	public double getTimeScale() {
+		return timeScale;
+	}
+
+	public void setTimeScale(double timeScale) {
+		this.timeScale = timeScale;
+	}
+}
@@ -0,0 +1,51 @@
+package edu.berkeley.exchange.simulation;
+
+public class SimulationResult 
+{
+	private final long placed;
+	private final long cancelled;
+	private final long rejected;
+	private final long elapsedNanos;
+	private final LatencyHistogram latencies;
+	
+	public SimulationResult(long placed, long cancelled, long rejected, long elapsedNanos,
+			LatencyHistogram latencies)
+	{
+		this.placed = placed;
+		this.cancelled = cancelled;
+		this.rejected = rejected;
+		this.elapsedNanos = elapsedNanos;
+		this.latencies = latencies;
+	}
+
+	public long getPlaced() {
+		return placed;
+	}
+
+	public long getCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Orders and cancels refused with an OrderExecutionException, or cancels that 
+	 * found no open order.
+	 */
+	public long getRejected() {
+		return rejected;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	public double getAchievedRate() {
+		return (placed + cancelled + rejected) / (elapsedNanos / 1e9);
+	}
+
+	/**
+	 * Latency from when each event was due, not when it was sent.
+	 */
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+}
@@ -0,0 +1,111 @@
+package edu.berkeley.exchange.stop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.StopOrder;
+
+/**
+ * Untriggered stops of one security, bucketed by stop price. BUY stops fire when 
+ * a trade prints at or above their stop, so a trade fires the head of the BUY map 
+ * up to its price; SELL stops fire at or below, so it fires the tail of the SELL 
+ * map down to its price. Either way the check is one tree descent plus the stops 
+ * that actually fire.
+ */
+public class StopOrderBook 
+{
+	private static final Comparator<StopOrder> SEQUENCE = new Comparator<StopOrder>() {
+		@Override
+		public int compare(StopOrder first, StopOrder second) 
+		{
+			return Long.compare(first.getId(), second.getId());
+		}
+	};
+	
+	private final NavigableMap<Double, List<StopOrder>> buys = new TreeMap<>();
+	private final NavigableMap<Double, List<StopOrder>> sells = new TreeMap<>();
+	private int size;
+	
+	public void add(StopOrder stop)
+	{
+		NavigableMap<Double, List<StopOrder>> side = side(stop.getType());
+		List<StopOrder> level = side.get(stop.getStopPrice());
+		if (level == null)
+		{
+			level = new ArrayList<>();
+			side.put(stop.getStopPrice(), level);
+		}
+		level.add(stop);
+		size++;
+	}
+	
+	public boolean remove(long id, OrderType type, double stopPrice)
+	{
+		NavigableMap<Double, List<StopOrder>> side = side(type);
+		List<StopOrder> level = side.get(stopPrice);
+		if (level == null)
+		{
+			return false;
+		}
+		
+		for (Iterator<StopOrder> stops = level.iterator(); stops.hasNext();)
+		{
+			if (stops.next().getId() == id)
+			{
+				stops.remove();
+				size--;
+				if (level.isEmpty())
+				{
+					side.remove(stopPrice);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Removes and returns the stops fired by a trade at the given price, in the 
+	 * order they were placed.
+	 */
+	public List<StopOrder> trigger(double tradePrice)
+	{
+		List<StopOrder> triggered = new ArrayList<>();
+		drain(buys.headMap(tradePrice, true), triggered);
+		drain(sells.tailMap(tradePrice, true), triggered);
+		
+		if (triggered.size() > 1)
+		{
+			Collections.sort(triggered, SEQUENCE);
+		}
+		size -= triggered.size();
+		return triggered;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	private NavigableMap<Double, List<StopOrder>> side(OrderType type)
+	{
+		return type.equals(OrderType.BUY) ? buys : sells;
+	}
+	
+	private static void drain(NavigableMap<Double, List<StopOrder>> levels, List<StopOrder> triggered)
+	{
+		for (Iterator<Map.Entry<Double, List<StopOrder>>> entries = levels.entrySet().iterator(); 
+				entries.hasNext();)
+		{
+			triggered.addAll(entries.next().getValue());
+			entries.remove();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package edu.berkeley.exchange.stop;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import edu.berkeley.exchange.ExchangeProperties;
+import edu.berkeley.exchange.marketdata.LastTradePrices;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.StopOrder;
+import edu.berkeley.exchange.order.StopOrderRepository;
+import edu.berkeley.exchange.order.Trade;
+import edu.berkeley.exchange.order.TradeListener;
+
+/**
+ * Trigger books for stop orders, fed by the trade stream. Fired stops are queued 
+ * per security in firing order and handed back to ExchangeServiceImpl, which 
+ * drains the queue through the matching loop before releasing the security's 
+ * lock. All calls for a security happen under that lock.
+ */
+@Component
+public class StopOrderEngine implements TradeListener
+{
+	private StopOrderRepository stopOrderRepo;
+	private LastTradePrices lastTradePrices;
+	private ExchangeProperties properties;
+	
+	private ConcurrentMap<String, Triggers> triggers = new ConcurrentHashMap<>();
+	
+	@Autowired
+	public StopOrderEngine(StopOrderRepository stopOrderRepo, LastTradePrices lastTradePrices,
+			ExchangeProperties properties)
+	{
+		this.stopOrderRepo = stopOrderRepo;
+		this.lastTradePrices = lastTradePrices;
+		this.properties = properties;
+	}
+	
+	/**
+	 * Persists and books a new stop. A stop that the last trade has already gone 
+	 * through fires immediately. The book is read before the stop is saved, so a 
+	 * book first read now does not pick the stop up a second time.
+	 */
+	public StopOrder add(StopOrder stop)
+	{
+		Triggers book = triggers(stop.getTicker());
+		stop = stopOrderRepo.save(stop);
+		book.stops.add(stop);
+		
+		double lastPrice = lastTradePrices.getLastPrice(stop.getTicker());
+		if (!Double.isNaN(lastPrice))
+		{
+			fire(book, lastPrice);
+		}
+		return stop;
+	}
+	
+	public boolean cancel(StopOrder stop)
+	{
+		Triggers book = triggers(stop.getTicker());
+		if (!book.stops.remove(stop.getId(), stop.getType(), stop.getStopPrice()))
+		{
+			return false;
+		}
+		stopOrderRepo.delete(stop);
+		return true;
+	}
+	
+	/**
+	 * Drops the security's trigger book so it is read again from STOP_ORDERS, after 
+	 * its stops were changed there directly.
+	 */
+	public void invalidate(String ticker)
+	{
+		triggers.remove(ticker);
+	}
+	
+	@Override
+	public void onTrade(Trade trade) 
+	{
+		fire(triggers(trade.getTicker()), trade.getPrice());
+	}
+	
+	/**
+	 * Next fired stop for the security, or null once the queue is empty.
+	 */
+	public StopOrder nextTriggered(String ticker)
+	{
+		Triggers book = triggers.get(ticker);
+		return book == null ? null : book.fired.poll();
+	}
+	
+	/**
+	 * Limit price a fired stop enters the book at.
+	 */
+	public double entryPrice(StopOrder stop)
+	{
+		if (stop.isStopLimit())
+		{
+			return stop.getLimitPrice();
+		}
+		
+		double band = properties.getStopProtectionBand();
+		return stop.getType().equals(OrderType.BUY) ? stop.getTriggerPrice() * (1 + band) : 
+			stop.getTriggerPrice() * (1 - band);
+	}
+	
+	private void fire(Triggers book, double tradePrice)
+	{
+		if (book.stops.size() == 0)
+		{
+			return;
+		}
+		
+		List<StopOrder> fired = book.stops.trigger(tradePrice);
+		if (fired.isEmpty())
+		{
+			return;
+		}
+		
+		List<Long> ids = new ArrayList<>(fired.size());
+		for (StopOrder stop : fired)
+		{
+			stop.setTriggered(true);
+			stop.setTriggerPrice(tradePrice);
+			ids.add(stop.getId());
+		}
+		stopOrderRepo.markTriggered(ids, tradePrice);
+		book.fired.addAll(fired);
+	}
+	
+	private Triggers triggers(String ticker)
+	{
+		Triggers book = triggers.get(ticker);
+		if (book == null)
+		{
+			book = new Triggers();
+			for (StopOrder stop : stopOrderRepo.findByTickerAndTriggeredOrderByIdAsc(ticker, false))
+			{
+				book.stops.add(stop);
+			}
+			triggers.put(ticker, book);
+		}
+		return book;
+	}
+	
+	private static class Triggers
+	{
+		private final StopOrderBook stops = new StopOrderBook();
+		private final ArrayDeque<StopOrder> fired = new ArrayDeque<>();
+	}
+}
@@ -2,10 +2,14 @@ package edu.berkeley.exchange.trader;
 
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 import edu.berkeley.exchange.security.Security;
 
 @Entity
+@Table(indexes=@Index(name="IDX_HOLDING_TICKER", columnList="ticker"))
 public class Holding 
 {
 	@EmbeddedId
@@ -13,6 +17,9 @@ public class Holding
 	
 	private int quantity;
 	
+	@Version
+	private long version;
+	
 	protected Holding()
 	{
 		
@@ -24,6 +31,16 @@ public class Holding
 		this.key = key;
 		this.quantity = quantity;
 	}
+	
+	public Holding(HoldingKey key, int quantity)
+	{
+		this.key = key;
+		this.quantity = quantity;
+	}
+
+	public HoldingKey getKey() {
+		return key;
+	}
 
 	public int getQuantity() {
 		return quantity;
@@ -32,4 +49,8 @@ public class Holding
 	public void setQuantity(int quantity) {
 		this.quantity = quantity;
 	}
+
+	public long getVersion() {
+		return version;
+	}
 }
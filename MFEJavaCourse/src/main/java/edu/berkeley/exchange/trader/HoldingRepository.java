@@ -1,7 +1,35 @@
 package edu.berkeley.exchange.trader;
 
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface HoldingRepository extends JpaRepository<Holding, HoldingKey> {
 
+	public List<Holding> findByKeyTraderName(String traderName);
+
+	@Query("select h from Holding h where h.key.traderName > ?1 "
+			+ "or (h.key.traderName = ?1 and h.key.ticker > ?2) "
+			+ "order by h.key.traderName, h.key.ticker")
+	public List<Holding> findHoldingsAfter(String traderName, String ticker, Pageable pageable);
+
+	@Query("select h, o from Holding h, Option o where h.key.ticker = o.ticker and h.quantity <> 0 "
+			+ "order by h.key.traderName")
+	public List<Object[]> findOptionHoldings();
+	
+	@Query("select h.key.traderName, h.quantity from Holding h where h.key.ticker = ?1 and h.quantity <> 0")
+	public List<Object[]> findHoldersOf(String ticker);
+	
+	@Query("select count(h) from Holding h where h.key.ticker = ?1 and mod(h.quantity * ?2, ?3) <> 0")
+	public long countFractionalAfterSplit(String ticker, int numerator, int denominator);
+	
+	@Modifying(clearAutomatically = true)
+	@Transactional
+	@Query("update Holding h set h.quantity = h.quantity * ?2 / ?3, h.version = h.version + 1 "
+			+ "where h.key.ticker = ?1")
+	public int splitHoldings(String ticker, int numerator, int denominator);
 }
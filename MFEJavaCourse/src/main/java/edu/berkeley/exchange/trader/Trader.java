@@ -2,6 +2,7 @@ package edu.berkeley.exchange.trader;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
 
 @Entity
 public class Trader 
@@ -11,6 +12,9 @@ public class Trader
 	
 	private double capital;
 	
+	@Version
+	private long version;
+	
 	protected Trader()
 	{
 		
@@ -37,4 +41,12 @@ public class Trader
 	public void setCapital(double capital) {
 		this.capital = capital;
 	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
 }
@@ -1,7 +1,13 @@
 package edu.berkeley.exchange.trader;
 
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 public interface TraderRepository extends JpaRepository<Trader, String> {
 
+	@Query("select t from Trader t where t.name > ?1 order by t.name")
+	public List<Trader> findTradersAfter(String name, Pageable pageable);
 }
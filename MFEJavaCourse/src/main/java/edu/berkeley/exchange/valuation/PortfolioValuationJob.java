@@ -0,0 +1,311 @@
+package edu.berkeley.exchange.valuation;
+
+import java.sql.Date;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import edu.berkeley.exchange.marketdata.LastTradePrices;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.security.SecurityRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingKey;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+/**
+ * End-of-day mark-to-market of every trader. Holdings and open orders are read 
+ * in keyset pages on the calling thread while earlier pages are marked on a 
+ * fork/join pool. At most two pages per worker are in flight; once that many are 
+ * queued, reading waits for the oldest, so memory does not grow with the book. Last trade prices are snapshotted for every security on the 
+ * calling thread before the first page, so the workers never query and every 
+ * position in a ticker is marked at the same price. Equity is capital, plus 
+ * capital reserved by open BUY orders, plus the marked value of holdings and of 
+ * shares reserved by open SELL orders.
+ */
+@Lazy
+@Service
+public class PortfolioValuationJob 
+{
+	private static final int PAGE_SIZE = 5000;
+	private static final int LEAF_SIZE = 500;
+	
+	private HoldingRepository holdingRepo;
+	private TraderRepository traderRepo;
+	private OrderRepository orderRepo;
+	private SecurityRepository securityRepo;
+	private TraderValuationRepository valuationRepo;
+	private LastTradePrices lastTradePrices;
+	
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private int pageSize = PAGE_SIZE;
+	
+	@Autowired
+	public PortfolioValuationJob(HoldingRepository holdingRepo, TraderRepository traderRepo,
+			OrderRepository orderRepo, SecurityRepository securityRepo, 
+			TraderValuationRepository valuationRepo, LastTradePrices lastTradePrices)
+	{
+		this.holdingRepo = holdingRepo;
+		this.traderRepo = traderRepo;
+		this.orderRepo = orderRepo;
+		this.securityRepo = securityRepo;
+		this.valuationRepo = valuationRepo;
+		this.lastTradePrices = lastTradePrices;
+	}
+	
+	public void setPool(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	public void setPageSize(int pageSize)
+	{
+		this.pageSize = pageSize;
+	}
+	
+	/**
+	 * Values every trader and writes one TraderValuation per trader for the given 
+	 * date. Returns the number of valuations written.
+	 */
+	public int run(Date valuationDate)
+	{
+		ConcurrentMap<String, DoubleAdder> holdingsValues = new ConcurrentHashMap<>();
+		ConcurrentMap<String, DoubleAdder> reservedCapital = new ConcurrentHashMap<>();
+		Deque<ForkJoinTask<?>> tasks = new ArrayDeque<>();
+		Map<String, Double> prices = lastTradePrices.snapshot(securityRepo.findAllTickers());
+		
+		markHoldings(prices, holdingsValues, tasks);
+		markOpenOrders(prices, holdingsValues, reservedCapital, tasks);
+		
+		while (!tasks.isEmpty())
+		{
+			tasks.pollFirst().join();
+		}
+		
+		return writeValuations(valuationDate, holdingsValues, reservedCapital);
+	}
+	
+	private void markHoldings(Map<String, Double> prices, ConcurrentMap<String, DoubleAdder> holdingsValues, 
+			Deque<ForkJoinTask<?>> tasks)
+	{
+		String lastTrader = "";
+		String lastTicker = "";
+		
+		List<Holding> page = holdingRepo.findHoldingsAfter(lastTrader, lastTicker, 
+				new PageRequest(0, pageSize));
+		while (!page.isEmpty())
+		{
+			submit(tasks, new MarkHoldingsTask(page, 0, page.size(), prices, holdingsValues));
+			
+			HoldingKey lastKey = page.get(page.size() - 1).getKey();
+			lastTrader = lastKey.getTraderName();
+			lastTicker = lastKey.getTicker();
+			
+			page = page.size() < pageSize ? new ArrayList<Holding>() : 
+				holdingRepo.findHoldingsAfter(lastTrader, lastTicker, new PageRequest(0, pageSize));
+		}
+	}
+	
+	private void markOpenOrders(Map<String, Double> prices, ConcurrentMap<String, DoubleAdder> holdingsValues,
+			ConcurrentMap<String, DoubleAdder> reservedCapital, Deque<ForkJoinTask<?>> tasks)
+	{
+		List<Order> page = orderRepo.findOpenOrdersAfter(0, new PageRequest(0, pageSize));
+		while (!page.isEmpty())
+		{
+			submit(tasks, new MarkOpenOrdersTask(page, 0, page.size(), prices, holdingsValues, reservedCapital));
+			
+			long lastId = page.get(page.size() - 1).getId();
+			page = page.size() < pageSize ? new ArrayList<Order>() : 
+				orderRepo.findOpenOrdersAfter(lastId, new PageRequest(0, pageSize));
+		}
+	}
+	
+	/**
+	 * Submits a page, first dropping pages already marked and, while the window is 
+	 * full, waiting for the oldest.
+	 */
+	private void submit(Deque<ForkJoinTask<?>> tasks, ForkJoinTask<?> task)
+	{
+		int window = 2 * pool.getParallelism();
+		while (!tasks.isEmpty() && (tasks.peekFirst().isDone() || tasks.size() >= window))
+		{
+			tasks.pollFirst().join();
+		}
+		tasks.addLast(pool.submit(task));
+	}
+	
+	private int writeValuations(Date valuationDate, ConcurrentMap<String, DoubleAdder> holdingsValues,
+			ConcurrentMap<String, DoubleAdder> reservedCapital)
+	{
+		int written = 0;
+		
+		List<Trader> page = traderRepo.findTradersAfter("", new PageRequest(0, pageSize));
+		while (!page.isEmpty())
+		{
+			List<TraderValuation> valuations = new ArrayList<>(page.size());
+			for (Trader trader : page)
+			{
+				valuations.add(new TraderValuation(trader.getName(), valuationDate, trader.getCapital(),
+						sum(reservedCapital, trader.getName()), sum(holdingsValues, trader.getName())));
+			}
+			valuationRepo.save(valuations);
+			written += valuations.size();
+			
+			String lastName = page.get(page.size() - 1).getName();
+			page = page.size() < pageSize ? new ArrayList<Trader>() : 
+				traderRepo.findTradersAfter(lastName, new PageRequest(0, pageSize));
+		}
+		return written;
+	}
+	
+	private static double sum(ConcurrentMap<String, DoubleAdder> values, String traderName)
+	{
+		DoubleAdder value = values.get(traderName);
+		return value == null ? 0 : value.sum();
+	}
+	
+	private static void add(ConcurrentMap<String, DoubleAdder> values, String traderName, double amount)
+	{
+		DoubleAdder value = values.get(traderName);
+		if (value == null)
+		{
+			DoubleAdder created = new DoubleAdder();
+			value = values.putIfAbsent(traderName, created);
+			if (value == null)
+			{
+				value = created;
+			}
+		}
+		value.add(amount);
+	}
+	
+	private static double mark(Map<String, Double> prices, String ticker, int quantity)
+	{
+		Double lastPrice = prices.get(ticker);
+		return lastPrice == null || Double.isNaN(lastPrice) ? 0 : lastPrice * quantity;
+	}
+	
+	/**
+	 * Pages arrive sorted by trader, so each leaf accumulates runs of the same 
+	 * trader locally and touches the shared map once per run.
+	 */
+	private class MarkHoldingsTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = -6158317469427021544L;
+		
+		private final List<Holding> holdings;
+		private final int from;
+		private final int to;
+		private final Map<String, Double> prices;
+		private final ConcurrentMap<String, DoubleAdder> holdingsValues;
+		
+		public MarkHoldingsTask(List<Holding> holdings, int from, int to, Map<String, Double> prices,
+				ConcurrentMap<String, DoubleAdder> holdingsValues)
+		{
+			this.holdings = holdings;
+			this.from = from;
+			this.to = to;
+			this.prices = prices;
+			this.holdingsValues = holdingsValues;
+		}
+
+		@Override
+		protected void compute() 
+		{
+			if (to - from > LEAF_SIZE)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new MarkHoldingsTask(holdings, from, middle, prices, holdingsValues),
+						new MarkHoldingsTask(holdings, middle, to, prices, holdingsValues));
+				return;
+			}
+			
+			String currentTrader = null;
+			double currentValue = 0;
+			for (int i = from; i < to; i++)
+			{
+				Holding holding = holdings.get(i);
+				String traderName = holding.getKey().getTraderName();
+				if (!traderName.equals(currentTrader))
+				{
+					if (currentTrader != null)
+					{
+						add(holdingsValues, currentTrader, currentValue);
+					}
+					currentTrader = traderName;
+					currentValue = 0;
+				}
+				currentValue += mark(prices, holding.getKey().getTicker(), holding.getQuantity());
+			}
+			if (currentTrader != null)
+			{
+				add(holdingsValues, currentTrader, currentValue);
+			}
+		}
+	}
+	
+	private class MarkOpenOrdersTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 4532140945010436893L;
+		
+		private final List<Order> orders;
+		private final int from;
+		private final int to;
+		private final Map<String, Double> prices;
+		private final ConcurrentMap<String, DoubleAdder> holdingsValues;
+		private final ConcurrentMap<String, DoubleAdder> reservedCapital;
+		
+		public MarkOpenOrdersTask(List<Order> orders, int from, int to, Map<String, Double> prices,
+				ConcurrentMap<String, DoubleAdder> holdingsValues,
+				ConcurrentMap<String, DoubleAdder> reservedCapital)
+		{
+			this.orders = orders;
+			this.from = from;
+			this.to = to;
+			this.prices = prices;
+			this.holdingsValues = holdingsValues;
+			this.reservedCapital = reservedCapital;
+		}
+
+		@Override
+		protected void compute() 
+		{
+			if (to - from > LEAF_SIZE)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new MarkOpenOrdersTask(orders, from, middle, prices, holdingsValues, reservedCapital),
+						new MarkOpenOrdersTask(orders, middle, to, prices, holdingsValues, reservedCapital));
+				return;
+			}
+			
+			for (int i = from; i < to; i++)
+			{
+				Order order = orders.get(i);
+				if (order.getType().equals(OrderType.BUY))
+				{
+					add(reservedCapital, order.getTraderName(), order.getReservedPrice() * order.getQuantity());
+				}
+				else
+				{
+					add(holdingsValues, order.getTraderName(), mark(prices, order.getTicker(), order.getQuantity()));
+				}
+			}
+		}
+	}
+}
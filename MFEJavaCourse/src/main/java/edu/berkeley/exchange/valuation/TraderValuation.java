@@ -0,0 +1,70 @@
+package edu.berkeley.exchange.valuation;
+
+import java.sql.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+
+@Entity
+@SequenceGenerator(name="valuationSeq", sequenceName="VALUATION_SEQ", allocationSize=100)
+public class TraderValuation 
+{
+	@Id
+	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator="valuationSeq")
+	private long id;
+	
+	private String traderName;
+	private Date valuationDate;
+	
+	private double capital;
+	private double reservedCapital;
+	private double holdingsValue;
+	private double equity;
+	
+	protected TraderValuation()
+	{
+		
+	}
+	
+	public TraderValuation(String traderName, Date valuationDate, double capital, 
+			double reservedCapital, double holdingsValue)
+	{
+		this.traderName = traderName;
+		this.valuationDate = valuationDate;
+		this.capital = capital;
+		this.reservedCapital = reservedCapital;
+		this.holdingsValue = holdingsValue;
+		this.equity = capital + reservedCapital + holdingsValue;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getTraderName() {
+		return traderName;
+	}
+
+	public Date getValuationDate() {
+		return valuationDate;
+	}
+
+	public double getCapital() {
+		return capital;
+	}
+
+	public double getReservedCapital() {
+		return reservedCapital;
+	}
+
+	public double getHoldingsValue() {
+		return holdingsValue;
+	}
+
+	public double getEquity() {
+		return equity;
+	}
+}
@@ -0,0 +1,12 @@
+package edu.berkeley.exchange.valuation;
+
+import java.sql.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface TraderValuationRepository extends JpaRepository<TraderValuation, Long> {
+
+	public List<TraderValuation> findByValuationDate(Date valuationDate);
+	public TraderValuation findByTraderNameAndValuationDate(String traderName, Date valuationDate);
+}
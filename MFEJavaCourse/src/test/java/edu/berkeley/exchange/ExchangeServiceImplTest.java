@@ -3,6 +3,7 @@ package edu.berkeley.exchange;
 import static org.testng.Assert.*;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
 import org.testng.annotations.BeforeClass;
@@ -20,6 +21,7 @@ import edu.berkeley.exchange.trader.HoldingRepository;
 import edu.berkeley.exchange.trader.Trader;
 import edu.berkeley.exchange.trader.TraderRepository;
 
+@DirtiesContext
 @ContextConfiguration(classes=TestConfig.class)
 public class ExchangeServiceImplTest extends AbstractTestNGSpringContextTests
 {
@@ -36,6 +38,13 @@ public class ExchangeServiceImplTest extends AbstractTestNGSpringContextTests
 	private static final String GS = "Goldman Sachs";
 	private static final String IBM = "IBM";
 	private static final String AAPL = "AAPL";
+	private static final String CITADEL = "Citadel";
+	private static final String MSFT = "MSFT";
+	private static final String BRIDGEWATER = "Bridgewater";
+	private static final String RENAISSANCE = "Renaissance";
+	private static final String ORCL = "ORCL";
+	private static final String INTC = "INTC";
+	private static final String CSCO = "CSCO";
 	
 	private static final String VALID_ORDER_FAILURE = "Valid order encountered OrderExecutionException.";
 	
@@ -49,6 +58,8 @@ public class ExchangeServiceImplTest extends AbstractTestNGSpringContextTests
 			+ "since price or quantity requested <= 0.";
 	private static final String BUY_EXCEPTION_MESSAGE_2 = "Could not execute BUY order on AAPL for Goldman Sachs "
 			+ "due to insufficient capital.";
+	private static final String CANCEL_EXCEPTION_MESSAGE = "Could not cancel order %d for %s "
+			+ "since it is not an open order of this trader.";
 
 	@Autowired
 	private StockRepository stockRepo;
@@ -272,7 +283,7 @@ public class ExchangeServiceImplTest extends AbstractTestNGSpringContextTests
 		
 		try
 		{
-			exchangeService.placeOrder(ms, aapl, PRICE_2, QTY_2, OrderType.BUY); //4, 5
+			exchangeService.placeOrder(ms, aapl, PRICE_2, QTY_2, OrderType.BUY); //5, 6
 		}
 		catch (OrderExecutionException oee)
 		{
@@ -314,7 +325,7 @@ public class ExchangeServiceImplTest extends AbstractTestNGSpringContextTests
 		
 		try
 		{
-			exchangeService.placeOrder(ms, aapl, PRICE_2, QTY_3, OrderType.BUY); //6, 7
+			exchangeService.placeOrder(ms, aapl, PRICE_2, QTY_3, OrderType.BUY); //8, 9
 		}
 		catch (OrderExecutionException oee)
 		{
@@ -324,7 +335,7 @@ public class ExchangeServiceImplTest extends AbstractTestNGSpringContextTests
 		Order lastExecutedBuy = exchangeService.getLastExecutedBuy(aapl, ms);
 		verifyOrder(lastExecutedBuy, ms, aapl, PRICE_2, QTY_1, OrderType.BUY);
 		
-		Order previousBuy = orderRepo.findOne(6L);
+		Order previousBuy = orderRepo.findOne(8L);
 		verifyOrder(previousBuy, ms, aapl, PRICE_1, QTY_2, OrderType.BUY);
 		
 		Order matchingSell1 = orderRepo.findOne(2L);
@@ -358,8 +369,8 @@ public class ExchangeServiceImplTest extends AbstractTestNGSpringContextTests
 		
 		try
 		{
-			exchangeService.placeOrder(gs, ibm, PRICE_1, QTY_1, OrderType.BUY); //8
-			exchangeService.placeOrder(ms, ibm, PRICE_1, QTY_2, OrderType.SELL); //9, 10
+			exchangeService.placeOrder(gs, ibm, PRICE_1, QTY_1, OrderType.BUY); //10
+			exchangeService.placeOrder(ms, ibm, PRICE_1, QTY_2, OrderType.SELL); //12, 13
 		}
 		catch (OrderExecutionException oee)
 		{
@@ -406,7 +417,7 @@ public class ExchangeServiceImplTest extends AbstractTestNGSpringContextTests
 		
 		try
 		{
-			exchangeService.placeOrder(ms, ibm, PRICE_1, QTY_3, OrderType.SELL); //11, 12
+			exchangeService.placeOrder(ms, ibm, PRICE_1, QTY_3, OrderType.SELL); //15, 16
 		}
 		catch (OrderExecutionException oee)
 		{
@@ -416,13 +427,13 @@ public class ExchangeServiceImplTest extends AbstractTestNGSpringContextTests
 		Order lastExecutedSell = exchangeService.getLastExecutedSell(ibm, ms);
 		verifyOrder(lastExecutedSell, ms, ibm, PRICE_1, QTY_1, OrderType.SELL);
 		
-		Order previousSell = orderRepo.findOne(11L);
+		Order previousSell = orderRepo.findOne(15L);
 		verifyOrder(previousSell, ms, ibm, PRICE_2, QTY_2, OrderType.SELL);
 		
 		Order matchingSell1 = orderRepo.findOne(1L);
 		assertTrue(matchingSell1.isExecuted());
 		
-		Order matchingSell2 = orderRepo.findOne(8L);
+		Order matchingSell2 = orderRepo.findOne(10L);
 		assertTrue(matchingSell2.isExecuted());
 		
 		ms = traderRepo.findOne(MS);
@@ -436,6 +447,164 @@ public class ExchangeServiceImplTest extends AbstractTestNGSpringContextTests
 		assertNull(holding);
 	}
 	
+	@Test(dependsOnMethods="sellOrderShouldBeAbleToFillAcrossMultipleBuys")
+	public void selfTradePreventionShouldCancelOrDecrementInsteadOfFilling()
+	{
+		Stock msft = new Stock(MSFT, "Microsoft");
+		stockRepo.save(msft);
+		
+		Trader citadel = new Trader(CITADEL, STARTING_CAPITAL);
+		traderRepo.save(citadel);
+		holdingRepo.save(new Holding(citadel, msft, 100));
+		
+		HoldingKey holdingKey = new HoldingKey(CITADEL, MSFT);
+		
+		try
+		{
+			assertNull(exchangeService.getBestAskPrice(msft));
+			exchangeService.placeOrder(citadel, msft, PRICE_1, QTY_1, OrderType.SELL);
+			assertEquals(exchangeService.getBestAskPrice(msft).getQuantity(), QTY_1);
+			
+			exchangeService.getProperties().setSelfTradePrevention(SelfTradePrevention.CANCEL_RESTING);
+			citadel = traderRepo.findOne(CITADEL);
+			exchangeService.placeOrder(citadel, msft, PRICE_1, QTY_2, OrderType.BUY);
+			
+			assertNull(exchangeService.getBestAsk(msft));
+			verifyOrder(exchangeService.getBestBid(msft), citadel, msft, PRICE_1, QTY_2, OrderType.BUY);
+			assertNull(exchangeService.getLastExecutedBuy(msft, citadel));
+			assertEquals(holdingRepo.findOne(holdingKey).getQuantity(), 100);
+			assertEquals(traderRepo.findOne(CITADEL).getCapital(), STARTING_CAPITAL - PRICE_1 * QTY_2);
+			
+			exchangeService.getProperties().setSelfTradePrevention(SelfTradePrevention.DECREMENT);
+			citadel = traderRepo.findOne(CITADEL);
+			exchangeService.placeOrder(citadel, msft, PRICE_1, 5, OrderType.SELL);
+			
+			assertNull(exchangeService.getBestAsk(msft));
+			verifyOrder(exchangeService.getBestBid(msft), citadel, msft, PRICE_1, QTY_2 - 5, OrderType.BUY);
+			assertNull(exchangeService.getBestAskPrice(msft));
+			assertEquals(exchangeService.getBestBidPrice(msft).getPrice(), PRICE_1);
+			assertEquals(exchangeService.getBestBidPrice(msft).getQuantity(), QTY_2 - 5);
+			assertNull(exchangeService.getLastExecutedSell(msft, citadel));
+			assertEquals(holdingRepo.findOne(holdingKey).getQuantity(), 100);
+			assertEquals(traderRepo.findOne(CITADEL).getCapital(), STARTING_CAPITAL - PRICE_1 * (QTY_2 - 5));
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		finally
+		{
+			exchangeService.getProperties().setSelfTradePrevention(SelfTradePrevention.NONE);
+		}
+	}
+	
+	@Test(dependsOnMethods="selfTradePreventionShouldCancelOrDecrementInsteadOfFilling")
+	public void cancelShouldWithdrawOwnOrderAndReturnWhatItReserved()
+	{
+		Stock orcl = new Stock(ORCL, "Oracle");
+		stockRepo.save(orcl);
+		
+		Trader bridgewater = traderRepo.save(new Trader(BRIDGEWATER, STARTING_CAPITAL));
+		traderRepo.save(new Trader(RENAISSANCE, STARTING_CAPITAL));
+		holdingRepo.save(new Holding(bridgewater, orcl, 100));
+		
+		HoldingKey holdingKey = new HoldingKey(BRIDGEWATER, ORCL);
+		
+		try
+		{
+			exchangeService.placeOrder(bridgewater, orcl, PRICE_1, QTY_1, OrderType.BUY);
+			bridgewater = traderRepo.findOne(BRIDGEWATER);
+			exchangeService.placeOrder(bridgewater, orcl, PRICE_2, QTY_2, OrderType.SELL);
+			assertEquals(traderRepo.findOne(BRIDGEWATER).getCapital(), STARTING_CAPITAL - PRICE_1 * QTY_1);
+			assertEquals(holdingRepo.findOne(holdingKey).getQuantity(), 100 - QTY_2);
+			
+			Order buy = exchangeService.getBestBid(orcl);
+			exchangeService.cancelOrder(traderRepo.findOne(BRIDGEWATER), buy.getId());
+			assertNull(exchangeService.getBestBid(orcl));
+			assertNull(orderRepo.findOne(buy.getId()));
+			assertEquals(traderRepo.findOne(BRIDGEWATER).getCapital(), STARTING_CAPITAL);
+			
+			Order sell = exchangeService.getBestAsk(orcl);
+			exchangeService.cancelOrder(traderRepo.findOne(BRIDGEWATER), sell.getId());
+			assertNull(exchangeService.getBestAsk(orcl));
+			assertEquals(holdingRepo.findOne(holdingKey).getQuantity(), 100);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+	}
+	
+	@Test(dependsOnMethods="cancelShouldWithdrawOwnOrderAndReturnWhatItReserved")
+	public void cancelShouldNotWithdrawAnotherTradersOrder()
+	{
+		Stock intc = new Stock(INTC, "Intel");
+		stockRepo.save(intc);
+		
+		Order buy = null;
+		try
+		{
+			exchangeService.placeOrder(traderRepo.findOne(BRIDGEWATER), intc, PRICE_1, QTY_1, OrderType.BUY);
+			buy = exchangeService.getBestBid(intc);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		try
+		{
+			exchangeService.cancelOrder(traderRepo.findOne(RENAISSANCE), buy.getId());
+			fail("Another trader's order was cancelled.");
+		}
+		catch (OrderExecutionException oee)
+		{
+			assertEquals(oee.getMessage(), String.format(CANCEL_EXCEPTION_MESSAGE, buy.getId(), RENAISSANCE));
+		}
+		
+		verifyOrder(exchangeService.getBestBid(intc), traderRepo.findOne(BRIDGEWATER), intc, PRICE_1, QTY_1,
+				OrderType.BUY);
+		assertEquals(traderRepo.findOne(RENAISSANCE).getCapital(), STARTING_CAPITAL);
+		assertEquals(traderRepo.findOne(BRIDGEWATER).getCapital(), STARTING_CAPITAL - PRICE_1 * QTY_1);
+	}
+	
+	@Test(dependsOnMethods="cancelShouldNotWithdrawAnotherTradersOrder")
+	public void cancelShouldNotWithdrawAFilledOrder()
+	{
+		Stock csco = new Stock(CSCO, "Cisco");
+		stockRepo.save(csco);
+		holdingRepo.save(new Holding(traderRepo.findOne(RENAISSANCE), csco, 100));
+		
+		HoldingKey holdingKey = new HoldingKey(RENAISSANCE, CSCO);
+		
+		Order sell = null;
+		try
+		{
+			exchangeService.placeOrder(traderRepo.findOne(RENAISSANCE), csco, PRICE_1, QTY_2, OrderType.SELL);
+			sell = exchangeService.getBestAsk(csco);
+			exchangeService.placeOrder(traderRepo.findOne(BRIDGEWATER), csco, PRICE_1, QTY_2, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		assertTrue(orderRepo.findOne(sell.getId()).isExecuted());
+		
+		try
+		{
+			exchangeService.cancelOrder(traderRepo.findOne(RENAISSANCE), sell.getId());
+			fail("A filled order was cancelled.");
+		}
+		catch (OrderExecutionException oee)
+		{
+			assertEquals(oee.getMessage(), String.format(CANCEL_EXCEPTION_MESSAGE, sell.getId(), RENAISSANCE));
+		}
+		
+		assertTrue(orderRepo.findOne(sell.getId()).isExecuted());
+		assertEquals(holdingRepo.findOne(holdingKey).getQuantity(), 100 - QTY_2);
+		assertEquals(traderRepo.findOne(RENAISSANCE).getCapital(), STARTING_CAPITAL + PRICE_1 * QTY_2);
+	}
+	
 	private void verifyOrder(Order order, Trader trader, Security security, double price, int quantity, OrderType type)
 	{
 		assertNotNull(order);
@@ -0,0 +1,238 @@
+package edu.berkeley.exchange;
+
+import static org.testng.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class OptimisticRetryTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 10000.0;
+	
+	private static final String BUYER = "Retry Buyer";
+	private static final String SELLER = "Retry Seller";
+	private static final String STALE = "Retry Stale";
+	
+	private static final String RETRIED = "RTRA";
+	private static final String EXHAUSTED = "RTRB";
+	private static final String JOINED = "RTRC";
+	
+	private static final String VALID_ORDER_FAILURE = "Valid order encountered OrderExecutionException.";
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	/**
+	 * Number of upcoming saves of the buyer to fail with a version conflict. The 
+	 * buyer is saved after the resting sell has been filled.
+	 */
+	private AtomicInteger conflicts = new AtomicInteger();
+	
+	private ConcurrencyMetrics metrics;
+	private ExchangeServiceImpl exchangeService;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		Trader seller = traderRepo.save(new Trader(SELLER, STARTING_CAPITAL));
+		traderRepo.save(new Trader(BUYER, STARTING_CAPITAL));
+		traderRepo.save(new Trader(STALE, STARTING_CAPITAL));
+		for (String ticker : new String[] { RETRIED, EXHAUSTED, JOINED })
+		{
+			Stock stock = stockRepo.save(new Stock(ticker, ticker));
+			holdingRepo.save(new Holding(seller, stock, 100));
+		}
+		
+		metrics = new ConcurrencyMetrics();
+		exchangeService = new ExchangeServiceImpl(orderRepo, holdingRepo, conflictingTraders());
+		exchangeService.setTransactionManager(transactionManager);
+		exchangeService.setConcurrencyMetrics(metrics);
+	}
+	
+	@Test(priority = 1)
+	public void staleTraderShouldFailVersionCheck()
+	{
+		Trader stale = traderRepo.findOne(STALE);
+		Trader current = traderRepo.findOne(STALE);
+		current.setCapital(STARTING_CAPITAL - 1);
+		traderRepo.save(current);
+		
+		stale.setCapital(STARTING_CAPITAL + 1);
+		try
+		{
+			traderRepo.save(stale);
+			fail("Stale trader was saved over a newer version.");
+		}
+		catch (OptimisticLockingFailureException conflict)
+		{
+			assertEquals(traderRepo.findOne(STALE).getCapital(), STARTING_CAPITAL - 1, 1e-9);
+		}
+	}
+	
+	@Test(priority = 2)
+	public void conflictingMatchShouldBeRetried()
+	{
+		Stock stock = stockRepo.findOne(RETRIED);
+		try
+		{
+			exchangeService.placeOrder(traderRepo.findOne(SELLER), stock, 10.0, 10, OrderType.SELL);
+			conflicts.set(2);
+			exchangeService.placeOrder(traderRepo.findOne(BUYER), stock, 10.0, 10, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		assertEquals(traderRepo.findOne(BUYER).getCapital(), STARTING_CAPITAL - 100.0, 1e-9);
+		assertEquals(traderRepo.findOne(SELLER).getCapital(), STARTING_CAPITAL + 100.0, 1e-9);
+		assertNull(exchangeService.getBestAsk(stock));
+		assertNull(exchangeService.getBestAskPrice(stock));
+		
+		assertEquals(metrics.getCommits(), 2);
+		assertEquals(metrics.getConflicts(), 2);
+		assertEquals(metrics.getExhausted(), 0);
+		assertEquals(metrics.getConflictRate(), 0.5, 1e-9);
+		assertEquals(metrics.getConflictsByTicker().get(RETRIED), Long.valueOf(2));
+		assertEquals(metrics.getConflictsByEntity().get("Trader"), Long.valueOf(2));
+	}
+	
+	@Test(priority = 3)
+	public void matchShouldGiveUpAfterMaxAttempts()
+	{
+		Stock stock = stockRepo.findOne(EXHAUSTED);
+		try
+		{
+			exchangeService.placeOrder(traderRepo.findOne(SELLER), stock, 10.0, 10, OrderType.SELL);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 10);
+		
+		conflicts.set(exchangeService.getProperties().getMaxMatchAttempts());
+		try
+		{
+			exchangeService.placeOrder(traderRepo.findOne(BUYER), stock, 10.0, 10, OrderType.BUY);
+			fail("Order kept conflicting but executed.");
+		}
+		catch (OrderExecutionException oee)
+		{
+			assertEquals(oee.getMessage(), "Could not execute BUY order on RTRB for Retry Buyer "
+					+ "due to concurrent updates.");
+		}
+		
+		assertEquals(traderRepo.findOne(BUYER).getCapital(), STARTING_CAPITAL - 100.0, 1e-9);
+		assertEquals(exchangeService.getBestAsk(stock).getQuantity(), 10);
+		assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 10,
+				"Cached book should not keep the fills that were rolled back.");
+		assertEquals(metrics.getExhausted(), 1);
+		assertEquals(metrics.getConflictsByTicker().get(EXHAUSTED), Long.valueOf(3));
+	}
+	
+	@Test(priority = 4)
+	public void conflictInsideTheCallersTransactionShouldGoBackToTheCaller()
+	{
+		Stock stock = stockRepo.findOne(JOINED);
+		try
+		{
+			exchangeService.placeOrder(traderRepo.findOne(SELLER), stock, 10.0, 10, OrderType.SELL);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		double buyer = traderRepo.findOne(BUYER).getCapital();
+		
+		conflicts.set(1);
+		try
+		{
+			new TransactionTemplate(transactionManager).execute(status ->
+			{
+				try
+				{
+					exchangeService.placeOrder(traderRepo.findOne(BUYER), stock, 10.0, 10, OrderType.BUY);
+				}
+				catch (OrderExecutionException oee)
+				{
+					fail(VALID_ORDER_FAILURE);
+				}
+				return null;
+			});
+			fail("Conflict inside the caller's transaction was not passed back.");
+		}
+		catch (OptimisticLockingFailureException conflict)
+		{
+			assertEquals(conflict.getClass(), ObjectOptimisticLockingFailureException.class, 
+					"The caller's transaction was committed after the conflict: " + conflict);
+		}
+		
+		// tried once, and all of it rolled back with the caller's transaction
+		assertEquals(metrics.getConflictsByTicker().get(JOINED), Long.valueOf(1));
+		assertEquals(traderRepo.findOne(BUYER).getCapital(), buyer, 1e-9);
+		assertEquals(exchangeService.getBestAsk(stock).getQuantity(), 10);
+		assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 10);
+	}
+	
+	/**
+	 * The trader repository, with saves of the buyer failing the version check while 
+	 * conflicts are outstanding.
+	 */
+	private TraderRepository conflictingTraders()
+	{
+		return (TraderRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { TraderRepository.class }, (proxy, method, args) ->
+		{
+			if (method.getName().equals("save") && args[0] instanceof Trader && 
+					((Trader) args[0]).getName().equals(BUYER) &&
+					conflicts.getAndUpdate(left -> Math.max(left - 1, 0)) > 0)
+			{
+				throw new ObjectOptimisticLockingFailureException(Trader.class, ((Trader) args[0]).getName());
+			}
+			try
+			{
+				return method.invoke(traderRepo, args);
+			}
+			catch (InvocationTargetException ite)
+			{
+				throw ite.getCause();
+			}
+		});
+	}
+}
@@ -0,0 +1,69 @@
+package edu.berkeley.exchange;
+
+import java.lang.management.ManagementFactory;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.security.SecurityRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+/**
+ * Boots the application once and reports where the time to the first order goes: 
+ * JVM start to main, context refresh, warming the books and the first order itself. 
+ * Not a TestNG test; run one JVM per sample, with the application's own arguments, 
+ * for example:
+ * 
+ *   java -cp ... edu.berkeley.exchange.StartupBenchmark --server.port=0
+ *   java -XX:SharedArchiveFile=target/exchange.jsa -cp ... edu.berkeley.exchange.StartupBenchmark \
+ *       --spring.profiles.active=fast-start --spring.datasource.url=...
+ * 
+ * The trader and security the first order uses are created after startup if the 
+ * database does not already have them; that time is not counted.
+ */
+public class StartupBenchmark 
+{
+	private static final String TRADER = "startup-benchmark";
+	private static final String TICKER = "STARTUP";
+	
+	public static void main(String[] args) throws OrderExecutionException
+	{
+		long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+		long mainStart = System.currentTimeMillis();
+		
+		ConfigurableApplicationContext context = SpringApplication.run(Application.class, args);
+		long started = System.currentTimeMillis();
+		
+		ExchangeReadiness readiness = context.getBean(ExchangeReadiness.class);
+		
+		TraderRepository traderRepo = context.getBean(TraderRepository.class);
+		Trader trader = traderRepo.findOne(TRADER);
+		if (trader == null)
+		{
+			trader = traderRepo.save(new Trader(TRADER, 1000000));
+		}
+		SecurityRepository securityRepo = context.getBean(SecurityRepository.class);
+		Security security = securityRepo.findOne(TICKER);
+		if (security == null)
+		{
+			security = securityRepo.save(new Stock(TICKER, "Startup Benchmark"));
+		}
+		
+		long orderStart = System.currentTimeMillis();
+		context.getBean(ExchangeService.class).placeOrder(trader, security, 1, 1, OrderType.BUY);
+		long orderMillis = System.currentTimeMillis() - orderStart;
+		
+		System.out.printf("JVM start to main      %,7d ms%n", mainStart - jvmStart);
+		System.out.printf("main to context ready  %,7d ms%n", started - mainStart);
+		System.out.printf("  of which warming     %,7d ms for %d securities%n", readiness.getWarmupMillis(), 
+				readiness.getWarmedSecurities());
+		System.out.printf("first order            %,7d ms%n", orderMillis);
+		System.out.printf("time to first order    %,7d ms%n", started - jvmStart + orderMillis);
+		
+		System.exit(SpringApplication.exit(context));
+	}
+}
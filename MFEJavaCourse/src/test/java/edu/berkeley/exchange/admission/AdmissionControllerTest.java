@@ -0,0 +1,267 @@
+package edu.berkeley.exchange.admission;
+
+import static org.testng.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeService;
+import edu.berkeley.exchange.SecurityLocks;
+import edu.berkeley.exchange.admission.OrderThrottledException.Reason;
+import edu.berkeley.exchange.basket.BasketLeg;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.trader.Trader;
+
+public class AdmissionControllerTest 
+{
+	private static final Stock MSFT = new Stock("MSFT", "Microsoft");
+	private static final Stock IBM = new Stock("IBM", "International Business Machines");
+	private static final Trader GS = new Trader("Goldman Sachs", 10000.0);
+	private static final Trader MS = new Trader("Morgan Stanley", 10000.0);
+	
+	private static final ExchangeService ACCEPT_ALL = new ExchangeService() {
+		@Override
+		public void placeOrder(Trader trader, Security security, double price, int quantity, OrderType type)
+		{
+		}
+		
+		@Override
+		public void placeIcebergOrder(Trader trader, Security security, double price, int quantity, int peak,
+				OrderType type)
+		{
+		}
+		
+		@Override
+		public void placePeggedOrder(Trader trader, Security security, PegType pegType, double offset,
+				double limit, int quantity, OrderType type)
+		{
+		}
+		
+		@Override
+		public void placeBasket(Trader trader, List<BasketLeg> legs, boolean allOrNone)
+		{
+		}
+		
+		@Override
+		public void placeStopOrder(Trader trader, Security security, double stopPrice, double limitPrice,
+				int quantity, OrderType type)
+		{
+		}
+		
+		@Override
+		public void cancelOrder(Trader trader, long orderId)
+		{
+		}
+	};
+	
+	@Test
+	public void bucketShouldRefillAtItsRate()
+	{
+		TokenBucket bucket = new TokenBucket(10, 2, 0);
+		
+		assertTrue(bucket.tryAcquire(0));
+		assertTrue(bucket.tryAcquire(0));
+		assertFalse(bucket.tryAcquire(0));
+		assertFalse(bucket.tryAcquire(50000000L));
+		assertTrue(bucket.tryAcquire(100000000L));
+	}
+	
+	@Test
+	public void traderOverItsBurstShouldBeThrottled() throws Exception
+	{
+		AdmissionLimits limits = new AdmissionLimits();
+		limits.setTraderRate(0.001);
+		limits.setTraderBurst(2);
+		AdmissionController controller = new AdmissionController(ACCEPT_ALL, new SecurityLocks(), limits);
+		
+		controller.placeOrder(GS, MSFT, 45.0, 100, OrderType.BUY);
+		controller.placeOrder(GS, MSFT, 45.0, 100, OrderType.BUY);
+		try
+		{
+			controller.placeOrder(GS, MSFT, 45.0, 100, OrderType.BUY);
+			fail("Order over the trader's burst was not throttled.");
+		}
+		catch (OrderThrottledException ote)
+		{
+			assertEquals(ote.getReason(), Reason.TRADER_RATE);
+			assertSame(ote, OrderThrottledException.of(Reason.TRADER_RATE));
+			assertEquals(ote.getMessage(), "Could not accept order since the trader is over its order rate.");
+		}
+		controller.placeOrder(MS, MSFT, 45.0, 100, OrderType.SELL);
+		
+		assertEquals(controller.getAdmitted(), 3);
+		assertEquals(controller.getThrottled(Reason.TRADER_RATE), 1);
+	}
+	
+	@Test
+	public void stopOrdersShouldBeShedOnceWaitsPassTheDeadline() throws Exception
+	{
+		AdmissionLimits limits = new AdmissionLimits();
+		limits.setSheddingDeadlineMillis(5);
+		limits.setMaxWaitMillis(20);
+		SecurityLocks locks = new SecurityLocks();
+		AdmissionController controller = new AdmissionController(ACCEPT_ALL, locks, limits);
+		
+		CountDownLatch held = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+		Thread holder = new Thread(() -> 
+		{
+			locks.get("MSFT").lock();
+			held.countDown();
+			try
+			{
+				done.await();
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				locks.get("MSFT").unlock();
+			}
+		});
+		holder.start();
+		held.await();
+		
+		try
+		{
+			controller.placeOrder(GS, MSFT, 45.0, 100, OrderType.BUY);
+			fail("Order waiting past the maximum wait was not throttled.");
+		}
+		catch (OrderThrottledException ote)
+		{
+			assertEquals(ote.getReason(), Reason.QUEUE_DELAY);
+		}
+		done.countDown();
+		holder.join();
+		
+		assertTrue(controller.isShedding(MSFT));
+		try
+		{
+			controller.placeStopOrder(GS, MSFT, 44.0, 43.5, 100, OrderType.SELL);
+			fail("Stop order was not shed while waits were over the deadline.");
+		}
+		catch (OrderThrottledException ote)
+		{
+			assertEquals(ote.getReason(), Reason.QUEUE_DELAY);
+		}
+		controller.placeOrder(MS, MSFT, 45.0, 100, OrderType.SELL);
+		assertTrue(controller.isShedding(MSFT), "One quick order should not turn shedding off.");
+	}
+	
+	@Test
+	public void sheddingShouldDecayOnceWaitsStop() throws Exception
+	{
+		AdmissionLimits limits = new AdmissionLimits();
+		limits.setSheddingDeadlineMillis(5);
+		limits.setSheddingWindowMillis(10);
+		limits.setMaxWaitMillis(20);
+		SecurityLocks locks = new SecurityLocks();
+		AdmissionController controller = new AdmissionController(ACCEPT_ALL, locks, limits);
+		
+		Thread holder = new Thread(() -> 
+		{
+			locks.get("MSFT").lock();
+			try
+			{
+				Thread.sleep(200);
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				locks.get("MSFT").unlock();
+			}
+		});
+		holder.start();
+		while (!locks.get("MSFT").isLocked())
+		{
+			Thread.yield();
+		}
+		try
+		{
+			controller.placeOrder(GS, MSFT, 45.0, 100, OrderType.BUY);
+			fail("Order waiting past the maximum wait was not throttled.");
+		}
+		catch (OrderThrottledException ote)
+		{
+			assertEquals(ote.getReason(), Reason.QUEUE_DELAY);
+		}
+		assertTrue(controller.isShedding(MSFT));
+		holder.join();
+		
+		// a 20ms peak decays under the 5ms deadline within 14ms
+		Thread.sleep(50);
+		assertFalse(controller.isShedding(MSFT));
+		controller.placeStopOrder(GS, MSFT, 44.0, 43.5, 100, OrderType.SELL);
+	}
+	
+	@Test
+	public void rejectedOrderShouldHandBackItsTokens() throws Exception
+	{
+		AdmissionLimits limits = new AdmissionLimits();
+		limits.setTraderRate(0.001);
+		limits.setTraderBurst(1);
+		limits.setQueueCapacity(0);
+		AdmissionController controller = new AdmissionController(ACCEPT_ALL, new SecurityLocks(), limits);
+		
+		for (int i = 0; i < 2; i++)
+		{
+			try
+			{
+				controller.placeOrder(GS, MSFT, 45.0, 100, OrderType.BUY);
+				fail("Order over the queue capacity was not throttled.");
+			}
+			catch (OrderThrottledException ote)
+			{
+				assertEquals(ote.getReason(), Reason.QUEUE_FULL);
+			}
+		}
+		assertEquals(controller.getThrottled(Reason.TRADER_RATE), 0);
+	}
+	
+	@Test
+	public void basketShouldTakeATokenPerLeg() throws Exception
+	{
+		AdmissionLimits limits = new AdmissionLimits();
+		limits.setTraderRate(0.001);
+		limits.setTraderBurst(4);
+		AdmissionController controller = new AdmissionController(ACCEPT_ALL, new SecurityLocks(), limits);
+		
+		List<BasketLeg> legs = Arrays.asList(new BasketLeg(MSFT, 45.0, 100, OrderType.BUY), 
+				new BasketLeg(IBM, 150.0, 10, OrderType.SELL));
+		controller.placeBasket(GS, legs, true);
+		controller.placeIcebergOrder(GS, MSFT, 45.0, 100, 10, OrderType.BUY);
+		try
+		{
+			controller.placeBasket(GS, legs, true);
+			fail("Basket over the trader's remaining tokens was not throttled.");
+		}
+		catch (OrderThrottledException ote)
+		{
+			assertEquals(ote.getReason(), Reason.TRADER_RATE);
+		}
+		controller.placePeggedOrder(GS, IBM, PegType.PRIMARY, 0, 140.0, 10, OrderType.BUY);
+		try
+		{
+			controller.placePeggedOrder(GS, IBM, PegType.PRIMARY, 0, 140.0, 10, OrderType.BUY);
+			fail("Pegged order over the trader's burst was not throttled.");
+		}
+		catch (OrderThrottledException ote)
+		{
+			assertEquals(ote.getReason(), Reason.TRADER_RATE);
+		}
+		
+		assertEquals(controller.getAdmitted(), 3);
+		assertEquals(controller.getThrottled(Reason.TRADER_RATE), 2);
+	}
+}
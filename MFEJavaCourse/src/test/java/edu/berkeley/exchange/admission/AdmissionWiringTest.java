@@ -0,0 +1,24 @@
+package edu.berkeley.exchange.admission;
+
+import static org.testng.Assert.*;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeService;
+import edu.berkeley.exchange.TestConfig;
+
+@ContextConfiguration(classes=TestConfig.class)
+public class AdmissionWiringTest extends AbstractTestNGSpringContextTests
+{
+	@Autowired
+	private ExchangeService exchangeService;
+	
+	@Test
+	public void clientsShouldGoThroughAdmissionControl()
+	{
+		assertTrue(exchangeService instanceof AdmissionController);
+	}
+}
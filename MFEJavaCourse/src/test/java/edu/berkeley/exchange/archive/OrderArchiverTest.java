@@ -0,0 +1,215 @@
+package edu.berkeley.exchange.archive;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.springframework.util.FileSystemUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeProperties;
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.settlement.SettlementRunRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class OrderArchiverTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	
+	private static final String BUYER = "Archive Buyer";
+	private static final String SELLER = "Archive Seller";
+	
+	private static final String ROUND_TRIP = "ARCA";
+	private static final String RETRIED = "ARCB";
+	
+	private static final double[] PRICES = { 10.5, 10.25, 10.75, 9.000001, 12.0 };
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private OrderArchiver archiver;
+	
+	@Autowired
+	private ArchiveReader reader;
+	
+	@Autowired
+	private ExchangeProperties properties;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@Autowired
+	private SettlementRunRepository runRepo;
+	
+	private Path archiveDirectory;
+	
+	@BeforeClass
+	public void setUp() throws IOException
+	{
+		archiveDirectory = Files.createTempDirectory("archive");
+		properties.setArchiveDirectory(archiveDirectory.toString());
+		
+		traderRepo.save(new Trader(BUYER, STARTING_CAPITAL));
+		Trader seller = traderRepo.save(new Trader(SELLER, STARTING_CAPITAL));
+		for (String ticker : new String[] { ROUND_TRIP, RETRIED })
+		{
+			Stock stock = stockRepo.save(new Stock(ticker, ticker));
+			holdingRepo.save(new Holding(seller, stock, 1000));
+		}
+	}
+	
+	@AfterClass
+	public void tearDown()
+	{
+		FileSystemUtils.deleteRecursively(archiveDirectory.toFile());
+	}
+	
+	@Test(priority = 1)
+	public void archivedOrdersShouldReadBackAsWritten() throws IOException
+	{
+		trade(ROUND_TRIP);
+		List<Order> executed = orderRepo.findExecutedByTickerOnAfter(ROUND_TRIP, today(), 0,
+				new PageRequest(0, 100));
+		assertEquals(executed.size(), 2 * PRICES.length);
+		
+		assertEquals(archiver.archiveDay(today()), executed.size());
+		assertTrue(orderRepo.findExecutedByTickerOnAfter(ROUND_TRIP, today(), 0, new PageRequest(0, 100))
+				.isEmpty());
+		
+		List<Object[]> read = readBack(ROUND_TRIP);
+		assertEquals(read.size(), executed.size());
+		for (int i = 0; i < executed.size(); i++)
+		{
+			Order order = executed.get(i);
+			Object[] row = read.get(i);
+			assertEquals(row[0], order.getId());
+			assertEquals(row[1], order.getTimestamp().getTime());
+			assertEquals(row[2], order.getTraderName());
+			assertEquals(row[3], order.getType());
+			assertEquals((Double) row[4], order.getPrice(), 1e-9);
+			assertEquals(row[5], order.getQuantity());
+		}
+	}
+	
+	@Test(priority = 2)
+	public void failedDeleteShouldNotArchiveRowsTwice() throws IOException
+	{
+		trade(RETRIED);
+		AtomicBoolean failDelete = new AtomicBoolean(true);
+		OrderArchiver failing = new OrderArchiver(failingDeletes(failDelete), properties, runRepo);
+		try
+		{
+			failing.archiveDay(today());
+			fail("Archive with a failing delete completed.");
+		}
+		catch (DataAccessResourceFailureException expected)
+		{
+			assertEquals(readBack(RETRIED).size(), 2 * PRICES.length);
+		}
+		
+		assertFalse(failDelete.get());
+		assertEquals(failing.archiveDay(today()), 2 * PRICES.length);
+		assertEquals(readBack(RETRIED).size(), 2 * PRICES.length);
+		assertEquals(failing.archiveDay(today()), 0);
+		
+		try (Stream<Path> files = Files.list(archiveDirectory.resolve(RETRIED)))
+		{
+			assertEquals(files.count(), 1, "No partial or duplicate segment should be left.");
+		}
+	}
+	
+	private void trade(String ticker)
+	{
+		Stock stock = stockRepo.findOne(ticker);
+		try
+		{
+			for (int i = 0; i < PRICES.length; i++)
+			{
+				int quantity = 10 + i;
+				exchangeService.placeOrder(traderRepo.findOne(SELLER), stock, PRICES[i], quantity, OrderType.SELL);
+				exchangeService.placeOrder(traderRepo.findOne(BUYER), stock, PRICES[i], quantity, OrderType.BUY);
+			}
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail("Valid order encountered OrderExecutionException.");
+		}
+	}
+	
+	private List<Object[]> readBack(String ticker) throws IOException
+	{
+		List<Object[]> rows = new ArrayList<>();
+		reader.scan(ticker, today(), Date.valueOf(LocalDate.now().plusDays(1)),
+				(id, timestamp, traderName, type, price, quantity) ->
+						rows.add(new Object[] { id, timestamp, traderName, type, price, quantity }));
+		return rows;
+	}
+	
+	/**
+	 * The order repository, with the next delete failing while failDelete is set.
+	 */
+	private OrderRepository failingDeletes(AtomicBoolean failDelete)
+	{
+		return (OrderRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { OrderRepository.class }, (proxy, method, args) ->
+		{
+			if (method.getName().equals("deleteByIdIn") && failDelete.getAndSet(false))
+			{
+				throw new DataAccessResourceFailureException("Delete failed.");
+			}
+			try
+			{
+				return method.invoke(orderRepo, args);
+			}
+			catch (InvocationTargetException ite)
+			{
+				throw ite.getCause();
+			}
+		});
+	}
+	
+	private static Date today()
+	{
+		return Date.valueOf(LocalDate.now());
+	}
+}
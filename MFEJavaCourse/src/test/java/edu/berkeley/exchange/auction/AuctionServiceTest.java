@@ -0,0 +1,131 @@
+package edu.berkeley.exchange.auction;
+
+import static org.testng.Assert.*;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.SelfTradePrevention;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.marketdata.LastTradePrices;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingKey;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class AuctionServiceTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	
+	private static final String TRADER = "Auction Trader";
+	private static final String BUYER = "Auction Buyer";
+	private static final String SELLER = "Auction Seller";
+	private static final String SELF_TRADE = "AUCA";
+	private static final String ICEBERG = "AUCB";
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private AuctionService auctionService;
+	
+	@Autowired
+	private LastTradePrices lastTradePrices;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		Trader trader = traderRepo.save(new Trader(TRADER, STARTING_CAPITAL));
+		Stock stock = stockRepo.save(new Stock(SELF_TRADE, SELF_TRADE));
+		holdingRepo.save(new Holding(trader, stock, 100));
+		
+		traderRepo.save(new Trader(BUYER, STARTING_CAPITAL));
+		Trader seller = traderRepo.save(new Trader(SELLER, STARTING_CAPITAL));
+		holdingRepo.save(new Holding(seller, stockRepo.save(new Stock(ICEBERG, ICEBERG)), 100));
+	}
+	
+	@Test
+	public void icebergReserveShouldCountTowardsTheCross()
+	{
+		Stock stock = stockRepo.findOne(ICEBERG);
+		auctionService.startCall(stock);
+		try
+		{
+			exchangeService.placeIcebergOrder(traderRepo.findOne(SELLER), stock, 10.0, 100, 10, OrderType.SELL);
+			exchangeService.placeOrder(traderRepo.findOne(BUYER), stock, 10.0, 60, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail("Valid order encountered OrderExecutionException.");
+		}
+		
+		// only 10 of the sell is shown, but all 60 bid for can be filled from its reserve
+		ClearingPrice indicative = auctionService.getIndicativePrice(stock);
+		assertEquals(indicative.getPrice(), 10.0);
+		assertEquals(indicative.getVolume(), 60);
+		assertEquals(indicative.getSupply(), 100);
+		
+		ClearingPrice clearingPrice = auctionService.uncross(stock);
+		assertEquals(clearingPrice.getVolume(), 60);
+		assertEquals(holdingRepo.findOne(new HoldingKey(BUYER, ICEBERG)).getQuantity(), 60);
+		assertEquals(traderRepo.findOne(BUYER).getCapital(), STARTING_CAPITAL - 600.0, 1e-9);
+		assertNull(orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(BUYER, ICEBERG, false));
+		assertEquals(orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(SELLER, ICEBERG, false)
+				.getQuantity(), 40);
+	}
+	
+	@Test
+	public void selfTradePreventionShouldNotApplyToTheUncross()
+	{
+		Stock stock = stockRepo.findOne(SELF_TRADE);
+		auctionService.startCall(stock);
+		exchangeService.getProperties().setSelfTradePrevention(SelfTradePrevention.CANCEL_BOTH);
+		try
+		{
+			exchangeService.placeOrder(traderRepo.findOne(TRADER), stock, 10.0, 10, OrderType.SELL);
+			exchangeService.placeOrder(traderRepo.findOne(TRADER), stock, 10.5, 10, OrderType.BUY);
+			
+			ClearingPrice clearingPrice = auctionService.uncross(stock);
+			assertEquals(clearingPrice.getVolume(), 10);
+			assertEquals(lastTradePrices.getLastPrice(SELF_TRADE), clearingPrice.getPrice());
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail("Valid order encountered OrderExecutionException.");
+		}
+		finally
+		{
+			exchangeService.getProperties().setSelfTradePrevention(SelfTradePrevention.NONE);
+		}
+		
+		assertNull(orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(TRADER, SELF_TRADE, false),
+				"Both of the trader's orders should have filled against each other.");
+		assertEquals(holdingRepo.findOne(new HoldingKey(TRADER, SELF_TRADE)).getQuantity(), 100);
+		assertEquals(traderRepo.findOne(TRADER).getCapital(), STARTING_CAPITAL, 1e-9);
+	}
+}
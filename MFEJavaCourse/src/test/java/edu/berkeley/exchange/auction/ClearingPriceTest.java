@@ -0,0 +1,73 @@
+package edu.berkeley.exchange.auction;
+
+import static org.testng.Assert.*;
+
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ClearingPriceTest 
+{
+	private NavigableMap<Double, Long> bids;
+	private NavigableMap<Double, Long> asks;
+	
+	@BeforeMethod
+	public void setUp()
+	{
+		bids = new TreeMap<>(Collections.reverseOrder());
+		asks = new TreeMap<>();
+	}
+	
+	@Test
+	public void clearingPriceShouldMaximizeExecutableVolume()
+	{
+		bids.put(101.0, 100L);
+		bids.put(100.0, 200L);
+		bids.put(99.0, 300L);
+		asks.put(98.0, 150L);
+		asks.put(100.0, 100L);
+		asks.put(102.0, 500L);
+		
+		ClearingPrice clearingPrice = ClearingPrice.calculate(bids, asks, Double.NaN);
+		
+		assertEquals(clearingPrice.getPrice(), 100.0);
+		assertEquals(clearingPrice.getVolume(), 250L);
+		assertEquals(clearingPrice.getImbalance(), 50L);
+	}
+	
+	@Test
+	public void equalVolumeShouldPreferSmallerImbalance()
+	{
+		bids.put(100.0, 100L);
+		bids.put(99.0, 50L);
+		asks.put(99.0, 100L);
+		
+		ClearingPrice clearingPrice = ClearingPrice.calculate(bids, asks, Double.NaN);
+		
+		assertEquals(clearingPrice.getPrice(), 100.0);
+		assertEquals(clearingPrice.getImbalance(), 0L);
+	}
+	
+	@Test
+	public void equalVolumeAndImbalanceShouldPreferReferencePrice()
+	{
+		bids.put(80.0, 50L);
+		asks.put(75.0, 50L);
+		
+		assertEquals(ClearingPrice.calculate(bids, asks, 76.0).getPrice(), 75.0);
+		assertEquals(ClearingPrice.calculate(bids, asks, 79.0).getPrice(), 80.0);
+	}
+	
+	@Test
+	public void bookThatDoesNotCrossShouldHaveNoClearingPrice()
+	{
+		bids.put(75.0, 50L);
+		asks.put(80.0, 50L);
+		
+		assertNull(ClearingPrice.calculate(bids, asks, Double.NaN));
+		assertNull(ClearingPrice.calculate(bids, new TreeMap<Double, Long>(), Double.NaN));
+	}
+}
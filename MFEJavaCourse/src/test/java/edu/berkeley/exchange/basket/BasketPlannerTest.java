@@ -0,0 +1,37 @@
+package edu.berkeley.exchange.basket;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.SelfTradePrevention;
+import edu.berkeley.exchange.order.RestingOrder;
+
+public class BasketPlannerTest 
+{
+	private static final List<RestingOrder> CROSSING = Arrays.asList(
+			new RestingOrder(1, "Citadel", 10.0, 30),
+			new RestingOrder(2, "Goldman Sachs", 10.0, 20),
+			new RestingOrder(3, "Citadel", 10.5, 40));
+	
+	@Test
+	public void fillableShouldStopAtLegQuantity()
+	{
+		assertEquals(BasketPlanner.fillable(CROSSING, 45, "Goldman Sachs", SelfTradePrevention.NONE), 45);
+		assertEquals(BasketPlanner.fillable(CROSSING, 200, "Goldman Sachs", SelfTradePrevention.NONE), 90);
+	}
+	
+	@Test
+	public void ownOrdersShouldFollowSelfTradePrevention()
+	{
+		assertEquals(BasketPlanner.fillable(CROSSING, 100, "Goldman Sachs", 
+				SelfTradePrevention.CANCEL_RESTING), 70);
+		assertEquals(BasketPlanner.fillable(CROSSING, 100, "Goldman Sachs", 
+				SelfTradePrevention.CANCEL_AGGRESSOR), 30);
+		assertEquals(BasketPlanner.fillable(CROSSING, 60, "Goldman Sachs", 
+				SelfTradePrevention.DECREMENT), 40);
+	}
+}
@@ -0,0 +1,141 @@
+package edu.berkeley.exchange.basket;
+
+import static org.testng.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.marketdata.PriceLevel;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingKey;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class BasketRollbackTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 10000.0;
+	
+	private static final String TRADER = "Basket Trader";
+	private static final String SELLER = "Basket Seller";
+	private static final String BIDDER = "Basket Bidder";
+	
+	private static final String FIRST = "BSKA";
+	private static final String FAILING = "BSKB";
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	private ExchangeServiceImpl exchangeService;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		Trader trader = traderRepo.save(new Trader(TRADER, STARTING_CAPITAL));
+		Trader seller = traderRepo.save(new Trader(SELLER, STARTING_CAPITAL));
+		traderRepo.save(new Trader(BIDDER, STARTING_CAPITAL));
+		Stock first = stockRepo.save(new Stock(FIRST, FIRST));
+		holdingRepo.save(new Holding(seller, first, 100));
+		Stock failing = stockRepo.save(new Stock(FAILING, FAILING));
+		holdingRepo.save(new Holding(trader, failing, 100));
+		
+		exchangeService = new ExchangeServiceImpl(orderRepo, failingHoldings(), traderRepo);
+		exchangeService.setTransactionManager(transactionManager);
+	}
+	
+	@Test
+	public void failedLaterLegShouldRollBackEarlierLegs()
+	{
+		Stock first = stockRepo.findOne(FIRST);
+		Stock failing = stockRepo.findOne(FAILING);
+		try
+		{
+			exchangeService.placeOrder(traderRepo.findOne(SELLER), first, 9.50, 10, OrderType.SELL);
+			exchangeService.placeOrder(traderRepo.findOne(BIDDER), failing, 20.00, 10, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail("Valid order encountered OrderExecutionException.");
+		}
+		assertEquals(exchangeService.getBestAskPrice(first).getQuantity(), 10);
+		
+		try
+		{
+			exchangeService.placeBasket(traderRepo.findOne(TRADER), Arrays.asList(
+					new BasketLeg(first, 9.50, 10, OrderType.BUY),
+					new BasketLeg(failing, 20.00, 10, OrderType.SELL)), true);
+			fail("Basket with a failing leg executed.");
+		}
+		catch (OrderExecutionException oee)
+		{
+			assertEquals(oee.getMessage(), "Could not execute basket on [BSKA, BSKB] for Basket Trader "
+					+ "due to concurrent updates.");
+		}
+		
+		assertNull(orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(TRADER, FIRST, true),
+				"Earlier leg should not have left its fill in the database.");
+		assertEquals(exchangeService.getBestAsk(first).getQuantity(), 10);
+		PriceLevel bestAsk = exchangeService.getBestAskPrice(first);
+		assertEquals(bestAsk.getPrice(), 9.50, 1e-9);
+		assertEquals(bestAsk.getQuantity(), 10, "Earlier leg's fill should not be left in the cached book.");
+		assertEquals(traderRepo.findOne(SELLER).getCapital(), STARTING_CAPITAL, 1e-9);
+		assertEquals(traderRepo.findOne(TRADER).getCapital(), STARTING_CAPITAL, 1e-9);
+		assertEquals(holdingRepo.findOne(new HoldingKey(TRADER, FAILING)).getQuantity(), 100);
+	}
+	
+	/**
+	 * The holding repository, with every save of a holding on the failing security 
+	 * failing the version check.
+	 */
+	private HoldingRepository failingHoldings()
+	{
+		return (HoldingRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { HoldingRepository.class }, (proxy, method, args) ->
+		{
+			if (method.getName().equals("save") && args[0] instanceof Holding && 
+					((Holding) args[0]).getKey().getTicker().equals(FAILING))
+			{
+				throw new ObjectOptimisticLockingFailureException(Holding.class, ((Holding) args[0]).getKey());
+			}
+			try
+			{
+				return method.invoke(holdingRepo, args);
+			}
+			catch (InvocationTargetException ite)
+			{
+				throw ite.getCause();
+			}
+		});
+	}
+}
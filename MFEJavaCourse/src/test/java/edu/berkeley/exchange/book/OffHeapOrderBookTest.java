@@ -0,0 +1,143 @@
+package edu.berkeley.exchange.book;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.book.OffHeapOrderBook.RestingOrderVisitor;
+import edu.berkeley.exchange.order.Order.OrderType;
+
+public class OffHeapOrderBookTest 
+{
+	@Test
+	public void chainsShouldKeepTimePriorityAndBestPrice()
+	{
+		OffHeapOrderBook book = new OffHeapOrderBook(8);
+		book.add(1, "GOOG", "citadel", OrderType.BUY, 100.25, 10);
+		book.add(2, "GOOG", "jpmorgan", OrderType.BUY, 101.5, 20);
+		book.add(3, "GOOG", "citadel", OrderType.SELL, 102, 30);
+		book.add(4, "AAPL", "citadel", OrderType.BUY, 50, 40);
+		book.add(5, "GOOG", "jpmorgan", OrderType.BUY, 99, 50);
+		
+		assertEquals(book.getBestPrice("GOOG", OrderType.BUY), 101.5);
+		assertEquals(book.getBestPrice("GOOG", OrderType.SELL), 102.0);
+		assertTrue(Double.isNaN(book.getBestPrice("AAPL", OrderType.SELL)));
+		assertTrue(Double.isNaN(book.getBestPrice("MSFT", OrderType.BUY)));
+		
+		assertTrue(book.remove(2));
+		assertFalse(book.remove(2));
+		assertEquals(book.getBestPrice("GOOG", OrderType.BUY), 100.25);
+		assertEquals(ids(book, "GOOG", OrderType.BUY), Arrays.asList(1L, 5L));
+		assertEquals(book.getTraders().nameOf(traderOf(book, "AAPL", OrderType.BUY)), "citadel");
+	}
+	
+	@Test
+	public void removedRecordsShouldBeReused()
+	{
+		OffHeapOrderBook book = new OffHeapOrderBook(2);
+		book.add(1, "GOOG", "citadel", OrderType.SELL, 10, 100);
+		book.add(2, "GOOG", "citadel", OrderType.SELL, 11, 100);
+		
+		assertTrue(book.setQuantity(1, 0));
+		assertTrue(book.add(3, "GOOG", "citadel", OrderType.SELL, 12, 100));
+		assertFalse(book.add(3, "GOOG", "citadel", OrderType.SELL, 12, 100));
+		assertEquals(book.size(), 2);
+		assertEquals(book.getQuantity(1), 0);
+		assertEquals(ids(book, "GOOG", OrderType.SELL), Arrays.asList(2L, 3L));
+	}
+	
+	@Test
+	public void indexShouldSurviveChurn()
+	{
+		int capacity = 1000;
+		OffHeapOrderBook book = new OffHeapOrderBook(capacity);
+		for (long id = 1; id <= 50000; id++)
+		{
+			book.add(id, "T" + id % 7, "trader", OrderType.BUY, 1, (int) id);
+			if (id > capacity / 2)
+			{
+				assertTrue(book.remove(id - capacity / 2));
+			}
+		}
+		
+		assertEquals(book.size(), capacity / 2);
+		for (long id = 50000 - capacity / 2 + 1; id <= 50000; id++)
+		{
+			assertEquals(book.getQuantity(id), (int) id);
+		}
+	}
+	
+	@Test
+	public void bestPriceShouldFollowTheLastOrderAtAPrice()
+	{
+		OffHeapOrderBook book = new OffHeapOrderBook(8);
+		book.add(1, "GOOG", "citadel", OrderType.SELL, 10.5, 10);
+		book.add(2, "GOOG", "jpmorgan", OrderType.SELL, 10.25, 20);
+		book.add(3, "GOOG", "citadel", OrderType.SELL, 10.25, 30);
+		
+		assertTrue(book.remove(2));
+		assertEquals(book.getBestPrice("GOOG", OrderType.SELL), 10.25);
+		assertTrue(book.setQuantity(3, 0));
+		assertEquals(book.getBestPrice("GOOG", OrderType.SELL), 10.5);
+		assertTrue(book.remove(1));
+		assertTrue(Double.isNaN(book.getBestPrice("GOOG", OrderType.SELL)));
+	}
+	
+	@Test
+	public void requeuedOrderShouldMoveBehindItsSide()
+	{
+		OffHeapOrderBook book = new OffHeapOrderBook(8);
+		book.add(1, "GOOG", "citadel", OrderType.BUY, 100, 10);
+		book.add(2, "GOOG", "jpmorgan", OrderType.BUY, 100, 20);
+		book.add(3, "GOOG", "citadel", OrderType.BUY, 100, 30);
+		
+		assertTrue(book.requeue(1));
+		assertTrue(book.requeue(1));
+		assertFalse(book.requeue(4));
+		assertEquals(ids(book, "GOOG", OrderType.BUY), Arrays.asList(2L, 3L, 1L));
+		assertTrue(book.remove(3));
+		assertEquals(ids(book, "GOOG", OrderType.BUY), Arrays.asList(2L, 1L));
+	}
+	
+	@Test
+	public void removeAllShouldOnlyEmptyItsTicker()
+	{
+		OffHeapOrderBook book = new OffHeapOrderBook(8);
+		book.add(1, "GOOG", "citadel", OrderType.BUY, 100, 10);
+		book.add(2, "AAPL", "citadel", OrderType.BUY, 50, 20);
+		book.add(3, "GOOG", "jpmorgan", OrderType.SELL, 101, 30);
+		
+		assertEquals(book.removeAll("GOOG"), 2);
+		assertEquals(book.removeAll("MSFT"), 0);
+		assertEquals(book.size(), 1);
+		assertTrue(Double.isNaN(book.getBestPrice("GOOG", OrderType.BUY)));
+		assertTrue(Double.isNaN(book.getBestPrice("GOOG", OrderType.SELL)));
+		assertEquals(book.getBestPrice("AAPL", OrderType.BUY), 50.0);
+	}
+	
+	private static List<Long> ids(OffHeapOrderBook book, String ticker, OrderType type)
+	{
+		final List<Long> ids = new ArrayList<>();
+		book.forEach(ticker, type, new RestingOrderVisitor() {
+			@Override
+			public void visit(long orderId, int traderId, double price, int quantity) 
+			{
+				ids.add(orderId);
+			}
+		});
+		return ids;
+	}
+	
+	private static int traderOf(OffHeapOrderBook book, String ticker, OrderType type)
+	{
+		final int[] trader = { -1 };
+		book.forEach(ticker, type, (orderId, traderId, price, quantity) -> trader[0] = traderId);
+		return trader[0];
+	}
+}
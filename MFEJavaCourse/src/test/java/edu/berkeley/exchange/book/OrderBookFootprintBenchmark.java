@@ -0,0 +1,151 @@
+package edu.berkeley.exchange.book;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.trader.Trader;
+
+/**
+ * Compares keeping resting orders as Order entities on the heap with keeping them
+ * in an OffHeapOrderBook. For each representation it reports the heap retained by
+ * the book, the pause of a full collection while the book is live, and the time the
+ * collector spends on a fixed amount of short-lived garbage allocated beside it.
+ * Not a TestNG test; run it on its own with enough heap for the entity case:
+ *
+ *   java -Xmx4g -XX:MaxDirectMemorySize=1g -cp ... \
+ *       edu.berkeley.exchange.book.OrderBookFootprintBenchmark [orders] [tickers] [traders]
+ *
+ * Orders default to 10,000,000 over 500 tickers and 10,000 traders. The entities
+ * share their Security, Trader and name objects, as one persistence context would,
+ * so the entity figures are a lower bound.
+ */
+public class OrderBookFootprintBenchmark
+{
+	private static final int FULL_COLLECTIONS = 5;
+	private static final long CHURN_BYTES = 4L << 30;
+
+	public static void main(String[] args)
+	{
+		int orders = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		int tickers = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int traders = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+		Security[] securities = new Security[tickers];
+		for (int i = 0; i < tickers; i++)
+		{
+			securities[i] = new Stock("T" + i, "Company " + i);
+		}
+		Trader[] people = new Trader[traders];
+		for (int i = 0; i < traders; i++)
+		{
+			people[i] = new Trader("trader" + i, 1000000);
+		}
+
+		long baseline = retainedHeap();
+
+		List<Order> entities = new ArrayList<>(orders);
+		SplittableRandom random = new SplittableRandom(42);
+		for (int i = 0; i < orders; i++)
+		{
+			entities.add(new Order(securities[random.nextInt(tickers)], people[random.nextInt(traders)],
+					price(random), 1 + random.nextInt(1000), side(random)));
+		}
+		report("entities", retainedHeap() - baseline, 0, fullPause(), churn());
+		entities = null;
+
+		baseline = retainedHeap();
+
+		OffHeapOrderBook book = new OffHeapOrderBook(orders);
+		random = new SplittableRandom(42);
+		for (int i = 0; i < orders; i++)
+		{
+			book.add(i + 1, securities[random.nextInt(tickers)].getTicker(),
+					people[random.nextInt(traders)].getName(), side(random), price(random),
+					1 + random.nextInt(1000));
+		}
+		report("off-heap", retainedHeap() - baseline, book.getOffHeapBytes(), fullPause(), churn());
+
+		if (book.size() != orders)
+		{
+			throw new IllegalStateException("Expected " + orders + " resting orders, found " + book.size());
+		}
+	}
+
+	private static double price(SplittableRandom random)
+	{
+		return 50 + random.nextInt(10000) / 100.0;
+	}
+
+	private static OrderType side(SplittableRandom random)
+	{
+		return random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+	}
+
+	private static long retainedHeap()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+		{
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Mean wall time of a full collection, which has to trace everything live.
+	 */
+	private static double fullPause()
+	{
+		long total = 0;
+		for (int i = 0; i < FULL_COLLECTIONS; i++)
+		{
+			long start = System.nanoTime();
+			System.gc();
+			total += System.nanoTime() - start;
+		}
+		return total / 1e6 / FULL_COLLECTIONS;
+	}
+
+	/**
+	 * Collector time and count spent while allocating CHURN_BYTES of garbage, which
+	 * is where a large old generation shows up as longer young pauses.
+	 */
+	private static long[] churn()
+	{
+		long[] before = collections();
+		byte[][] recent = new byte[64][];
+		for (long allocated = 0; allocated < CHURN_BYTES; allocated += 1024)
+		{
+			recent[(int) (allocated >> 10) & 63] = new byte[1024];
+		}
+		long[] after = collections();
+		return new long[] { after[0] - before[0], after[1] - before[1] };
+	}
+
+	private static long[] collections()
+	{
+		long count = 0;
+		long millis = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			count += Math.max(collector.getCollectionCount(), 0);
+			millis += Math.max(collector.getCollectionTime(), 0);
+		}
+		return new long[] { count, millis };
+	}
+
+	private static void report(String name, long heapBytes, long offHeapBytes, double fullPauseMillis,
+			long[] churn)
+	{
+		System.out.printf("%-9s heap %,8.1f MB  off-heap %,8.1f MB  full gc %,8.1f ms  "
+				+ "churn %,5d collections %,7d ms%n", name, heapBytes / 1048576.0, offHeapBytes / 1048576.0,
+				fullPauseMillis, churn[0], churn[1]);
+	}
+}
@@ -0,0 +1,195 @@
+package edu.berkeley.exchange.corporate;
+
+import static org.testng.Assert.*;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.StopOrder;
+import edu.berkeley.exchange.order.StopOrderRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingKey;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class CorporateActionServiceTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	
+	private static final String HOLDER = "Corporate Holder";
+	private static final String BUYER = "Corporate Buyer";
+	private static final String SHORT = "Corporate Short";
+	
+	private static final String SPLIT = "CASP";
+	private static final String REVERSE = "CASR";
+	private static final String DIVIDEND = "CASD";
+	
+	private static final String VALID_ORDER_FAILURE = "Valid order encountered OrderExecutionException.";
+	
+	@Autowired
+	private CorporateActionService corporateActions;
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private StopOrderRepository stopOrderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		Trader holder = traderRepo.save(new Trader(HOLDER, STARTING_CAPITAL));
+		traderRepo.save(new Trader(BUYER, STARTING_CAPITAL));
+		Trader shortSeller = traderRepo.save(new Trader(SHORT, STARTING_CAPITAL));
+		
+		for (String ticker : new String[] { SPLIT, REVERSE, DIVIDEND })
+		{
+			Stock stock = new Stock(ticker, ticker);
+			stock.setTickSize(0.01);
+			stockRepo.save(stock);
+			holdingRepo.save(new Holding(holder, stock, 100));
+		}
+		holdingRepo.save(new Holding(shortSeller, stockRepo.findOne(DIVIDEND), -10));
+	}
+	
+	@Test
+	public void splitPricesShouldBeRoundedOntoTheTick()
+	{
+		Stock stock = stockRepo.findOne(SPLIT);
+		try
+		{
+			exchangeService.placeOrder(trader(HOLDER), stock, 10.01, 40, OrderType.SELL);
+			exchangeService.placeOrder(trader(BUYER), stock, 10.00, 20, OrderType.BUY);
+			exchangeService.placeStopOrder(trader(BUYER), stock, 11.00, 11.05, 10, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		double buyerCapital = trader(BUYER).getCapital();
+		double holderCapital = trader(HOLDER).getCapital();
+		assertEquals(buyerCapital, STARTING_CAPITAL - 200.0, 1e-9);
+		
+		CorporateActionResult result = corporateActions.split(stock, new SplitRatio(3, 2));
+		assertEquals(result.getHoldings(), 1);
+		assertEquals(result.getOpenOrders(), 2);
+		assertEquals(result.getStopOrders(), 1);
+		
+		assertEquals(holdingRepo.findOne(new HoldingKey(HOLDER, SPLIT)).getQuantity(), 90);
+		
+		// 10.01 * 2/3 is 6.6733..., so the sell rounds up and the buy at 6.6666... rounds down
+		Order sell = openOrder(HOLDER);
+		assertEquals(sell.getQuantity(), 60);
+		assertEquals(sell.getPrice(), 6.68, 1e-9);
+		Order buy = openOrder(BUYER);
+		assertEquals(buy.getQuantity(), 30);
+		assertEquals(buy.getPrice(), 6.66, 1e-9);
+		
+		// 30 at 6.66 reserves 199.80 of the 200.00 taken, so 0.20 comes back
+		assertEquals(trader(BUYER).getCapital(), buyerCapital + 0.20, 1e-9);
+		assertEquals(trader(HOLDER).getCapital(), holderCapital, 1e-9);
+		
+		List<StopOrder> stops = stopOrderRepo.findByTickerAndTriggeredOrderByIdAsc(SPLIT, false);
+		assertEquals(stops.size(), 1);
+		assertEquals(stops.get(0).getQuantity(), 15);
+		assertEquals(stops.get(0).getStopPrice(), 7.34, 1e-9);
+		assertEquals(stops.get(0).getLimitPrice(), 7.36, 1e-9);
+		
+		assertEquals(exchangeService.getBestAsk(stock).getPrice(), 6.68, 1e-9);
+		assertEquals(exchangeService.getBestBid(stock).getPrice(), 6.66, 1e-9);
+	}
+	
+	@Test
+	public void fractionalReverseSplitShouldBeRefused()
+	{
+		Stock stock = stockRepo.findOne(REVERSE);
+		try
+		{
+			corporateActions.split(stock, new SplitRatio(1, 3));
+			fail("Reverse split leaving part of a share was applied.");
+		}
+		catch (IllegalStateException ise)
+		{
+			assertEquals(ise.getMessage(), "Could not split CASR 1/3 since 1 holdings, 0 open orders and "
+					+ "0 stop orders would be left with part of a share.");
+		}
+		assertEquals(holdingRepo.findOne(new HoldingKey(HOLDER, REVERSE)).getQuantity(), 100);
+	}
+	
+	@Test
+	public void dividendShouldBePaidOnReservedSharesAndChargedToShorts()
+	{
+		Stock stock = stockRepo.findOne(DIVIDEND);
+		try
+		{
+			exchangeService.placeOrder(trader(HOLDER), stock, 20.00, 40, OrderType.SELL);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		assertEquals(holdingRepo.findOne(new HoldingKey(HOLDER, DIVIDEND)).getQuantity(), 60);
+		
+		double holderCapital = trader(HOLDER).getCapital();
+		CorporateActionResult result = corporateActions.payDividend(stock, 0.5);
+		
+		assertEquals(trader(HOLDER).getCapital(), holderCapital + 50.0, 1e-9);
+		assertEquals(trader(SHORT).getCapital(), STARTING_CAPITAL - 5.0, 1e-9);
+		assertEquals(result.getTraders(), 2);
+		assertEquals(result.getCash(), 45.0, 1e-9);
+	}
+	
+	@Test
+	public void nonPositiveDividendShouldBeRejected()
+	{
+		try
+		{
+			corporateActions.payDividend(stockRepo.findOne(DIVIDEND), 0);
+			fail("Dividend of zero was paid.");
+		}
+		catch (IllegalArgumentException iae)
+		{
+			assertEquals(iae.getMessage(), "Dividend of 0.0 per share on CASD must be positive.");
+		}
+	}
+	
+	private Trader trader(String name)
+	{
+		return traderRepo.findOne(name);
+	}
+	
+	private Order openOrder(String traderName)
+	{
+		return orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(traderName, SPLIT, false);
+	}
+}
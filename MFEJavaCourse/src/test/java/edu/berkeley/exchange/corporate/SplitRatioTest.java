@@ -0,0 +1,45 @@
+package edu.berkeley.exchange.corporate;
+
+import static org.testng.Assert.*;
+
+import org.testng.annotations.Test;
+
+public class SplitRatioTest
+{
+	@Test
+	public void forwardSplitShouldLowerPrices()
+	{
+		assertEquals(new SplitRatio(2, 1).applyToPrice(101.0), 50.5, 1e-9);
+		assertEquals(new SplitRatio(3, 2).applyToPrice(90.0), 60.0, 1e-9);
+	}
+	
+	@Test
+	public void reverseSplitShouldRaisePrices()
+	{
+		assertEquals(new SplitRatio(1, 10).applyToPrice(1.25), 12.5, 1e-9);
+	}
+	
+	@Test
+	public void ratioShouldBePositiveAndChangeTheShareCount()
+	{
+		try
+		{
+			new SplitRatio(2, 2);
+			fail("Split ratio 2/2 failed to throw IllegalArgumentException.");
+		}
+		catch (IllegalArgumentException iae)
+		{
+			assertEquals(iae.getMessage(), "Split ratio 2/2 must be positive and change the share count.");
+		}
+		
+		try
+		{
+			new SplitRatio(0, 1);
+			fail("Split ratio 0/1 failed to throw IllegalArgumentException.");
+		}
+		catch (IllegalArgumentException iae)
+		{
+			assertEquals(iae.getMessage(), "Split ratio 0/1 must be positive and change the share count.");
+		}
+	}
+}
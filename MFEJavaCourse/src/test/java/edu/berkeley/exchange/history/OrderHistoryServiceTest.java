@@ -0,0 +1,154 @@
+package edu.berkeley.exchange.history;
+
+import static org.testng.Assert.*;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class OrderHistoryServiceTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	
+	private static final String BUYER = "History Buyer";
+	private static final String SELLER = "History Seller";
+	
+	private static final String TRADED = "HSTA";
+	private static final String OTHER = "HSTB";
+	
+	private static final int TRADES = 7;
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private OrderHistoryService history;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@Autowired
+	private DataSource dataSource;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		traderRepo.save(new Trader(BUYER, STARTING_CAPITAL));
+		Trader seller = traderRepo.save(new Trader(SELLER, STARTING_CAPITAL));
+		for (String ticker : new String[] { TRADED, OTHER })
+		{
+			Stock stock = stockRepo.save(new Stock(ticker, ticker));
+			holdingRepo.save(new Holding(seller, stock, 1000));
+		}
+		
+		try
+		{
+			for (int i = 0; i < TRADES; i++)
+			{
+				String ticker = i % 2 == 0 ? TRADED : OTHER;
+				exchangeService.placeOrder(traderRepo.findOne(SELLER), stockRepo.findOne(ticker), 10.0 + i, 10,
+						OrderType.SELL);
+				exchangeService.placeOrder(traderRepo.findOne(BUYER), stockRepo.findOne(ticker), 10.0 + i, 10,
+						OrderType.BUY);
+			}
+			exchangeService.placeOrder(traderRepo.findOne(BUYER), stockRepo.findOne(TRADED), 5.0, 10,
+					OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail("Valid order encountered OrderExecutionException.");
+		}
+	}
+	
+	@Test
+	public void pagesShouldResumeAfterTheLastId()
+	{
+		List<Long> ids = new ArrayList<>();
+		HistoryPage page = history.executedByTrader(BUYER, 0, 3);
+		ids.addAll(ids(page.getOrders()));
+		while (!page.isLast())
+		{
+			assertEquals(page.getOrders().size(), 3);
+			page = history.executedByTrader(BUYER, page.getLastId(), 3);
+			ids.addAll(ids(page.getOrders()));
+		}
+		
+		assertEquals(ids, ids(history.streamExecutedByTrader(BUYER).collect(Collectors.toList())));
+		assertEquals(ids.size(), TRADES, "The open buy should not be in the history.");
+		for (int i = 1; i < ids.size(); i++)
+		{
+			assertTrue(ids.get(i) > ids.get(i - 1));
+		}
+	}
+	
+	@Test
+	public void queriesShouldFilterByTraderSecurityAndDate()
+	{
+		Date today = Date.valueOf(LocalDate.now());
+		Date tomorrow = Date.valueOf(LocalDate.now().plusDays(1));
+		
+		List<Order> traded = history.streamExecutedBySecurity(TRADED).collect(Collectors.toList());
+		assertEquals(traded.size(), 2 * 4, "Both sides of the four trades in " + TRADED + ".");
+		for (Order order : traded)
+		{
+			assertEquals(order.getTicker(), TRADED);
+			assertTrue(order.isExecuted());
+		}
+		
+		assertEquals(history.streamExecutedBetween(today, tomorrow).count(), 2 * TRADES);
+		assertEquals(history.streamExecutedByTraderBetween(SELLER, today, tomorrow).count(), TRADES);
+		assertEquals(history.streamExecutedByTraderBetween(SELLER, tomorrow,
+				Date.valueOf(LocalDate.now().plusDays(2))).count(), 0);
+		assertTrue(history.executedBetween(tomorrow, tomorrow, 0, 10).isLast());
+	}
+	
+	@Test
+	public void traderAndSecurityQueriesShouldSeekIntoTheirIndexes()
+	{
+		JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+		String byTrader = jdbc.queryForObject("explain select * from ORDERS where traderName = ? "
+				+ "and executed = true and id > ? order by id limit 10", String.class, BUYER, 0);
+		assertTrue(byTrader.contains("IDX_ORDERS_TRADER_HISTORY"), byTrader);
+		
+		String byTicker = jdbc.queryForObject("explain select * from ORDERS where ticker = ? "
+				+ "and executed = true and id > ? order by id limit 10", String.class, TRADED, 0);
+		assertTrue(byTicker.contains("IDX_ORDERS_TICKER_HISTORY"), byTicker);
+	}
+	
+	private static List<Long> ids(List<Order> orders)
+	{
+		return orders.stream().map(Order::getId).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,290 @@
+package edu.berkeley.exchange.marketdata;
+
+import static org.testng.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeProperties;
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.SecurityLocks;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.book.OffHeapOrderBook;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class BestPriceCacheTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	
+	private static final String BUYER = "Cache Buyer";
+	private static final String SELLER = "Cache Seller";
+	
+	private static final String COMMIT = "BPCA";
+	private static final String LEVELS = "BPCB";
+	private static final String CANCEL = "BPCC";
+	private static final String ICEBERG = "BPCD";
+	private static final String UNREAD = "BPCE";
+	private static final String OFF_HEAP = "BPCF";
+	
+	private static final String VALID_ORDER_FAILURE = "Valid order encountered OrderExecutionException.";
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	/**
+	 * Best ask on the watched security, read each time the buyer is saved within a
+	 * match.
+	 */
+	private List<PriceLevel> seenDuringMatch = new ArrayList<>();
+	private volatile String watched = COMMIT;
+	
+	private ExchangeServiceImpl exchangeService;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		traderRepo.save(new Trader(BUYER, STARTING_CAPITAL));
+		Trader seller = traderRepo.save(new Trader(SELLER, STARTING_CAPITAL));
+		for (String ticker : new String[] { COMMIT, LEVELS, CANCEL, ICEBERG, UNREAD, OFF_HEAP })
+		{
+			Stock stock = stockRepo.save(new Stock(ticker, ticker));
+			holdingRepo.save(new Holding(seller, stock, 1000));
+		}
+		
+		exchangeService = new ExchangeServiceImpl(orderRepo, holdingRepo, watchingTraders());
+		exchangeService.setTransactionManager(transactionManager);
+	}
+	
+	@Test
+	public void bookShouldNotChangeBeforeTheMatchCommits()
+	{
+		Stock stock = stockRepo.findOne(COMMIT);
+		try
+		{
+			exchangeService.placeOrder(trader(SELLER), stock, 10.0, 10, OrderType.SELL);
+			assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 10);
+			watch(COMMIT);
+			exchangeService.placeOrder(trader(BUYER), stock, 10.0, 4, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		assertFalse(seenDuringMatch.isEmpty());
+		for (PriceLevel seen : seenDuringMatch)
+		{
+			assertEquals(seen.getQuantity(), 10, "Fill showed in the cached book before it committed.");
+		}
+		assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 6);
+	}
+	
+	@Test
+	public void bookFirstReadDuringAMatchShouldNotBeKept()
+	{
+		Stock stock = stockRepo.findOne(UNREAD);
+		try
+		{
+			exchangeService.placeOrder(trader(SELLER), stock, 10.0, 10, OrderType.SELL);
+			watch(UNREAD);
+			exchangeService.placeOrder(trader(BUYER), stock, 10.0, 4, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		assertFalse(seenDuringMatch.isEmpty());
+		assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 6,
+				"Fill was taken off a book that already included it.");
+	}
+	
+	@Test
+	public void emptiedLevelShouldFallBackToTheNextPrice()
+	{
+		Stock stock = stockRepo.findOne(LEVELS);
+		try
+		{
+			exchangeService.placeOrder(trader(SELLER), stock, 10.0, 10, OrderType.SELL);
+			exchangeService.placeOrder(trader(SELLER), stock, 11.0, 20, OrderType.SELL);
+			assertEquals(exchangeService.getBestAskPrice(stock).getPrice(), 10.0, 1e-9);
+			exchangeService.placeOrder(trader(BUYER), stock, 10.5, 15, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		PriceLevel ask = exchangeService.getBestAskPrice(stock);
+		assertEquals(ask.getPrice(), 11.0, 1e-9);
+		assertEquals(ask.getQuantity(), 20);
+		PriceLevel bid = exchangeService.getBestBidPrice(stock);
+		assertEquals(bid.getPrice(), 10.5, 1e-9);
+		assertEquals(bid.getQuantity(), 5);
+	}
+	
+	@Test
+	public void cancelledOrderShouldLeaveTheBook()
+	{
+		Stock stock = stockRepo.findOne(CANCEL);
+		try
+		{
+			exchangeService.placeOrder(trader(SELLER), stock, 10.0, 10, OrderType.SELL);
+			exchangeService.placeOrder(trader(SELLER), stock, 10.0, 5, OrderType.SELL);
+			assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 15);
+			
+			long first = orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(SELLER, CANCEL, false)
+					.getId();
+			exchangeService.cancelOrder(trader(SELLER), first);
+			assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 5);
+			
+			long second = orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(SELLER, CANCEL, false)
+					.getId();
+			exchangeService.cancelOrder(trader(SELLER), second);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		assertNull(exchangeService.getBestAskPrice(stock));
+	}
+	
+	@Test
+	public void icebergReserveShouldNotBeCounted()
+	{
+		Stock stock = stockRepo.findOne(ICEBERG);
+		try
+		{
+			exchangeService.placeIcebergOrder(trader(SELLER), stock, 10.0, 250, 100, OrderType.SELL);
+			assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 100);
+			
+			exchangeService.placeOrder(trader(BUYER), stock, 10.0, 100, OrderType.BUY);
+			assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 100);
+			
+			exchangeService.placeOrder(trader(BUYER), stock, 10.0, 130, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 20);
+	}
+	
+	@Test
+	public void offHeapBookShouldFollowCommittedChanges()
+	{
+		SecurityLocks locks = new SecurityLocks();
+		BestPriceCache bestPrices = new BestPriceCache(orderRepo, locks);
+		OffHeapOrderBook offHeapBook = new OffHeapOrderBook(16);
+		bestPrices.setOffHeapBook(offHeapBook);
+		ExchangeServiceImpl mirrored = new ExchangeServiceImpl(orderRepo, holdingRepo, traderRepo,
+				new ExchangeProperties(), bestPrices, locks);
+		mirrored.setTransactionManager(transactionManager);
+		
+		Stock stock = stockRepo.findOne(OFF_HEAP);
+		List<Long> ids = new ArrayList<>();
+		try
+		{
+			mirrored.placeIcebergOrder(trader(SELLER), stock, 10.0, 250, 100, OrderType.SELL);
+			mirrored.placeOrder(trader(SELLER), stock, 10.5, 30, OrderType.SELL);
+			mirrored.placeOrder(trader(SELLER), stock, 10.0, 50, OrderType.SELL);
+			offHeapBook.forEach(OFF_HEAP, OrderType.SELL, (orderId, traderId, price, quantity) -> ids.add(orderId));
+			assertEquals(ids.size(), 3);
+			
+			// fills the iceberg's slice, which queues behind the other order at 10.0, then 20 of that order
+			mirrored.placeOrder(trader(BUYER), stock, 10.0, 120, OrderType.BUY);
+			assertEquals(sellIds(offHeapBook), Arrays.asList(ids.get(1), ids.get(2), ids.get(0)));
+			assertEquals(offHeapBook.getQuantity(ids.get(0)), 150);
+			assertEquals(offHeapBook.getQuantity(ids.get(2)), 30);
+			
+			mirrored.cancelOrder(trader(SELLER), ids.get(2));
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		assertEquals(offHeapBook.getQuantity(ids.get(2)), 0);
+		assertEquals(offHeapBook.getBestPrice(OFF_HEAP, OrderType.SELL), 10.0);
+		assertTrue(Double.isNaN(offHeapBook.getBestPrice(OFF_HEAP, OrderType.BUY)));
+		
+		bestPrices.invalidate(OFF_HEAP);
+		assertEquals(sellIds(offHeapBook), Arrays.asList(ids.get(0), ids.get(1)));
+		assertEquals(offHeapBook.getQuantity(ids.get(0)), 150);
+	}
+	
+	private static List<Long> sellIds(OffHeapOrderBook offHeapBook)
+	{
+		List<Long> ids = new ArrayList<>();
+		offHeapBook.forEach(OFF_HEAP, OrderType.SELL, (orderId, traderId, price, quantity) -> ids.add(orderId));
+		return ids;
+	}
+	
+	private Trader trader(String name)
+	{
+		return traderRepo.findOne(name);
+	}
+	
+	private void watch(String ticker)
+	{
+		seenDuringMatch.clear();
+		watched = ticker;
+	}
+	
+	/**
+	 * The trader repository, noting the best ask on the watched security whenever the
+	 * buyer is saved, which happens after the resting sell has been filled.
+	 */
+	private TraderRepository watchingTraders()
+	{
+		return (TraderRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { TraderRepository.class }, (proxy, method, args) ->
+		{
+			if (method.getName().equals("save") && args[0] instanceof Trader &&
+					((Trader) args[0]).getName().equals(BUYER))
+			{
+				seenDuringMatch.add(exchangeService.getBestAskPrice(stockRepo.findOne(watched)));
+			}
+			try
+			{
+				return method.invoke(traderRepo, args);
+			}
+			catch (InvocationTargetException ite)
+			{
+				throw ite.getCause();
+			}
+		});
+	}
+}
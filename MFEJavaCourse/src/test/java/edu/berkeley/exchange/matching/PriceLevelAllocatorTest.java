@@ -0,0 +1,43 @@
+package edu.berkeley.exchange.matching;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+public class PriceLevelAllocatorTest 
+{
+	@Test
+	public void fifoShouldFillOldestOrdersFirst()
+	{
+		int[] allocations = PriceLevelAllocator.allocate(AllocationAlgorithm.FIFO, new int[] {100, 200, 300}, 250);
+		assertEquals(allocations, new int[] {100, 150, 0});
+	}
+	
+	@Test
+	public void proRataShouldSplitBySizeAndGiveLeftoversInTimePriority()
+	{
+		int[] allocations = PriceLevelAllocator.allocate(AllocationAlgorithm.PRO_RATA, new int[] {100, 200, 300}, 301);
+		assertEquals(allocations, new int[] {51, 100, 150});
+	}
+	
+	@Test
+	public void proRataShouldAllocateWholeLots()
+	{
+		int[] allocations = PriceLevelAllocator.allocate(AllocationAlgorithm.PRO_RATA, new int[] {300, 300, 400}, 500, 100);
+		assertEquals(allocations, new int[] {200, 100, 200});
+	}
+	
+	@Test
+	public void topOrderShouldBeFilledBeforeTheRestOfTheLevel()
+	{
+		int[] allocations = PriceLevelAllocator.allocate(AllocationAlgorithm.PRO_RATA_TOP_ORDER, new int[] {100, 100, 300}, 300);
+		assertEquals(allocations, new int[] {100, 50, 150});
+	}
+	
+	@Test
+	public void allocationShouldNeverExceedTheLevel()
+	{
+		int[] allocations = PriceLevelAllocator.allocate(AllocationAlgorithm.PRO_RATA, new int[] {10, 20}, 100);
+		assertEquals(allocations, new int[] {10, 20});
+	}
+}
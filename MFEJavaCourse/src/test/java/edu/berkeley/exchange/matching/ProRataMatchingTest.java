@@ -0,0 +1,216 @@
+package edu.berkeley.exchange.matching;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.Trade;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingKey;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class ProRataMatchingTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	private static final int STARTING_SHARES = 10000;
+	private static final int LOT_SIZE = 100;
+	
+	private static final String FIRST = "Pro Rata First";
+	private static final String SECOND = "Pro Rata Second";
+	private static final String THIRD = "Pro Rata Third";
+	private static final String TAKER = "Pro Rata Taker";
+	
+	private static final String PRO_RATA = "PRRA";
+	private static final String TOP_ORDER = "PRRT";
+	
+	private static final String VALID_ORDER_FAILURE = "Valid order encountered OrderExecutionException.";
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private AllocationPolicies allocationPolicies;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	private List<Trade> trades = new CopyOnWriteArrayList<>();
+	
+	@BeforeClass
+	public void setUp()
+	{
+		for (String name : new String[] { FIRST, SECOND, THIRD, TAKER })
+		{
+			traderRepo.save(new Trader(name, STARTING_CAPITAL));
+		}
+		
+		for (String ticker : new String[] { PRO_RATA, TOP_ORDER })
+		{
+			Stock stock = new Stock(ticker, ticker);
+			stock.setTickSize(0.01);
+			stock.setLotSize(LOT_SIZE);
+			stockRepo.save(stock);
+			for (String name : new String[] { FIRST, SECOND, THIRD, TAKER })
+			{
+				holdingRepo.save(new Holding(trader(name), stock, STARTING_SHARES));
+			}
+		}
+		
+		allocationPolicies.setAlgorithm(PRO_RATA, AllocationAlgorithm.PRO_RATA);
+		allocationPolicies.setAlgorithm(TOP_ORDER, AllocationAlgorithm.PRO_RATA_TOP_ORDER);
+		exchangeService.addTradeListener(trades::add);
+	}
+	
+	@Test
+	public void proRataFillsShouldBeWholeLotsWithTheRestInTimePriority()
+	{
+		Stock stock = stockRepo.findOne(PRO_RATA);
+		double first = capital(FIRST);
+		double second = capital(SECOND);
+		double third = capital(THIRD);
+		double taker = capital(TAKER);
+		try
+		{
+			exchangeService.placeOrder(trader(FIRST), stock, 10.00, 300, OrderType.SELL);
+			exchangeService.placeOrder(trader(SECOND), stock, 10.00, 300, OrderType.SELL);
+			exchangeService.placeOrder(trader(THIRD), stock, 10.00, 400, OrderType.SELL);
+			exchangeService.placeOrder(trader(TAKER), stock, 10.00, 500, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		// shares of 150, 150 and 200 round down to 100, 100 and 200, and the last lot goes to the oldest
+		List<Trade> filled = trades(PRO_RATA);
+		assertEquals(filled.size(), 3);
+		assertTrade(filled.get(0), TAKER, FIRST, 200);
+		assertTrade(filled.get(1), TAKER, SECOND, 100);
+		assertTrade(filled.get(2), TAKER, THIRD, 200);
+		
+		assertEquals(capital(FIRST), first + 2000.0, 1e-9);
+		assertEquals(capital(SECOND), second + 1000.0, 1e-9);
+		assertEquals(capital(THIRD), third + 2000.0, 1e-9);
+		assertEquals(capital(TAKER), taker - 5000.0, 1e-9);
+		assertEquals(shares(TAKER, PRO_RATA), STARTING_SHARES + 500);
+		
+		assertEquals(openOrder(FIRST, PRO_RATA).getQuantity(), 100);
+		assertEquals(openOrder(SECOND, PRO_RATA).getQuantity(), 200);
+		assertEquals(openOrder(THIRD, PRO_RATA).getQuantity(), 200);
+		assertNull(openOrder(TAKER, PRO_RATA));
+	}
+	
+	@Test
+	public void topOrderShouldFillFirstAndTheRestOfTheLevelShareInWholeLots()
+	{
+		Stock stock = stockRepo.findOne(TOP_ORDER);
+		double first = capital(FIRST);
+		double second = capital(SECOND);
+		double third = capital(THIRD);
+		double taker = capital(TAKER);
+		try
+		{
+			exchangeService.placeOrder(trader(FIRST), stock, 10.00, 200, OrderType.BUY);
+			exchangeService.placeOrder(trader(SECOND), stock, 10.00, 300, OrderType.BUY);
+			exchangeService.placeOrder(trader(THIRD), stock, 10.00, 500, OrderType.BUY);
+			exchangeService.placeOrder(trader(TAKER), stock, 10.00, 600, OrderType.SELL);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		// the top order takes 200; 400 shared over 300 and 500 is 150 and 250, which round down to 100 and
+		// 200, and the lot left over goes to the older order
+		List<Trade> filled = trades(TOP_ORDER);
+		assertEquals(filled.size(), 3);
+		assertTrade(filled.get(0), FIRST, TAKER, 200);
+		assertTrade(filled.get(1), SECOND, TAKER, 200);
+		assertTrade(filled.get(2), THIRD, TAKER, 200);
+		
+		// the bids reserved their capital when they rested
+		assertEquals(capital(FIRST), first - 2000.0, 1e-9);
+		assertEquals(capital(SECOND), second - 3000.0, 1e-9);
+		assertEquals(capital(THIRD), third - 5000.0, 1e-9);
+		assertEquals(capital(TAKER), taker + 6000.0, 1e-9);
+		assertEquals(shares(FIRST, TOP_ORDER), STARTING_SHARES + 200);
+		assertEquals(shares(SECOND, TOP_ORDER), STARTING_SHARES + 200);
+		assertEquals(shares(THIRD, TOP_ORDER), STARTING_SHARES + 200);
+		assertEquals(shares(TAKER, TOP_ORDER), STARTING_SHARES - 600);
+		
+		assertNull(openOrder(FIRST, TOP_ORDER));
+		assertEquals(openOrder(SECOND, TOP_ORDER).getQuantity(), 100);
+		assertEquals(openOrder(THIRD, TOP_ORDER).getQuantity(), 300);
+	}
+	
+	private static void assertTrade(Trade trade, String buyer, String seller, int quantity)
+	{
+		assertEquals(trade.getBuyerName(), buyer);
+		assertEquals(trade.getSellerName(), seller);
+		assertEquals(trade.getPrice(), 10.00, 1e-9);
+		assertEquals(trade.getQuantity(), quantity);
+	}
+	
+	private List<Trade> trades(String ticker)
+	{
+		List<Trade> filled = new ArrayList<>();
+		for (Trade trade : trades)
+		{
+			if (trade.getTicker().equals(ticker))
+			{
+				filled.add(trade);
+			}
+		}
+		return filled;
+	}
+	
+	private Trader trader(String name)
+	{
+		return traderRepo.findOne(name);
+	}
+	
+	private double capital(String name)
+	{
+		return trader(name).getCapital();
+	}
+	
+	private int shares(String traderName, String ticker)
+	{
+		return holdingRepo.findOne(new HoldingKey(traderName, ticker)).getQuantity();
+	}
+	
+	private Order openOrder(String traderName, String ticker)
+	{
+		return orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(traderName, ticker, false);
+	}
+}
@@ -0,0 +1,192 @@
+package edu.berkeley.exchange.order;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.simulation.LatencyHistogram;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+/**
+ * Per-query latency of the book lookups matching and market data make, against an
+ * ORDERS table of open orders: first the entity queries with no book index as
+ * before, then with IDX_ORDERS_BOOK the same queries and the ones matching makes
+ * now, one projection of the crossing orders and a load by id of each order it
+ * fills. Not a TestNG test; run it on its own against the test configuration's H2
+ * database:
+ *
+ *   java -Xmx2g -cp ... edu.berkeley.exchange.order.BookQueryBenchmark [orders] [tickers] [iterations]
+ *
+ * Orders default to 1,000,000 over 100 tickers with bids below 100 and asks above,
+ * and each crossing lookup is priced to reach about 0.5% of the side.
+ */
+public class BookQueryBenchmark
+{
+	private static final int TRADERS = 1000;
+	
+	private final OrderRepository orderRepo;
+	private final Security[] securities;
+	private final int iterations;
+	
+	private BookQueryBenchmark(OrderRepository orderRepo, Security[] securities, int iterations)
+	{
+		this.orderRepo = orderRepo;
+		this.securities = securities;
+		this.iterations = iterations;
+	}
+	
+	public static void main(String[] args)
+	{
+		int orders = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int tickers = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+		
+		try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class))
+		{
+			JdbcTemplate jdbc = new JdbcTemplate(context.getBean(DataSource.class));
+			
+			Security[] securities = new Security[tickers];
+			for (int i = 0; i < tickers; i++)
+			{
+				securities[i] = context.getBean(StockRepository.class).save(new Stock("T" + i, "Company " + i));
+			}
+			List<Trader> traders = new ArrayList<>();
+			for (int i = 0; i < TRADERS; i++)
+			{
+				traders.add(new Trader("trader" + i, 1000000));
+			}
+			context.getBean(TraderRepository.class).save(traders);
+			
+			insertOrders(jdbc, orders, tickers);
+			jdbc.execute("analyze");
+			
+			BookQueryBenchmark benchmark = new BookQueryBenchmark(context.getBean(OrderRepository.class),
+					securities, iterations);
+			
+			jdbc.execute("drop index IDX_ORDERS_BOOK");
+			System.out.println("-- before: entity queries, no book index");
+			benchmark.runEntityQueries();
+			
+			jdbc.execute("create index IDX_ORDERS_BOOK on ORDERS (ticker, type, executed, price, priority)");
+			System.out.println("-- after: with IDX_ORDERS_BOOK");
+			benchmark.runEntityQueries();
+			benchmark.runProjectionQueries();
+		}
+	}
+	
+	private static void insertOrders(JdbcTemplate jdbc, int orders, final int tickers)
+	{
+		final SplittableRandom random = new SplittableRandom(42);
+		final Date today = new Date(System.currentTimeMillis());
+		final int batchSize = 10000;
+		
+		for (int from = 0; from < orders; from += batchSize)
+		{
+			final int firstId = 1000000 + from;
+			final int count = Math.min(batchSize, orders - from);
+			jdbc.batchUpdate("insert into ORDERS (id, ticker, traderName, price, quantity, displayed, peak, "
+					+ "priority, pegOffset, pegLimit, type, executed, timestamp) "
+					+ "values (?, ?, ?, ?, ?, ?, 0, ?, 0, 0, ?, false, ?)",
+					new BatchPreparedStatementSetter() {
+				@Override
+				public void setValues(PreparedStatement ps, int i) throws SQLException
+				{
+					boolean buy = random.nextBoolean();
+					ps.setLong(1, firstId + i);
+					ps.setString(2, "T" + random.nextInt(tickers));
+					ps.setString(3, "trader" + random.nextInt(TRADERS));
+					ps.setDouble(4, (buy ? 50 : 100) + random.nextInt(5000) / 100.0);
+					int quantity = 1 + random.nextInt(1000);
+					ps.setInt(5, quantity);
+					ps.setInt(6, quantity);
+					ps.setLong(7, TimePriority.next());
+					ps.setString(8, buy ? OrderType.BUY.name() : OrderType.SELL.name());
+					ps.setDate(9, today);
+				}
+				
+				@Override
+				public int getBatchSize()
+				{
+					return count;
+				}
+			});
+		}
+	}
+	
+	private void runEntityQueries()
+	{
+		LatencyHistogram crossing = new LatencyHistogram();
+		LatencyHistogram best = new LatencyHistogram();
+		LatencyHistogram levels = new LatencyHistogram();
+		SplittableRandom random = new SplittableRandom(7);
+		
+		for (int i = 0; i < iterations; i++)
+		{
+			Security security = securities[random.nextInt(securities.length)];
+			
+			long start = System.nanoTime();
+			orderRepo.findByTickerAndTypeAndExecutedAndPriceLessThanEqualOrderByPriceAscPriorityAsc(
+					security.getTicker(), OrderType.SELL, false, 100.25);
+			crossing.record(System.nanoTime() - start);
+			
+			start = System.nanoTime();
+			orderRepo.findTopBySecurityAndTypeAndExecutedOrderByPriceAscPriorityAsc(security, OrderType.SELL, false);
+			best.record(System.nanoTime() - start);
+			
+			start = System.nanoTime();
+			orderRepo.findOpenLevels(security.getTicker());
+			levels.record(System.nanoTime() - start);
+		}
+		
+		report("crossing orders, entities", crossing);
+		report("best ask, entity (per fill)", best);
+		report("all open levels, JPQL", levels);
+	}
+	
+	private void runProjectionQueries()
+	{
+		LatencyHistogram crossing = new LatencyHistogram();
+		LatencyHistogram byId = new LatencyHistogram();
+		SplittableRandom random = new SplittableRandom(7);
+		
+		for (int i = 0; i < iterations; i++)
+		{
+			String ticker = securities[random.nextInt(securities.length)].getTicker();
+			
+			long start = System.nanoTime();
+			List<RestingOrder> resting = orderRepo.findRestingAtOrBelow(ticker, OrderType.SELL, 100.25);
+			crossing.record(System.nanoTime() - start);
+			
+			if (!resting.isEmpty())
+			{
+				start = System.nanoTime();
+				orderRepo.findOne(resting.get(0).getId());
+				byId.record(System.nanoTime() - start);
+			}
+		}
+		
+		report("crossing orders, projection", crossing);
+		report("crossing order by id (per fill)", byId);
+	}
+	
+	private static void report(String name, LatencyHistogram latencies)
+	{
+		System.out.printf("%-32s p50 %,9.1f us  p99 %,9.1f us  max %,9.1f us%n", name,
+				latencies.getPercentile(50) / 1e3, latencies.getPercentile(99) / 1e3, latencies.getMax() / 1e3);
+	}
+}
@@ -0,0 +1,106 @@
+package edu.berkeley.exchange.order;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class CrossingOrdersTest extends AbstractTestNGSpringContextTests
+{
+	private static final String MAKER = "Crossing Maker";
+	private static final String TAKER = "Crossing Taker";
+	
+	private static final String TICKER = "CRSO";
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@BeforeClass
+	public void setUp() throws OrderExecutionException
+	{
+		Trader maker = traderRepo.save(new Trader(MAKER, 100000.0));
+		Trader taker = traderRepo.save(new Trader(TAKER, 100000.0));
+		Stock stock = stockRepo.save(new Stock(TICKER, TICKER));
+		holdingRepo.save(new Holding(maker, stock, 1000));
+		holdingRepo.save(new Holding(taker, stock, 1000));
+		
+		exchangeService.placeOrder(maker, stock, 10.02, 10, OrderType.SELL);
+		exchangeService.placeOrder(maker, stock, 10.00, 10, OrderType.SELL);
+		exchangeService.placeOrder(maker, stock, 10.01, 10, OrderType.SELL);
+		exchangeService.placeOrder(maker, stock, 10.00, 10, OrderType.SELL);
+		exchangeService.placeOrder(maker, stock, 10.05, 10, OrderType.SELL);
+		exchangeService.placeOrder(maker, stock, 9.90, 10, OrderType.BUY);
+		exchangeService.placeOrder(maker, stock, 9.95, 10, OrderType.BUY);
+	}
+	
+	@Test
+	public void pagesShouldFollowOnInPriceTimePriority()
+	{
+		List<RestingOrder> sells = read(new CrossingOrders(orderRepo, TICKER, OrderType.BUY, 10.02, 2));
+		assertEquals(sells.size(), 4, "Every crossing order should be read, two at a time.");
+		assertEquals(sells.get(0).getPrice(), 10.00, 1e-9);
+		assertEquals(sells.get(1).getPrice(), 10.00, 1e-9);
+		assertTrue(sells.get(0).getPriority() < sells.get(1).getPriority());
+		assertEquals(sells.get(2).getPrice(), 10.01, 1e-9);
+		assertEquals(sells.get(3).getPrice(), 10.02, 1e-9);
+		
+		List<RestingOrder> buys = read(new CrossingOrders(orderRepo, TICKER, OrderType.SELL, 9.90, 1));
+		assertEquals(buys.size(), 2);
+		assertEquals(buys.get(0).getPrice(), 9.95, 1e-9);
+		assertEquals(buys.get(1).getPrice(), 9.90, 1e-9);
+	}
+	
+	@Test
+	public void partlyFilledOrdersShouldBeReadWithWhatIsLeft() throws OrderExecutionException
+	{
+		Stock stock = stockRepo.findOne(TICKER);
+		exchangeService.placeOrder(traderRepo.findOne(TAKER), stock, 9.80, 5, OrderType.SELL);
+		
+		// the better bid was partly filled and the next page still starts after it
+		List<RestingOrder> buys = read(new CrossingOrders(orderRepo, TICKER, OrderType.SELL, 9.90, 1));
+		assertEquals(buys.size(), 2);
+		assertEquals(buys.get(0).getQuantity(), 5);
+	}
+	
+	private static List<RestingOrder> read(CrossingOrders crossing)
+	{
+		List<RestingOrder> read = new ArrayList<>();
+		for (RestingOrder resting : crossing)
+		{
+			read.add(resting);
+		}
+		return read;
+	}
+}
@@ -0,0 +1,155 @@
+package edu.berkeley.exchange.order;
+
+import static org.testng.Assert.*;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class IcebergMatchingTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	
+	private static final String ICEBERG = "Iceberg Seller";
+	private static final String SELLER = "Iceberg Other Seller";
+	private static final String BUYER = "Iceberg Buyer";
+	
+	private static final String MATCHED = "ICEM";
+	private static final String UPGRADED = "ICEU";
+	
+	private static final String VALID_ORDER_FAILURE = "Valid order encountered OrderExecutionException.";
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@Autowired
+	private OrderBackfill backfill;
+	
+	@Autowired
+	private OrderMigrationRepository migrationRepo;
+	
+	@Autowired
+	private DataSource dataSource;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		Trader iceberg = traderRepo.save(new Trader(ICEBERG, STARTING_CAPITAL));
+		Trader seller = traderRepo.save(new Trader(SELLER, STARTING_CAPITAL));
+		traderRepo.save(new Trader(BUYER, STARTING_CAPITAL));
+		for (String ticker : new String[] { MATCHED, UPGRADED })
+		{
+			Stock stock = stockRepo.save(new Stock(ticker, ticker));
+			holdingRepo.save(new Holding(iceberg, stock, 1000));
+			holdingRepo.save(new Holding(seller, stock, 1000));
+		}
+	}
+	
+	@Test
+	public void replenishedSliceShouldQueueBehindRestingOrders()
+	{
+		Stock stock = stockRepo.findOne(MATCHED);
+		try
+		{
+			exchangeService.placeIcebergOrder(trader(ICEBERG), stock, 10.0, 250, 100, OrderType.SELL);
+			exchangeService.placeOrder(trader(SELLER), stock, 10.0, 10, OrderType.SELL);
+			exchangeService.placeOrder(trader(BUYER), stock, 10.0, 100, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		Order iceberg = openOrder(ICEBERG, MATCHED);
+		assertEquals(iceberg.getQuantity(), 150);
+		assertEquals(iceberg.getDisplayed(), 100);
+		assertEquals(exchangeService.getBestAsk(stock).getTraderName(), SELLER, 
+				"A replenished slice should queue behind orders already resting at its price.");
+		
+		try
+		{
+			exchangeService.placeOrder(trader(BUYER), stock, 10.0, 10, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		assertNull(openOrder(SELLER, MATCHED));
+		assertEquals(openOrder(ICEBERG, MATCHED).getQuantity(), 150);
+		assertEquals(exchangeService.getBestAskPrice(stock).getQuantity(), 100);
+	}
+	
+	@Test
+	public void ordersFromBeforeTheUpgradeShouldBeBackfilled()
+	{
+		Stock stock = stockRepo.findOne(UPGRADED);
+		try
+		{
+			exchangeService.placeOrder(trader(SELLER), stock, 11.0, 20, OrderType.SELL);
+			exchangeService.placeIcebergOrder(trader(ICEBERG), stock, 11.0, 50, 10, OrderType.SELL);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		long id = openOrder(SELLER, UPGRADED).getId();
+		new JdbcTemplate(dataSource).update("update ORDERS set displayed = 0, priority = 0 where id = ?", id);
+		
+		// the backfill ran when the context started and is not repeated
+		assertTrue(migrationRepo.exists(OrderBackfill.DISPLAYED));
+		assertTrue(migrationRepo.exists(OrderBackfill.PRIORITY));
+		backfill.backfill();
+		assertEquals(orderRepo.findOne(id).getDisplayed(), 0);
+		
+		orderRepo.backfillDisplayed();
+		orderRepo.backfillPriority();
+		
+		Order upgraded = orderRepo.findOne(id);
+		assertEquals(upgraded.getDisplayed(), 20);
+		assertEquals(upgraded.getPriority(), id);
+		assertEquals(openOrder(ICEBERG, UPGRADED).getDisplayed(), 10);
+		assertEquals(exchangeService.getBestAsk(stock).getTraderName(), SELLER);
+	}
+	
+	private Trader trader(String name)
+	{
+		return traderRepo.findOne(name);
+	}
+	
+	private Order openOrder(String traderName, String ticker)
+	{
+		return orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(traderName, ticker, false);
+	}
+}
@@ -0,0 +1,63 @@
+package edu.berkeley.exchange.order;
+
+import static org.testng.Assert.*;
+
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.trader.Trader;
+
+public class IcebergOrderTest
+{
+	private static final Stock AAPL = new Stock("AAPL", "Apple Computer");
+	private static final Trader GS = new Trader("Goldman Sachs", 10000.0);
+
+	@Test
+	public void icebergShouldShowOnlyItsPeak()
+	{
+		Order order = new Order(AAPL, GS, 80.0, 250, OrderType.SELL, 100);
+
+		assertTrue(order.isIceberg());
+		assertEquals(order.getDisplayed(), 100);
+		assertEquals(order.getHidden(), 150);
+	}
+
+	@Test
+	public void fillWithinSliceShouldKeepPriority()
+	{
+		Order order = new Order(AAPL, GS, 80.0, 250, OrderType.SELL, 100);
+		long priority = order.getPriority();
+
+		assertEquals(order.reduce(40), 0);
+		assertEquals(order.getQuantity(), 210);
+		assertEquals(order.getDisplayed(), 60);
+		assertEquals(order.getPriority(), priority);
+	}
+
+	@Test
+	public void exhaustedSliceShouldReplenishBehindLaterOrders()
+	{
+		Order order = new Order(AAPL, GS, 80.0, 250, OrderType.SELL, 100);
+		Order later = new Order(AAPL, GS, 80.0, 10, OrderType.SELL);
+
+		assertEquals(order.reduce(100), 100);
+		assertEquals(order.getQuantity(), 150);
+		assertEquals(order.getDisplayed(), 100);
+		assertTrue(order.getPriority() > later.getPriority());
+
+		assertEquals(order.reduce(100), 50);
+		assertEquals(order.getDisplayed(), 50);
+		assertEquals(order.getHidden(), 0);
+	}
+
+	@Test
+	public void peakAtOrAboveQuantityShouldBeAPlainOrder()
+	{
+		Order order = new Order(AAPL, GS, 80.0, 100, OrderType.BUY, 100);
+
+		assertFalse(order.isIceberg());
+		assertEquals(order.getDisplayed(), 100);
+		assertEquals(order.reduce(100), 0);
+	}
+}
@@ -0,0 +1,52 @@
+package edu.berkeley.exchange.peg;
+
+import static org.testng.Assert.*;
+
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
+import edu.berkeley.exchange.security.InstrumentRules;
+
+public class PegTest
+{
+	@Test
+	public void priceShouldFollowReferencePlusOffset()
+	{
+		Peg peg = new Peg(PegType.PRIMARY, -0.05, 110.0);
+		
+		assertEquals(peg.priceFor(100.0, OrderType.BUY), 99.95, 1e-9);
+		assertEquals(peg.priceFor(101.0, OrderType.BUY), 100.95, 1e-9);
+	}
+	
+	@Test
+	public void priceShouldStopAtTheLimit()
+	{
+		Peg buy = new Peg(PegType.MIDPOINT, -0.01, 100.0);
+		Peg sell = new Peg(PegType.MIDPOINT, 0.01, 100.0);
+		
+		assertEquals(buy.priceFor(105.0, OrderType.BUY), 100.0, 1e-9);
+		assertEquals(sell.priceFor(95.0, OrderType.SELL), 100.0, 1e-9);
+	}
+	
+	@Test
+	public void priceShouldRoundAwayFromTheOtherSide()
+	{
+		InstrumentRules rules = new InstrumentRules(0.05, 0, 0, 1);
+		Peg buy = new Peg(PegType.MIDPOINT, 0, 110.0);
+		Peg sell = new Peg(PegType.MIDPOINT, 0, 90.0);
+		
+		assertEquals(buy.priceFor(100.025, OrderType.BUY, rules), 100.0, 1e-9);
+		assertEquals(sell.priceFor(100.025, OrderType.SELL, rules), 100.05, 1e-9);
+		assertEquals(buy.priceFor(100.05, OrderType.BUY, rules), 100.05, 1e-9);
+	}
+	
+	@Test
+	public void onlyPrimaryPegsMayJoinTheirReference()
+	{
+		assertTrue(new Peg(PegType.PRIMARY, 0, 100.0).isPassive(OrderType.BUY));
+		assertFalse(new Peg(PegType.MIDPOINT, 0, 100.0).isPassive(OrderType.BUY));
+		assertFalse(new Peg(PegType.MARKET, 0.01, 100.0).isPassive(OrderType.BUY));
+		assertTrue(new Peg(PegType.MARKET, 0.01, 100.0).isPassive(OrderType.SELL));
+	}
+}
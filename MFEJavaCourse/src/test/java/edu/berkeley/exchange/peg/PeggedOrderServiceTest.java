@@ -0,0 +1,177 @@
+package edu.berkeley.exchange.peg;
+
+import static org.testng.Assert.*;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class PeggedOrderServiceTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	
+	private static final String MAKER = "Peg Maker";
+	private static final String BUYER = "Peg Buyer";
+	private static final String SELLER = "Peg Seller";
+	
+	private static final String FOLLOW = "PEGF";
+	private static final String CROSS = "PEGX";
+	
+	private static final String VALID_ORDER_FAILURE = "Valid order encountered OrderExecutionException.";
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		Trader maker = traderRepo.save(new Trader(MAKER, STARTING_CAPITAL));
+		traderRepo.save(new Trader(BUYER, STARTING_CAPITAL));
+		Trader seller = traderRepo.save(new Trader(SELLER, STARTING_CAPITAL));
+		
+		for (String ticker : new String[] { FOLLOW, CROSS })
+		{
+			Stock stock = new Stock(ticker, ticker);
+			stock.setTickSize(0.01);
+			stockRepo.save(stock);
+			holdingRepo.save(new Holding(maker, stock, 1000));
+			holdingRepo.save(new Holding(seller, stock, 1000));
+		}
+	}
+	
+	@Test
+	public void pegsShouldFollowTheBookOnTick()
+	{
+		Stock stock = stockRepo.findOne(FOLLOW);
+		try
+		{
+			exchangeService.placeOrder(trader(MAKER), stock, 10.00, 100, OrderType.BUY);
+			exchangeService.placeOrder(trader(MAKER), stock, 10.10, 100, OrderType.SELL);
+			exchangeService.placePeggedOrder(trader(BUYER), stock, PegType.PRIMARY, 0, 11.0, 10, OrderType.BUY);
+			exchangeService.placePeggedOrder(trader(SELLER), stock, PegType.MIDPOINT, 0.01, 9.0, 10,
+					OrderType.SELL);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		assertEquals(openOrder(BUYER, FOLLOW).getPrice(), 10.00, 1e-9);
+		assertEquals(openOrder(SELLER, FOLLOW).getPrice(), 10.06, 1e-9);
+		
+		try
+		{
+			exchangeService.placeOrder(trader(MAKER), stock, 10.03, 100, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		// midpoint 10.065 plus 0.01 rounds up, away from the bids
+		assertEquals(openOrder(BUYER, FOLLOW).getPrice(), 10.03, 1e-9);
+		assertEquals(openOrder(SELLER, FOLLOW).getPrice(), 10.08, 1e-9);
+		
+		Order best = exchangeService.getBestBid(stock);
+		assertEquals(best.getTraderName(), MAKER, "A repriced peg should queue behind orders already there.");
+	}
+	
+	@Test
+	public void offsetsOffTickShouldBeRejected()
+	{
+		Stock stock = stockRepo.findOne(FOLLOW);
+		try
+		{
+			exchangeService.placePeggedOrder(trader(BUYER), stock, PegType.PRIMARY, -0.005, 11.0, 10,
+					OrderType.BUY);
+			fail("Pegged order with an offset off tick executed.");
+		}
+		catch (OrderExecutionException oee)
+		{
+			assertEquals(oee.getMessage(), "Could not execute PEGGED BUY order on PEGF for Peg Buyer since "
+					+ "offset -0.005 is not a multiple of the tick size 0.01.");
+		}
+	}
+	
+	@Test
+	public void repricedPegsShouldNotCrossEachOther()
+	{
+		Stock stock = stockRepo.findOne(CROSS);
+		try
+		{
+			exchangeService.placeOrder(trader(MAKER), stock, 10.00, 100, OrderType.BUY);
+			exchangeService.placeOrder(trader(MAKER), stock, 10.01, 100, OrderType.SELL);
+			exchangeService.placePeggedOrder(trader(BUYER), stock, PegType.MARKET, -0.01, 11.0, 10,
+					OrderType.BUY);
+			exchangeService.placePeggedOrder(trader(SELLER), stock, PegType.MARKET, 0.01, 9.0, 10,
+					OrderType.SELL);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		assertEquals(openOrder(BUYER, CROSS).getPrice(), 10.00, 1e-9);
+		assertEquals(openOrder(SELLER, CROSS).getPrice(), 10.01, 1e-9);
+		
+		try
+		{
+			long ask = orderRepo.findTopByTraderNameAndTickerAndTypeAndPriceAndExecutedOrderByIdAsc(MAKER, CROSS,
+					OrderType.SELL, 10.01, false).getId();
+			exchangeService.cancelOrder(trader(MAKER), ask);
+			exchangeService.placeOrder(trader(MAKER), stock, 10.05, 100, OrderType.SELL);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		// the buy peg would follow the ask to 10.04, through the sell peg at 10.01
+		Order buy = openOrder(BUYER, CROSS);
+		Order sell = openOrder(SELLER, CROSS);
+		assertEquals(sell.getPrice(), 10.01, 1e-9);
+		assertEquals(buy.getPrice(), 10.00, 1e-9);
+		assertEquals(buy.getQuantity(), 10);
+		assertEquals(sell.getQuantity(), 10);
+		assertTrue(exchangeService.getBestBid(stock).getPrice() < exchangeService.getBestAsk(stock).getPrice());
+	}
+	
+	private Trader trader(String name)
+	{
+		return traderRepo.findOne(name);
+	}
+	
+	private Order openOrder(String traderName, String ticker)
+	{
+		return orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(traderName, ticker, false);
+	}
+}
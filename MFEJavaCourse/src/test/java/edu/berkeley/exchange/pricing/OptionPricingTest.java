@@ -0,0 +1,66 @@
+package edu.berkeley.exchange.pricing;
+
+import static org.testng.Assert.*;
+
+import org.testng.annotations.Test;
+
+public class OptionPricingTest 
+{
+	@Test
+	public void blackScholesShouldMatchReferenceValues()
+	{
+		OptionBatch batch = new OptionBatch(2);
+		batch.set(0, 100, 100, 0.2, 0.05, 1, true);
+		batch.set(1, 100, 100, 0.2, 0.05, 1, false);
+		
+		BlackScholes.price(batch, 0, batch.size());
+		
+		assertEquals(batch.getPrice(0), 10.4506, 1e-4);
+		assertEquals(batch.getDelta(0), 0.6368, 1e-4);
+		assertEquals(batch.getPrice(1), 5.5735, 1e-4);
+		assertEquals(batch.getDelta(1), -0.3632, 1e-4);
+		assertEquals(batch.getGamma(0), batch.getGamma(1), 1e-12);
+		assertEquals(batch.getVega(0), 37.524, 1e-3);
+	}
+	
+	@Test
+	public void binomialTreeShouldConvergeToBlackScholesForCalls()
+	{
+		OptionBatch tree = new OptionBatch(1);
+		tree.set(0, 100, 100, 0.2, 0.05, 1, true);
+		OptionBatch closedForm = new OptionBatch(1);
+		closedForm.set(0, 100, 100, 0.2, 0.05, 1, true);
+		
+		BinomialTree.price(tree, 0, 1, 500);
+		BlackScholes.price(closedForm, 0, 1);
+		
+		assertEquals(tree.getPrice(0), closedForm.getPrice(0), 0.01);
+		assertEquals(tree.getDelta(0), closedForm.getDelta(0), 0.01);
+		assertEquals(tree.getGamma(0), closedForm.getGamma(0), 0.001);
+		assertEquals(tree.getVega(0), closedForm.getVega(0), 0.1);
+	}
+	
+	@Test
+	public void americanPutShouldBeWorthMoreThanEuropean()
+	{
+		OptionBatch tree = new OptionBatch(1);
+		tree.set(0, 100, 100, 0.2, 0.05, 1, false);
+		
+		BinomialTree.price(tree, 0, 1, 500);
+		
+		assertEquals(tree.getPrice(0), 6.09, 0.01);
+		assertTrue(tree.getTheta(0) < 0);
+	}
+	
+	@Test
+	public void expiredOptionsShouldBeWorthIntrinsicValue()
+	{
+		OptionBatch batch = new OptionBatch(1);
+		batch.set(0, 110, 100, 0.2, 0.05, 0, true);
+		
+		BlackScholes.price(batch, 0, 1);
+		
+		assertEquals(batch.getPrice(0), 10.0);
+		assertEquals(batch.getDelta(0), 1.0);
+	}
+}
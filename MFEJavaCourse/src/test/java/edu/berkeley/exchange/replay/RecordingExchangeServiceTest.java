@@ -0,0 +1,154 @@
+package edu.berkeley.exchange.replay;
+
+import static org.testng.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeService;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.SecurityLocks;
+import edu.berkeley.exchange.basket.BasketLeg;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.replay.RecordedCall.Kind;
+import edu.berkeley.exchange.security.Security;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+public class RecordingExchangeServiceTest
+{
+	private static final Stock MSFT = new Stock("MSFT", "Microsoft");
+	private static final Stock IBM = new Stock("IBM", "International Business Machines");
+	private static final Trader GS = new Trader("Goldman Sachs", 10000.0);
+	
+	private static final String REJECTED = "Could not execute SELL order on MSFT for Goldman Sachs "
+			+ "since peak is not positive.";
+	
+	private final SecurityLocks locks = new SecurityLocks();
+	
+	/**
+	 * Whether the delegate found the locks of its call's securities held.
+	 */
+	private final List<Boolean> lockedDuringCall = new ArrayList<>();
+	
+	private final ExchangeService delegate = new ExchangeService() {
+		@Override
+		public void placeOrder(Trader trader, Security security, double price, int quantity, OrderType type)
+		{
+			locked(security.getTicker());
+		}
+		
+		@Override
+		public void placeIcebergOrder(Trader trader, Security security, double price, int quantity, int peak,
+				OrderType type) throws OrderExecutionException
+		{
+			locked(security.getTicker());
+			if (peak <= 0)
+			{
+				throw new OrderExecutionException(REJECTED);
+			}
+		}
+		
+		@Override
+		public void placePeggedOrder(Trader trader, Security security, PegType pegType, double offset,
+				double limit, int quantity, OrderType type)
+		{
+			locked(security.getTicker());
+		}
+		
+		@Override
+		public void placeBasket(Trader trader, List<BasketLeg> legs, boolean allOrNone)
+		{
+			for (BasketLeg leg : legs)
+			{
+				locked(leg.getTicker());
+			}
+		}
+		
+		@Override
+		public void placeStopOrder(Trader trader, Security security, double stopPrice, double limitPrice,
+				int quantity, OrderType type)
+		{
+			locked(security.getTicker());
+		}
+		
+		@Override
+		public void cancelOrder(Trader trader, long orderId)
+		{
+		}
+	};
+	
+	@Test
+	public void everyOrderTypeShouldBeRecordedUnderItsSecuritiesLocks()
+	{
+		RecordingExchangeService recorder = new RecordingExchangeService(delegate, new TradeCapture(),
+				empty(TraderRepository.class), empty(HoldingRepository.class), empty(OrderRepository.class), locks);
+		try
+		{
+			recorder.placeOrder(GS, MSFT, 45.5, 300, OrderType.BUY);
+			recorder.placeIcebergOrder(GS, MSFT, 46.0, 500, 100, OrderType.SELL);
+			recorder.placePeggedOrder(GS, IBM, PegType.MIDPOINT, 0.01, 150.0, 50, OrderType.BUY);
+			recorder.placeBasket(GS, Arrays.asList(new BasketLeg(MSFT, 45.0, 10, OrderType.BUY),
+					new BasketLeg(IBM, 151.0, 5, OrderType.SELL)), true);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail("Valid order encountered OrderExecutionException.");
+		}
+		try
+		{
+			recorder.placeIcebergOrder(GS, MSFT, 46.0, 500, 0, OrderType.SELL);
+			fail("Rejected call was not rethrown.");
+		}
+		catch (OrderExecutionException oee)
+		{
+			assertEquals(oee.getMessage(), REJECTED);
+		}
+		
+		assertFalse(lockedDuringCall.contains(false), "Calls should run holding their securities' locks.");
+		assertFalse(locks.get("MSFT").isLocked());
+		assertFalse(locks.get("IBM").isLocked());
+		
+		List<RecordedCall> calls = recorder.getRecording().getCalls();
+		assertEquals(calls.size(), 5);
+		assertEquals(calls.get(0).getKind(), Kind.ORDER);
+		assertEquals(calls.get(1).getKind(), Kind.ICEBERG_ORDER);
+		assertEquals(calls.get(1).getPeak(), 100);
+		assertEquals(calls.get(2).getKind(), Kind.PEGGED_ORDER);
+		assertEquals(calls.get(2).getPegType(), PegType.MIDPOINT);
+		assertEquals(calls.get(2).getPrice(), 0.01);
+		assertEquals(calls.get(2).getLimitPrice(), 150.0);
+		assertEquals(calls.get(3).getKind(), Kind.BASKET);
+		assertTrue(calls.get(3).isAllOrNone());
+		assertEquals(calls.get(3).getLegs().size(), 2);
+		assertEquals(calls.get(3).getLegs().get(1).getTicker(), "IBM");
+		assertEquals(calls.get(4).getRejection(), REJECTED);
+		for (int i = 1; i < calls.size(); i++)
+		{
+			assertTrue(calls.get(i).getOffsetNanos() >= calls.get(i - 1).getOffsetNanos());
+		}
+	}
+	
+	private void locked(String ticker)
+	{
+		lockedDuringCall.add(locks.get(ticker).isHeldByCurrentThread());
+	}
+	
+	/**
+	 * A repository that finds nothing.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T empty(Class<T> repository)
+	{
+		return (T) Proxy.newProxyInstance(RecordingExchangeServiceTest.class.getClassLoader(),
+				new Class<?>[] { repository }, (proxy, method, args) -> null);
+	}
+}
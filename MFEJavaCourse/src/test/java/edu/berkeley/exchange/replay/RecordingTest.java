@@ -0,0 +1,139 @@
+package edu.berkeley.exchange.replay;
+
+import static org.testng.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.Order.PegType;
+import edu.berkeley.exchange.order.Trade;
+import edu.berkeley.exchange.replay.RecordedCall.Kind;
+
+public class RecordingTest 
+{
+	@Test
+	public void recordingShouldRoundTripThroughAFile() throws Exception
+	{
+		RecordedCall order = new RecordedCall(Kind.ORDER, 1000, "GS", "MSFT", 45.5, 0, 300, OrderType.BUY);
+		order.complete(null, null, Arrays.asList(new Trade("MSFT", "GS", "MS", 45.25, 300, OrderType.BUY)), 
+				986425, 300);
+		RecordedCall cancel = new RecordedCall(Kind.CANCEL, 2000, "MS", null, 0, 0, 0, null).withPosition(2);
+		cancel.complete(null, "Could not cancel order 9 for MS", Collections.<Trade>emptyList(), 1000000, 0);
+		
+		Path file = Files.createTempFile("recording", ".rec");
+		try
+		{
+			new Recording(Arrays.asList(order, cancel)).writeTo(file);
+			List<RecordedCall> calls = Recording.readFrom(file).getCalls();
+			
+			assertEquals(calls.size(), 2);
+			assertEquals(calls.get(0).getTicker(), "MSFT");
+			assertEquals(calls.get(0).getFills().get(0).getSellerName(), "MS");
+			assertEquals(calls.get(1).getRejection(), "Could not cancel order 9 for MS");
+			assertNull(calls.get(1).getType());
+			assertEquals(calls.get(1).getPosition(), 2);
+			
+			List<Mismatch> mismatches = new ArrayList<>();
+			Replayer.compare(0, order, calls.get(0), mismatches);
+			Replayer.compare(1, cancel, calls.get(1), mismatches);
+			assertTrue(mismatches.isEmpty(), mismatches.toString());
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void differentFillsShouldBeReported()
+	{
+		RecordedCall expected = new RecordedCall(Kind.ORDER, 0, "GS", "MSFT", 45.5, 0, 300, OrderType.BUY);
+		expected.complete(null, null, Arrays.asList(new Trade("MSFT", "GS", "MS", 45.25, 300, OrderType.BUY)), 
+				986425, 300);
+		RecordedCall actual = new RecordedCall(Kind.ORDER, 0, "GS", "MSFT", 45.5, 0, 300, OrderType.BUY);
+		actual.complete(null, null, Arrays.asList(new Trade("MSFT", "GS", "MS", 45.5, 300, OrderType.BUY)), 
+				986350, 300);
+		
+		List<Mismatch> mismatches = new ArrayList<>();
+		Replayer.compare(0, expected, actual, mismatches);
+		
+		assertEquals(mismatches.size(), 2);
+		assertEquals(mismatches.get(0).getField(), "fill 0");
+		assertEquals(mismatches.get(1).getField(), "capital");
+	}
+	
+	@Test
+	public void icebergPeggedAndBasketCallsShouldRoundTripThroughAFile() throws Exception
+	{
+		RecordedCall iceberg = new RecordedCall(Kind.ICEBERG_ORDER, 1000, "GS", "MSFT", 46.0, 0, 500, 
+				OrderType.SELL).withPeak(100);
+		iceberg.complete(null, null, Collections.<Trade>emptyList(), 1000000, -500);
+		RecordedCall pegged = new RecordedCall(Kind.PEGGED_ORDER, 2000, "GS", "IBM", 0.01, 150.0, 50, 
+				OrderType.BUY).withPeg(PegType.MIDPOINT);
+		pegged.complete(null, null, Collections.<Trade>emptyList(), 1000000, 0);
+		RecordedCall basket = new RecordedCall(Kind.BASKET, 3000, "GS", null, 0, 0, 0, null).withLegs(
+				Arrays.asList(new RecordedCall.Leg("MSFT", 45.0, 10, OrderType.BUY), 
+						new RecordedCall.Leg("IBM", 151.0, 5, OrderType.SELL)), true);
+		basket.complete(null, null, Collections.<Trade>emptyList(), 1000000, 0);
+		
+		Path file = Files.createTempFile("recording", ".rec");
+		try
+		{
+			new Recording(Arrays.asList(iceberg, pegged, basket)).writeTo(file);
+			List<RecordedCall> calls = Recording.readFrom(file).getCalls();
+			
+			assertEquals(calls.get(0).getKind(), Kind.ICEBERG_ORDER);
+			assertEquals(calls.get(0).getPeak(), 100);
+			assertEquals(calls.get(1).getPegType(), PegType.MIDPOINT);
+			assertEquals(calls.get(1).getLimitPrice(), 150.0);
+			assertNull(calls.get(0).getPegType());
+			assertTrue(calls.get(2).isAllOrNone());
+			assertEquals(calls.get(2).getLegs().size(), 2);
+			assertEquals(calls.get(2).getLegs().get(1).getTicker(), "IBM");
+			assertEquals(calls.get(2).getLegs().get(1).getQuantity(), 5);
+			assertEquals(calls.get(2).getLegs().get(1).getType(), OrderType.SELL);
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void differentRejectionsShouldBeReported()
+	{
+		RecordedCall expected = new RecordedCall(Kind.ORDER, 0, "GS", "MSFT", 45.5, 0, 300, OrderType.BUY);
+		expected.complete(null, "Could not execute BUY order on MSFT for GS since GS has insufficient capital.",
+				Collections.<Trade>emptyList(), 1000, 0);
+		RecordedCall actual = new RecordedCall(Kind.ORDER, 0, "GS", "MSFT", 45.5, 0, 300, OrderType.BUY);
+		actual.complete(null, "Could not execute BUY order on MSFT for GS since the price is off the tick.",
+				Collections.<Trade>emptyList(), 1000, 0);
+		
+		List<Mismatch> mismatches = new ArrayList<>();
+		Replayer.compare(0, expected, actual, mismatches);
+		
+		assertEquals(mismatches.size(), 1);
+		assertEquals(mismatches.get(0).getField(), "rejection");
+	}
+	
+	@Test
+	public void rejectionsDifferingOnlyInOrderIdShouldMatch()
+	{
+		RecordedCall expected = new RecordedCall(Kind.CANCEL, 0, "MS", null, 0, 0, 0, null);
+		expected.complete(null, "Could not cancel order 9 for MS", Collections.<Trade>emptyList(), 1000, 0);
+		RecordedCall actual = new RecordedCall(Kind.CANCEL, 0, "MS", null, 0, 0, 0, null);
+		actual.complete(null, "Could not cancel order 4127 for MS", Collections.<Trade>emptyList(), 1000, 0);
+		
+		List<Mismatch> mismatches = new ArrayList<>();
+		Replayer.compare(0, expected, actual, mismatches);
+		
+		assertTrue(mismatches.isEmpty(), mismatches.toString());
+	}
+}
@@ -0,0 +1,226 @@
+package edu.berkeley.exchange.replay;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.SecurityLocks;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.security.SecurityRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingKey;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class ReplayerTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	private static final int STARTING_SHARES = 1000;
+	
+	private static final String MAKER = "Replay Maker";
+	private static final String TAKER = "Replay Taker";
+	private static final String OUTSIDER = "Replay Outsider";
+	
+	private static final String TICKER = "RPLY";
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private SecurityLocks locks;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private SecurityRepository securityRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	private TradeCapture capture = new TradeCapture();
+	
+	private Recording recording;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		for (String name : new String[] { MAKER, TAKER, OUTSIDER })
+		{
+			traderRepo.save(new Trader(name, STARTING_CAPITAL));
+		}
+		Stock stock = new Stock(TICKER, TICKER);
+		stock.setTickSize(0.01);
+		stockRepo.save(stock);
+		exchangeService.addTradeListener(capture);
+		
+		reset();
+		recording = record();
+		reset();
+	}
+	
+	@Test
+	public void replayShouldMatchTheRecordedSession()
+	{
+		ReplayResult result = replayer().replay(recording, false);
+		
+		assertEquals(result.getCalls(), 7);
+		assertTrue(result.isIdentical(), result.getMismatches().toString());
+	}
+	
+	@Test(dependsOnMethods = "replayShouldMatchTheRecordedSession")
+	public void replayAtTheRecordedPaceShouldMatchTheRecordedSession()
+	{
+		reset();
+		long recorded = recording.getCalls().get(recording.getCalls().size() - 1).getOffsetNanos();
+		
+		ReplayResult result = replayer().replay(recording, true);
+		
+		assertTrue(result.isIdentical(), result.getMismatches().toString());
+		assertTrue(result.getElapsedNanos() >= recorded, "The replay ran ahead of the recorded pace.");
+	}
+	
+	@Test(dependsOnMethods = "replayAtTheRecordedPaceShouldMatchTheRecordedSession")
+	public void replayAgainstADifferentBookShouldReportTheDifference() throws OrderExecutionException
+	{
+		reset();
+		exchangeService.placeOrder(trader(OUTSIDER), stockRepo.findOne(TICKER), 9.90, 10, OrderType.SELL);
+		
+		ReplayResult result = replayer().replay(recording, false);
+		
+		// the taker's buy now fills against the outsider first, and nothing before it differs
+		List<Mismatch> mismatches = result.getMismatches();
+		assertFalse(mismatches.isEmpty());
+		assertEquals(mismatches.get(0).getCallIndex(), 4);
+		Mismatch firstFill = null;
+		for (Mismatch mismatch : mismatches)
+		{
+			if (mismatch.getCallIndex() == 4 && mismatch.getField().equals("fill 0"))
+			{
+				firstFill = mismatch;
+			}
+		}
+		assertNotNull(firstFill, mismatches.toString());
+		assertTrue(firstFill.getActual().contains(OUTSIDER), firstFill.toString());
+	}
+	
+	/**
+	 * Two asks at one price of which the later, larger one is cancelled, so that 
+	 * cancelling the older one on replay would change the fills; then an iceberg, a 
+	 * buy that sweeps the book, a sell beyond the taker's holding and a cancel of no 
+	 * order.
+	 */
+	private Recording record()
+	{
+		RecordingExchangeService recorder = new RecordingExchangeService(exchangeService, capture, traderRepo, 
+				holdingRepo, orderRepo, locks);
+		Stock stock = stockRepo.findOne(TICKER);
+		try
+		{
+			recorder.placeOrder(trader(MAKER), stock, 10.00, 10, OrderType.SELL);
+			recorder.placeOrder(trader(MAKER), stock, 10.00, 15, OrderType.SELL);
+			recorder.placeIcebergOrder(trader(MAKER), stock, 10.10, 20, 5, OrderType.SELL);
+			
+			List<Order> later = orderRepo.findByTraderNameAndTickerAndTypeAndPriceAndExecutedOrderByIdAsc(MAKER, 
+					TICKER, OrderType.SELL, 10.00, false, new PageRequest(1, 1));
+			recorder.cancelOrder(trader(MAKER), later.get(0).getId());
+			
+			recorder.placeOrder(trader(TAKER), stock, 10.10, 25, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail("Valid order encountered OrderExecutionException.");
+		}
+		
+		List<String> rejections = new ArrayList<>();
+		try
+		{
+			recorder.placeOrder(trader(TAKER), stock, 10.00, 500, OrderType.SELL);
+		}
+		catch (OrderExecutionException oee)
+		{
+			rejections.add(oee.getMessage());
+		}
+		try
+		{
+			recorder.cancelOrder(trader(MAKER), Long.MAX_VALUE);
+		}
+		catch (OrderExecutionException oee)
+		{
+			rejections.add(oee.getMessage());
+		}
+		assertEquals(rejections.size(), 2);
+		
+		Recording recorded = recorder.getRecording();
+		RecordedCall cancel = recorded.getCalls().get(3);
+		assertEquals(cancel.getPosition(), 1);
+		assertEquals(cancel.getQuantity(), 15);
+		assertEquals(recorded.getCalls().get(4).getFills().size(), 4);
+		assertEquals(recorded.getCalls().get(4).getFills().get(0).getSellerName(), MAKER);
+		return recorded;
+	}
+	
+	private Replayer replayer()
+	{
+		return new Replayer(exchangeService, capture, traderRepo, holdingRepo, orderRepo, securityRepo);
+	}
+	
+	/**
+	 * Puts the traders, holdings and book back to where the recording started.
+	 */
+	private void reset()
+	{
+		for (Order order : orderRepo.findAll())
+		{
+			if (order.getTicker().equals(TICKER))
+			{
+				orderRepo.delete(order);
+			}
+		}
+		Stock stock = stockRepo.findOne(TICKER);
+		for (String name : new String[] { MAKER, TAKER, OUTSIDER })
+		{
+			Trader trader = trader(name);
+			trader.setCapital(STARTING_CAPITAL);
+			traderRepo.save(trader);
+			
+			Holding holding = holdingRepo.findOne(new HoldingKey(name, TICKER));
+			if (holding != null)
+			{
+				holdingRepo.delete(holding);
+			}
+		}
+		holdingRepo.save(new Holding(trader(MAKER), stock, STARTING_SHARES));
+		holdingRepo.save(new Holding(trader(OUTSIDER), stock, STARTING_SHARES));
+	}
+	
+	private Trader trader(String name)
+	{
+		return traderRepo.findOne(name);
+	}
+}
@@ -0,0 +1,247 @@
+package edu.berkeley.exchange.report;
+
+import static org.testng.Assert.*;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.auction.AuctionService;
+import edu.berkeley.exchange.order.Order;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class ExecutionReportingTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	
+	private static final String BUYER = "Report Buyer";
+	private static final String SELLER = "Report Seller";
+	
+	private static final String PARTIAL = "RPTA";
+	private static final String FILLED = "RPTB";
+	private static final String AUCTION = "RPTC";
+	private static final String STOP = "RPTD";
+	private static final String REJECTED = "RPTE";
+	
+	private static final String VALID_ORDER_FAILURE = "Valid order encountered OrderExecutionException.";
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private AuctionService auctionService;
+	
+	@Autowired
+	private ExecutionReports reports;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	private ReportSubscription buyer;
+	private ReportSubscription seller;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		traderRepo.save(new Trader(BUYER, STARTING_CAPITAL));
+		Trader sellTrader = traderRepo.save(new Trader(SELLER, STARTING_CAPITAL));
+		for (String ticker : new String[] { PARTIAL, FILLED, AUCTION, STOP, REJECTED })
+		{
+			Stock stock = stockRepo.save(new Stock(ticker, ticker));
+			holdingRepo.save(new Holding(sellTrader, stock, 1000));
+		}
+	}
+	
+	@BeforeMethod
+	public void subscribe()
+	{
+		buyer = reports.subscribe(BUYER, 100);
+		seller = reports.subscribe(SELLER, 100);
+	}
+	
+	@AfterMethod
+	public void unsubscribe()
+	{
+		buyer.close();
+		seller.close();
+	}
+	
+	@Test
+	public void aggressorFillsShouldCarryTheIdItRestsUnder()
+	{
+		Stock stock = stockRepo.findOne(PARTIAL);
+		try
+		{
+			exchangeService.placeOrder(trader(SELLER), stock, 10.0, 10, OrderType.SELL);
+			exchangeService.placeOrder(trader(BUYER), stock, 10.0, 15, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		Order rested = orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(BUYER, PARTIAL, false);
+		ExecutionReport fill = buyer.poll();
+		assertEquals(fill.getStatus(), ExecutionStatus.PARTIALLY_FILLED);
+		assertEquals(fill.getLastQuantity(), 10);
+		assertEquals(fill.getLeavesQuantity(), 5);
+		assertEquals(fill.getOrderId(), rested.getId());
+		
+		ExecutionReport accepted = buyer.poll();
+		assertEquals(accepted.getStatus(), ExecutionStatus.ACCEPTED);
+		assertEquals(accepted.getOrderId(), rested.getId());
+		assertEquals(rested.getQuantity(), 5);
+	}
+	
+	@Test
+	public void filledAggressorShouldHaveAnIdButLeaveNoOpenOrder()
+	{
+		Stock stock = stockRepo.findOne(FILLED);
+		try
+		{
+			exchangeService.placeOrder(trader(SELLER), stock, 10.0, 10, OrderType.SELL);
+			exchangeService.placeOrder(trader(BUYER), stock, 10.0, 10, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		ExecutionReport fill = buyer.poll();
+		assertEquals(fill.getStatus(), ExecutionStatus.FILLED);
+		assertTrue(fill.getOrderId() > 0, "Aggressor fill carried no order id.");
+		assertNull(buyer.poll());
+		assertNull(orderRepo.findOne(fill.getOrderId()));
+		assertNull(orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(BUYER, FILLED, false));
+		
+		// the id is never handed out again, though no row was written with it
+		try
+		{
+			exchangeService.placeOrder(trader(BUYER), stock, 9.0, 10, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		ExecutionReport accepted = buyer.poll();
+		assertEquals(accepted.getStatus(), ExecutionStatus.ACCEPTED);
+		assertTrue(accepted.getOrderId() > fill.getOrderId());
+		assertEquals(orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(BUYER, FILLED, false).getId(), 
+				accepted.getOrderId());
+	}
+	
+	@Test
+	public void auctionFillsShouldBeReportedToBothSides()
+	{
+		Stock stock = stockRepo.findOne(AUCTION);
+		auctionService.startCall(stock);
+		try
+		{
+			exchangeService.placeOrder(trader(SELLER), stock, 10.0, 10, OrderType.SELL);
+			exchangeService.placeOrder(trader(BUYER), stock, 10.5, 25, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		long buyId = orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(BUYER, AUCTION, false).getId();
+		long sellId = orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(SELLER, AUCTION, false)
+				.getId();
+		drain(buyer);
+		drain(seller);
+		
+		auctionService.uncross(stock);
+		
+		ExecutionReport buy = buyer.poll();
+		assertEquals(buy.getOrderId(), buyId);
+		assertEquals(buy.getStatus(), ExecutionStatus.PARTIALLY_FILLED);
+		assertEquals(buy.getLastQuantity(), 10);
+		assertEquals(buy.getLeavesQuantity(), 15);
+		
+		ExecutionReport sell = seller.poll();
+		assertEquals(sell.getOrderId(), sellId);
+		assertEquals(sell.getStatus(), ExecutionStatus.FILLED);
+		assertEquals(sell.getLastPrice(), buy.getLastPrice(), 1e-9);
+	}
+	
+	@Test
+	public void rejectedStopOrderShouldBeReported()
+	{
+		Stock stock = stockRepo.findOne(STOP);
+		try
+		{
+			exchangeService.placeStopOrder(trader(SELLER), stock, 9.0, 0, 5000, OrderType.SELL);
+			fail("Stop for more shares than held was accepted.");
+		}
+		catch (OrderExecutionException oee)
+		{
+			ExecutionReport rejected = seller.poll();
+			assertEquals(rejected.getStatus(), ExecutionStatus.REJECTED);
+			assertEquals(rejected.getText(), oee.getMessage());
+		}
+	}
+	
+	@Test
+	public void rejectionShouldWaitForTheEnclosingTransactionToCommit()
+	{
+		Stock stock = stockRepo.findOne(REJECTED);
+		new TransactionTemplate(transactionManager).execute(status ->
+		{
+			try
+			{
+				exchangeService.placeIcebergOrder(trader(SELLER), stock, 10.0, 100, 0, OrderType.SELL);
+				fail("Iceberg without a peak was accepted.");
+			}
+			catch (OrderExecutionException oee)
+			{
+				assertNull(seller.poll(), "Rejection was published before the commit.");
+			}
+			return null;
+		});
+		assertEquals(seller.poll().getStatus(), ExecutionStatus.REJECTED);
+	}
+	
+	private Trader trader(String name)
+	{
+		return traderRepo.findOne(name);
+	}
+	
+	private static void drain(ReportSubscription subscription)
+	{
+		while (subscription.poll() != null)
+		{
+		
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package edu.berkeley.exchange.report;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+
+public class ExecutionReportsTest 
+{
+	@Test
+	public void reportsShouldReachTheTraderAndEveryDropCopy()
+	{
+		ExecutionReports reports = new ExecutionReports();
+		ReportSubscription goldman = reports.subscribe("GS", 10);
+		ReportSubscription dropCopy = reports.subscribeDropCopy(10);
+		
+		reports.publish("GS", "MSFT", 7, OrderType.BUY, ExecutionStatus.FILLED, 45, 44.5, 100, 0, null);
+		reports.publish("MS", "MSFT", 8, OrderType.SELL, ExecutionStatus.FILLED, 44.5, 44.5, 100, 0, null);
+		
+		ExecutionReport report = goldman.poll();
+		assertEquals(report.getOrderId(), 7);
+		assertEquals(report.getStatus(), ExecutionStatus.FILLED);
+		assertNull(goldman.poll());
+		
+		assertEquals(dropCopy.poll().getSequence(), 1);
+		assertEquals(dropCopy.poll().getSequence(), 2);
+	}
+	
+	@Test
+	public void fullQueueShouldDisconnectTheSubscriber()
+	{
+		ExecutionReports reports = new ExecutionReports();
+		ReportSubscription subscription = reports.subscribe("GS", 2);
+		ReportSubscription dropCopy = reports.subscribeDropCopy(10);
+		
+		for (int i = 0; i < 5; i++)
+		{
+			reports.publish("GS", "MSFT", i, OrderType.BUY, ExecutionStatus.ACCEPTED, 45, 0, 0, 100, null);
+		}
+		
+		assertTrue(subscription.isOverflowed());
+		assertEquals(subscription.poll().getOrderId(), 0);
+		assertEquals(subscription.poll().getOrderId(), 1);
+		try
+		{
+			subscription.poll();
+			fail("Overflowed subscription kept polling as if nothing was lost.");
+		}
+		catch (IllegalStateException expected)
+		{
+			
+		}
+		
+		assertFalse(dropCopy.isOverflowed());
+		assertEquals(dropCopy.drainTo(new ArrayList<ExecutionReport>(), 10), 5);
+	}
+	
+	@Test
+	public void closedSubscriptionShouldReceiveNothing()
+	{
+		ExecutionReports reports = new ExecutionReports();
+		ReportSubscription subscription = reports.subscribe("GS", 2);
+		
+		subscription.close();
+		reports.publish("GS", "MSFT", 9, OrderType.BUY, ExecutionStatus.ACCEPTED, 45, 0, 0, 100, null);
+		assertNull(subscription.poll());
+	}
+}
@@ -0,0 +1,65 @@
+package edu.berkeley.exchange.risk;
+
+import static org.testng.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.Test;
+
+public class MonteCarloSimulationTest 
+{
+	@Test
+	public void choleskyShouldReproduceTheCovariance()
+	{
+		double[][] covariance = {{0.04, 0.006}, {0.006, 0.01}};
+		double[][] lower = MonteCarloSimulation.cholesky(covariance);
+		
+		for (int i = 0; i < 2; i++)
+		{
+			for (int j = 0; j < 2; j++)
+			{
+				double product = 0;
+				for (int k = 0; k < 2; k++)
+				{
+					product += lower[i][k] * lower[j][k];
+				}
+				assertEquals(product, covariance[i][j], 1e-12);
+			}
+		}
+	}
+	
+	@Test
+	public void lossesShouldNotDependOnThreadCount()
+	{
+		double[] exposures = {1000000, -250000};
+		double[][] lower = MonteCarloSimulation.cholesky(new double[][] {{0.0004, 0.0001}, {0.0001, 0.0009}});
+		
+		ForkJoinPool single = new ForkJoinPool(1);
+		ForkJoinPool several = new ForkJoinPool(4);
+		try
+		{
+			double[] sequential = MonteCarloSimulation.simulateLosses(exposures, lower, 10000, 42, single);
+			double[] parallel = MonteCarloSimulation.simulateLosses(exposures, lower, 10000, 42, several);
+			assertEquals(parallel, sequential);
+		}
+		finally
+		{
+			single.shutdown();
+			several.shutdown();
+		}
+	}
+	
+	@Test
+	public void valueAtRiskShouldMatchTheNormalQuantileForOneAsset()
+	{
+		double[][] lower = MonteCarloSimulation.cholesky(new double[][] {{0.0001}});
+		double[] losses = MonteCarloSimulation.simulateLosses(new double[] {1000000}, lower, 200000, 7, 
+				ForkJoinPool.commonPool());
+		
+		VarReport report = VarEngine.report("GS", 1000000, new double[] {0.99}, losses);
+		
+		double expected = -1000000 * Math.expm1(-2.326348 * 0.01);
+		assertEquals(report.getValueAtRisk(0), expected, expected * 0.03);
+		assertTrue(report.getExpectedShortfall(0) > report.getValueAtRisk(0));
+	}
+}
@@ -0,0 +1,44 @@
+package edu.berkeley.exchange.security;
+
+import static org.testng.Assert.*;
+
+import org.testng.annotations.Test;
+
+public class InstrumentRulesTest 
+{
+	@Test
+	public void pricesShouldBeCheckedAgainstTheTickSize()
+	{
+		InstrumentRules rules = new InstrumentRules(0.05, 0, 0, 1);
+		assertTrue(rules.isOnTick(10.15));
+		assertTrue(rules.isOnTick(0.3));
+		assertFalse(rules.isOnTick(10.12));
+	}
+	
+	@Test
+	public void quantitiesShouldBeWholeLots()
+	{
+		InstrumentRules rules = new InstrumentRules(0, 100, 0, 1);
+		assertTrue(rules.isWholeLots(300));
+		assertFalse(rules.isWholeLots(150));
+	}
+	
+	@Test
+	public void priceBandShouldBeRelativeToTheReferencePrice()
+	{
+		InstrumentRules rules = new InstrumentRules(0, 0, 0.1, 1);
+		assertTrue(rules.isWithinBand(109, 100));
+		assertFalse(rules.isWithinBand(89, 100));
+		assertTrue(rules.isWithinBand(1000, Double.NaN));
+	}
+	
+	@Test
+	public void emptyRulesShouldAcceptAnything()
+	{
+		InstrumentRules rules = InstrumentRules.of(new Stock("AAPL", "Apple"));
+		assertTrue(rules.isOnTick(10.123456789));
+		assertTrue(rules.isWholeLots(7));
+		assertTrue(rules.isWithinBand(1, 100));
+		assertEquals(rules.getMultiplier(), 1.0);
+	}
+}
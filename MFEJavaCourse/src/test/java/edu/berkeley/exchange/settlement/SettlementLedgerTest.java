@@ -0,0 +1,59 @@
+package edu.berkeley.exchange.settlement;
+
+import static org.testng.Assert.*;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeProperties;
+import edu.berkeley.exchange.matching.FillBatch;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.trader.Trader;
+
+public class SettlementLedgerTest
+{
+	private static final Stock AAPL = new Stock("AAPL", "Apple Computer");
+	private static final Trader GS = new Trader("Goldman Sachs", 10000.0);
+	private static final Trader MS = new Trader("Morgan Stanley", 10000.0);
+
+	@Test
+	public void deferredBatchShouldBeNettedPerTrader()
+	{
+		ExchangeProperties properties = new ExchangeProperties();
+		properties.setSettlement(SettlementMode.END_OF_DAY);
+		SettlementLedger ledger = new SettlementLedger(properties);
+		
+		FillBatch batch = new FillBatch(AAPL, null);
+		batch.deferCredits();
+		batch.addProceeds(GS, 800.0);
+		batch.addShares(MS, 10);
+		batch.addProceeds(GS, 410.0);
+		batch.addShares(MS, 5);
+		ledger.record(batch);
+		ledger.addShares("Morgan Stanley", "AAPL", 5);
+		
+		Date today = Date.valueOf(LocalDate.now());
+		assertTrue(ledger.isEnabled());
+		assertEquals(ledger.getPendingProceeds("Goldman Sachs"), 1210.0, 1e-9);
+		assertEquals(ledger.getPendingShares("Morgan Stanley", "AAPL"), 20);
+		assertEquals(ledger.getProceedsTotal(today), 1210.0, 1e-9);
+		assertEquals(ledger.getSharesTotal(today), 20);
+		
+		ledger.remove(today);
+		assertEquals(ledger.getPendingProceeds("Goldman Sachs"), 0.0, 1e-9);
+		assertEquals(ledger.getSharesTotal(today), 0);
+	}
+
+	@Test
+	public void immediateBatchShouldDeferNothing()
+	{
+		FillBatch batch = new FillBatch(AAPL, null);
+		batch.addProceeds(GS, 800.0);
+		batch.addShares(MS, 10);
+		
+		assertFalse(batch.hasDeferredCredits());
+		assertFalse(new SettlementLedger(new ExchangeProperties()).isEnabled());
+	}
+}
@@ -0,0 +1,157 @@
+package edu.berkeley.exchange.settlement;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.springframework.util.FileSystemUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeProperties;
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.archive.OrderArchiver;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingKey;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class SettlementServiceTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 10000.0;
+	
+	private static final String SELLER = "Settlement Seller";
+	private static final String BUYER = "Settlement Buyer";
+	
+	private static final String FIRST = "STLA";
+	private static final String SECOND = "STLB";
+	
+	private static final String VALID_ORDER_FAILURE = "Valid order encountered OrderExecutionException.";
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private SettlementService settlementService;
+	
+	@Autowired
+	private OrderArchiver archiver;
+	
+	@Autowired
+	private ExchangeProperties properties;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	private Path archiveDirectory;
+	
+	@BeforeClass
+	public void setUp() throws IOException
+	{
+		properties.setSettlement(SettlementMode.END_OF_DAY);
+		archiveDirectory = Files.createTempDirectory("settlement");
+		properties.setArchiveDirectory(archiveDirectory.toString());
+		
+		Trader seller = traderRepo.save(new Trader(SELLER, STARTING_CAPITAL));
+		Trader buyer = traderRepo.save(new Trader(BUYER, STARTING_CAPITAL));
+		Stock first = stockRepo.save(new Stock(FIRST, FIRST));
+		Stock second = stockRepo.save(new Stock(SECOND, SECOND));
+		holdingRepo.save(new Holding(seller, first, 100));
+		holdingRepo.save(new Holding(seller, second, 100));
+		
+		try
+		{
+			exchangeService.placeOrder(seller, first, 10.0, 10, OrderType.SELL);
+			exchangeService.placeOrder(traderRepo.findOne(SELLER), second, 5.0, 20, OrderType.SELL);
+			exchangeService.placeOrder(buyer, first, 10.0, 10, OrderType.BUY);
+			exchangeService.placeOrder(traderRepo.findOne(BUYER), second, 5.0, 20, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+	}
+	
+	@AfterClass
+	public void tearDown()
+	{
+		properties.setSettlement(SettlementMode.IMMEDIATE);
+		FileSystemUtils.deleteRecursively(archiveDirectory.toFile());
+	}
+	
+	@Test(priority = 1)
+	public void unsettledFillsShouldNotBeArchived() throws IOException
+	{
+		assertEquals(archiver.archiveBefore(tomorrow()), 0);
+		assertEquals(traderRepo.findOne(SELLER).getCapital(), STARTING_CAPITAL, 1e-9);
+	}
+	
+	@Test(priority = 2)
+	public void sellerShouldBePaidForEveryTicker()
+	{
+		SettlementRun run = settlementService.settle(today());
+		
+		assertEquals(traderRepo.findOne(SELLER).getCapital(), STARTING_CAPITAL + 200.0, 1e-9);
+		assertEquals(holdingRepo.findOne(new HoldingKey(BUYER, FIRST)).getQuantity(), 10);
+		assertEquals(holdingRepo.findOne(new HoldingKey(BUYER, SECOND)).getQuantity(), 20);
+		assertEquals(run.getTraders(), 1);
+		assertEquals(run.getHoldings(), 2);
+		assertEquals(run.getCash(), 200.0, 1e-9);
+		assertEquals(run.getShares(), 30);
+		assertTrue(run.isReconciled());
+	}
+	
+	@Test(priority = 3)
+	public void settledDateShouldNotBeSettledAgain()
+	{
+		try
+		{
+			settlementService.settle(today());
+			fail("Trade date was settled twice.");
+		}
+		catch (IllegalStateException ise)
+		{
+			assertEquals(ise.getMessage(), "Could not settle " + today() + " since it has already been settled.");
+		}
+		assertEquals(traderRepo.findOne(SELLER).getCapital(), STARTING_CAPITAL + 200.0, 1e-9);
+	}
+	
+	@Test(priority = 4)
+	public void settledFillsShouldBeArchived() throws IOException
+	{
+		assertTrue(archiver.archiveBefore(tomorrow()) > 0);
+	}
+	
+	private static Date today()
+	{
+		return Date.valueOf(LocalDate.now());
+	}
+	
+	private static Date tomorrow()
+	{
+		return Date.valueOf(LocalDate.now().plusDays(1));
+	}
+}
@@ -0,0 +1,97 @@
+package edu.berkeley.exchange.simulation;
+
+import static org.testng.Assert.*;
+
+import org.testng.annotations.Test;
+
+public class EventGeneratorTest 
+{
+	@Test
+	public void sameSeedShouldGenerateTheSameFlow()
+	{
+		SimulationConfig config = new SimulationConfig();
+		config.setTotalOrders(5000);
+		
+		EventGenerator first = new EventGenerator(config);
+		EventGenerator second = new EventGenerator(config);
+		while (first.hasNext())
+		{
+			SimulatedEvent a = first.next();
+			SimulatedEvent b = second.next();
+			assertEquals(a.getOffsetNanos(), b.getOffsetNanos());
+			assertEquals(a.isCancel(), b.isCancel());
+			assertEquals(a.getTrader(), b.getTrader());
+			assertEquals(a.getStock(), b.getStock());
+			assertEquals(a.getPrice(), b.getPrice());
+			assertEquals(a.getQuantity(), b.getQuantity());
+			assertEquals(a.getType(), b.getType());
+		}
+		assertFalse(second.hasNext());
+	}
+	
+	@Test
+	public void arrivalsShouldAverageTheTargetRate()
+	{
+		SimulationConfig config = new SimulationConfig();
+		config.setOrdersPerSecond(2000);
+		config.setTotalOrders(100000);
+		
+		EventGenerator events = new EventGenerator(config);
+		long last = 0;
+		while (events.hasNext())
+		{
+			SimulatedEvent event = events.next();
+			assertTrue(event.getOffsetNanos() >= last);
+			last = event.getOffsetNanos();
+		}
+		assertEquals(last / 1e9, 50, 1);
+	}
+	
+	@Test
+	public void zeroMeanReversionShouldLeavePricesOnARandomWalk()
+	{
+		SimulationConfig config = new SimulationConfig();
+		config.setMeanReversion(0);
+		config.setTotalOrders(10000);
+		
+		EventGenerator events = new EventGenerator(config);
+		while (events.hasNext())
+		{
+			SimulatedEvent event = events.next();
+			if (!event.isCancel())
+			{
+				assertTrue(event.getPrice() > 1, "Price collapsed to " + event.getPrice() + ".");
+			}
+		}
+	}
+	
+	@Test
+	public void negativeMeanReversionShouldBeRejected()
+	{
+		SimulationConfig config = new SimulationConfig();
+		try
+		{
+			config.setMeanReversion(-1);
+			fail("Negative mean reversion was accepted.");
+		}
+		catch (IllegalArgumentException expected)
+		{
+			assertEquals(config.getMeanReversion(), 5.0);
+		}
+	}
+	
+	@Test
+	public void histogramPercentilesShouldBeWithinBucketPrecision()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long nanos = 1; nanos <= 100000; nanos++)
+		{
+			histogram.record(nanos);
+		}
+		
+		assertEquals(histogram.getCount(), 100000);
+		assertEquals(histogram.getPercentile(50), 50000, 50000 * 0.04);
+		assertEquals(histogram.getPercentile(99), 99000, 99000 * 0.04);
+		assertEquals(histogram.getMax(), 100000, 100000 * 0.04);
+	}
+}
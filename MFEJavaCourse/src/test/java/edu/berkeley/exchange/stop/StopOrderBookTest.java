@@ -0,0 +1,76 @@
+package edu.berkeley.exchange.stop;
+
+import static org.testng.Assert.*;
+
+import java.util.List;
+
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.StopOrder;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.trader.Trader;
+
+public class StopOrderBookTest 
+{
+	private static final Stock AAPL = new Stock("AAPL", "Apple Computer");
+	private static final Trader GS = new Trader("Goldman Sachs", 10000.0);
+	
+	private StopOrderBook book;
+	
+	@BeforeMethod
+	public void setUp()
+	{
+		book = new StopOrderBook();
+		book.add(stop(4, 81.0, OrderType.BUY));
+		book.add(stop(1, 80.0, OrderType.BUY));
+		book.add(stop(3, 80.0, OrderType.BUY));
+		book.add(stop(2, 85.0, OrderType.BUY));
+		book.add(stop(5, 70.0, OrderType.SELL));
+		book.add(stop(6, 75.0, OrderType.SELL));
+	}
+	
+	@Test
+	public void tradeShouldFireBuyStopsAtOrBelowItsPriceInSequenceOrder()
+	{
+		List<StopOrder> fired = book.trigger(81.0);
+		
+		assertEquals(fired.size(), 3);
+		assertEquals(fired.get(0).getId(), 1L);
+		assertEquals(fired.get(1).getId(), 3L);
+		assertEquals(fired.get(2).getId(), 4L);
+		assertEquals(book.size(), 3);
+	}
+	
+	@Test
+	public void tradeShouldFireSellStopsAtOrAboveItsPrice()
+	{
+		List<StopOrder> fired = book.trigger(75.0);
+		
+		assertEquals(fired.size(), 1);
+		assertEquals(fired.get(0).getId(), 6L);
+		
+		assertTrue(book.trigger(76.0).isEmpty());
+		assertEquals(book.trigger(69.0).get(0).getId(), 5L);
+	}
+	
+	@Test
+	public void removedStopShouldNotFire()
+	{
+		assertTrue(book.remove(1, OrderType.BUY, 80.0));
+		assertFalse(book.remove(1, OrderType.BUY, 80.0));
+		
+		List<StopOrder> fired = book.trigger(80.0);
+		assertEquals(fired.size(), 1);
+		assertEquals(fired.get(0).getId(), 3L);
+	}
+	
+	private static StopOrder stop(long id, double stopPrice, OrderType type)
+	{
+		StopOrder stop = new StopOrder(AAPL, GS, stopPrice, 0, 10, type);
+		ReflectionTestUtils.setField(stop, "id", id);
+		return stop;
+	}
+}
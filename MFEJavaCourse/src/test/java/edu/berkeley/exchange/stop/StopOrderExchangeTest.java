@@ -0,0 +1,226 @@
+package edu.berkeley.exchange.stop;
+
+import static org.testng.Assert.*;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.order.StopOrder;
+import edu.berkeley.exchange.order.StopOrderRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingKey;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class StopOrderExchangeTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	private static final int STARTING_SHARES = 1000;
+	
+	private static final String MAKER = "Stop Maker";
+	private static final String TAKER = "Stop Taker";
+	private static final String FIRST = "Stop First";
+	private static final String SECOND = "Stop Second";
+	
+	private static final String FILL = "STPF";
+	private static final String SEQUENCE = "STPS";
+	private static final String CASCADE = "STPC";
+	
+	private static final String VALID_ORDER_FAILURE = "Valid order encountered OrderExecutionException.";
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private StopOrderRepository stopOrderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		for (String name : new String[] { MAKER, TAKER, FIRST, SECOND })
+		{
+			traderRepo.save(new Trader(name, STARTING_CAPITAL));
+		}
+		
+		for (String ticker : new String[] { FILL, SEQUENCE, CASCADE })
+		{
+			Stock stock = new Stock(ticker, ticker);
+			stock.setTickSize(0.01);
+			stockRepo.save(stock);
+			for (String name : new String[] { MAKER, TAKER, FIRST, SECOND })
+			{
+				holdingRepo.save(new Holding(trader(name), stock, STARTING_SHARES));
+			}
+		}
+	}
+	
+	@Test
+	public void triggeredStopShouldBeReleasedIntoMatchingAndFill()
+	{
+		Stock stock = stockRepo.findOne(FILL);
+		double maker = capital(MAKER);
+		double taker = capital(TAKER);
+		double first = capital(FIRST);
+		try
+		{
+			exchangeService.placeOrder(trader(MAKER), stock, 10.00, 10, OrderType.SELL);
+			exchangeService.placeOrder(trader(MAKER), stock, 10.20, 10, OrderType.SELL);
+			exchangeService.placeStopOrder(trader(FIRST), stock, 10.00, 10.50, 10, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		assertEquals(capital(FIRST), first, 1e-9, "An untriggered stop should not reserve capital.");
+		
+		try
+		{
+			exchangeService.placeOrder(trader(TAKER), stock, 10.00, 10, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		// the print at 10.00 fires the stop, which enters at its 10.50 limit and takes the ask at 10.20
+		assertEquals(capital(FIRST), first - 102.0, 1e-9);
+		assertEquals(shares(FIRST, FILL), STARTING_SHARES + 10);
+		assertEquals(capital(TAKER), taker - 100.0, 1e-9);
+		assertEquals(shares(TAKER, FILL), STARTING_SHARES + 10);
+		assertEquals(capital(MAKER), maker + 202.0, 1e-9);
+		assertEquals(shares(MAKER, FILL), STARTING_SHARES - 20);
+		
+		assertNull(orderRepo.findTopByTraderNameAndTickerAndExecutedOrderByIdAsc(FIRST, FILL, false));
+		assertTrue(stopOrderRepo.findByTickerAndTriggeredOrderByIdAsc(FILL, false).isEmpty());
+		List<StopOrder> triggered = stopOrderRepo.findByTickerAndTriggeredOrderByIdAsc(FILL, true);
+		assertEquals(triggered.size(), 1);
+		assertEquals(triggered.get(0).getTriggerPrice(), 10.00, 1e-9);
+	}
+	
+	@Test
+	public void stopsFiredByOnePrintShouldEnterInTheOrderTheyWerePlaced()
+	{
+		Stock stock = stockRepo.findOne(SEQUENCE);
+		double first = capital(FIRST);
+		double second = capital(SECOND);
+		try
+		{
+			exchangeService.placeOrder(trader(MAKER), stock, 10.00, 10, OrderType.SELL);
+			exchangeService.placeOrder(trader(MAKER), stock, 10.20, 10, OrderType.SELL);
+			exchangeService.placeOrder(trader(MAKER), stock, 10.40, 10, OrderType.SELL);
+			exchangeService.placeStopOrder(trader(FIRST), stock, 10.00, 10.50, 10, OrderType.BUY);
+			exchangeService.placeStopOrder(trader(SECOND), stock, 9.95, 10.50, 10, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		try
+		{
+			exchangeService.placeOrder(trader(TAKER), stock, 10.00, 10, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		// both fire on the print at 10.00; the first placed takes the better ask though its stop is higher
+		assertEquals(capital(FIRST), first - 102.0, 1e-9);
+		assertEquals(capital(SECOND), second - 104.0, 1e-9);
+		assertEquals(shares(FIRST, SEQUENCE), STARTING_SHARES + 10);
+		assertEquals(shares(SECOND, SEQUENCE), STARTING_SHARES + 10);
+		assertEquals(shares(MAKER, SEQUENCE), STARTING_SHARES - 30);
+		assertNull(exchangeService.getBestAsk(stock));
+	}
+	
+	@Test
+	public void stopFillsShouldFireFurtherStops()
+	{
+		Stock stock = stockRepo.findOne(CASCADE);
+		double maker = capital(MAKER);
+		double taker = capital(TAKER);
+		double first = capital(FIRST);
+		double second = capital(SECOND);
+		try
+		{
+			exchangeService.placeOrder(trader(MAKER), stock, 10.00, 10, OrderType.BUY);
+			exchangeService.placeOrder(trader(MAKER), stock, 9.80, 10, OrderType.BUY);
+			exchangeService.placeOrder(trader(MAKER), stock, 9.60, 10, OrderType.BUY);
+			exchangeService.placeStopOrder(trader(FIRST), stock, 10.00, 9.70, 10, OrderType.SELL);
+			exchangeService.placeStopOrder(trader(SECOND), stock, 9.80, 9.50, 10, OrderType.SELL);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		try
+		{
+			exchangeService.placeOrder(trader(TAKER), stock, 10.00, 10, OrderType.SELL);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail(VALID_ORDER_FAILURE);
+		}
+		
+		// 10.00 fires the first stop, whose fill at 9.80 fires the second, which fills at 9.60
+		assertEquals(capital(TAKER), taker + 100.0, 1e-9);
+		assertEquals(capital(FIRST), first + 98.0, 1e-9);
+		assertEquals(capital(SECOND), second + 96.0, 1e-9);
+		assertEquals(shares(FIRST, CASCADE), STARTING_SHARES - 10);
+		assertEquals(shares(SECOND, CASCADE), STARTING_SHARES - 10);
+		assertEquals(capital(MAKER), maker - 294.0, 1e-9);
+		assertEquals(shares(MAKER, CASCADE), STARTING_SHARES + 30);
+		
+		assertTrue(stopOrderRepo.findByTickerAndTriggeredOrderByIdAsc(CASCADE, false).isEmpty());
+		List<StopOrder> triggered = stopOrderRepo.findByTickerAndTriggeredOrderByIdAsc(CASCADE, true);
+		assertEquals(triggered.size(), 2);
+		assertEquals(triggered.get(0).getTriggerPrice(), 10.00, 1e-9);
+		assertEquals(triggered.get(1).getTriggerPrice(), 9.80, 1e-9);
+		assertNull(exchangeService.getBestBid(stock));
+	}
+	
+	private Trader trader(String name)
+	{
+		return traderRepo.findOne(name);
+	}
+	
+	private double capital(String name)
+	{
+		return trader(name).getCapital();
+	}
+	
+	private int shares(String traderName, String ticker)
+	{
+		return holdingRepo.findOne(new HoldingKey(traderName, ticker)).getQuantity();
+	}
+}
@@ -0,0 +1,205 @@
+package edu.berkeley.exchange.valuation;
+
+import static org.testng.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.berkeley.exchange.ExchangeServiceImpl;
+import edu.berkeley.exchange.OrderExecutionException;
+import edu.berkeley.exchange.TestConfig;
+import edu.berkeley.exchange.marketdata.LastTradePrices;
+import edu.berkeley.exchange.order.Order.OrderType;
+import edu.berkeley.exchange.order.OrderRepository;
+import edu.berkeley.exchange.security.SecurityRepository;
+import edu.berkeley.exchange.security.Stock;
+import edu.berkeley.exchange.security.StockRepository;
+import edu.berkeley.exchange.trader.Holding;
+import edu.berkeley.exchange.trader.HoldingRepository;
+import edu.berkeley.exchange.trader.Trader;
+import edu.berkeley.exchange.trader.TraderRepository;
+
+@DirtiesContext
+@ContextConfiguration(classes=TestConfig.class)
+public class PortfolioValuationJobTest extends AbstractTestNGSpringContextTests
+{
+	private static final double STARTING_CAPITAL = 100000.0;
+	
+	private static final String BUYER = "Valuation Buyer";
+	private static final String SELLER = "Valuation Seller";
+	
+	private static final String TRADED = "VALA";
+	private static final String UNTRADED = "VALB";
+	
+	@Autowired
+	private ExchangeServiceImpl exchangeService;
+	
+	@Autowired
+	private PortfolioValuationJob job;
+	
+	@Autowired
+	private StockRepository stockRepo;
+	
+	@Autowired
+	private SecurityRepository securityRepo;
+	
+	@Autowired
+	private HoldingRepository holdingRepo;
+	
+	@Autowired
+	private OrderRepository orderRepo;
+	
+	@Autowired
+	private TraderRepository traderRepo;
+	
+	@Autowired
+	private TraderValuationRepository valuationRepo;
+	
+	@BeforeClass
+	public void setUp()
+	{
+		Stock traded = stockRepo.save(new Stock(TRADED, TRADED));
+		Stock untraded = stockRepo.save(new Stock(UNTRADED, UNTRADED));
+		Trader buyer = traderRepo.save(new Trader(BUYER, STARTING_CAPITAL));
+		Trader seller = traderRepo.save(new Trader(SELLER, STARTING_CAPITAL));
+		holdingRepo.save(new Holding(seller, traded, 1000));
+		holdingRepo.save(new Holding(seller, untraded, 500));
+		
+		try
+		{
+			exchangeService.placeOrder(seller, traded, 20.0, 100, OrderType.SELL);
+			exchangeService.placeOrder(buyer, traded, 20.0, 100, OrderType.BUY);
+			exchangeService.placeOrder(traderRepo.findOne(SELLER), traded, 25.0, 50, OrderType.SELL);
+			exchangeService.placeOrder(traderRepo.findOne(BUYER), untraded, 30.0, 10, OrderType.BUY);
+		}
+		catch (OrderExecutionException oee)
+		{
+			fail("Valid order encountered OrderExecutionException.");
+		}
+	}
+	
+	@Test(priority = 1)
+	public void equityShouldIncludeReservedCapitalAndMarkedShares()
+	{
+		Date today = Date.valueOf(LocalDate.now());
+		assertEquals(job.run(today), 2);
+		
+		TraderValuation buyer = valuationRepo.findByTraderNameAndValuationDate(BUYER, today);
+		assertEquals(buyer.getCapital(), STARTING_CAPITAL - 20.0 * 100 - 30.0 * 10, 1e-9);
+		assertEquals(buyer.getReservedCapital(), 30.0 * 10, 1e-9);
+		assertEquals(buyer.getHoldingsValue(), 20.0 * 100, 1e-9);
+		assertEquals(buyer.getEquity(), STARTING_CAPITAL, 1e-9);
+		
+		// the untraded holding has no price and is marked at nothing
+		TraderValuation seller = valuationRepo.findByTraderNameAndValuationDate(SELLER, today);
+		assertEquals(seller.getCapital(), STARTING_CAPITAL + 20.0 * 100, 1e-9);
+		assertEquals(seller.getReservedCapital(), 0, 1e-9);
+		assertEquals(seller.getHoldingsValue(), 20.0 * (850 + 50), 1e-9);
+	}
+	
+	@Test(priority = 2)
+	public void workersShouldMarkAgainstOneSnapshotWithoutQuerying()
+	{
+		List<Thread> lookups = new CopyOnWriteArrayList<>();
+		LastTradePrices lastTradePrices = new LastTradePrices(watchingOrders(lookups, null));
+		PortfolioValuationJob watched = new PortfolioValuationJob(holdingRepo, traderRepo,
+				watchingOrders(lookups, lastTradePrices), securityRepo, valuationRepo, lastTradePrices);
+		watched.setPool(new ForkJoinPool(2));
+		
+		Date tomorrow = Date.valueOf(LocalDate.now().plusDays(1));
+		assertEquals(watched.run(tomorrow), 2);
+		
+		assertEquals(lookups.size(), 2, "Each security's last price should be looked up once.");
+		for (Thread lookup : lookups)
+		{
+			assertSame(lookup, Thread.currentThread(), "A last price was looked up by a worker.");
+		}
+		assertEquals(lastTradePrices.getLastPrice(TRADED), 99.0);
+		assertEquals(valuationRepo.findByTraderNameAndValuationDate(SELLER, tomorrow).getHoldingsValue(),
+				20.0 * (850 + 50), 1e-9, "A trade during the run changed the marks.");
+	}
+	
+	@Test(priority = 3)
+	public void readingShouldWaitOnceTheWindowOfPagesIsFull()
+	{
+		List<ForkJoinTask<?>> submitted = new CopyOnWriteArrayList<>();
+		AtomicInteger mostInFlight = new AtomicInteger();
+		PortfolioValuationJob windowed = new PortfolioValuationJob(holdingRepo, traderRepo, orderRepo, 
+				securityRepo, valuationRepo, new LastTradePrices(orderRepo));
+		windowed.setPageSize(1);
+		
+		// every page is slow to mark, so a reader that never waited would queue all five of them
+		windowed.setPool(new ForkJoinPool(1)
+		{
+			@Override
+			public <T> ForkJoinTask<T> submit(ForkJoinTask<T> task)
+			{
+				int inFlight = 1;
+				for (ForkJoinTask<?> earlier : submitted)
+				{
+					inFlight += earlier.isDone() ? 0 : 1;
+				}
+				mostInFlight.accumulateAndGet(inFlight, Math::max);
+				
+				ForkJoinTask<T> slow = ForkJoinTask.adapt(() ->
+				{
+					Thread.sleep(50);
+					return task.invoke();
+				});
+				submitted.add(slow);
+				return super.submit(slow);
+			}
+		});
+		
+		Date later = Date.valueOf(LocalDate.now().plusDays(2));
+		assertEquals(windowed.run(later), 2);
+		
+		assertEquals(submitted.size(), 5, "Three holdings and two open orders should be one page each.");
+		assertTrue(mostInFlight.get() <= 2, mostInFlight.get() + " pages were in flight at once.");
+		assertEquals(valuationRepo.findByTraderNameAndValuationDate(BUYER, later).getEquity(), 
+				valuationRepo.findByTraderNameAndValuationDate(BUYER, Date.valueOf(LocalDate.now())).getEquity(), 
+				1e-9);
+	}
+	
+	/**
+	 * The order repository, noting the thread of every last price lookup and, when 
+	 * given the prices, recording a trade at 99 as open orders start to be read.
+	 */
+	private OrderRepository watchingOrders(List<Thread> lookups, LastTradePrices tradeDuringRun)
+	{
+		return (OrderRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { OrderRepository.class }, (proxy, method, args) ->
+		{
+			if (method.getName().equals("findTopByTickerAndExecutedOrderByIdDesc"))
+			{
+				lookups.add(Thread.currentThread());
+			}
+			if (method.getName().equals("findOpenOrdersAfter") && tradeDuringRun != null)
+			{
+				tradeDuringRun.setLastPrice(TRADED, 99.0);
+			}
+			try
+			{
+				return method.invoke(orderRepo, args);
+			}
+			catch (InvocationTargetException ite)
+			{
+				throw ite.getCause();
+			}
+		});
+	}
+}